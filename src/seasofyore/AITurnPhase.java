@@ -4,6 +4,8 @@
  */
 package seasofyore;
 
+import seasofyore.core.AIParameters;
+import seasofyore.core.AIPlayer;
 import seasofyore.core.Player;
 import seasofyore.core.PlayerType;
 import seasofyore.core.Ship;
@@ -28,9 +30,10 @@ import javax.swing.Timer;
 public class AITurnPhase extends AbstractGamePhase
 {
   /**
-   * The delay between AI actions in milliseconds
+   * The delay between AI actions in milliseconds, from the AI's own
+   * parameters; set as the phase is entered.
    */
-  private static final int AI_ACTION_DELAY = 750;
+  private int actionDelay;
 
   /**
    * Timer for controlling AI action timing
@@ -71,6 +74,9 @@ public class AITurnPhase extends AbstractGamePhase
   protected void onEnter()
   {
     faller = null;
+    Player aiPlayer = controller.getCurrentPlayer();
+    actionDelay = ( ( aiPlayer instanceof AIPlayer ) ? ( (AIPlayer) aiPlayer ).getParameters()
+                                                     : AIParameters.DEFAULTS ).getAiActionDelayMs();
 
     // nobody clicks anything during an AI turn
     controller.getCurrentQuadrantPanel().disableCellInteraction();
@@ -101,7 +107,7 @@ public class AITurnPhase extends AbstractGamePhase
 
     // start the AI action sequence after a short delay -- or, if the volley
     // was already spent before the save, simply hand the turn onward
-    actionTimer = new Timer( AI_ACTION_DELAY, ( ActionEvent e ) ->
+    actionTimer = new Timer( actionDelay, ( ActionEvent e ) ->
     {
       if ( turnAlreadySpent )
         finishAITurn();
@@ -161,7 +167,7 @@ public class AITurnPhase extends AbstractGamePhase
   {
     faller = null;
     controller.getDragLayerPanel().repaint();
-    controller.getBoard().recordShotFired(); // survives a mid-turn save
+    controller.getBoard().recordShotFired( x, y ); // survives a mid-turn save
 
     Player aiPlayer = controller.getCurrentPlayer();
     Player defender = controller.getNextPlayer();
@@ -218,7 +224,7 @@ public class AITurnPhase extends AbstractGamePhase
       if ( salvosRemaining > 0 )
       {
         // continue with the next salvo after a delay
-        actionTimer = new Timer( AI_ACTION_DELAY, ( ActionEvent e ) ->
+        actionTimer = new Timer( actionDelay, ( ActionEvent e ) ->
         {
           performAIAction();
         });
@@ -229,7 +235,7 @@ public class AITurnPhase extends AbstractGamePhase
     }
 
     // end turn after a delay
-    actionTimer = new Timer( AI_ACTION_DELAY, ( ActionEvent e ) ->
+    actionTimer = new Timer( actionDelay, ( ActionEvent e ) ->
     {
       finishAITurn();
     });
@@ -130,6 +130,7 @@ public class BattlePhase extends AbstractGamePhase
     // stone + wire + the enemy's stone, and every click in that window
     // launched another volley.
     targeted.disableCellInteraction();
+    controller.getMatchHandler().aimShot( x, y ); // may cross while the stone falls
 
     if ( !controller.useStoneAnimations() )
     {
@@ -162,7 +163,7 @@ public class BattlePhase extends AbstractGamePhase
    */
   private void resolveShot( QuadrantPanel quadrantPanel, int x, int y )
   {
-    controller.getBoard().recordShotFired(); // survives a mid-turn save
+    controller.getBoard().recordShotFired( x, y ); // survives a mid-turn save
 
     controller.getMatchHandler().resolveOutgoingShot( x, y,
         ( hit, sunkType, defenderDefeated ) ->
@@ -17,6 +17,9 @@ import seasofyore.core.PlayerType;
 import seasofyore.core.SavedMatch;
 import seasofyore.core.ShipType;
 import seasofyore.core.Board;
+import seasofyore.core.MatchJournal;
+import seasofyore.core.MatchReplay;
+import seasofyore.core.ReplayRecorder;
 import seasofyore.match.MatchHandler;
 import seasofyore.match.NetworkedMatchHandler;
 import seasofyore.match.OfflineMatchHandler;
@@ -24,6 +27,7 @@ import java.awt.BorderLayout;
 import java.awt.Graphics;
 import java.awt.Point;
 import java.io.File;
+import java.io.IOException;
 import javax.swing.AbstractAction;
 import javax.swing.JLayeredPane;
 import javax.swing.JPanel;
@@ -36,6 +40,7 @@ import java.awt.event.MouseEvent;
 import java.awt.event.MouseWheelEvent;
 import javax.swing.JComponent;
 import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
 import javax.swing.Timer;
 
 /**
@@ -77,6 +82,18 @@ public class GameController extends JLayeredPane implements QuadrantListener
    */
   private Board injectedBoard;
 
+  /**
+   * The crash-safe autosave of the match under way, or null when the match
+   * is networked, finished, or could not be journaled.
+   */
+  private MatchJournal journal;
+
+  /**
+   * Notes every shot of the match under way for its replay; null once the
+   * replay has been kept.
+   */
+  private ReplayRecorder replay;
+
   /**
    * The pause overlay currently showing, or null when the game is live.
    */
@@ -218,6 +235,7 @@ public class GameController extends JLayeredPane implements QuadrantListener
     this.matchHandler = handler;
 
     startGame();
+    beginJournal();
   }
 
   /**
@@ -242,6 +260,61 @@ public class GameController extends JLayeredPane implements QuadrantListener
     this.injectedBoard = saved.getBoard();
 
     startGame();
+    beginJournal();
+  }
+
+  /**
+   * Starts the match's autosave journal, so that a crash costs at most the
+   * shot in flight. Networked matches are not journaled: half of their
+   * state lives on the other screen.
+   */
+  private void beginJournal()
+  {
+    if ( britonsType.isRemote() || franksType.isRemote() )
+      return;
+    try
+    {
+      journal = MatchJournal.begin( MatchJournal.defaultDirectory(), board, salvoMode );
+    }
+    catch ( IOException e )
+    {
+      terminal.logMessage( TerminalPanel.RED + "The ship's log cannot be kept: "
+                         + e.getMessage() + TerminalPanel.RESET );
+    }
+  }
+
+  /**
+   * Ends the match's replay and writes it among the ship's logs, in the
+   * background; the terminal hears of it only if it could not be kept.
+   *
+   * @param winner the civilization that won
+   */
+  private void keepReplay( Civilization winner )
+  {
+    if ( replay == null )
+      return;
+    MatchReplay finished = replay.finish( winner );
+    replay = null;
+
+    finished.writeInBackground( MatchReplay.defaultDirectory() )
+        .whenComplete( ( written, failure ) ->
+    {
+      if ( failure != null )
+        SwingUtilities.invokeLater( () -> terminal.logMessage( TerminalPanel.RED
+            + "The battle could not be logged for replay: " + failure.getMessage()
+            + TerminalPanel.RESET ) );
+    } );
+  }
+
+  /**
+   * Deletes the autosave journal once the match is over, won or abandoned;
+   * there is nothing left to recover.
+   */
+  private void discardJournal()
+  {
+    if ( journal != null )
+      journal.discard();
+    journal = null;
   }
   
   /**
@@ -427,6 +500,7 @@ public class GameController extends JLayeredPane implements QuadrantListener
       board.getFranks().setName( franksName );
     }
     board.prepareForPlay();   // settle AI setup so only humans see placement UI
+    replay = ReplayRecorder.begin( board, salvoMode );
     matchHandler.beginMatch( this );
     current = board.getCurrentPlayer();
     gamePanel = new JPanel( new BorderLayout() );
@@ -725,6 +799,9 @@ public class GameController extends JLayeredPane implements QuadrantListener
    */
   public void showWinScreen( Civilization winner )
   {
+    discardJournal();
+    keepReplay( winner );
+
     Player localPlayer = matchHandler.getLocalPlayer();
     boolean defeat = ( localPlayer != null && localPlayer.getCiv() != winner );
     Civilization featured = (defeat && localPlayer != null)
@@ -1057,6 +1134,7 @@ public class GameController extends JLayeredPane implements QuadrantListener
       resumeGame();
 
     matchHandler.shutdown();
+    discardJournal();
     startGame();
     returnToTitle.run();
   }
@@ -1064,16 +1142,26 @@ public class GameController extends JLayeredPane implements QuadrantListener
   /**
    * Prompts for a destination and bottles the match to disk. Offered from
    * the pause menu once both fleets are placed; the dialog plumbing lives
-   * in SavedMatchDialogs.
+   * in SavedMatchDialogs. The match is snapshotted here and written in the
+   * background, so a slow disk never stalls the game; the terminal reports
+   * how the write went once it has.
    */
   public void saveGameViaDialog()
   {
-    File file = SavedMatchDialogs.saveViaDialog(
-        this, new SavedMatch( board, salvoMode ) );
+    File file = SavedMatchDialogs.chooseSaveFile( this );
+    if ( file == null )
+      return;
 
-    if ( file != null )
-      terminal.logMessage( TerminalPanel.GREEN + "Voyage committed to the log: "
-                         + file.getName() + TerminalPanel.RESET );
+    SavedMatch.saveInBackground( file, new SavedMatch( board, salvoMode ) )
+        .whenComplete( ( written, failure ) -> SwingUtilities.invokeLater( () ->
+    {
+      if ( failure == null )
+        terminal.logMessage( TerminalPanel.GREEN + "Voyage committed to the log: "
+                           + written.getName() + TerminalPanel.RESET );
+      else
+        terminal.logMessage( TerminalPanel.RED + "The log could not be written: "
+                           + failure.getMessage() + TerminalPanel.RESET );
+    } ) );
   }
 
-}
\ No newline at end of file
+}
@@ -87,8 +87,8 @@ public class SalvoBattlePhase extends BattlePhase
  
   /**
    * Handles a cell click event during the Salvo battle phase.
-   * Locks the clicked cell for SALVO, queues the shot and its animation, and 
-   * decrements the remaining shots.
+   * Locks the clicked cell for SALVO, queues the shot and its animation, 
+   * aims it through the match handler, and decrements the remaining shots.
    *
    * @param x             the x-coordinate of the clicked cell
    * @param y             the y-coordinate of the clicked cell
@@ -126,6 +126,7 @@ public class SalvoBattlePhase extends BattlePhase
     salvoTarget.lockCellForSALVO( x, y );
     shotGridPointQueue.add( new Point( x, y ) );
     shotsRemaining--;
+    controller.getMatchHandler().aimShot( x, y ); // may cross while the rest are aimed
 
     if ( controller.useStoneAnimations() )
     {
@@ -136,7 +137,24 @@ public class SalvoBattlePhase extends BattlePhase
     }
 
     if ( shotsRemaining == 0 )
+    {
+      announceVolley();
       playNextAnimation();
+    }
+  }
+
+  /**
+   * Tells the match handler the whole volley before its first shot is
+   * resolved, so a networked match can send it in one message rather than
+   * one round trip per shot.
+   */
+  private void announceVolley()
+  {
+    int[][] shots = new int[shotGridPointQueue.size()][];
+    int i = 0;
+    for ( Point p : shotGridPointQueue )
+      shots[i++] = new int[] { p.x, p.y };
+    controller.getMatchHandler().announceVolley( shots );
   }
 
   /**
@@ -178,9 +196,8 @@ public class SalvoBattlePhase extends BattlePhase
    */
   private void resolveNextShot( Runnable onResolved )
   {
-    controller.getBoard().recordShotFired(); // survives a mid-turn save
-
     Point p = shotGridPointQueue.poll();
+    controller.getBoard().recordShotFired( p.x, p.y ); // survives a mid-turn save
     salvoTarget.unlockCellForSalvo( p.x, p.y );
 
     controller.getMatchHandler().resolveOutgoingShot( p.x, p.y,
@@ -9,6 +9,10 @@ import java.awt.Font;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Insets;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 import javax.swing.BorderFactory;
 import javax.swing.DefaultListCellRenderer;
 import javax.swing.JButton;
@@ -20,9 +24,11 @@ import javax.swing.JList;
 import javax.swing.JPanel;
 import javax.swing.SwingUtilities;
 import seasofyore.core.MatchConfig;
+import seasofyore.core.MatchJournal;
 import seasofyore.core.PlayerType;
 import seasofyore.core.SavedMatch;
 import seasofyore.ui.ChoppySeasPanel;
+import seasofyore.ui.ReplayViewer;
 import seasofyore.ui.SavedMatchDialogs;
 import seasofyore.ui.WoodPanel;
 
@@ -146,6 +152,52 @@ public class SeasOfYore
     {
         showScreen("TitleScreen");
         mainFrame.setVisible(true);
+        offerRecovery();
+    }
+
+    /**
+     * Offers to resume the newest match an earlier session left unfinished
+     * -- a crash, or a quit mid-battle -- from its autosave journal. A
+     * declined or unreadable journal is deleted, so the offer is made once.
+     */
+    private void offerRecovery()
+    {
+        List<Path> pending = MatchJournal.pending(MatchJournal.defaultDirectory());
+        if (pending.isEmpty())
+            return;
+
+        Path journal = pending.get(0);
+        int choice = javax.swing.JOptionPane.showConfirmDialog(mainFrame,
+            "A voyage was cut short. Shall we take up where the log ends?",
+            "Unfinished voyage",
+            javax.swing.JOptionPane.YES_NO_OPTION);
+
+        SavedMatch saved = null;
+        if (choice == javax.swing.JOptionPane.YES_OPTION)
+        {
+            try
+            {
+                saved = MatchJournal.recover(journal);
+            }
+            catch (IOException ex)
+            {
+                javax.swing.JOptionPane.showMessageDialog(mainFrame,
+                    "That log could not be read: " + ex.getMessage(),
+                    "Recovery failed", javax.swing.JOptionPane.ERROR_MESSAGE);
+            }
+        }
+
+        try
+        {
+            Files.deleteIfExists(journal); // the resumed match keeps a log of its own
+        }
+        catch (IOException ex)
+        {
+            // left behind, it is only offered again next time
+        }
+
+        if (saved != null)
+            resumeMatch(saved);
     }
 
     /**
@@ -201,6 +253,7 @@ public class SeasOfYore
         // at the table until it exists.
         JButton playButton = createMenuButton("Weigh Yer Anchor", Color.WHITE, SEA_BLUE);
         JButton loadButton = createMenuButton("Recover a Voyage", INK, PARCHMENT);
+        JButton logsButton = createMenuButton("Read the Ship's Logs", INK, PARCHMENT);
         JButton multiplayerButton = createMenuButton("Board or Be Boarded",
                                                      INK, PARCHMENT);
         JButton quitButton = createMenuButton("Belay Yer Swashbucklin'", PARCHMENT, BLOOD_RED);
@@ -208,6 +261,7 @@ public class SeasOfYore
         // Add action listeners
         playButton.addActionListener(e -> showScreen("BattleSetup"));
         loadButton.addActionListener(e -> loadSavedGame());
+        logsButton.addActionListener(e -> ReplayViewer.openViaDialog(mainFrame));
         multiplayerButton.addActionListener(e -> showScreen("Multiplayer"));
         quitButton.addActionListener(e -> System.exit(0));
 
@@ -217,8 +271,9 @@ public class SeasOfYore
         gblAdd(panel, new JLabel(), 2, STD_P); // breathing room before the buttons
         gblAdd(panel, playButton, 3, STD_P);
         gblAdd(panel, loadButton, 4, STD_P);
-        gblAdd(panel, multiplayerButton, 5, STD_P);
-        gblAdd(panel, quitButton, 6, STD_P);
+        gblAdd(panel, logsButton, 5, STD_P);
+        gblAdd(panel, multiplayerButton, 6, STD_P);
+        gblAdd(panel, quitButton, 7, STD_P);
 
         return panel;
     }
@@ -234,6 +289,16 @@ public class SeasOfYore
         if (saved == null)
             return; // cancelled, or the dialog already reported the failure
 
+        resumeMatch(saved);
+    }
+
+    /**
+     * Replaces any match on screen with a restored one and shows it.
+     *
+     * @param saved the restored match
+     */
+    private void resumeMatch(SavedMatch saved)
+    {
         for (Component comp : mainPanel.getComponents())
             if (comp instanceof GameController)
                 mainPanel.remove(comp);
@@ -0,0 +1,180 @@
+package seasofyore.core;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * The tunable constants of the AI opponents, gathered into one immutable
+ * value so that a tier can be built with something other than its shipped
+ * settings -- chiefly by the {@link ParameterTuner}, which plays candidate
+ * settings against each other in the arena. Everything else simply uses
+ * {@link #DEFAULTS}.
+ *
+ * <p>Serializable because the strategies that hold one travel inside saved
+ * games.</p>
+ *
+ * @author dylan
+ */
+public final class AIParameters implements Serializable
+{
+  /**
+   * Serialization version for saved games.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The shipped settings.
+   */
+  public static final AIParameters DEFAULTS = new AIParameters( 2400, 40, 12, 2, 750 );
+
+  /**
+   * Monte Carlo worlds the Extreme tier attempts per finishing shot. Each
+   * sample is a full fleet placement, so a few thousand keeps per-shot noise
+   * well below the gaps between candidate cells while staying far under a
+   * frame's budget.
+   */
+  private final int samples;
+
+  /**
+   * The minimum number of accepted (fully consistent) worlds the Extreme
+   * tier needs to trust its Monte Carlo estimate. Below this the wounds are
+   * too tangled for sampling and it falls back to line-following.
+   */
+  private final int minAccepted;
+
+  /**
+   * How many of the coldest candidate placements each of the Extreme
+   * tier's ships chooses among when mooring. A pool this size keeps the
+   * fleet in genuinely cold water while leaving enough variety that the
+   * layout is never twice the same.
+   */
+  private final int coldPool;
+
+  /**
+   * The radius (Chebyshev distance) of the neighbourhood the Medium tier
+   * uses to gauge how open a candidate cell is.
+   */
+  private final int opennessRadius;
+
+  /**
+   * The pause between an AI's actions on screen, in milliseconds. Pure
+   * pacing: it changes how a turn looks, never what is fired.
+   */
+  private final int aiActionDelayMs;
+
+  /**
+   * Assembles a set of AI parameters.
+   *
+   * @param samples         Extreme's Monte Carlo worlds per finishing shot
+   * @param minAccepted     Extreme's minimum consistent worlds to trust
+   * @param coldPool        Extreme's pool of coldest placements per ship
+   * @param opennessRadius  Medium's openness neighbourhood radius
+   * @param aiActionDelayMs the on-screen pause between AI actions
+   * @throws IllegalArgumentException if a value is out of range
+   */
+  public AIParameters( int samples, int minAccepted, int coldPool,
+                       int opennessRadius, int aiActionDelayMs )
+  {
+    if ( samples < 1 || minAccepted < 1 || minAccepted > samples )
+      throw new IllegalArgumentException( "need 1 <= minAccepted <= samples" );
+    if ( coldPool < 1 || opennessRadius < 1 || aiActionDelayMs < 0 )
+      throw new IllegalArgumentException( "coldPool and opennessRadius must be positive, "
+                                        + "aiActionDelayMs non-negative" );
+
+    this.samples = samples;
+    this.minAccepted = minAccepted;
+    this.coldPool = coldPool;
+    this.opennessRadius = opennessRadius;
+    this.aiActionDelayMs = aiActionDelayMs;
+  }
+
+  /**
+   * Extreme's Monte Carlo worlds per finishing shot.
+   *
+   * @return the sample count
+   */
+  public int getSamples()
+  {
+    return this.samples;
+  }
+
+  /**
+   * Extreme's minimum consistent worlds to trust an estimate.
+   *
+   * @return the acceptance floor
+   */
+  public int getMinAccepted()
+  {
+    return this.minAccepted;
+  }
+
+  /**
+   * Extreme's pool of coldest placements per ship.
+   *
+   * @return the pool size
+   */
+  public int getColdPool()
+  {
+    return this.coldPool;
+  }
+
+  /**
+   * Medium's openness neighbourhood radius.
+   *
+   * @return the radius
+   */
+  public int getOpennessRadius()
+  {
+    return this.opennessRadius;
+  }
+
+  /**
+   * The on-screen pause between AI actions.
+   *
+   * @return the delay in milliseconds
+   */
+  public int getAiActionDelayMs()
+  {
+    return this.aiActionDelayMs;
+  }
+
+  /**
+   * Two parameter sets are equal when every setting is.
+   *
+   * @param o the object to compare with
+   * @return true if o holds the same settings
+   */
+  @Override
+  public boolean equals( Object o )
+  {
+    if ( !( o instanceof AIParameters ) )
+      return false;
+    AIParameters p = (AIParameters) o;
+    return samples == p.samples && minAccepted == p.minAccepted && coldPool == p.coldPool
+        && opennessRadius == p.opennessRadius && aiActionDelayMs == p.aiActionDelayMs;
+  }
+
+  /**
+   * A hash consistent with {@link #equals}.
+   *
+   * @return the hash code
+   */
+  @Override
+  public int hashCode()
+  {
+    return Objects.hash( samples, minAccepted, coldPool, opennessRadius,
+                                   aiActionDelayMs );
+  }
+
+  /**
+   * A one-line summary, as the tuner prints it.
+   *
+   * @return the parameters as name=value pairs
+   */
+  @Override
+  public String toString()
+  {
+    return "samples=" + samples + " minAccepted=" + minAccepted + " coldPool=" + coldPool
+         + " opennessRadius=" + opennessRadius + " aiActionDelayMs=" + aiActionDelayMs;
+  }
+}
@@ -4,6 +4,10 @@
  */
 package seasofyore.core;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.concurrent.ThreadLocalRandom;
+
 /**
  * Represents an AI-controlled player in the game.
  * AI players make autonomous decisions based on predefined strategies.
@@ -12,10 +16,20 @@ package seasofyore.core;
  */
 public class AIPlayer extends Player
 {
+  /**
+   * Serialization version for saved games.
+   */
+  private static final long serialVersionUID = -4960708476711625667L;
+
   /**
    * The strategy this AI player uses for decision-making.
    */
   private AIStrategy strategy;
+
+  /**
+   * The settings this AI player was built with; its turns are paced by them.
+   */
+  private AIParameters params = AIParameters.DEFAULTS;
   
   /**
    * Constructs a new AIPlayer with the specified civilization, quadrants,
@@ -42,9 +56,37 @@ public class AIPlayer extends Player
    * @param strat   the AI strategy to use
    */
   public AIPlayer( Civilization civ, PlayerQuadrant fQ, PlayerQuadrant eQ, AIStrategy strat )
+  {
+    this( civ, fQ, eQ, strat, AIParameters.DEFAULTS );
+  }
+
+  /**
+   * Constructs a new AIPlayer with the specified civilization, quadrants,
+   * strategy, and settings.
+   * 
+   * @param civ     the civilization of this AI player
+   * @param fQ      the friendly quadrant relative to this AI player
+   * @param eQ      the enemy quadrant relative to this AI player
+   * @param strat   the AI strategy to use
+   * @param params  the settings the strategy and the turn pacing read
+   */
+  public AIPlayer( Civilization civ, PlayerQuadrant fQ, PlayerQuadrant eQ, AIStrategy strat,
+                   AIParameters params )
   {
     super( civ, fQ, eQ );
     this.strategy = strat;
+    this.params = params;
+  }
+
+  /**
+   * Restores a saved AI player; one saved before it kept its settings
+   * plays on with the shipped ones.
+   */
+  private void readObject( ObjectInputStream in ) throws IOException, ClassNotFoundException
+  {
+    in.defaultReadObject();
+    if ( params == null )
+      params = AIParameters.DEFAULTS;
   }
   
    
@@ -78,6 +120,16 @@ public class AIPlayer extends Player
   {
     return this.strategy;
   }
+
+  /**
+   * Gets the settings this AI player was built with.
+   * 
+   * @return the settings
+   */
+  public AIParameters getParameters()
+  {
+    return this.params;
+  }
   
   /**
    * Calculates the next attack based on the AI's strategy.
@@ -120,24 +172,42 @@ public class AIPlayer extends Player
   /**
    * Implements AI ship placement using the strategy.
    * Overrides the random placement with more intelligent strategy-based placement.
+   * A fleet moored into a corner, with a hull left that fits nowhere, is
+   * cleared and moored again.
    */
   @Override
   @SuppressWarnings("empty-statement")
   public void randomVesselPlacement()
   {
     Ship[] ships = Ship.getListInstance();
+    while (!placeFleet(ships));
+  }
+
+  /**
+   * Clears the water and moors the whole fleet, each hull where the strategy
+   * says or, failing that, at any legal heading.
+   *
+   * @param ships the fleet, in mooring order
+   * @return true if every hull was moored; false if one fitted nowhere
+   */
+  private boolean placeFleet(Ship[] ships)
+  {
     reset();
     friendlyQuad.eraseCells();
-    
+
     for (int i = 0; i < FLEET_SIZE; i++)
     {
       ShipHeading heading = strategy.calculateShipPlacement(ships[i], getFriendlyQuad());
-      if (!placeVessel(ships[i], heading))
-      {
-        // If strategy-based placement fails, fall back to random
-        while (!placeVessel(ships[i], ShipHeading.getRandomInstance()));
-      }
+      if (heading != null && placeVessel(ships[i], heading))
+        continue;
+
+      // If strategy-based placement fails, fall back to a random legal heading
+      heading = FleetSampler.randomLegalHeading(ships[i], getFriendlyQuad(),
+                                                ThreadLocalRandom.current());
+      if (heading == null || !placeVessel(ships[i], heading))
+        return false;
     }
+    return true;
   }
   
 }
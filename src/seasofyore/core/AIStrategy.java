@@ -18,7 +18,8 @@ public interface AIStrategy extends java.io.Serializable
    * 
    * @param ship     the ship to place
    * @param quadrant the quadrant to place the ship in
-   * @return a ShipHeading representing the chosen position and direction
+   * @return a ShipHeading representing the chosen position and direction, or
+   *         null if the strategy finds nowhere the ship fits
    */
   ShipHeading calculateShipPlacement( Ship ship, PlayerQuadrant quadrant );
   
@@ -57,4 +58,19 @@ public interface AIStrategy extends java.io.Serializable
   {
     // no-op by default; learning strategies override this
   }
+
+  /**
+   * Fixes the strategy's source of randomness, so that the same seed
+   * against the same board always yields the same shots. The arena uses
+   * this to replay a fixed scenario identically from build to build.
+   *
+   * <p>The default implementation does nothing, for strategies with no
+   * randomness of their own.</p>
+   *
+   * @param seed the seed
+   */
+  default void reseed( long seed )
+  {
+    // no-op by default; randomised strategies override this
+  }
 }
@@ -1,5 +1,7 @@
 package seasofyore.core;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -38,6 +40,14 @@ import java.util.Set;
  */
 public abstract class AbstractTargetingStrategy implements AIStrategy
 {
+  /**
+   * Serialization version for saved games, pinned -- as it is on every
+   * strategy and on {@link AIPlayer} -- to the value computed for the shape
+   * these classes had when saves were serialized object graphs, so that
+   * those logs still load now that fields have come and gone.
+   */
+  private static final long serialVersionUID = 1654024923881649244L;
+
   /**
    * The grid dimension, cached for convenience.
    */
@@ -70,6 +80,13 @@ public abstract class AbstractTargetingStrategy implements AIStrategy
    */
   protected final Set<Integer> sunkCells = new HashSet<>();
 
+  /**
+   * Where the enemy is expected to moor, beyond what the rules allow. Tiers
+   * that hunt by a heatmap multiply it in; {@link PlacementPriors#UNIFORM},
+   * the default, expects nothing.
+   */
+  protected transient PlacementPriors priors = PlacementPriors.UNIFORM;
+
   /**
    * Constructs the strategy with a full enemy fleet's worth of expected ship
    * lengths.
@@ -81,6 +98,40 @@ public abstract class AbstractTargetingStrategy implements AIStrategy
       remainingLengths.add( type.getLength() );
   }
 
+  /**
+   * Reseeds the shared source of randomness, making every tie-break from
+   * here on reproducible.
+   *
+   * @param seed the seed
+   */
+  @Override
+  public void reseed( long seed )
+  {
+    random.setSeed( seed );
+  }
+
+  /**
+   * Sets where the enemy is expected to moor, for the tiers that hunt by a
+   * heatmap.
+   *
+   * @param priors the expectations; null for {@link PlacementPriors#UNIFORM}
+   */
+  public void setPlacementPriors( PlacementPriors priors )
+  {
+    this.priors = ( priors == null ) ? PlacementPriors.UNIFORM : priors;
+  }
+
+  /**
+   * Restores a strategy from a serialized log. The priors are never in one,
+   * and the builds that wrote them hunted without any.
+   */
+  private void readObject( ObjectInputStream in )
+      throws IOException, ClassNotFoundException
+  {
+    in.defaultReadObject();
+    priors = PlacementPriors.UNIFORM;
+  }
+
   /**
    * Default AI ship placement is random. Subclasses may override for smarter
    * placement, but the difficulty tiers here are differentiated by their
@@ -88,19 +139,20 @@ public abstract class AbstractTargetingStrategy implements AIStrategy
    *
    * @param ship     the ship to place
    * @param quadrant the quadrant to place the ship in
-   * @return a random ShipHeading
+   * @return a random legal ShipHeading, or null if the ship fits nowhere
    */
   @Override
   public ShipHeading calculateShipPlacement( Ship ship, PlayerQuadrant quadrant )
   {
-    return ShipHeading.getRandomInstance();
+    return FleetSampler.randomLegalHeading( ship, quadrant, random );
   }
 
   /**
    * The Template Method. Chooses the next cell to fire upon by first attempting
    * a predictive strike against a wounded ship (target mode); if no ship is
    * currently wounded, it falls back to the subclass-defined exploration
-   * (hunt mode).
+   * (hunt mode). Ahead of both, a small enough endgame is solved exactly by
+   * the {@link EndgameSolver}.
    *
    * @param enemyQuadrant the enemy quadrant to target
    * @return coordinates as [x, y], or null if no targetable cell remains
@@ -113,6 +165,16 @@ public abstract class AbstractTargetingStrategy implements AIStrategy
     // the same hit/miss state we just fired against.
     this.lastQuad = enemyQuadrant;
 
+    // with only a hull or two afloat the position is usually small enough
+    // to solve outright; when it is, the exact shot beats any estimate
+    if ( usesEndgameSolver() && remainingLengths.size() <= EndgameSolver.MAX_HULLS )
+    {
+      int[] exact = new EndgameSolver( remainingLengths, sunkCells )
+                        .solve( enemyQuadrant, random );
+      if ( exact != null )
+        return exact;
+    }
+
     // finish a wounded ship if one exists (target mode); otherwise explore
     int[] predictive = selectTargetShot( enemyQuadrant );
     if ( predictive != null )
@@ -130,6 +192,18 @@ public abstract class AbstractTargetingStrategy implements AIStrategy
     return anyTargetable( enemyQuadrant );
   }
 
+  /**
+   * Whether this tier hands the late game to the {@link EndgameSolver} once
+   * few enough hulls survive. Every tier does by default; a tier meant to
+   * play like a novice to the last shot may decline.
+   *
+   * @return true to play solved endgames exactly
+   */
+  protected boolean usesEndgameSolver()
+  {
+    return true;
+  }
+
   /**
    * The last-resort shot: a uniformly random unfired cell, or null only when
    * the entire board has been fired upon (at which point the game is over).
@@ -440,6 +514,18 @@ public abstract class AbstractTargetingStrategy implements AIStrategy
     return lastQuad != null && lastQuad.cellIsHit( x, y );
   }
 
+  /**
+   * Points the sink bookkeeping at a board without choosing a shot, for
+   * callers that replay shots this strategy chose earlier -- as recovering
+   * a {@link MatchJournal} does.
+   *
+   * @param enemyQuadrant the enemy quadrant the shots land on
+   */
+  void observe( PlayerQuadrant enemyQuadrant )
+  {
+    this.lastQuad = enemyQuadrant;
+  }
+
   /**
    * The most recently targeted quadrant, captured during firing so that sink
    * bookkeeping (triggered in a separate call) can inspect the board.
@@ -0,0 +1,407 @@
+package seasofyore.core;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The round-robin mode of the {@link StrategyArena}: every pairing of
+ * {@link PlayerFactory.AIDifficulty} tiers, mirrors included, played in
+ * parallel across the machine's cores, then boiled down to one rating per
+ * tier with a confidence interval and its cost in time per shot.
+ *
+ * <p>Ratings are Bradley-Terry strengths fitted by the standard MM
+ * iteration and printed on the Elo scale (400 points per tenfold odds),
+ * centred so the tiers average zero. Each cross pairing also carries one
+ * virtual win and one virtual loss: the tiers are far enough apart that
+ * Easy can go a whole series without a win, and without the prior its
+ * rating would run off to minus infinity. Intervals come from a parametric
+ * bootstrap -- every pairing's series is redrawn at its observed win rate
+ * and the ratings refitted. Mirror pairings rate nothing; they are played
+ * for the first-mover edge they measure.</p>
+ *
+ * <p>Beside the text report, {@code <prefix>.json} carries the whole
+ * tournament and {@code <prefix>.csv} one row per tier, ready to be
+ * plotted as strength against compute cost.</p>
+ *
+ * @author dylan
+ */
+final class ArenaTournament
+{
+  /**
+   * Games per unit of parallel work. Small enough to keep every core busy
+   * to the end, large enough that scheduling costs nothing.
+   */
+  private static final int CHUNK = 20;
+
+  /**
+   * Bootstrap resamples behind each confidence interval.
+   */
+  private static final int RESAMPLES = 400;
+
+  /**
+   * MM iterations per fit; four tiers converge long before this.
+   */
+  private static final int FIT_ITERATIONS = 200;
+
+  /**
+   * Points on the Elo scale per natural-log unit of strength.
+   */
+  private static final double ELO_PER_NAT = 400.0 / Math.log( 10.0 );
+
+  /**
+   * The tiers in play, in enum order.
+   */
+  private static final PlayerFactory.AIDifficulty[] TIERS =
+      PlayerFactory.AIDifficulty.values();
+
+  /**
+   * Not instantiable; driven from {@link StrategyArena#main}.
+   */
+  private ArenaTournament() {}
+
+  /**
+   * Running totals for one pairing, side A being the lower tier.
+   */
+  private static final class Tally
+  {
+    final int a;
+    final int b;
+    int games;
+    int winsA;
+    int firstMoverWins;
+    long winnerShots;
+
+    Tally( int a, int b )
+    {
+      this.a = a;
+      this.b = b;
+    }
+  }
+
+  /**
+   * Plays the tournament, prints the report, and writes the JSON and CSV
+   * files.
+   *
+   * @param gamesPerPairing games in each pairing's series
+   * @param prefix          path prefix for the output files
+   * @throws IOException if an output file cannot be written
+   */
+  static void run( int gamesPerPairing, String prefix ) throws IOException
+  {
+    int n = TIERS.length;
+    List<Tally> pairings = new ArrayList<>();
+    for ( int a = 0; a < n; a++ )
+      for ( int b = a; b < n; b++ )
+        pairings.add( new Tally( a, b ) );
+
+    long[] shots = new long[n];
+    long[] nanos = new long[n];
+
+    int threads = Runtime.getRuntime().availableProcessors();
+    ExecutorService pool = Executors.newFixedThreadPool( threads );
+    long startMs = System.currentTimeMillis();
+    try
+    {
+      // one task per chunk of a series; each returns its own outcomes so
+      // all merging happens here, on one thread, with no locks
+      List<Future<List<StrategyArena.Outcome>>> futures = new ArrayList<>();
+      List<Tally> owners = new ArrayList<>();
+      for ( Tally t : pairings )
+      {
+        for ( int from = 0; from < gamesPerPairing; from += CHUNK )
+        {
+          final int first = from;
+          final int last = Math.min( gamesPerPairing, from + CHUNK );
+          final PlayerFactory.AIDifficulty tierA = TIERS[t.a];
+          final PlayerFactory.AIDifficulty tierB = TIERS[t.b];
+          futures.add( pool.submit( () ->
+          {
+            List<StrategyArena.Outcome> out = new ArrayList<>();
+            for ( int g = first; g < last; g++ )
+              out.add( StrategyArena.playGame( tierA, tierB, g % 2 == 0,
+                                              false, null, null ) );
+            return out;
+          } ) );
+          owners.add( t );
+        }
+      }
+
+      for ( int i = 0; i < futures.size(); i++ )
+      {
+        Tally t = owners.get( i );
+        for ( StrategyArena.Outcome o : futures.get( i ).get() )
+        {
+          t.games++;
+          if ( o.aWon )
+            t.winsA++;
+          if ( o.aWon == o.aFirst )
+            t.firstMoverWins++;
+          t.winnerShots += o.winnerShots;
+          shots[t.a] += o.shotsA;
+          nanos[t.a] += o.nanosA;
+          shots[t.b] += o.shotsB;
+          nanos[t.b] += o.nanosB;
+        }
+      }
+    }
+    catch ( InterruptedException e )
+    {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException( "tournament interrupted", e );
+    }
+    catch ( ExecutionException e )
+    {
+      throw new IllegalStateException( "a tournament game failed", e.getCause() );
+    }
+    finally
+    {
+      pool.shutdownNow();
+    }
+    long elapsedMs = System.currentTimeMillis() - startMs;
+
+    int[][] wins = new int[n][n];
+    int[][] played = new int[n][n];
+    for ( Tally t : pairings )
+    {
+      if ( t.a == t.b )
+        continue;
+      wins[t.a][t.b] = t.winsA;
+      wins[t.b][t.a] = t.games - t.winsA;
+      played[t.a][t.b] = played[t.b][t.a] = t.games;
+    }
+
+    double[] elo = fit( wins, played );
+    double[][] interval = bootstrap( wins, played );
+
+    double[] msPerShot = new double[n];
+    for ( int i = 0; i < n; i++ )
+      msPerShot[i] = ( shots[i] == 0 ) ? 0.0 : nanos[i] / 1e6 / shots[i];
+
+    report( pairings, elo, interval, msPerShot, elapsedMs, threads );
+    writeJson( prefix + ".json", pairings, elo, interval, msPerShot, elapsedMs );
+    writeCsv( prefix + ".csv", elo, interval, msPerShot, played );
+    System.out.printf( "  wrote %s.json and %s.csv%n", prefix, prefix );
+  }
+
+  /**
+   * Fits Bradley-Terry strengths by Hunter's MM iteration, with one virtual
+   * win and loss per cross pairing, and converts them to centred Elo.
+   *
+   * @param wins   wins[i][j] = games tier i won against tier j
+   * @param played played[i][j] = games between tiers i and j
+   * @return the Elo rating of each tier
+   */
+  private static double[] fit( int[][] wins, int[][] played )
+  {
+    int n = wins.length;
+    double[] gamma = new double[n];
+    Arrays.fill( gamma, 1.0 );
+
+    for ( int iter = 0; iter < FIT_ITERATIONS; iter++ )
+    {
+      double[] next = new double[n];
+      for ( int i = 0; i < n; i++ )
+      {
+        double won = 0.0;
+        double denom = 0.0;
+        for ( int j = 0; j < n; j++ )
+        {
+          if ( j == i || played[i][j] == 0 )
+            continue;
+          won += wins[i][j] + 1.0;
+          denom += ( played[i][j] + 2.0 ) / ( gamma[i] + gamma[j] );
+        }
+        next[i] = ( denom == 0.0 ) ? 1.0 : won / denom;
+      }
+      gamma = next;
+    }
+
+    double[] elo = new double[n];
+    double mean = 0.0;
+    for ( int i = 0; i < n; i++ )
+    {
+      elo[i] = ELO_PER_NAT * Math.log( gamma[i] );
+      mean += elo[i] / n;
+    }
+    for ( int i = 0; i < n; i++ )
+      elo[i] -= mean;
+    return elo;
+  }
+
+  /**
+   * 95% percentile intervals on each rating by parametric bootstrap. A
+   * fixed seed keeps two runs over the same results printing the same
+   * intervals.
+   *
+   * @param wins   the observed wins matrix
+   * @param played the games-played matrix
+   * @return interval[i] = {low, high} for tier i
+   */
+  private static double[][] bootstrap( int[][] wins, int[][] played )
+  {
+    int n = wins.length;
+    Random random = new Random( 0x5EA5L );
+    double[][] samples = new double[n][RESAMPLES];
+
+    for ( int r = 0; r < RESAMPLES; r++ )
+    {
+      int[][] redrawn = new int[n][n];
+      for ( int i = 0; i < n; i++ )
+      {
+        for ( int j = i + 1; j < n; j++ )
+        {
+          if ( played[i][j] == 0 )
+            continue;
+          double p = (double) wins[i][j] / played[i][j];
+          int w = 0;
+          for ( int g = 0; g < played[i][j]; g++ )
+            if ( random.nextDouble() < p )
+              w++;
+          redrawn[i][j] = w;
+          redrawn[j][i] = played[i][j] - w;
+        }
+      }
+      double[] elo = fit( redrawn, played );
+      for ( int i = 0; i < n; i++ )
+        samples[i][r] = elo[i];
+    }
+
+    double[][] interval = new double[n][];
+    for ( int i = 0; i < n; i++ )
+    {
+      Arrays.sort( samples[i] );
+      interval[i] = new double[] { samples[i][(int) ( 0.025 * ( RESAMPLES - 1 ) )],
+                                   samples[i][(int) Math.ceil( 0.975 * ( RESAMPLES - 1 ) )] };
+    }
+    return interval;
+  }
+
+  /**
+   * Prints the pairing table and the ratings.
+   *
+   * @param pairings  every pairing's tally
+   * @param elo       the fitted ratings
+   * @param interval  the 95% intervals
+   * @param msPerShot mean time per shot for each tier
+   * @param elapsedMs wall-clock duration of the tournament
+   * @param threads   worker threads used
+   */
+  private static void report( List<Tally> pairings, double[] elo, double[][] interval,
+                              double[] msPerShot, long elapsedMs, int threads )
+  {
+    int games = 0;
+    for ( Tally t : pairings )
+      games += t.games;
+
+    System.out.printf( "Round robin -- %d pairings, %d games (%.1fs on %d threads)%n",
+                       pairings.size(), games, elapsedMs / 1000.0, threads );
+    for ( Tally t : pairings )
+    {
+      System.out.printf( "  %-8s vs %-8s  %5.1f%% - %5.1f%%   first mover %5.1f%%"
+                         + "   shots-to-victory %.1f%n",
+                         TIERS[t.a], TIERS[t.b],
+                         100.0 * t.winsA / t.games,
+                         100.0 * ( t.games - t.winsA ) / t.games,
+                         100.0 * t.firstMoverWins / t.games,
+                         (double) t.winnerShots / t.games );
+    }
+
+    System.out.println( "  ratings (Elo, 95% interval)        ms/shot" );
+    for ( int i = 0; i < TIERS.length; i++ )
+    {
+      System.out.printf( "  %-8s %+7.0f  [%+6.0f, %+6.0f]    %8.3f%n",
+                         TIERS[i], elo[i], interval[i][0], interval[i][1],
+                         msPerShot[i] );
+    }
+  }
+
+  /**
+   * Writes the whole tournament as JSON. The shape is small and fixed, so
+   * it is written by hand rather than through a library.
+   *
+   * @param path      the file to write
+   * @param pairings  every pairing's tally
+   * @param elo       the fitted ratings
+   * @param interval  the 95% intervals
+   * @param msPerShot mean time per shot for each tier
+   * @param elapsedMs wall-clock duration of the tournament
+   * @throws IOException if the file cannot be written
+   */
+  private static void writeJson( String path, List<Tally> pairings, double[] elo,
+                                 double[][] interval, double[] msPerShot,
+                                 long elapsedMs ) throws IOException
+  {
+    try ( PrintWriter out = new PrintWriter(
+            Files.newBufferedWriter( Paths.get( path ), StandardCharsets.UTF_8 ) ) )
+    {
+      out.println( "{" );
+      out.printf( Locale.ROOT, "  \"elapsedMs\": %d,%n", elapsedMs );
+      out.println( "  \"tiers\": [" );
+      for ( int i = 0; i < TIERS.length; i++ )
+      {
+        out.printf( Locale.ROOT,
+                    "    {\"tier\": \"%s\", \"elo\": %.1f, \"low95\": %.1f, "
+                    + "\"high95\": %.1f, \"msPerShot\": %.4f}%s%n",
+                    TIERS[i], elo[i], interval[i][0], interval[i][1], msPerShot[i],
+                    ( i + 1 < TIERS.length ) ? "," : "" );
+      }
+      out.println( "  ]," );
+      out.println( "  \"pairings\": [" );
+      for ( int k = 0; k < pairings.size(); k++ )
+      {
+        Tally t = pairings.get( k );
+        out.printf( Locale.ROOT,
+                    "    {\"tierA\": \"%s\", \"tierB\": \"%s\", \"games\": %d, "
+                    + "\"winsA\": %d, \"winsB\": %d, \"firstMoverWins\": %d, "
+                    + "\"meanWinnerShots\": %.2f}%s%n",
+                    TIERS[t.a], TIERS[t.b], t.games, t.winsA, t.games - t.winsA,
+                    t.firstMoverWins, (double) t.winnerShots / t.games,
+                    ( k + 1 < pairings.size() ) ? "," : "" );
+      }
+      out.println( "  ]" );
+      out.println( "}" );
+    }
+  }
+
+  /**
+   * Writes one CSV row per tier: rating, interval, cost per shot, and the
+   * rated games behind it.
+   *
+   * @param path      the file to write
+   * @param elo       the fitted ratings
+   * @param interval  the 95% intervals
+   * @param msPerShot mean time per shot for each tier
+   * @param played    the games-played matrix
+   * @throws IOException if the file cannot be written
+   */
+  private static void writeCsv( String path, double[] elo, double[][] interval,
+                                double[] msPerShot, int[][] played ) throws IOException
+  {
+    try ( PrintWriter out = new PrintWriter(
+            Files.newBufferedWriter( Paths.get( path ), StandardCharsets.UTF_8 ) ) )
+    {
+      out.println( "tier,elo,low95,high95,ms_per_shot,rated_games" );
+      for ( int i = 0; i < TIERS.length; i++ )
+      {
+        int rated = 0;
+        for ( int j = 0; j < TIERS.length; j++ )
+          rated += played[i][j];
+        out.printf( Locale.ROOT, "%s,%.1f,%.1f,%.1f,%.4f,%d%n",
+                    TIERS[i], elo[i], interval[i][0], interval[i][1],
+                    msPerShot[i], rated );
+      }
+    }
+  }
+}
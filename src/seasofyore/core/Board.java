@@ -44,6 +44,12 @@ public class Board implements java.io.Serializable
    * shooting and reloading granted a fresh volley indefinitely.
    */
   private int shotsFiredThisTurn = 0;
+
+  /**
+   * The battle turn under way, counting from 1 when setup ends; 0 during
+   * setup. Shown in the saved-games browser.
+   */
+  private int turnNumber = 0;
   
   /**
    * The quadrant representing the Britons' territory.
@@ -64,6 +70,18 @@ public class Board implements java.io.Serializable
    */
   private final PlayerType franksType;
 
+  /**
+   * The autosave journal every move is recorded in, or null. Never saved
+   * with the board.
+   */
+  private transient MatchJournal journal;
+
+  /**
+   * The recorder every shot is noted for the match's replay by, or null.
+   * Never saved with the board.
+   */
+  private transient ReplayRecorder replay;
+
 
   /**
    * Constructs a new Board object with two human players.
@@ -106,11 +124,30 @@ public class Board implements java.io.Serializable
 
     britons = PlayerFactory.createPlayer( this.britonsType, Civilization.BRITONS, bQuad, fQuad );
     franks = PlayerFactory.createPlayer( this.franksType, Civilization.FRANKS, fQuad, bQuad );
+    expectMoorings( britons, this.franksType );
+    expectMoorings( franks, this.britonsType );
 
     currentPlayer = britons;
     setupPhase = true;
   }
   
+  /**
+   * Lets an AI that faces a human commander, here or across the water,
+   * expect the moorings humans favour; see {@link PlacementPriors}. Against
+   * another AI the hunt stays uniform.
+   *
+   * @param player    the player
+   * @param enemyType the kind of player it faces
+   */
+  private static void expectMoorings( Player player, PlayerType enemyType )
+  {
+    if ( enemyType.isAI() || !( player instanceof AIPlayer ) )
+      return;
+    AIStrategy strategy = ( (AIPlayer) player ).getStrategy();
+    if ( strategy instanceof AbstractTargetingStrategy )
+      ( (AbstractTargetingStrategy) strategy ).setPlacementPriors( PlacementPriors.standard() );
+  }
+
   /**
    * Places a ship for the specified player during the setup phase.
    *
@@ -158,12 +195,8 @@ public class Board implements java.io.Serializable
    */
   public void switchTurns()
   {
-    if ( isPlacementFinal() && setupPhase )
-      setupPhase = false;
-
     shotsFiredThisTurn = 0; // a fresh turn owes a fresh volley
-
-    currentPlayer = ( currentPlayer == britons ? franks : britons );
+    handTurnTo( currentPlayer == britons ? franks : britons );
     
     // if new current player is AI and in setup phase, place ships automatically
     if ( currentPlayer.isAutonomous() && !currentPlayer.hasPlacedAllShips() && setupPhase )
@@ -296,18 +329,106 @@ public class Board implements java.io.Serializable
    */
   public void forceCurrentPlayer( Civilization civ )
   {
-    currentPlayer = ( civ == Civilization.BRITONS ) ? britons : franks;
+    handTurnTo( ( civ == Civilization.BRITONS ) ? britons : franks );
+  }
+
+  /**
+   * Hands the turn to a player: setup ends once both fleets stand placed,
+   * every turn after that is counted, and the journal hears of it.
+   *
+   * @param next the player to move
+   */
+  private void handTurnTo( Player next )
+  {
+    boolean wasSetup = setupPhase;
     if ( isPlacementFinal() )
       setupPhase = false;
+    if ( !setupPhase )
+      turnNumber = wasSetup ? 1 : turnNumber + 1;
+
+    currentPlayer = next;
+    if ( journal != null )
+      journal.turn( next.getCiv() );
+  }
+
+  /**
+   * Replays a turn handover read back from an autosave journal, exactly as
+   * it happened live.
+   *
+   * @param civ the civilization the turn passed to
+   */
+  void replayTurn( Civilization civ )
+  {
+    shotsFiredThisTurn = 0;
+    handTurnTo( ( civ == Civilization.BRITONS ) ? britons : franks );
+  }
+
+  /**
+   * The battle turn under way.
+   *
+   * @return the turn, counting from 1; 0 during setup
+   */
+  public int getTurnNumber()
+  {
+    return turnNumber;
+  }
+
+  /**
+   * Restores whose turn it is, whether setup is under way, and how much of
+   * the turn is spent, as read back from a saved match.
+   *
+   * @param civ        the civilization to move
+   * @param setup      true if the match was saved during setup
+   * @param shotsFired shots already resolved in the turn under way
+   * @param turn       the battle turn under way
+   */
+  void restoreTurn( Civilization civ, boolean setup, int shotsFired, int turn )
+  {
+    currentPlayer = ( civ == Civilization.BRITONS ) ? britons : franks;
+    setupPhase = setup;
+    shotsFiredThisTurn = shotsFired;
+    turnNumber = turn;
   }
 
   /**
    * Records one resolved shot for the turn under way. The battle phases
-   * call this as each shot lands, so the count survives a mid-turn save.
+   * call this as each shot lands, so the count survives a mid-turn save,
+   * and the shot reaches the autosave journal and the replay recorder, if
+   * they are attached.
+   *
+   * @param x the x-coordinate of the shot
+   * @param y the y-coordinate of the shot
    */
-  public void recordShotFired()
+  public void recordShotFired( int x, int y )
   {
     shotsFiredThisTurn++;
+    if ( journal != null )
+      journal.shot( currentPlayer.getCiv(), x, y );
+    if ( replay != null )
+      replay.shot( currentPlayer.getCiv(), x, y );
+  }
+
+  /**
+   * Attaches an autosave journal to the board and both players, or
+   * detaches it.
+   *
+   * @param journal the journal, or null
+   */
+  void setJournal( MatchJournal journal )
+  {
+    this.journal = journal;
+    britons.journal = journal;
+    franks.journal = journal;
+  }
+
+  /**
+   * Attaches a replay recorder to the board, or detaches it.
+   *
+   * @param replay the recorder, or null
+   */
+  void setReplayRecorder( ReplayRecorder replay )
+  {
+    this.replay = replay;
   }
 
   /**
@@ -401,10 +522,9 @@ public class Board implements java.io.Serializable
 
     autoPlaceAIShips();
 
-    if ( isPlacementFinal() )
-      setupPhase = false;            // AI vs AI: nothing left to place
-    else
-      currentPlayer = getNextPlayer(); // hand setup to the lone human
+    // AI vs AI: nothing left to place, so battle begins where it stands;
+    //  otherwise setup passes to the lone human
+    handTurnTo( isPlacementFinal() ? currentPlayer : getNextPlayer() );
   }
 
   /**
@@ -0,0 +1,179 @@
+package seasofyore.core;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Per-decision cost of one side of an arena series: how long each
+ * {@code calculateNextAttack} call took, as {@link LatencyHistogram}s split
+ * by mode, and how many bytes it allocated. Hunt mode is any shot taken
+ * while no enemy ship is wounded; target mode is the rest. The split
+ * matters because the two modes run entirely different code, and a tier's
+ * worst pauses usually hide in one of them. In SALVO the decisions of
+ * each volley are also summed into a third histogram, since a player waits
+ * through the whole volley, not one shot of it.
+ *
+ * <p>Allocation comes from the HotSpot per-thread allocation counter, read
+ * before and after each decision on the deciding thread. Where the JVM
+ * offers no such counter the byte columns are simply left out.</p>
+ *
+ * @author dylan
+ */
+final class DecisionProfile
+{
+  /**
+   * The HotSpot view of the thread bean, or null if allocation counting is
+   * unavailable on this JVM.
+   */
+  private static final com.sun.management.ThreadMXBean ALLOCATION = allocationBean();
+
+  /**
+   * Decision times in hunt mode.
+   */
+  private final LatencyHistogram hunt = new LatencyHistogram();
+
+  /**
+   * Decision times in target mode.
+   */
+  private final LatencyHistogram target = new LatencyHistogram();
+
+  /**
+   * Summed decision times of whole SALVO volleys.
+   */
+  private final LatencyHistogram volleys = new LatencyHistogram();
+
+  /**
+   * Decision time accumulated so far in the current volley.
+   */
+  private long volleyNanos = 0;
+
+  /**
+   * Bytes allocated by hunt-mode decisions.
+   */
+  private long huntBytes = 0;
+
+  /**
+   * Bytes allocated by target-mode decisions.
+   */
+  private long targetBytes = 0;
+
+  /**
+   * The calling thread's allocation counter, or 0 when unavailable. Only
+   * differences between two readings on the same thread are meaningful.
+   *
+   * @return bytes allocated by this thread so far
+   */
+  static long allocatedBytes()
+  {
+    if ( ALLOCATION == null )
+      return 0L;
+    return ALLOCATION.getThreadAllocatedBytes( Thread.currentThread().getId() );
+  }
+
+  /**
+   * Records one decision.
+   *
+   * @param targeting whether an enemy ship was wounded when it was made
+   * @param nanos     how long it took
+   * @param bytes     how much it allocated
+   */
+  void record( boolean targeting, long nanos, long bytes )
+  {
+    volleyNanos += nanos;
+    if ( targeting )
+    {
+      target.record( nanos );
+      targetBytes += bytes;
+    }
+    else
+    {
+      hunt.record( nanos );
+      huntBytes += bytes;
+    }
+  }
+
+  /**
+   * Closes the current turn's volley, recording its summed decision time
+   * if the turn was a SALVO volley.
+   *
+   * @param salvo whether the turn was a SALVO volley
+   */
+  void endVolley( boolean salvo )
+  {
+    if ( salvo )
+      volleys.record( volleyNanos );
+    volleyNanos = 0;
+  }
+
+  /**
+   * Folds another profile into this one.
+   *
+   * @param other the profile to absorb
+   */
+  void merge( DecisionProfile other )
+  {
+    hunt.merge( other.hunt );
+    target.merge( other.target );
+    volleys.merge( other.volleys );
+    huntBytes += other.huntBytes;
+    targetBytes += other.targetBytes;
+  }
+
+  /**
+   * Prints one line per mode: count, p50, p90, p99 and max in
+   * milliseconds, then mean allocation per decision. A SALVO series adds a
+   * line for whole volleys.
+   *
+   * @param label the row label, usually the tier
+   */
+  void print( String label )
+  {
+    printMode( label, "hunt", hunt, huntBytes );
+    printMode( "", "target", target, targetBytes );
+    if ( volleys.count() > 0 )
+      printMode( "", "volley", volleys, -1L );
+  }
+
+  /**
+   * Prints one mode's line.
+   *
+   * @param label the row label
+   * @param mode  the mode name
+   * @param h     the mode's histogram
+   * @param bytes the mode's total allocation, or -1 to leave it out
+   */
+  private static void printMode( String label, String mode, LatencyHistogram h, long bytes )
+  {
+    if ( h.count() == 0 )
+    {
+      System.out.printf( "  %-8s %-6s      no decisions%n", label, mode );
+      return;
+    }
+
+    String alloc = ( ALLOCATION == null || bytes < 0 ) ? ""
+        : String.format( "   %8.1f KB/decision", bytes / 1024.0 / h.count() );
+    System.out.printf( "  %-8s %-6s %7d  p50 %7.3f  p90 %7.3f  p99 %7.3f  max %8.3f ms%s%n",
+                       label, mode, h.count(),
+                       h.quantile( 0.50 ) / 1e6, h.quantile( 0.90 ) / 1e6,
+                       h.quantile( 0.99 ) / 1e6, h.max() / 1e6, alloc );
+  }
+
+  /**
+   * Finds and switches on the HotSpot allocation counter, if there is one.
+   *
+   * @return the bean, or null if allocation counting is unsupported
+   */
+  private static com.sun.management.ThreadMXBean allocationBean()
+  {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if ( !( bean instanceof com.sun.management.ThreadMXBean ) )
+      return null;
+
+    com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) bean;
+    if ( !hotspot.isThreadAllocatedMemorySupported() )
+      return null;
+    if ( !hotspot.isThreadAllocatedMemoryEnabled() )
+      hotspot.setThreadAllocatedMemoryEnabled( true );
+    return hotspot;
+  }
+}
@@ -20,6 +20,23 @@ import java.util.List;
  */
 public class EasyStrategy extends AbstractTargetingStrategy
 {
+  /**
+   * Serialization version for saved games.
+   */
+  private static final long serialVersionUID = -3850385122410571171L;
+
+  /**
+   * Deckhand Davey pokes blindly to the very last hull; an exactly solved
+   * endgame is no part of a beginner's game.
+   *
+   * @return false, always
+   */
+  @Override
+  protected boolean usesEndgameSolver()
+  {
+    return false;
+  }
+
   /**
    * Finishes a wounded ship the crude way: a random poke at a cell next to a
    * hit, with no notion of the ship's axis.
@@ -0,0 +1,591 @@
+package seasofyore.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * The exact endgame. Once only a hull or two survive, the fired-upon board
+ * usually admits just a handful of ways the remaining fleet could still be
+ * moored -- few enough to stop estimating and simply solve the game. This
+ * enumerates every consistent world (a non-overlapping placement of each
+ * surviving hull that explains every active wound and crosses no miss or
+ * sunk deck), then searches the tree of shots and observable verdicts --
+ * miss, hit, "you sank my &lt;length&gt;", defeat -- for the shot that
+ * minimises the expected number of shots still needed to finish the fleet.
+ *
+ * <p>A search state is exactly what the shooter can observe: the set of
+ * worlds still consistent with everything seen, plus the cells fired upon.
+ * The world set packs into one {@code long} and the board into two more,
+ * which makes memoising repeated states (the same cells fired in a
+ * different order) cheap. A world cap and a shot budget bound the search;
+ * when a position is too rich to solve within them, the solver declines
+ * and the tier's own heuristics take the shot instead.</p>
+ *
+ * <p>Like every strategy helper, it reads only the observable fired-state of
+ * the enemy quadrant and the caller's sunk-cell records -- no peeking.</p>
+ *
+ * @author dylan
+ */
+final class EndgameSolver
+{
+  /**
+   * The most surviving hulls the solver will take on. Beyond two, the
+   * consistent worlds outnumber the cap on all but freak boards, so the
+   * enumeration would be wasted work.
+   */
+  static final int MAX_HULLS = 2;
+
+  /**
+   * The most consistent worlds the solver will search over (each one bit of
+   * a {@code long} world set). The shot tree grows steeply with the world
+   * count; past about ten, exact play rarely fits the budget below.
+   */
+  static final int MAX_WORLDS = 10;
+
+  /**
+   * Shots the solver may evaluate before giving up on a position. Keeps a
+   * declined solve to a few milliseconds.
+   */
+  static final int NODE_BUDGET = 1_500;
+
+  /**
+   * The grid dimension, cached for convenience.
+   */
+  private static final int SIZE = PlayerQuadrant.GRID_SIZE;
+
+  /**
+   * Verdict codes: a miss, an unsinking hit, and the base of the sink
+   * codes ({@code SUNK + 2 * length}, plus one when it was the last hull).
+   */
+  private static final int MISS = 0;
+  private static final int HIT = 1;
+  private static final int SUNK = 2;
+
+  /**
+   * One more than the largest verdict code (a fleet-ending Galleon sink).
+   */
+  private static final int VERDICTS = SUNK + 2 * 5 + 2;
+
+  /**
+   * Every in-bounds run of every hull length, as {lo, hi} masks, indexed by
+   * length. A property of the grid alone, so it is built once.
+   */
+  private static final long[][][] RUNS = buildRuns();
+
+  /**
+   * The lengths of the hulls still afloat.
+   */
+  private final int[] lengths;
+
+  /**
+   * Cells the caller has recorded as decks of sunk ships.
+   */
+  private final Set<Integer> sunkCells;
+
+  /**
+   * Per-world, per-hull occupancy masks, split over two longs: cells 0-63
+   * in {@code lo}, cells 64-99 in {@code hi}.
+   */
+  private long[][] worldLo;
+  private long[][] worldHi;
+
+  /**
+   * Solved states, keyed by world set and fired cells.
+   */
+  private final Map<StateKey, Double> memo = new HashMap<>();
+
+  /**
+   * Shots evaluated so far, and whether the budget ran out.
+   */
+  private int nodes = 0;
+  private boolean exhausted = false;
+
+  /**
+   * Prepares a solver for the current surviving fleet.
+   *
+   * @param remainingLengths the lengths of the hulls still afloat
+   * @param sunkCells        cells known to belong to sunk ships
+   */
+  EndgameSolver( List<Integer> remainingLengths, Set<Integer> sunkCells )
+  {
+    this.lengths = new int[remainingLengths.size()];
+    for ( int i = 0; i < lengths.length; i++ )
+      lengths[i] = remainingLengths.get( i );
+    this.sunkCells = sunkCells;
+  }
+
+  /**
+   * Solves the position and returns the optimal shot.
+   *
+   * @param quad   the enemy quadrant
+   * @param random the caller's randomness, for breaking exact ties
+   * @return the shot minimising expected shots-to-finish as [x, y], or null
+   *         if the position is too open (or too tangled) to solve
+   */
+  int[] solve( PlayerQuadrant quad, Random random )
+  {
+    if ( lengths.length == 0 || lengths.length > MAX_HULLS )
+      return null;
+
+    // one pass over the observable board: open water, active wounds, and
+    // everything fired upon, each packed into a {lo, hi} mask pair
+    long[] open = new long[2];
+    long[] wound = new long[2];
+    long[] fired = new long[2];
+    for ( int x = 0; x < SIZE; x++ )
+    {
+      for ( int y = 0; y < SIZE; y++ )
+      {
+        int k = y * SIZE + x;
+        if ( quad.cellIsTargetable( x, y ) )
+        {
+          setBit( open, k );
+          continue;
+        }
+        setBit( fired, k );
+        if ( quad.cellIsHit( x, y ) && !sunkCells.contains( k ) )
+          setBit( wound, k );
+      }
+    }
+    long firedLo = fired[0];
+    long firedHi = fired[1];
+
+    if ( !enumerateWorlds( open[0], open[1], wound[0], wound[1] ) )
+      return null;
+
+    int worlds = worldLo.length;
+    long all = ( worlds == 64 ) ? -1L : ( 1L << worlds ) - 1;
+
+    // prune against a hair above the best so far, so exact ties survive
+    double best = Double.MAX_VALUE;
+    List<int[]> tied = new ArrayList<>();
+    for ( int cell : candidates( all, firedLo, firedHi ) )
+    {
+      double cost = shotCost( all, firedLo, firedHi, cell, best + 1e-9 );
+      if ( exhausted )
+        return null;
+
+      int[] xy = new int[] { cell % SIZE, cell / SIZE };
+      if ( cost < best - 1e-9 )
+      {
+        best = cost;
+        tied.clear();
+        tied.add( xy );
+      }
+      else if ( Math.abs( cost - best ) <= 1e-9 )
+      {
+        tied.add( xy );
+      }
+    }
+
+    return tied.isEmpty() ? null : tied.get( random.nextInt( tied.size() ) );
+  }
+
+  /**
+   * Enumerates every consistent world into {@link #worldLo}/{@link #worldHi}.
+   *
+   * @param openLo  open water among cells 0-63
+   * @param openHi  open water among cells 64-99
+   * @param woundLo active wounds among cells 0-63
+   * @param woundHi active wounds among cells 64-99
+   * @return true if between 1 and {@link #MAX_WORLDS} worlds exist
+   */
+  private boolean enumerateWorlds( long openLo, long openHi,
+                                   long woundLo, long woundHi )
+  {
+    // a hull may lie on open water and active wounds, but must keep at
+    // least one open deck -- one already hit end to end would have sunk
+    long passLo = openLo | woundLo;
+    long passHi = openHi | woundHi;
+
+    List<List<long[]>> runs = new ArrayList<>();
+    for ( int length : lengths )
+    {
+      List<long[]> legal = new ArrayList<>();
+      for ( long[] run : RUNS[length] )
+        if ( ( run[0] & ~passLo ) == 0 && ( run[1] & ~passHi ) == 0
+          && ( ( run[0] & openLo ) != 0 || ( run[1] & openHi ) != 0 ) )
+          legal.add( run );
+      runs.add( legal );
+    }
+
+    List<long[][]> found = new ArrayList<>();
+    if ( !placeHull( 0, -1, 0L, 0L, runs, new long[lengths.length][],
+                     woundLo, woundHi, found ) )
+      return false; // more worlds than the cap: too open to solve
+
+    if ( found.isEmpty() )
+      return false; // nothing consistent: the sunk bookkeeping is tangled
+
+    worldLo = new long[found.size()][lengths.length];
+    worldHi = new long[found.size()][lengths.length];
+    for ( int w = 0; w < found.size(); w++ )
+    {
+      for ( int s = 0; s < lengths.length; s++ )
+      {
+        worldLo[w][s] = found.get( w )[s][0];
+        worldHi[w][s] = found.get( w )[s][1];
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Depth-first placement of hull {@code s} onward. Equal-length hulls are
+   * interchangeable to the observer, so they are placed in increasing run
+   * order to avoid counting the same world twice.
+   *
+   * @param s        the hull to place
+   * @param prevRun  the run index the previous hull took
+   * @param occLo    cells 0-63 taken so far
+   * @param occHi    cells 64-99 taken so far
+   * @param runs     each hull's legal runs
+   * @param chosen   the run masks chosen per hull so far
+   * @param woundLo  active wounds 0-63 every world must cover
+   * @param woundHi  active wounds 64-99 every world must cover
+   * @param found    the worlds collected so far
+   * @return false once the cap is exceeded
+   */
+  private boolean placeHull( int s, int prevRun, long occLo, long occHi,
+                             List<List<long[]>> runs, long[][] chosen,
+                             long woundLo, long woundHi, List<long[][]> found )
+  {
+    if ( s == lengths.length )
+    {
+      if ( ( woundLo & ~occLo ) != 0 || ( woundHi & ~occHi ) != 0 )
+        return true; // a wound left unexplained
+      if ( found.size() == MAX_WORLDS )
+        return false;
+      found.add( chosen.clone() );
+      return true;
+    }
+
+    boolean twin = ( s > 0 && lengths[s] == lengths[s - 1] );
+    List<long[]> options = runs.get( s );
+    for ( int r = twin ? prevRun + 1 : 0; r < options.size(); r++ )
+    {
+      long[] run = options.get( r );
+      if ( ( run[0] & occLo ) != 0 || ( run[1] & occHi ) != 0 )
+        continue;
+
+      chosen[s] = run;
+      if ( !placeHull( s + 1, r, occLo | run[0], occHi | run[1],
+                       runs, chosen, woundLo, woundHi, found ) )
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * The expected shots still needed from a state, playing optimally.
+   *
+   * @param set     the consistent worlds, one bit each
+   * @param firedLo cells 0-63 fired upon
+   * @param firedHi cells 64-99 fired upon
+   * @return the optimal expected shots-to-finish
+   */
+  private double expected( long set, long firedLo, long firedHi )
+  {
+    // one world left: every remaining deck is known, so it costs one shot each
+    if ( Long.bitCount( set ) == 1 )
+      return openDecks( Long.numberOfTrailingZeros( set ), firedLo, firedHi );
+
+    // cells outside every world can no longer matter, so forget them -- the
+    // same survivors reached by different misses then share one memo entry
+    long unionLo = 0L;
+    long unionHi = 0L;
+    for ( long rest = set; rest != 0; rest &= rest - 1 )
+    {
+      int w = Long.numberOfTrailingZeros( rest );
+      for ( int s = 0; s < lengths.length; s++ )
+      {
+        unionLo |= worldLo[w][s];
+        unionHi |= worldHi[w][s];
+      }
+    }
+    firedLo &= unionLo;
+    firedHi &= unionHi;
+
+    StateKey key = new StateKey( set, firedLo, firedHi );
+    Double known = memo.get( key );
+    if ( known != null )
+      return known;
+
+    double best = Double.MAX_VALUE;
+    for ( int cell : candidates( set, firedLo, firedHi ) )
+    {
+      best = Math.min( best, shotCost( set, firedLo, firedHi, cell, best ) );
+      if ( exhausted )
+        return 0.0;
+    }
+
+    memo.put( key, best );
+    return best;
+  }
+
+  /**
+   * A lower bound on the expected shots from a state: whichever world is
+   * real, each of its unfired decks must still be struck, so the mean
+   * unfired-deck count over the consistent worlds can never be beaten.
+   *
+   * @param set     the consistent worlds
+   * @param firedLo cells 0-63 fired upon
+   * @param firedHi cells 64-99 fired upon
+   * @return the mean number of unfired decks
+   */
+  private double lowerBound( long set, long firedLo, long firedHi )
+  {
+    int decks = 0;
+    for ( long rest = set; rest != 0; rest &= rest - 1 )
+      decks += openDecks( Long.numberOfTrailingZeros( rest ), firedLo, firedHi );
+    return (double) decks / Long.bitCount( set );
+  }
+
+  /**
+   * The unfired decks of one world.
+   *
+   * @param w       the world index
+   * @param firedLo cells 0-63 fired upon
+   * @param firedHi cells 64-99 fired upon
+   * @return how many of its decks have not been fired upon
+   */
+  private int openDecks( int w, long firedLo, long firedHi )
+  {
+    int decks = 0;
+    for ( int s = 0; s < lengths.length; s++ )
+      decks += Long.bitCount( worldLo[w][s] & ~firedLo )
+             + Long.bitCount( worldHi[w][s] & ~firedHi );
+    return decks;
+  }
+
+  /**
+   * The expected cost of firing at one cell from a state: the shot itself
+   * plus the verdict-weighted cost of each resulting state. Each branch
+   * starts at its lower bound and is refined in turn, so the sum is
+   * abandoned as soon as it provably cannot beat {@code bound}.
+   *
+   * @param set     the consistent worlds
+   * @param firedLo cells 0-63 fired upon
+   * @param firedHi cells 64-99 fired upon
+   * @param cell    the cell index to fire at
+   * @param bound   the best cost already found from this state
+   * @return the expected shots-to-finish after firing here, or a value at
+   *         least {@code bound} if it cannot beat it
+   */
+  private double shotCost( long set, long firedLo, long firedHi, int cell,
+                           double bound )
+  {
+    if ( ++nodes > NODE_BUDGET )
+    {
+      exhausted = true;
+      return bound;
+    }
+
+    long bitLo = ( cell < 64 ) ? 1L << cell : 0L;
+    long bitHi = ( cell < 64 ) ? 0L : 1L << ( cell - 64 );
+    long nextLo = firedLo | bitLo;
+    long nextHi = firedHi | bitHi;
+
+    // partition the worlds by the verdict this shot would earn in each
+    long[] parts = new long[VERDICTS];
+    for ( long rest = set; rest != 0; rest &= rest - 1 )
+    {
+      int w = Long.numberOfTrailingZeros( rest );
+      parts[verdict( w, bitLo, bitHi, nextLo, nextHi )] |= 1L << w;
+    }
+
+    double total = Long.bitCount( set );
+    double[] weight = new double[VERDICTS];
+    double[] floor = new double[VERDICTS];
+    double cost = 1.0;
+    for ( int v = 0; v < VERDICTS; v++ )
+    {
+      if ( parts[v] == 0 || isDefeat( v ) )
+        continue; // no such world, or the game is over there
+      weight[v] = Long.bitCount( parts[v] ) / total;
+      floor[v] = lowerBound( parts[v], nextLo, nextHi );
+      cost += weight[v] * floor[v];
+    }
+
+    for ( int v = 0; v < VERDICTS && cost < bound && !exhausted; v++ )
+    {
+      if ( weight[v] == 0.0 )
+        continue;
+      cost += weight[v] * ( expected( parts[v], nextLo, nextHi ) - floor[v] );
+    }
+    return cost;
+  }
+
+  /**
+   * The verdict one world returns for a shot.
+   *
+   * @param w      the world index
+   * @param bitLo  the shot's bit among cells 0-63
+   * @param bitHi  the shot's bit among cells 64-99
+   * @param nextLo cells 0-63 fired upon, including the shot
+   * @param nextHi cells 64-99 fired upon, including the shot
+   * @return the verdict code
+   */
+  private int verdict( int w, long bitLo, long bitHi, long nextLo, long nextHi )
+  {
+    for ( int s = 0; s < lengths.length; s++ )
+    {
+      long lo = worldLo[w][s];
+      long hi = worldHi[w][s];
+      if ( ( lo & bitLo ) == 0 && ( hi & bitHi ) == 0 )
+        continue;
+
+      if ( ( lo & ~nextLo ) != 0 || ( hi & ~nextHi ) != 0 )
+        return HIT;
+
+      boolean defeated = true;
+      for ( int o = 0; o < lengths.length && defeated; o++ )
+        defeated = ( worldLo[w][o] & ~nextLo ) == 0
+                && ( worldHi[w][o] & ~nextHi ) == 0;
+      return SUNK + 2 * lengths[s] + ( defeated ? 1 : 0 );
+    }
+    return MISS;
+  }
+
+  /**
+   * Whether a verdict code announces the end of the fleet.
+   *
+   * @param v the verdict code
+   * @return true for a fleet-ending sink
+   */
+  private static boolean isDefeat( int v )
+  {
+    return v >= SUNK && ( v - SUNK ) % 2 == 1;
+  }
+
+  /**
+   * The cells worth firing at from a state: unfired decks of at least one
+   * consistent world, likeliest first so the bound tightens early. A cell
+   * no world uses can only miss and teach nothing. When some deck is
+   * certain, it is the only candidate returned.
+   *
+   * @param set     the consistent worlds
+   * @param firedLo cells 0-63 fired upon
+   * @param firedHi cells 64-99 fired upon
+   * @return candidate cell indices
+   */
+  private List<Integer> candidates( long set, long firedLo, long firedHi )
+  {
+    int[] votes = new int[SIZE * SIZE];
+    for ( long rest = set; rest != 0; rest &= rest - 1 )
+    {
+      int w = Long.numberOfTrailingZeros( rest );
+      for ( int s = 0; s < lengths.length; s++ )
+      {
+        for ( long m = worldLo[w][s] & ~firedLo; m != 0; m &= m - 1 )
+          votes[Long.numberOfTrailingZeros( m )]++;
+        for ( long m = worldHi[w][s] & ~firedHi; m != 0; m &= m - 1 )
+          votes[64 + Long.numberOfTrailingZeros( m )]++;
+      }
+    }
+
+    // A deck common to every world must be struck on every path anyway, so
+    // striking it first loses nothing and learns its verdict sooner: it
+    // alone is an optimal move, and the search need not branch at all.
+    int worlds = Long.bitCount( set );
+    List<Integer> cells = new ArrayList<>();
+    for ( int k = 0; k < votes.length; k++ )
+    {
+      if ( votes[k] == worlds )
+        return Collections.singletonList( k );
+      if ( votes[k] > 0 )
+        cells.add( k );
+    }
+    Collections.sort( cells, ( a, b ) -> votes[b] - votes[a] );
+    return cells;
+  }
+
+  /**
+   * Builds the run table: for each length up to the longest hull, every
+   * horizontal and vertical placement on the grid.
+   *
+   * @return the runs, indexed by length
+   */
+  private static long[][][] buildRuns()
+  {
+    int longest = 0;
+    for ( ShipType type : ShipType.getAscendingList() )
+      longest = Math.max( longest, type.getLength() );
+
+    long[][][] table = new long[longest + 1][][];
+    for ( int length = 1; length <= longest; length++ )
+    {
+      List<long[]> runs = new ArrayList<>();
+      for ( int orient = 0; orient < 2; orient++ )
+      {
+        int dx = ( orient == 0 ) ? 1 : 0;
+        int dy = 1 - dx;
+        int maxX = ( dx == 1 ) ? SIZE - length : SIZE - 1;
+        int maxY = ( dy == 1 ) ? SIZE - length : SIZE - 1;
+
+        for ( int x = 0; x <= maxX; x++ )
+        {
+          for ( int y = 0; y <= maxY; y++ )
+          {
+            long[] run = new long[2];
+            for ( int i = 0; i < length; i++ )
+              setBit( run, ( y + i * dy ) * SIZE + ( x + i * dx ) );
+            runs.add( run );
+          }
+        }
+      }
+      table[length] = runs.toArray( new long[runs.size()][] );
+    }
+    return table;
+  }
+
+  /**
+   * Sets one cell's bit in a {lo, hi} mask pair.
+   *
+   * @param mask the mask pair
+   * @param k    the cell index, {@code y * SIZE + x}
+   */
+  private static void setBit( long[] mask, int k )
+  {
+    mask[k >> 6] |= 1L << ( k & 63 );
+  }
+
+  /**
+   * A memo key: the consistent worlds plus the fired cells.
+   */
+  private static final class StateKey
+  {
+    private final long set;
+    private final long firedLo;
+    private final long firedHi;
+
+    StateKey( long set, long firedLo, long firedHi )
+    {
+      this.set = set;
+      this.firedLo = firedLo;
+      this.firedHi = firedHi;
+    }
+
+    @Override
+    public boolean equals( Object o )
+    {
+      if ( !( o instanceof StateKey ) )
+        return false;
+      StateKey k = (StateKey) o;
+      return set == k.set && firedLo == k.firedLo && firedHi == k.firedHi;
+    }
+
+    @Override
+    public int hashCode()
+    {
+      long h = set * 31 + firedLo;
+      h = h * 31 + firedHi;
+      return (int) ( h ^ ( h >>> 32 ) );
+    }
+  }
+}
@@ -1,5 +1,7 @@
 package seasofyore.core;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
@@ -45,32 +47,54 @@ import java.util.Set;
 public class ExtremeStrategy extends AbstractTargetingStrategy
 {
   /**
-   * Monte Carlo worlds attempted per finishing shot. Each sample is a full
-   * fleet placement, so a few thousand keeps per-shot noise well below the
-   * gaps between candidate cells while staying far under a frame's budget.
+   * Serialization version for saved games.
    */
-  private static final int SAMPLES = 2400;
+  private static final long serialVersionUID = 340445589398923352L;
 
   /**
-   * The minimum number of accepted (fully consistent) worlds required to
-   * trust the Monte Carlo estimate. Below this the wounds are too tangled
-   * for sampling and the strategy falls back to line-following.
+   * The sampling and mooring settings: worlds per finishing shot, the
+   * acceptance floor, and the cold-water pool. See {@link AIParameters}.
    */
-  private static final int MIN_ACCEPTED = 40;
-
-  /**
-   * How many of the coldest candidate placements each ship chooses among
-   * when mooring. A pool this size keeps the fleet in genuinely cold water
-   * while leaving enough variety that the layout is never twice the same.
-   */
-  private static final int COLD_POOL = 12;
+  private AIParameters params;
 
   /**
    * The static hunt-heat of an empty board (placement counts for the full
    * fleet), shared by every instance: it is a property of the rules, not of
    * any one game, and defensive placement only needs relative temperatures.
+   * Volatile, since tournaments moor fleets on several threads at once: a
+   * thread that sees the grid sees it filled.
    */
-  private static double[][] staticHeat;
+  private static volatile double[][] staticHeat;
+
+  /**
+   * Builds the Extreme AI with its shipped settings.
+   */
+  public ExtremeStrategy()
+  {
+    this( AIParameters.DEFAULTS );
+  }
+
+  /**
+   * Builds the Extreme AI with the given settings.
+   *
+   * @param params the sampling and mooring settings
+   */
+  public ExtremeStrategy( AIParameters params )
+  {
+    this.params = params;
+  }
+
+  /**
+   * Restores the strategy from a serialized log, with the shipped settings
+   * if the log predates them.
+   */
+  private void readObject( ObjectInputStream in )
+      throws IOException, ClassNotFoundException
+  {
+    in.defaultReadObject();
+    if ( params == null )
+      params = AIParameters.DEFAULTS;
+  }
 
   /**
    * Moors the fleet in the water a placement-count hunter searches last.
@@ -85,37 +109,27 @@ public class ExtremeStrategy extends AbstractTargetingStrategy
   @Override
   public ShipHeading calculateShipPlacement( Ship ship, PlayerQuadrant quadrant )
   {
-    ensureStaticHeat();
+    double[][] emptyHeat = ensureStaticHeat();
 
     List<ShipHeading> candidates = new ArrayList<>();
     List<Double> heats = new ArrayList<>();
 
-    for ( Direction d : Direction.values() )
+    for ( ShipHeading heading : FleetSampler.legalHeadings( ship, quadrant ) )
     {
-      for ( int x = 0; x < SIZE; x++ )
-      {
-        for ( int y = 0; y < SIZE; y++ )
-        {
-          ShipHeading heading = new ShipHeading( x, y, d );
-          if ( !quadrant.validHeading( ship, heading ) )
-            continue;
-
-          double heat = 0.0;
-          for ( int[] cell : heading.getOccupiedCells( ship.getShipLength() ) )
-            heat += staticHeat[cell[0]][cell[1]];
+      double heat = 0.0;
+      for ( int[] cell : heading.getOccupiedCells( ship.getShipLength() ) )
+        heat += emptyHeat[cell[0]][cell[1]];
 
-          candidates.add( heading );
-          heats.add( heat );
-        }
-      }
+      candidates.add( heading );
+      heats.add( heat );
     }
 
     if ( candidates.isEmpty() )
-      return ShipHeading.getRandomInstance(); // caller retries randomly anyway
+      return ShipHeading.getRandomInstance(); // caller falls back on its own
 
-    // selection sort just the coldest COLD_POOL candidates to the front --
+    // selection sort just the coldest pool of candidates to the front --
     // the lists are at most ~360 long, so simplicity beats cleverness here
-    int pool = Math.min( COLD_POOL, candidates.size() );
+    int pool = Math.min( params.getColdPool(), candidates.size() );
     for ( int i = 0; i < pool; i++ )
     {
       int coldest = i;
@@ -156,7 +170,7 @@ public class ExtremeStrategy extends AbstractTargetingStrategy
    * yielding the true expected occupancy per cell. (Joint sampling adds
    * nothing here -- with no wounds to explain, per-ship counting and fleet
    * sampling agree almost everywhere -- so the exact map is both faster and
-   * noise-free.)
+   * noise-free.) The map is then weighted by the placement priors.
    *
    * @param quad the enemy quadrant to explore
    * @return coordinates as [x, y], or null if no targetable cell remains
@@ -171,6 +185,7 @@ public class ExtremeStrategy extends AbstractTargetingStrategy
       accumulateUnweighted( quad, heat, length, 1, 0 ); // horizontal
       accumulateUnweighted( quad, heat, length, 0, 1 ); // vertical
     }
+    priors.applyTo( heat );
 
     return hottestTargetable( quad, heat );
   }
@@ -209,9 +224,9 @@ public class ExtremeStrategy extends AbstractTargetingStrategy
   }
 
   /**
-   * Runs the joint Monte Carlo estimate: across SAMPLES attempted worlds,
-   * counts how often each still-targetable cell holds a deck of a surviving
-   * ship, and returns the most frequent one.
+   * Runs the joint Monte Carlo estimate: across the configured number of
+   * attempted worlds, counts how often each still-targetable cell holds a
+   * deck of a surviving ship, and returns the most frequent one.
    *
    * @param quad       the enemy quadrant
    * @param activeHits the wounded-but-unsunk cells every world must explain
@@ -232,11 +247,11 @@ public class ExtremeStrategy extends AbstractTargetingStrategy
     double[][] counts = new double[SIZE][SIZE];
     int accepted = 0;
 
-    for ( int s = 0; s < SAMPLES; s++ )
+    for ( int s = 0; s < params.getSamples(); s++ )
       if ( sampleWorld( blocked, activeHits, counts ) )
         accepted++;
 
-    if ( accepted < MIN_ACCEPTED )
+    if ( accepted < params.getMinAccepted() )
       return null;
 
     return hottestTargetable( quad, counts );
@@ -503,14 +518,17 @@ public class ExtremeStrategy extends AbstractTargetingStrategy
 
   /**
    * Lazily builds the shared static heat map: the unweighted placement count
-   * of the full standard fleet over an empty board. Synchronisation is
-   * unnecessary -- the computation is deterministic, so a benign race just
-   * recomputes the same grid.
+   * of the full standard fleet over an empty board. Locking is unnecessary
+   * -- the computation is deterministic, so two threads racing to build it
+   * just build the same grid -- but it is filled before it is published.
+   *
+   * @return the grid
    */
-  private void ensureStaticHeat()
+  private double[][] ensureStaticHeat()
   {
-    if ( staticHeat != null )
-      return;
+    double[][] built = staticHeat;
+    if ( built != null )
+      return built;
 
     double[][] heat = new double[SIZE][SIZE];
     PlayerQuadrant empty = new PlayerQuadrant();
@@ -521,5 +539,6 @@ public class ExtremeStrategy extends AbstractTargetingStrategy
       accumulateUnweighted( empty, heat, type.getLength(), 0, 1 );
     }
     staticHeat = heat;
+    return heat;
   }
 }
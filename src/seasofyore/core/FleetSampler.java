@@ -0,0 +1,287 @@
+package seasofyore.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Draws ship placements directly from the legal ones instead of guessing
+ * headings until one sticks. Every in-bounds heading of every hull length
+ * is computed once, as a footprint bitmask over the grid; a quadrant's
+ * occupancy becomes a mask too, so "which headings are legal here?" is a
+ * couple of ANDs per heading rather than a list of cells to validate.
+ *
+ * <p>Two ways to place a whole fleet:</p>
+ * <ul>
+ *   <li><b>Fleet-uniform</b> -- every legal fleet layout equally likely.
+ *       Each hull draws from all its in-bounds headings and the layout is
+ *       redrawn whole on any overlap, which is rejection sampling from
+ *       exactly the uniform distribution over non-overlapping fleets. This
+ *       is the honest meaning of "a random fleet", and what the heatmap
+ *       tiers' uniform placement model assumes of their opponents.</li>
+ *   <li><b>Sequential</b> -- each hull in turn drawn uniformly from the
+ *       headings still legal around the hulls already placed. Never
+ *       retries, but favours some layouts over others (early hulls choose
+ *       freely, late ones take what is left).</li>
+ * </ul>
+ *
+ * @author dylan
+ */
+public final class FleetSampler
+{
+  /**
+   * The grid dimension, cached for convenience.
+   */
+  private static final int SIZE = PlayerQuadrant.GRID_SIZE;
+
+  /**
+   * One in-bounds heading of a hull and the cells it covers, split over
+   * two longs: cells 0-63 in {@code lo}, cells 64-99 in {@code hi}.
+   */
+  private static final class Footprint
+  {
+    final int x;
+    final int y;
+    final Direction direction;
+    final long lo;
+    final long hi;
+
+    Footprint( int x, int y, Direction direction, long lo, long hi )
+    {
+      this.x = x;
+      this.y = y;
+      this.direction = direction;
+      this.lo = lo;
+      this.hi = hi;
+    }
+
+    ShipHeading toHeading()
+    {
+      return new ShipHeading( x, y, direction );
+    }
+  }
+
+  /**
+   * Every in-bounds heading, indexed by hull length. A property of the grid
+   * alone, so it is built once.
+   */
+  private static final Footprint[][] FOOTPRINTS = buildFootprints();
+
+  /**
+   * Not instantiable; a toolbox of samplers.
+   */
+  private FleetSampler() {}
+
+  /**
+   * Every heading at which a ship could legally be placed in a quadrant
+   * right now: in bounds and clear of every non-water cell.
+   *
+   * @param ship     the ship to place
+   * @param quadrant the quadrant to place it in
+   * @return the legal headings, possibly empty
+   */
+  public static List<ShipHeading> legalHeadings( Ship ship, PlayerQuadrant quadrant )
+  {
+    long[] occupied = occupancy( quadrant );
+    List<ShipHeading> legal = new ArrayList<>();
+    for ( Footprint f : FOOTPRINTS[ship.getLength()] )
+      if ( ( f.lo & occupied[0] ) == 0 && ( f.hi & occupied[1] ) == 0 )
+        legal.add( f.toHeading() );
+    return legal;
+  }
+
+  /**
+   * Draws one heading uniformly from those legal for a ship in a quadrant.
+   *
+   * @param ship     the ship to place
+   * @param quadrant the quadrant to place it in
+   * @param random   the source of randomness
+   * @return a legal heading, or null if the ship fits nowhere
+   */
+  public static ShipHeading randomLegalHeading( Ship ship, PlayerQuadrant quadrant,
+                                                Random random )
+  {
+    Footprint f = drawClear( FOOTPRINTS[ship.getLength()],
+                             occupancy( quadrant ), random );
+    return ( f == null ) ? null : f.toHeading();
+  }
+
+  /**
+   * Draws a heading for every ship of a fleet on an empty quadrant.
+   *
+   * @param ships   the fleet, in placement order
+   * @param uniform true for fleet-uniform sampling; false for sequential
+   * @param random  the source of randomness
+   * @return one legal, mutually non-overlapping heading per ship
+   */
+  public static ShipHeading[] sampleFleet( Ship[] ships, boolean uniform,
+                                           Random random )
+  {
+    Footprint[] chosen = uniform ? uniformFleet( ships, random )
+                                 : sequentialFleet( ships, random );
+
+    ShipHeading[] headings = new ShipHeading[ships.length];
+    for ( int i = 0; i < ships.length; i++ )
+      headings[i] = chosen[i].toHeading();
+    return headings;
+  }
+
+  /**
+   * Fleet-uniform sampling by rejection: draw every hull from all of its
+   * in-bounds headings, and start over on the first overlap.
+   *
+   * @param ships  the fleet
+   * @param random the source of randomness
+   * @return the chosen footprints
+   */
+  private static Footprint[] uniformFleet( Ship[] ships, Random random )
+  {
+    Footprint[] chosen = new Footprint[ships.length];
+    while ( true )
+    {
+      long lo = 0L;
+      long hi = 0L;
+      int placed = 0;
+      for ( ; placed < ships.length; placed++ )
+      {
+        Footprint[] all = FOOTPRINTS[ships[placed].getLength()];
+        Footprint f = all[random.nextInt( all.length )];
+        if ( ( f.lo & lo ) != 0 || ( f.hi & hi ) != 0 )
+          break; // collision: the whole layout is redrawn
+        chosen[placed] = f;
+        lo |= f.lo;
+        hi |= f.hi;
+      }
+      if ( placed == ships.length )
+        return chosen;
+    }
+  }
+
+  /**
+   * Sequential sampling: each hull drawn uniformly from the headings still
+   * clear of those before it. A fleet that somehow paints itself into a
+   * corner is simply started again.
+   *
+   * @param ships  the fleet
+   * @param random the source of randomness
+   * @return the chosen footprints
+   */
+  private static Footprint[] sequentialFleet( Ship[] ships, Random random )
+  {
+    Footprint[] chosen = new Footprint[ships.length];
+    while ( true )
+    {
+      long[] occupied = new long[2];
+      int placed = 0;
+      for ( ; placed < ships.length; placed++ )
+      {
+        Footprint f = drawClear( FOOTPRINTS[ships[placed].getLength()],
+                                 occupied, random );
+        if ( f == null )
+          break;
+        chosen[placed] = f;
+        occupied[0] |= f.lo;
+        occupied[1] |= f.hi;
+      }
+      if ( placed == ships.length )
+        return chosen;
+    }
+  }
+
+  /**
+   * Draws uniformly among the footprints clear of an occupancy mask: one
+   * pass to count them, a second to take the chosen one.
+   *
+   * @param options  the candidate footprints
+   * @param occupied the {lo, hi} occupancy mask
+   * @param random   the source of randomness
+   * @return the drawn footprint, or null if none is clear
+   */
+  private static Footprint drawClear( Footprint[] options, long[] occupied,
+                                      Random random )
+  {
+    int clear = 0;
+    for ( Footprint f : options )
+      if ( ( f.lo & occupied[0] ) == 0 && ( f.hi & occupied[1] ) == 0 )
+        clear++;
+    if ( clear == 0 )
+      return null;
+
+    int pick = random.nextInt( clear );
+    for ( Footprint f : options )
+      if ( ( f.lo & occupied[0] ) == 0 && ( f.hi & occupied[1] ) == 0
+        && pick-- == 0 )
+        return f;
+    throw new IllegalStateException( "unreachable: a clear footprint was counted" );
+  }
+
+  /**
+   * The cells of a quadrant that are anything but open water, as a
+   * {lo, hi} mask.
+   *
+   * @param quadrant the quadrant
+   * @return the occupancy mask
+   */
+  private static long[] occupancy( PlayerQuadrant quadrant )
+  {
+    long[] mask = new long[2];
+    for ( int x = 0; x < SIZE; x++ )
+      for ( int y = 0; y < SIZE; y++ )
+        if ( quadrant.getCellType( x, y ) != PlayerQuadrant.WATER_CELL )
+          setBit( mask, y * SIZE + x );
+    return mask;
+  }
+
+  /**
+   * Builds the footprint table: for each length up to the longest hull,
+   * every heading whose cells all lie on the grid. Each straight placement
+   * appears twice, once from either end, so drawing uniformly over
+   * headings is drawing uniformly over placements.
+   *
+   * @return the footprints, indexed by length
+   */
+  private static Footprint[][] buildFootprints()
+  {
+    int longest = 0;
+    for ( ShipType type : ShipType.getAscendingList() )
+      longest = Math.max( longest, type.getLength() );
+
+    Footprint[][] table = new Footprint[longest + 1][];
+    for ( int length = 1; length <= longest; length++ )
+    {
+      List<Footprint> all = new ArrayList<>();
+      for ( Direction d : Direction.values() )
+      {
+        for ( int x = 0; x < SIZE; x++ )
+        {
+          for ( int y = 0; y < SIZE; y++ )
+          {
+            int endX = x + ( length - 1 ) * d.getXOffset();
+            int endY = y + ( length - 1 ) * d.getYOffset();
+            if ( !PlayerQuadrant.cellInBounds( endX, endY ) )
+              continue;
+
+            long[] mask = new long[2];
+            for ( int i = 0; i < length; i++ )
+              setBit( mask, ( y + i * d.getYOffset() ) * SIZE
+                            + ( x + i * d.getXOffset() ) );
+            all.add( new Footprint( x, y, d, mask[0], mask[1] ) );
+          }
+        }
+      }
+      table[length] = all.toArray( new Footprint[all.size()] );
+    }
+    return table;
+  }
+
+  /**
+   * Sets one cell's bit in a {lo, hi} mask pair.
+   *
+   * @param mask the mask pair
+   * @param k    the cell index, {@code y * SIZE + x}
+   */
+  private static void setBit( long[] mask, int k )
+  {
+    mask[k >> 6] |= 1L << ( k & 63 );
+  }
+}
@@ -34,6 +34,11 @@ import java.util.List;
  */
 public class HardStrategy extends AbstractTargetingStrategy
 {
+  /**
+   * Serialization version for saved games.
+   */
+  private static final long serialVersionUID = 4784248069736500962L;
+
   /**
    * Finishes a wounded ship probability-optimally. It builds a heatmap counting
    * only ship placements <em>consistent with the current wounds</em> -- every
@@ -196,7 +201,8 @@ public class HardStrategy extends AbstractTargetingStrategy
 
   /**
    * Explores by building a fresh probability-density heatmap of where the
-   * surviving fleet could still fit and firing at the hottest targetable cell.
+   * surviving fleet could still fit, weighting it by the placement priors,
+   * and firing at the hottest targetable cell.
    *
    * @param quad the enemy quadrant to explore
    * @return coordinates as [x, y], or null if no targetable cell remains
@@ -205,6 +211,7 @@ public class HardStrategy extends AbstractTargetingStrategy
   protected int[] selectHuntTarget( PlayerQuadrant quad )
   {
     double[][] heat = buildHeatmap( quad );
+    priors.applyTo( heat );
 
     double bestHeat = -1.0;
     List<int[]> hottest = new ArrayList<>();
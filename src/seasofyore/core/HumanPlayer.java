@@ -10,6 +10,11 @@ package seasofyore.core;
  */
 public class HumanPlayer extends Player
 {
+  /**
+   * Serialization version for saved games.
+   */
+  private static final long serialVersionUID = -7631857679655997363L;
+
   /**
    * Constructs a new HumanPlayer with the specified civilization and quadrants.
    * 
@@ -0,0 +1,553 @@
+package seasofyore.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A crash-safe autosave for one match: a compact snapshot followed by an
+ * append-only log of everything that has happened since -- each shot
+ * resolved, each turn handed over, each hull moored or cleared -- as
+ * four-byte records. Every {@value #COMPACT_EVERY} records, at a turn
+ * boundary, the log is folded into a fresh snapshot so it never grows long.
+ * The event thread only encodes: the snapshot and each record are handed,
+ * in order, to the background thread saves use, which does the writing --
+ * and the forcing to disk, of each snapshot and of the log at every turn
+ * boundary -- so a slow disk never stalls a shot.
+ *
+ * <p>If the game dies mid-match the journal is left behind, and
+ * {@link #recover} rebuilds the match from it: the snapshot through
+ * {@link SaveFormat}, then every intact record replayed on top. A record
+ * torn by the crash fails its check byte and ends the replay. If only the
+ * game died, at most the last shot is lost; if the machine went down with
+ * it, at most the turn in flight.</p>
+ *
+ * <p>Layout, big-endian: the magic "YJNL", a version byte, the snapshot's
+ * length as an int, the snapshot, then the records. A record is a kind
+ * and civilization byte, x &lt;&lt; 4 | y, a detail byte (for a mooring,
+ * ShipType in ascending order &lt;&lt; 2 | Direction), and a check byte.</p>
+ *
+ * <p>While a match is being journaled its file is locked, so that another
+ * copy of the game, looking for journals to recover, passes it by.</p>
+ *
+ * <p>Autosaving is a convenience, never a reason to stop a game: if the
+ * file cannot be written the journal quietly closes itself.</p>
+ *
+ * @author dylan
+ */
+public final class MatchJournal
+{
+  /**
+   * The file extension of a match journal.
+   */
+  public static final String FILE_EXTENSION = "journal";
+
+  /**
+   * The first four bytes of every journal: "YJNL".
+   */
+  static final int MAGIC = 0x594A4E4C;
+
+  /**
+   * The layout version this build writes.
+   */
+  static final int VERSION = 1;
+
+  /**
+   * Bytes per record.
+   */
+  static final int RECORD_BYTES = 4;
+
+  /**
+   * Records appended before the next turn boundary folds them into a fresh
+   * snapshot. A few hundred bytes of log replay in well under a millisecond.
+   */
+  static final int COMPACT_EVERY = 256;
+
+  /** Record kind: a shot resolved by the given civilization. */
+  private static final int SHOT = 1;
+  /** Record kind: the turn handed to the given civilization. */
+  private static final int TURN = 2;
+  /** Record kind: a hull moored by the given civilization. */
+  private static final int MOOR = 3;
+  /** Record kind: the given civilization's fleet cleared for re-placement. */
+  private static final int CLEAR = 4;
+
+  /**
+   * The journals this process is writing, which {@link #pending} passes by
+   * without touching: opening and closing a file of one's own can drop the
+   * lock held on it.
+   */
+  private static final Set<Path> LIVE = ConcurrentHashMap.newKeySet();
+
+  /**
+   * The journal file.
+   */
+  private final Path file;
+
+  /**
+   * The match being journaled.
+   */
+  private final Board board;
+
+  /**
+   * Whether the match uses SALVO rules.
+   */
+  private final boolean salvoMode;
+
+  /**
+   * Whether moves are still being recorded; cleared by {@link #close} on
+   * the event thread, or by the writer when the file cannot be written.
+   */
+  private volatile boolean open = true;
+
+  /**
+   * Records appended since the last snapshot. Event thread only.
+   */
+  private int records = 0;
+
+  /**
+   * The open file, positioned for appending; null until the first
+   * snapshot is written, and once closed. Writer thread only.
+   */
+  private FileChannel channel;
+
+  /**
+   * The reusable buffer one record is written from. Writer thread only.
+   */
+  private final ByteBuffer record = ByteBuffer.allocate( RECORD_BYTES );
+
+  /**
+   * Opens a journal on a file, queuing the first snapshot.
+   *
+   * @param file      the journal file
+   * @param board     the match
+   * @param salvoMode true if the match uses SALVO rules
+   */
+  private MatchJournal( Path file, Board board, boolean salvoMode )
+  {
+    this.file = file;
+    this.board = board;
+    this.salvoMode = salvoMode;
+    LIVE.add( file.toAbsolutePath() );
+    compact();
+  }
+
+  /**
+   * Starts journaling a match into a new file in a directory, and attaches
+   * the journal to the board so that every later move is recorded.
+   *
+   * @param dir       the autosave directory, created if need be
+   * @param board     the match
+   * @param salvoMode true if the match uses SALVO rules
+   * @return the journal
+   * @throws IOException if the directory cannot be created
+   */
+  public static MatchJournal begin( Path dir, Board board, boolean salvoMode )
+      throws IOException
+  {
+    Files.createDirectories( dir );
+    Path file = dir.resolve( "match-" + System.currentTimeMillis() + "." + FILE_EXTENSION );
+    MatchJournal journal = new MatchJournal( file, board, salvoMode );
+    board.setJournal( journal );
+    return journal;
+  }
+
+  /**
+   * The directory autosave journals are kept in: {@code .seasofyore/autosave}
+   * under the user's home.
+   *
+   * @return the directory
+   */
+  public static Path defaultDirectory()
+  {
+    return Paths.get( System.getProperty( "user.home" ), ".seasofyore", "autosave" );
+  }
+
+  /**
+   * The journals left behind in a directory by matches that never finished,
+   * newest first. A journal still locked by a running game is not among
+   * them.
+   *
+   * @param dir the autosave directory
+   * @return the journal files; empty if there are none, or no directory
+   */
+  public static List<Path> pending( Path dir )
+  {
+    List<Path> found = new ArrayList<>();
+    if ( !Files.isDirectory( dir ) )
+      return found;
+    try ( DirectoryStream<Path> files = Files.newDirectoryStream( dir, "*." + FILE_EXTENSION ) )
+    {
+      for ( Path f : files )
+        if ( isAbandoned( f ) )
+          found.add( f );
+    }
+    catch ( IOException e )
+    {
+      return found; // an unreadable directory holds nothing we can resume
+    }
+    found.sort( ( a, b ) -> b.getFileName().toString().compareTo( a.getFileName().toString() ) );
+    return found;
+  }
+
+  /**
+   * Whether no running game is writing a journal: neither this one, nor
+   * another, which would hold its lock.
+   *
+   * @param file the journal file
+   * @return true if the journal is free to recover, or to delete
+   */
+  private static boolean isAbandoned( Path file )
+  {
+    if ( LIVE.contains( file.toAbsolutePath() ) )
+      return false;
+    try ( FileChannel probe = FileChannel.open( file, StandardOpenOption.WRITE ) )
+    {
+      FileLock lock = probe.tryLock();
+      if ( lock == null )
+        return false;
+      lock.release();
+      return true;
+    }
+    catch ( OverlappingFileLockException e )
+    {
+      return false;
+    }
+    catch ( IOException e )
+    {
+      return true; // cannot be locked, but perhaps still read
+    }
+  }
+
+  /**
+   * Rebuilds a match from its journal: the snapshot, then every intact
+   * record in order.
+   *
+   * @param file the journal file
+   * @return the match as of its last intact record
+   * @throws IOException if the file cannot be read or its snapshot is damaged
+   */
+  public static SavedMatch recover( Path file ) throws IOException
+  {
+    ByteBuffer in = ByteBuffer.wrap( Files.readAllBytes( file ) );
+    if ( in.remaining() < 9 || in.getInt() != MAGIC )
+      throw new IOException( file + " is not a match journal" );
+    if ( in.get() != VERSION )
+      throw new IOException( "journal version is not supported" );
+
+    int length = in.getInt();
+    if ( length < 0 || length > in.remaining() )
+      throw new IOException( "journal snapshot is truncated" );
+    byte[] snapshot = new byte[length];
+    in.get( snapshot );
+    SavedMatch match = SaveFormat.decode( snapshot );
+
+    byte[] r = new byte[RECORD_BYTES];
+    while ( in.remaining() >= RECORD_BYTES )
+    {
+      in.get( r );
+      if ( r[3] != check( r[0], r[1], r[2] ) || !replay( match.getBoard(), r ) )
+        break; // torn by the crash: everything before it stands
+    }
+    return match;
+  }
+
+  /**
+   * Stops journaling and deletes the file: the match finished or was
+   * abandoned, and there is nothing to recover.
+   */
+  public void discard()
+  {
+    close();
+    SavedMatch.WRITER.execute( () ->
+    {
+      try
+      {
+        Files.deleteIfExists( file );
+      }
+      catch ( IOException e )
+      {
+        // -- a stale journal only means one needless offer to resume
+      }
+      LIVE.remove( file.toAbsolutePath() );
+    } );
+  }
+
+  /**
+   * Stops journaling, leaving the file for recovery.
+   */
+  public void close()
+  {
+    board.setJournal( null );
+    if ( !open )
+      return;
+    open = false;
+    SavedMatch.WRITER.execute( () ->
+    {
+      closeChannel();
+      LIVE.remove( file.toAbsolutePath() );
+    } );
+  }
+
+  /**
+   * Records a shot resolved by a civilization.
+   *
+   * @param civ the attacker
+   * @param x   the x-coordinate of the shot
+   * @param y   the y-coordinate of the shot
+   */
+  void shot( Civilization civ, int x, int y )
+  {
+    append( SHOT, civ, x, y, 0 );
+  }
+
+  /**
+   * Records the turn passing to a civilization, and forces the log to disk
+   * -- or, if it has grown long, compacts it into a snapshot, which is
+   * forced in turn.
+   *
+   * @param civ the civilization now to move
+   */
+  void turn( Civilization civ )
+  {
+    append( TURN, civ, 0, 0, 0 );
+    if ( !open )
+      return;
+    if ( records >= COMPACT_EVERY )
+      compact();
+    else
+      SavedMatch.WRITER.execute( this::force );
+  }
+
+  /**
+   * Records a hull moored.
+   *
+   * @param civ     the owner
+   * @param type    the hull's type
+   * @param heading where it lies
+   */
+  void moored( Civilization civ, ShipType type, ShipHeading heading )
+  {
+    int[] rear = heading.getRear();
+    int typeIndex = 0;
+    ShipType[] types = ShipType.getAscendingList();
+    while ( types[typeIndex] != type )
+      typeIndex++;
+    append( MOOR, civ, rear[0], rear[1], typeIndex << 2 | heading.getDirection().ordinal() );
+  }
+
+  /**
+   * Records a fleet cleared for re-placement.
+   *
+   * @param civ the owner
+   */
+  void cleared( Civilization civ )
+  {
+    append( CLEAR, civ, 0, 0, 0 );
+  }
+
+  /**
+   * Appends one record.
+   *
+   * @param kind   the record kind
+   * @param civ    the civilization it concerns
+   * @param x      an x-coordinate, or 0
+   * @param y      a y-coordinate, or 0
+   * @param detail the detail byte, or 0
+   */
+  private void append( int kind, Civilization civ, int x, int y, int detail )
+  {
+    if ( !open )
+      return;
+
+    byte b0 = (byte) ( kind << 1 | ( civ == Civilization.FRANKS ? 1 : 0 ) );
+    byte b1 = (byte) ( x << 4 | y );
+    byte b2 = (byte) detail;
+    records++;
+    SavedMatch.WRITER.execute( () ->
+    {
+      if ( channel == null )
+        return;
+      record.clear();
+      record.put( b0 ).put( b1 ).put( b2 ).put( check( b0, b1, b2 ) );
+      record.flip();
+      try
+      {
+        while ( record.hasRemaining() )
+          channel.write( record );
+      }
+      catch ( IOException e )
+      {
+        fail();
+      }
+    } );
+  }
+
+  /**
+   * Replaces the journal with a fresh snapshot and no records, atomically,
+   * so a crash part-way leaves the old journal or the new one intact. The
+   * snapshot is taken here; the writing happens on the writer, ahead of
+   * any record appended after it.
+   */
+  private void compact()
+  {
+    byte[] snapshot = SaveFormat.encode( new SavedMatch( board, salvoMode ) );
+    records = 0;
+    SavedMatch.WRITER.execute( () ->
+    {
+      if ( !open )
+        return;
+      closeChannel();
+      ByteBuffer header = ByteBuffer.allocate( 9 + snapshot.length );
+      header.putInt( MAGIC ).put( (byte) VERSION ).putInt( snapshot.length ).put( snapshot );
+      try
+      {
+        SaveFormat.writeAtomically( file, header.array() );
+        channel = FileChannel.open( file, StandardOpenOption.WRITE, StandardOpenOption.APPEND );
+      }
+      catch ( IOException e )
+      {
+        fail();
+        return;
+      }
+      try
+      {
+        channel.tryLock(); // held until the channel closes
+      }
+      catch ( IOException e )
+      {
+        // -- a filesystem without locks leaves the journal unguarded
+      }
+    } );
+  }
+
+  /**
+   * Forces the records written so far to disk, so that they outlive the
+   * machine as well as the game. Writer thread only.
+   */
+  private void force()
+  {
+    if ( channel == null )
+      return;
+    try
+    {
+      channel.force( false );
+    }
+    catch ( IOException e )
+    {
+      fail();
+    }
+  }
+
+  /**
+   * Stops recording after a failed write, from the writer: later records
+   * would replay against a snapshot the file may not hold.
+   */
+  private void fail()
+  {
+    open = false;
+    closeChannel();
+  }
+
+  /**
+   * Closes the file, if open. Writer thread only.
+   */
+  private void closeChannel()
+  {
+    if ( channel == null )
+      return;
+    try
+    {
+      channel.close();
+    }
+    catch ( IOException e )
+    {
+      // -- nothing more to write anyway
+    }
+    channel = null;
+  }
+
+  /**
+   * Applies one record to a board, as the live game did.
+   *
+   * @param board the board being rebuilt
+   * @param r     the record
+   * @return false if the record makes no sense against the board
+   */
+  private static boolean replay( Board board, byte[] r )
+  {
+    Civilization civ = ( r[0] & 1 ) != 0 ? Civilization.FRANKS : Civilization.BRITONS;
+    Player actor = ( civ == Civilization.BRITONS ) ? board.getBritons() : board.getFranks();
+    Player other = ( actor == board.getBritons() ) ? board.getFranks() : board.getBritons();
+    int x = ( r[1] >> 4 ) & 0xF;
+    int y = r[1] & 0xF;
+
+    switch ( ( r[0] & 0xFF ) >> 1 )
+    {
+      case SHOT:
+        if ( !other.getFriendlyQuad().cellIsTargetable( x, y ) )
+          return false;
+        board.restoreTurn( civ, board.isSetupPhase(), board.getShotsFiredThisTurn() + 1,
+                           board.getTurnNumber() );
+
+        // -- the same bookkeeping AITurnPhase performs, strategy feedback
+        //    included, so an AI resumes knowing what it knew
+        boolean hit = ( other.getShipAt( x, y ) != null );
+        other.getFriendlyQuad().fireAtCell( x, y );
+        other.syncDecksToQuadrantState();
+        if ( actor instanceof AIPlayer
+             && ( (AIPlayer) actor ).getStrategy() instanceof AbstractTargetingStrategy )
+          ( (AbstractTargetingStrategy) ( (AIPlayer) actor ).getStrategy() )
+              .observe( actor.getEnemyQuad() );
+        actor.processAttackResult( x, y, hit );
+        Ship struck = hit ? other.getShipAt( x, y ) : null;
+        if ( struck != null && struck.isSunk() )
+          actor.notifyEnemyShipSunk( struck.getShipType(), x, y );
+        return true;
+
+      case TURN:
+        board.replayTurn( civ );
+        return true;
+
+      case MOOR:
+        int detail = r[2] & 0xFF;
+        ShipType[] types = ShipType.getAscendingList();
+        if ( ( detail >> 2 ) >= types.length )
+          return false;
+        return actor.placeVessel( new Ship( types[detail >> 2] ),
+                                  new ShipHeading( x, y, Direction.values()[detail & 3] ) );
+
+      case CLEAR:
+        actor.reset();
+        return true;
+
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * The check byte of a record: enough to tell a whole record from the
+   * zeros or garbage a crash can leave at the end of a file.
+   *
+   * @param b0 the first byte
+   * @param b1 the second byte
+   * @param b2 the third byte
+   * @return the check byte
+   */
+  private static byte check( byte b0, byte b1, byte b2 )
+  {
+    return (byte) ( ( b0 * 31 + b1 ) * 31 + b2 ^ 0x5A );
+  }
+}
@@ -0,0 +1,692 @@
+package seasofyore.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A finished match, shot by shot: who played, where both fleets lay, and
+ * every shot in the order it was fired, with whether it struck. Recorded
+ * for every match by a {@link ReplayRecorder} -- offline, AI against AI,
+ * networked, or in the arena -- and a few hundred bytes on disk.
+ *
+ * <p>Any moment of the match is rebuilt by {@link #frameAt}. Every
+ * {@value #KEYFRAME_EVERY} shots the board is kept whole as a keyframe, so
+ * a frame is the nearest keyframe plus at most that many shots replayed on
+ * top: scrubbing is instant however long the match ran.</p>
+ *
+ * <p>A fleet the recording side never saw -- the enemy's, in a networked
+ * match -- is stored empty. Its hits and misses still replay; what sank
+ * and what was left afloat cannot be shown.</p>
+ *
+ * <p>A match resumed from a save was already under way when recording
+ * began. The shots fired before then are stored first, in board order,
+ * as the prologue; the replay opens with them already on the board.</p>
+ *
+ * <p>Layout, big-endian:</p>
+ * <pre>
+ * int    magic "YRPL"
+ * byte   version
+ * ---    covered by the checksum
+ * byte   flags: 1 SALVO rules
+ * byte   the winner: 0 none, 1 Britons, 2 Franks
+ * side   the Britons, then the Franks:
+ *   byte   PlayerType, by declaration order
+ *   UTF    name, empty if none
+ *   byte   hulls known, then per hull: ShipType (ascending order),
+ *          rear x &lt;&lt; 4 | rear y, Direction (declaration order)
+ * short  prologue shots
+ * short  shots, then per shot: firing side &lt;&lt; 9 | hit &lt;&lt; 8 |
+ *        x &lt;&lt; 4 | y, as a short
+ * ---
+ * int    CRC-32 of everything after the version
+ * </pre>
+ *
+ * @author dylan
+ */
+public final class MatchReplay
+{
+  /**
+   * The file extension of a replay.
+   */
+  public static final String FILE_EXTENSION = "replay";
+
+  /**
+   * The first four bytes of every replay: "YRPL".
+   */
+  static final int MAGIC = 0x5952504C;
+
+  /**
+   * The layout version this build writes.
+   */
+  static final int VERSION = 1;
+
+  /**
+   * Shots between keyframes. A frame replays at most this many shots on
+   * top of a keyframe of a few hundred bytes.
+   */
+  static final int KEYFRAME_EVERY = 16;
+
+  /**
+   * Cells in one quadrant.
+   */
+  private static final int CELLS = PlayerQuadrant.GRID_SIZE * PlayerQuadrant.GRID_SIZE;
+
+  /**
+   * The standard fleet's size; hull indices run below it on each side.
+   */
+  private static final int FLEET = ShipType.values().length;
+
+  /**
+   * The kind of player on each side, Britons first.
+   */
+  private final PlayerType[] types;
+
+  /**
+   * Each side's commander's name, or null.
+   */
+  private final String[] names;
+
+  /**
+   * Whether the match was played under SALVO rules.
+   */
+  private final boolean salvoMode;
+
+  /**
+   * The civilization that won, or null if the recording stopped short.
+   */
+  private final Civilization winner;
+
+  /**
+   * Each side's known hulls, three bytes apiece as stored.
+   */
+  private final byte[][] hulls;
+
+  /**
+   * How many of the shots were fired before recording began.
+   */
+  private final int prologue;
+
+  /**
+   * The shots, packed as stored.
+   */
+  private final short[] shots;
+
+  /**
+   * The hull at each cell of both boards, by side * CELLS + key, as an
+   * index into that side's hulls; -1 for open water or unknown.
+   */
+  private final byte[] hullAt = new byte[2 * CELLS];
+
+  /**
+   * The cells of each known hull, by side * FLEET + hull.
+   */
+  private final int[][] hullCells = new int[2 * FLEET][];
+
+  /**
+   * The index of the first shot of each turn after the prologue.
+   */
+  private final int[] turnStarts;
+
+  /**
+   * The frames at every multiple of {@link #KEYFRAME_EVERY} shots.
+   */
+  private final Frame[] keyframes;
+
+  /**
+   * Builds a replay and its keyframes; recorded by {@link ReplayRecorder}
+   * or read back by {@link #read}.
+   *
+   * @param types     each side's kind of player, Britons first
+   * @param names     each side's commander's name, or null
+   * @param salvoMode true for SALVO rules
+   * @param winner    the winner, or null
+   * @param hulls     each side's known hulls, as stored
+   * @param prologue  shots fired before recording began
+   * @param shots     every shot, as stored
+   * @throws IllegalArgumentException if the fleets or shots are impossible
+   */
+  MatchReplay( PlayerType[] types, String[] names, boolean salvoMode, Civilization winner,
+               byte[][] hulls, int prologue, short[] shots )
+  {
+    this.types = types;
+    this.names = names;
+    this.salvoMode = salvoMode;
+    this.winner = winner;
+    this.hulls = hulls;
+    this.prologue = prologue;
+    this.shots = shots;
+
+    Arrays.fill( hullAt, (byte) -1 );
+    for ( int side = 0; side < 2; side++ )
+    {
+      for ( int h = 0; h * 3 < hulls[side].length; h++ )
+      {
+        int[] cells = cellsOf( hulls[side][h * 3], hulls[side][h * 3 + 1],
+                               hulls[side][h * 3 + 2] );
+        for ( int key : cells )
+        {
+          if ( hullAt[side * CELLS + key] != -1 )
+            throw new IllegalArgumentException( "hulls overlap" );
+          hullAt[side * CELLS + key] = (byte) h;
+        }
+        hullCells[side * FLEET + h] = cells;
+      }
+    }
+
+    int[] starts = new int[shots.length];
+    int turns = 0;
+    keyframes = new Frame[shots.length / KEYFRAME_EVERY + 1];
+    Frame frame = new Frame();
+    for ( int i = 0; i <= shots.length; i++ )
+    {
+      if ( i % KEYFRAME_EVERY == 0 )
+        keyframes[i / KEYFRAME_EVERY] = frame.copy();
+      if ( i == shots.length )
+        break;
+      if ( i >= prologue && ( i == prologue || shooter( i ) != shooter( i - 1 ) ) )
+        starts[turns++] = i;
+      apply( frame, i );
+    }
+    this.turnStarts = Arrays.copyOf( starts, turns );
+  }
+
+  /**
+   * The directory finished matches are recorded in:
+   * {@code .seasofyore/replays} under the user's home.
+   *
+   * @return the directory
+   */
+  public static Path defaultDirectory()
+  {
+    return Paths.get( System.getProperty( "user.home" ), ".seasofyore", "replays" );
+  }
+
+  // ------------------------------------------------------------------
+  // The match
+  // ------------------------------------------------------------------
+
+  /**
+   * The kind of player commanding a civilization.
+   *
+   * @param civ the civilization
+   * @return its PlayerType
+   */
+  public PlayerType getPlayerType( Civilization civ )
+  {
+    return types[side( civ )];
+  }
+
+  /**
+   * The name of a civilization's commander.
+   *
+   * @param civ the civilization
+   * @return the raw name, or null when unnamed
+   */
+  public String getName( Civilization civ )
+  {
+    return names[side( civ )];
+  }
+
+  /**
+   * Whether the match was played under SALVO rules.
+   *
+   * @return true for SALVO; false for Classic
+   */
+  public boolean isSalvoMode()
+  {
+    return this.salvoMode;
+  }
+
+  /**
+   * The civilization that won.
+   *
+   * @return the winner, or null if the recording ended before the battle did
+   */
+  public Civilization getWinner()
+  {
+    return this.winner;
+  }
+
+  /**
+   * Whether a civilization's fleet was known to the recording side.
+   *
+   * @param civ the civilization
+   * @return true if its hulls are in the replay
+   */
+  public boolean isFleetKnown( Civilization civ )
+  {
+    return hulls[side( civ )].length > 0;
+  }
+
+  /**
+   * The hull moored at a cell, if known.
+   *
+   * @param civ the civilization whose board
+   * @param x   the x-coordinate
+   * @param y   the y-coordinate
+   * @return the hull's type, or null for open water or an unknown fleet
+   */
+  public ShipType getHullAt( Civilization civ, int x, int y )
+  {
+    int side = side( civ );
+    int h = hullAt[side * CELLS + y * PlayerQuadrant.GRID_SIZE + x];
+    return ( h < 0 ) ? null : ShipType.getAscendingList()[hulls[side][h * 3]];
+  }
+
+  // ------------------------------------------------------------------
+  // The shots
+  // ------------------------------------------------------------------
+
+  /**
+   * How many shots the replay holds, the prologue included.
+   *
+   * @return the count
+   */
+  public int getShotCount()
+  {
+    return shots.length;
+  }
+
+  /**
+   * How many of the shots were fired before recording began; the replay
+   * opens after them.
+   *
+   * @return the prologue's length; 0 for a match recorded from the start
+   */
+  public int getPrologue()
+  {
+    return this.prologue;
+  }
+
+  /**
+   * The civilization that fired a shot.
+   *
+   * @param shot the shot's index
+   * @return the firing civilization
+   */
+  public Civilization getShooter( int shot )
+  {
+    return ( shooter( shot ) == 0 ) ? Civilization.BRITONS : Civilization.FRANKS;
+  }
+
+  /**
+   * Where a shot landed.
+   *
+   * @param shot the shot's index
+   * @return { x, y } on the enemy's board
+   */
+  public int[] getTarget( int shot )
+  {
+    return new int[] { ( shots[shot] >> 4 ) & 15, shots[shot] & 15 };
+  }
+
+  /**
+   * Whether a shot struck a hull.
+   *
+   * @param shot the shot's index
+   * @return true for a hit
+   */
+  public boolean isHit( int shot )
+  {
+    return ( shots[shot] & 0x100 ) != 0;
+  }
+
+  /**
+   * How many turns were recorded, the prologue aside.
+   *
+   * @return the count
+   */
+  public int getTurnCount()
+  {
+    return turnStarts.length;
+  }
+
+  /**
+   * The first shot of a turn.
+   *
+   * @param turn the turn, counting from 1
+   * @return the shot's index
+   */
+  public int getTurnStart( int turn )
+  {
+    return turnStarts[turn - 1];
+  }
+
+  /**
+   * The turn a shot was fired in.
+   *
+   * @param shot the shot's index
+   * @return the turn, counting from 1; 0 for a prologue shot
+   */
+  public int getTurnOf( int shot )
+  {
+    int found = Arrays.binarySearch( turnStarts, shot );
+    return ( found >= 0 ) ? found + 1 : -found - 1;
+  }
+
+  /**
+   * Both boards as they stood after a number of shots: the nearest
+   * keyframe, with the shots since replayed on a copy.
+   *
+   * @param fired how many shots have been fired, from 0 to
+   *              {@link #getShotCount}
+   * @return the frame; the caller's to keep
+   */
+  public Frame frameAt( int fired )
+  {
+    if ( fired < 0 || fired > shots.length )
+      throw new IndexOutOfBoundsException( "no frame after " + fired + " shots" );
+    Frame frame = keyframes[fired / KEYFRAME_EVERY].copy();
+    for ( int i = fired - fired % KEYFRAME_EVERY; i < fired; i++ )
+      apply( frame, i );
+    return frame;
+  }
+
+  /**
+   * Plays one shot onto a frame, sinking the hull it completes.
+   *
+   * @param frame the frame
+   * @param shot  the shot's index
+   */
+  private void apply( Frame frame, int shot )
+  {
+    int target = 1 - shooter( shot );   // the side fired upon
+    int key = ( shots[shot] & 15 ) * PlayerQuadrant.GRID_SIZE + ( ( shots[shot] >> 4 ) & 15 );
+    if ( !isHit( shot ) )
+    {
+      frame.cells[target * CELLS + key] = SaveSummary.MISS;
+      return;
+    }
+
+    frame.cells[target * CELLS + key] = SaveSummary.HIT;
+    int h = hullAt[target * CELLS + key];
+    if ( h < 0 )
+      return;
+    int[] cells = hullCells[target * FLEET + h];
+    if ( ++frame.hits[target * FLEET + h] == cells.length )
+    {
+      for ( int cell : cells )
+        frame.cells[target * CELLS + cell] = SaveSummary.SUNK;
+      frame.sunk[target]++;
+    }
+  }
+
+  /**
+   * The cells a stored hull covers.
+   *
+   * @param type      the hull's ShipType, in ascending order
+   * @param rear      rear x &lt;&lt; 4 | rear y
+   * @param direction the hull's Direction, in declaration order
+   * @return the keys of its cells, rear first
+   * @throws IllegalArgumentException if the hull lies off the board
+   */
+  static int[] cellsOf( int type, int rear, int direction )
+  {
+    int length = ShipType.getAscendingList()[type].getLength();
+    ShipHeading heading = ShipHeading.getInstance(
+        ( rear >> 4 ) & 15, rear & 15, Direction.values()[direction] );
+    int[] cells = new int[length];
+    int c = 0;
+    for ( int[] cell : heading.getOccupiedCells( length ) )
+    {
+      if ( !PlayerQuadrant.cellInBounds( cell[0], cell[1] ) )
+        throw new IllegalArgumentException( "a hull lies off the board" );
+      cells[c++] = cell[1] * PlayerQuadrant.GRID_SIZE + cell[0];
+    }
+    return cells;
+  }
+
+  /**
+   * The side, 0 for the Britons or 1 for the Franks, that fired a shot.
+   *
+   * @param shot the shot's index
+   * @return the side
+   */
+  private int shooter( int shot )
+  {
+    return ( shots[shot] >> 9 ) & 1;
+  }
+
+  /**
+   * The storage side of a civilization: 0 for the Britons, 1 for the Franks.
+   *
+   * @param civ the civilization
+   * @return the side
+   */
+  static int side( Civilization civ )
+  {
+    return ( civ == Civilization.BRITONS ) ? 0 : 1;
+  }
+
+  // ------------------------------------------------------------------
+  // On disk
+  // ------------------------------------------------------------------
+
+  /**
+   * Encodes the replay in the layout described above.
+   *
+   * @return the complete file contents
+   */
+  byte[] encode()
+  {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream( 64 + 2 * shots.length );
+    try ( DataOutputStream out = new DataOutputStream( bytes ) )
+    {
+      out.writeInt( MAGIC );
+      out.writeByte( VERSION );
+      out.writeByte( salvoMode ? 1 : 0 );
+      out.writeByte( ( winner == null ) ? 0 : side( winner ) + 1 );
+      for ( int side = 0; side < 2; side++ )
+      {
+        out.writeByte( types[side].ordinal() );
+        out.writeUTF( ( names[side] == null ) ? "" : names[side] );
+        out.writeByte( hulls[side].length / 3 );
+        out.write( hulls[side] );
+      }
+      out.writeShort( prologue );
+      out.writeShort( shots.length );
+      for ( short shot : shots )
+        out.writeShort( shot );
+    }
+    catch ( IOException e )
+    {
+      throw new IllegalStateException( "in-memory stream failed", e );
+    }
+
+    byte[] body = bytes.toByteArray();
+    byte[] file = Arrays.copyOf( body, body.length + 4 );
+    int crc = SaveFormat.crc( body, 5, body.length - 5 );
+    for ( int i = 0; i < 4; i++ )
+      file[body.length + i] = (byte) ( crc >>> ( 24 - 8 * i ) );
+    return file;
+  }
+
+  /**
+   * Writes the replay to a file, atomically.
+   *
+   * @param file the destination
+   * @throws IOException if it cannot be written
+   */
+  public void write( Path file ) throws IOException
+  {
+    SaveFormat.writeAtomically( file, encode() );
+  }
+
+  /**
+   * Writes the replay into a directory, named for the moment it is written,
+   * on the background thread saves use.
+   *
+   * @param dir the directory, created if need be
+   * @return completes with the file once it is on disk, or exceptionally
+   *         if it could not be written
+   */
+  public CompletableFuture<Path> writeInBackground( Path dir )
+  {
+    byte[] contents = encode();
+    Path file = dir.resolve( "match-" + System.currentTimeMillis() + "." + FILE_EXTENSION );
+    CompletableFuture<Path> done = new CompletableFuture<>();
+    SavedMatch.WRITER.execute( () ->
+    {
+      try
+      {
+        Files.createDirectories( dir );
+        SaveFormat.writeAtomically( file, contents );
+        done.complete( file );
+      }
+      catch ( IOException | RuntimeException e )
+      {
+        done.completeExceptionally( e );
+      }
+    } );
+    return done;
+  }
+
+  /**
+   * Reads a replay back, checking its version, checksum, and fleets.
+   *
+   * @param file the replay file
+   * @return the replay, keyframes built
+   * @throws IOException if the file cannot be read or is not a valid replay
+   */
+  public static MatchReplay read( Path file ) throws IOException
+  {
+    byte[] bytes = Files.readAllBytes( file );
+    if ( bytes.length < 9 || intAt( bytes, 0 ) != MAGIC )
+      throw new IOException( "not a Seas of Yore replay" );
+    if ( bytes[4] != VERSION )
+      throw new IOException( "replay version " + bytes[4] + " is not supported" );
+    if ( intAt( bytes, bytes.length - 4 )
+         != SaveFormat.crc( bytes, 5, bytes.length - 9 ) )
+      throw new IOException( "checksum mismatch; the replay is damaged" );
+
+    try ( DataInputStream in = new DataInputStream(
+              new ByteArrayInputStream( bytes, 5, bytes.length - 9 ) ) )
+    {
+      boolean salvo = ( in.readUnsignedByte() & 1 ) != 0;
+      int won = in.readUnsignedByte();
+      Civilization winner = ( won == 0 ) ? null
+                          : ( won == 1 ) ? Civilization.BRITONS : Civilization.FRANKS;
+      PlayerType[] types = new PlayerType[2];
+      String[] names = new String[2];
+      byte[][] hulls = new byte[2][];
+      for ( int side = 0; side < 2; side++ )
+      {
+        types[side] = PlayerType.values()[in.readUnsignedByte()];
+        String name = in.readUTF();
+        names[side] = name.isEmpty() ? null : name;
+        hulls[side] = new byte[in.readUnsignedByte() * 3];
+        in.readFully( hulls[side] );
+      }
+      int prologue = in.readUnsignedShort();
+      short[] shots = new short[in.readUnsignedShort()];
+      for ( int i = 0; i < shots.length; i++ )
+        shots[i] = in.readShort();
+      return new MatchReplay( types, names, salvo, winner, hulls, prologue, shots );
+    }
+    catch ( RuntimeException e )
+    {
+      throw new IOException( "the replay is malformed", e );
+    }
+  }
+
+  /**
+   * Reads a big-endian int out of an array.
+   *
+   * @param bytes  the array
+   * @param offset where the int starts
+   * @return the int
+   */
+  private static int intAt( byte[] bytes, int offset )
+  {
+    return ( bytes[offset] & 0xFF ) << 24 | ( bytes[offset + 1] & 0xFF ) << 16
+         | ( bytes[offset + 2] & 0xFF ) << 8 | ( bytes[offset + 3] & 0xFF );
+  }
+
+  /**
+   * Both boards at one moment of the replay: what each cell had come to,
+   * and how hard each known hull had been struck.
+   */
+  public static final class Frame
+  {
+    /**
+     * The cells of both boards, by side * CELLS + key, as
+     * {@link SaveSummary} cell codes.
+     */
+    private final byte[] cells;
+
+    /**
+     * Hits taken by each known hull, by side * FLEET + hull.
+     */
+    private final byte[] hits;
+
+    /**
+     * Known hulls sunk on each side.
+     */
+    private final byte[] sunk;
+
+    /**
+     * An empty frame: nothing fired upon.
+     */
+    private Frame()
+    {
+      this( new byte[2 * CELLS], new byte[2 * FLEET], new byte[2] );
+    }
+
+    /**
+     * A frame over the given arrays.
+     *
+     * @param cells the cells
+     * @param hits  the hull hits
+     * @param sunk  the hulls sunk
+     */
+    private Frame( byte[] cells, byte[] hits, byte[] sunk )
+    {
+      this.cells = cells;
+      this.hits = hits;
+      this.sunk = sunk;
+    }
+
+    /**
+     * An independent copy.
+     *
+     * @return the copy
+     */
+    private Frame copy()
+    {
+      return new Frame( cells.clone(), hits.clone(), sunk.clone() );
+    }
+
+    /**
+     * One cell of a civilization's board.
+     *
+     * @param civ the civilization whose board
+     * @param x   the x-coordinate
+     * @param y   the y-coordinate
+     * @return {@link SaveSummary#UNFIRED}, {@link SaveSummary#MISS},
+     *         {@link SaveSummary#HIT}, or {@link SaveSummary#SUNK}
+     */
+    public int getCell( Civilization civ, int x, int y )
+    {
+      return cells[side( civ ) * CELLS + y * PlayerQuadrant.GRID_SIZE + x];
+    }
+
+    /**
+     * How many hulls a civilization has lost.
+     *
+     * @param civ the civilization
+     * @return hulls sunk, counting only those the replay knows of
+     */
+    public int getSunk( Civilization civ )
+    {
+      return sunk[side( civ )];
+    }
+  }
+}
@@ -1,5 +1,7 @@
 package seasofyore.core;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -52,6 +54,11 @@ import java.util.List;
  */
 public class MediumStrategy extends AbstractTargetingStrategy
 {
+  /**
+   * Serialization version for saved games.
+   */
+  private static final long serialVersionUID = -1004933311860801494L;
+
   /**
    * The sub-states of Medium's exploration (hunt) behaviour.
    */
@@ -64,10 +71,52 @@ public class MediumStrategy extends AbstractTargetingStrategy
   }
 
   /**
-   * The radius (Chebyshev distance) of the neighbourhood used to gauge how open
-   * a candidate cell is.
+   * The settings; Medium reads only the radius (Chebyshev distance) of the
+   * neighbourhood used to gauge how open a candidate cell is.
+   */
+  private AIParameters params;
+
+  /**
+   * Builds the Medium AI with its shipped settings.
+   */
+  public MediumStrategy()
+  {
+    this( AIParameters.DEFAULTS );
+  }
+
+  /**
+   * Builds the Medium AI with the given settings.
+   *
+   * @param params the settings, of which the openness radius is used
    */
-  private static final int OPENNESS_RADIUS = 2;
+  public MediumStrategy( AIParameters params )
+  {
+    this.params = params;
+  }
+
+  /**
+   * Restores the strategy from a serialized log. Logs from before the
+   * settings were exposed carry none; those builds played the shipped ones.
+   */
+  private void readObject( ObjectInputStream in )
+      throws IOException, ClassNotFoundException
+  {
+    in.defaultReadObject();
+    if ( params == null )
+      params = AIParameters.DEFAULTS;
+  }
+
+  /**
+   * Medium never counts placements, and the endgame solver is nothing but
+   * placement counting carried to its conclusion -- so it stays out.
+   *
+   * @return false, always
+   */
+  @Override
+  protected boolean usesEndgameSolver()
+  {
+    return false;
+  }
 
   /**
    * Finishes a wounded ship by following its axis: once two hits line up, it
@@ -208,7 +257,7 @@ public class MediumStrategy extends AbstractTargetingStrategy
 
   /**
    * Scores a cell by how much open water surrounds it: each still-targetable
-   * neighbour within {@link #OPENNESS_RADIUS} adds a point, each already-fired
+   * neighbour within the openness radius adds a point, each already-fired
    * neighbour subtracts one. Higher means more open and more attractive.
    *
    * @param quad the enemy quadrant
@@ -218,10 +267,11 @@ public class MediumStrategy extends AbstractTargetingStrategy
    */
   private int opennessScore( PlayerQuadrant quad, int x, int y )
   {
+    int radius = params.getOpennessRadius();
     int score = 0;
-    for ( int dx = -OPENNESS_RADIUS; dx <= OPENNESS_RADIUS; dx++ )
+    for ( int dx = -radius; dx <= radius; dx++ )
     {
-      for ( int dy = -OPENNESS_RADIUS; dy <= OPENNESS_RADIUS; dy++ )
+      for ( int dy = -radius; dy <= radius; dy++ )
       {
         if ( dx == 0 && dy == 0 )
           continue;
@@ -0,0 +1,364 @@
+package seasofyore.core;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Searches a tier's {@link AIParameters} for the cheapest settings that
+ * keep its strength. Each candidate plays the same fixed scenarios against
+ * the same opponent -- common random numbers, so candidates differ only by
+ * their settings -- and is scored by its win rate and its mean time per
+ * shot. The search is a full grid over a few values per parameter, or a
+ * random sample of that grid, spread over every core.
+ *
+ * <p>The tuned tier moors its own fleet (the cold-pool setting would
+ * otherwise have nothing to act on); the opponent's layouts and both
+ * seeds come from the scenarios.</p>
+ *
+ * <p>The target is the cheapest candidate whose win rate is within
+ * {@value #WIN_TOLERANCE} of the shipped defaults' on the same scenarios.
+ * The report also gives the Pareto frontier of strength against compute:
+ * every candidate that no other candidate beats on both at once. All
+ * candidates go to {@code <prefix>.csv}.</p>
+ *
+ * <p>Every game runs on a worker thread, with as many workers as cores, so
+ * timings are taken under even load and stay comparable between
+ * candidates, though not with a quiet single-game run.</p>
+ *
+ * @author dylan
+ */
+final class ParameterTuner
+{
+  /**
+   * How far below the defaults' win rate a candidate may fall and still
+   * count as keeping the tier's edge.
+   */
+  private static final double WIN_TOLERANCE = 0.01;
+
+  /**
+   * Scenarios per unit of parallel work.
+   */
+  private static final int CHUNK = 10;
+
+  /**
+   * Scenarios played untimed before the search, to warm the JIT.
+   */
+  private static final int WARMUP = 20;
+
+  /**
+   * Seeds the scenarios, so two tuning runs of one size face the same
+   * games.
+   */
+  private static final long SCENARIO_SEED = 0x7E5EL;
+
+  /**
+   * Values tried for Extreme's Monte Carlo samples per finishing shot.
+   */
+  private static final int[] SAMPLES = { 300, 600, 1200, 2400, 4800 };
+
+  /**
+   * Values tried for Extreme's acceptance floor.
+   */
+  private static final int[] MIN_ACCEPTED = { 10, 20, 40, 80 };
+
+  /**
+   * Values tried for Extreme's cold-water pool.
+   */
+  private static final int[] COLD_POOL = { 4, 8, 12, 24, 48 };
+
+  /**
+   * Values tried for Medium's openness radius.
+   */
+  private static final int[] OPENNESS_RADIUS = { 1, 2, 3, 4 };
+
+  /**
+   * Not instantiable; driven from {@link StrategyArena#main}.
+   */
+  private ParameterTuner() {}
+
+  /**
+   * One candidate's settings and running totals.
+   */
+  private static final class Candidate
+  {
+    final AIParameters params;
+    int games;
+    int wins;
+    long shots;
+    long nanos;
+    boolean pareto;
+
+    Candidate( AIParameters params )
+    {
+      this.params = params;
+    }
+
+    double winRate()
+    {
+      return (double) wins / games;
+    }
+
+    double msPerShot()
+    {
+      return nanos / 1e6 / shots;
+    }
+  }
+
+  /**
+   * Runs the search and prints the report.
+   *
+   * @param tier     the tier to tune: MEDIUM or EXTREME
+   * @param opponent the tier it plays against
+   * @param games    scenarios per candidate
+   * @param random   candidates to draw at random from the grid, or 0 for
+   *                 the whole grid
+   * @param prefix   path prefix for the CSV output
+   * @throws IOException if the CSV cannot be written
+   */
+  static void run( PlayerFactory.AIDifficulty tier, PlayerFactory.AIDifficulty opponent,
+                   int games, int random, String prefix ) throws IOException
+  {
+    List<AIParameters> grid = grid( tier );
+    if ( random > 0 && random < grid.size() )
+    {
+      Collections.shuffle( grid, new Random( SCENARIO_SEED ) );
+      grid = new ArrayList<>( grid.subList( 0, random ) );
+    }
+
+    // the defaults always run, as the yardstick
+    List<Candidate> candidates = new ArrayList<>();
+    Candidate baseline = new Candidate( AIParameters.DEFAULTS );
+    candidates.add( baseline );
+    for ( AIParameters p : grid )
+      if ( !p.equals( AIParameters.DEFAULTS ) )
+        candidates.add( new Candidate( p ) );
+
+    List<ScenarioCorpus.Scenario> scenarios = new ArrayList<>();
+    for ( ScenarioCorpus.Scenario s : ScenarioCorpus.generate( games, SCENARIO_SEED ) )
+      scenarios.add( new ScenarioCorpus.Scenario( s.id, s.aFirst, s.seedA, s.seedB,
+                                                  s.layoutA, null ) );
+
+    int threads = Runtime.getRuntime().availableProcessors();
+    System.out.printf( "Tuning %s against %s -- %d candidates x %d games on %d threads%n",
+                       tier, opponent, candidates.size(), games, threads );
+
+    long startMs = System.currentTimeMillis();
+    play( candidates, scenarios, tier, opponent, threads );
+    long elapsedMs = System.currentTimeMillis() - startMs;
+
+    markPareto( candidates );
+    Candidate best = null;
+    for ( Candidate c : candidates )
+      if ( c.winRate() >= baseline.winRate() - WIN_TOLERANCE
+        && ( best == null || c.msPerShot() < best.msPerShot() ) )
+        best = c;
+
+    report( candidates, baseline, best, elapsedMs );
+    writeCsv( prefix + ".csv", candidates, baseline );
+    System.out.printf( "  wrote %s.csv%n", prefix );
+  }
+
+  /**
+   * The values to search for a tier: the parameters that tier reads.
+   *
+   * @param tier the tier
+   * @return every combination of the tier's values, others at default
+   * @throws IllegalArgumentException if the tier has nothing to tune
+   */
+  private static List<AIParameters> grid( PlayerFactory.AIDifficulty tier )
+  {
+    AIParameters d = AIParameters.DEFAULTS;
+    List<AIParameters> grid = new ArrayList<>();
+    switch ( tier )
+    {
+      case EXTREME:
+        for ( int samples : SAMPLES )
+          for ( int floor : MIN_ACCEPTED )
+            for ( int pool : COLD_POOL )
+              if ( floor <= samples )
+                grid.add( new AIParameters( samples, floor, pool, d.getOpennessRadius(),
+                                            d.getAiActionDelayMs() ) );
+        break;
+      case MEDIUM:
+        for ( int radius : OPENNESS_RADIUS )
+          grid.add( new AIParameters( d.getSamples(), d.getMinAccepted(), d.getColdPool(),
+                                      radius, d.getAiActionDelayMs() ) );
+        break;
+      default:
+        throw new IllegalArgumentException( tier + " has no parameters to tune" );
+    }
+    return grid;
+  }
+
+  /**
+   * Plays every candidate through every scenario on a thread pool and
+   * totals the results.
+   *
+   * @param candidates the candidates
+   * @param scenarios  the scenarios, tuned tier as side B
+   * @param tier       the tuned tier
+   * @param opponent   the opponent tier
+   * @param threads    worker threads
+   */
+  private static void play( List<Candidate> candidates, List<ScenarioCorpus.Scenario> scenarios,
+                            PlayerFactory.AIDifficulty tier,
+                            PlayerFactory.AIDifficulty opponent, int threads )
+  {
+    ExecutorService pool = Executors.newFixedThreadPool( threads );
+    try
+    {
+      // a quick untimed pass first, so the JIT's warm-up is not billed to
+      // whichever candidate happens to run first
+      int warmup = Math.min( WARMUP, scenarios.size() );
+      for ( ScenarioCorpus.Scenario s : scenarios.subList( 0, warmup ) )
+        StrategyArena.playScenario( opponent, AIParameters.DEFAULTS, tier,
+                                    AIParameters.DEFAULTS, s, false, null, null );
+
+      // chunk-major order keeps every candidate's games spread evenly over
+      // the run, so no candidate gets a quieter or noisier stretch of it
+      List<Future<long[]>> futures = new ArrayList<>();
+      List<Candidate> owners = new ArrayList<>();
+      for ( int from = 0; from < scenarios.size(); from += CHUNK )
+      {
+        final List<ScenarioCorpus.Scenario> chunk =
+            scenarios.subList( from, Math.min( scenarios.size(), from + CHUNK ) );
+        for ( Candidate c : candidates )
+        {
+          final AIParameters params = c.params;
+          futures.add( pool.submit( () ->
+          {
+            long[] totals = new long[4];   // games, wins, shots, nanos
+            for ( ScenarioCorpus.Scenario s : chunk )
+            {
+              StrategyArena.Outcome o = StrategyArena.playScenario(
+                  opponent, AIParameters.DEFAULTS, tier, params, s, false, null, null );
+              totals[0]++;
+              totals[1] += o.aWon ? 0 : 1;
+              totals[2] += o.shotsB;
+              totals[3] += o.nanosB;
+            }
+            return totals;
+          } ) );
+          owners.add( c );
+        }
+      }
+
+      for ( int i = 0; i < futures.size(); i++ )
+      {
+        long[] totals = futures.get( i ).get();
+        Candidate c = owners.get( i );
+        c.games += (int) totals[0];
+        c.wins += (int) totals[1];
+        c.shots += totals[2];
+        c.nanos += totals[3];
+      }
+    }
+    catch ( InterruptedException e )
+    {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException( "tuning interrupted", e );
+    }
+    catch ( ExecutionException e )
+    {
+      throw new IllegalStateException( "a tuning game failed", e.getCause() );
+    }
+    finally
+    {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Marks the Pareto frontier: walking from cheapest to dearest, a
+   * candidate is on it if it wins more than everything cheaper.
+   *
+   * @param candidates the scored candidates
+   */
+  private static void markPareto( List<Candidate> candidates )
+  {
+    List<Candidate> byCost = new ArrayList<>( candidates );
+    byCost.sort( Comparator.comparingDouble( Candidate::msPerShot ) );
+    double bestWin = -1.0;
+    for ( Candidate c : byCost )
+    {
+      if ( c.winRate() > bestWin )
+      {
+        c.pareto = true;
+        bestWin = c.winRate();
+      }
+    }
+  }
+
+  /**
+   * Prints the defaults, the frontier, and the recommendation.
+   *
+   * @param candidates every candidate
+   * @param baseline   the defaults
+   * @param best       the cheapest candidate within tolerance
+   * @param elapsedMs  wall-clock duration of the search
+   */
+  private static void report( List<Candidate> candidates, Candidate baseline,
+                              Candidate best, long elapsedMs )
+  {
+    System.out.printf( "  done in %.1fs%n", elapsedMs / 1000.0 );
+    System.out.printf( "  defaults   win %5.1f%%  %8.3f ms/shot  %s%n",
+                       100.0 * baseline.winRate(), baseline.msPerShot(), baseline.params );
+
+    List<Candidate> frontier = new ArrayList<>();
+    for ( Candidate c : candidates )
+      if ( c.pareto )
+        frontier.add( c );
+    frontier.sort( Comparator.comparingDouble( Candidate::msPerShot ) );
+
+    System.out.println( "  Pareto frontier (strength vs compute):" );
+    for ( Candidate c : frontier )
+      System.out.printf( "    win %5.1f%%  %8.3f ms/shot  %s%n",
+                         100.0 * c.winRate(), c.msPerShot(), c.params );
+
+    System.out.printf( "  cheapest within %.0f%% of the defaults' win rate:%n",
+                       100.0 * WIN_TOLERANCE );
+    System.out.printf( "    win %5.1f%%  %8.3f ms/shot  %s  (%.0f%% of the defaults' cost)%n",
+                       100.0 * best.winRate(), best.msPerShot(), best.params,
+                       100.0 * best.msPerShot() / baseline.msPerShot() );
+  }
+
+  /**
+   * Writes every candidate as one CSV row.
+   *
+   * @param path       the file to write
+   * @param candidates every candidate
+   * @param baseline   the defaults
+   * @throws IOException if the file cannot be written
+   */
+  private static void writeCsv( String path, List<Candidate> candidates, Candidate baseline )
+      throws IOException
+  {
+    try ( PrintWriter out = new PrintWriter(
+            Files.newBufferedWriter( Paths.get( path ), StandardCharsets.UTF_8 ) ) )
+    {
+      out.println( "samples,min_accepted,cold_pool,openness_radius,games,win_rate,"
+                 + "ms_per_shot,within_tolerance,pareto" );
+      for ( Candidate c : candidates )
+      {
+        AIParameters p = c.params;
+        out.printf( Locale.ROOT, "%d,%d,%d,%d,%d,%.4f,%.4f,%b,%b%n",
+                    p.getSamples(), p.getMinAccepted(), p.getColdPool(),
+                    p.getOpennessRadius(), c.games, c.winRate(), c.msPerShot(),
+                    c.winRate() >= baseline.winRate() - WIN_TOLERANCE, c.pareto );
+      }
+    }
+  }
+}
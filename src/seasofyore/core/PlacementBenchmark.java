@@ -0,0 +1,272 @@
+package seasofyore.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Measures how well a way of mooring a fleet hides it, apart from how well
+ * its owner shoots. Each placement policy is held fixed and hunted, with no
+ * return fire, by every AI tier; the benchmark records the shot on which
+ * each hull went down. From that it reports mean shots-to-sink per hull
+ * and for the whole fleet, and a survival curve -- the share of fleets
+ * still afloat after a given number of shots. It also times how long each
+ * policy takes to produce a fleet, since a cleverer mooring is only worth
+ * having if its cost is negligible next to the turns it buys.
+ *
+ * <p>The policies are the two {@link FleetSampler} baselines and the
+ * Extreme tier's cold-water mooring. Games run in parallel on every
+ * core.</p>
+ *
+ * @author dylan
+ */
+final class PlacementBenchmark
+{
+  /**
+   * The ways a fleet can be moored.
+   */
+  enum Policy
+  {
+    /** Every legal fleet layout equally likely. */
+    UNIFORM,
+    /** Each hull uniformly among headings still legal, in turn. */
+    SEQUENTIAL,
+    /** The Extreme tier's own mooring, among the coldest water. */
+    COLD_WATER
+  }
+
+  /**
+   * Games per unit of parallel work.
+   */
+  private static final int CHUNK = 25;
+
+  /**
+   * The shot counts at which the survival curve is sampled.
+   */
+  private static final int[] SURVIVAL_AT = { 30, 40, 50, 60, 70, 80, 90 };
+
+  /**
+   * The hunters, in enum order.
+   */
+  private static final PlayerFactory.AIDifficulty[] HUNTERS =
+      PlayerFactory.AIDifficulty.values();
+
+  /**
+   * Not instantiable; driven from {@link StrategyArena#main}.
+   */
+  private PlacementBenchmark() {}
+
+  /**
+   * Totals for one policy against one hunter.
+   */
+  private static final class Tally
+  {
+    int games;
+    final long[] sinkShots = new long[Player.FLEET_SIZE];
+    long fleetShots;
+    final int[] afloatAt = new int[SURVIVAL_AT.length];
+    final LatencyHistogram placement = new LatencyHistogram();
+
+    void merge( Tally other )
+    {
+      games += other.games;
+      for ( int i = 0; i < sinkShots.length; i++ )
+        sinkShots[i] += other.sinkShots[i];
+      fleetShots += other.fleetShots;
+      for ( int i = 0; i < afloatAt.length; i++ )
+        afloatAt[i] += other.afloatAt[i];
+      placement.merge( other.placement );
+    }
+  }
+
+  /**
+   * Plays every policy against every hunter and prints the report.
+   *
+   * @param games games per policy and hunter
+   */
+  static void run( int games )
+  {
+    Policy[] policies = Policy.values();
+    Tally[][] tallies = new Tally[policies.length][HUNTERS.length];
+    for ( Tally[] row : tallies )
+      for ( int h = 0; h < row.length; h++ )
+        row[h] = new Tally();
+
+    int threads = Runtime.getRuntime().availableProcessors();
+    ExecutorService pool = Executors.newFixedThreadPool( threads );
+    long startMs = System.currentTimeMillis();
+    try
+    {
+      List<Future<Tally>> futures = new ArrayList<>();
+      List<Tally> owners = new ArrayList<>();
+      for ( int p = 0; p < policies.length; p++ )
+      {
+        for ( int h = 0; h < HUNTERS.length; h++ )
+        {
+          for ( int from = 0; from < games; from += CHUNK )
+          {
+            final Policy policy = policies[p];
+            final PlayerFactory.AIDifficulty hunter = HUNTERS[h];
+            final int count = Math.min( CHUNK, games - from );
+            futures.add( pool.submit( () ->
+            {
+              Tally t = new Tally();
+              for ( int g = 0; g < count; g++ )
+                hunt( policy, hunter, t );
+              return t;
+            } ) );
+            owners.add( tallies[p][h] );
+          }
+        }
+      }
+
+      for ( int i = 0; i < futures.size(); i++ )
+        owners.get( i ).merge( futures.get( i ).get() );
+    }
+    catch ( InterruptedException e )
+    {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException( "benchmark interrupted", e );
+    }
+    catch ( ExecutionException e )
+    {
+      throw new IllegalStateException( "a benchmark game failed", e.getCause() );
+    }
+    finally
+    {
+      pool.shutdownNow();
+    }
+    long elapsedMs = System.currentTimeMillis() - startMs;
+
+    report( policies, tallies, games, elapsedMs, threads );
+  }
+
+  /**
+   * Moors one fleet by a policy and lets one hunter sink it, shot by shot.
+   *
+   * @param policy the placement policy
+   * @param hunter the hunting tier
+   * @param tally  where to add the result
+   */
+  private static void hunt( Policy policy, PlayerFactory.AIDifficulty hunter, Tally tally )
+  {
+    PlayerQuadrant fleetQuad = new PlayerQuadrant();
+    PlayerQuadrant hunterQuad = new PlayerQuadrant();
+    Player target = PlayerFactory.createAIPlayer( Civilization.BRITONS, fleetQuad, hunterQuad,
+                                                  PlayerFactory.AIDifficulty.EXTREME );
+    Player shooter = PlayerFactory.createAIPlayer( Civilization.FRANKS, hunterQuad, fleetQuad,
+                                                   hunter );
+
+    long t0 = System.nanoTime();
+    moor( policy, target );
+    tally.placement.record( System.nanoTime() - t0 );
+
+    Ship[] fleet = target.getFleet();
+    boolean[] sunk = new boolean[fleet.length];
+    int survival = 0;
+    int shots = 0;
+    boolean done = false;
+    while ( !done )
+    {
+      if ( ++shots > PlayerQuadrant.GRID_SIZE * PlayerQuadrant.GRID_SIZE )
+        throw new IllegalStateException( "hunt failed to terminate" );
+
+      done = StrategyArena.fireShot( shooter, target, null );
+      for ( int i = 0; i < fleet.length; i++ )
+      {
+        if ( !sunk[i] && fleet[i].isSunk() )
+        {
+          sunk[i] = true;
+          tally.sinkShots[i] += shots;
+        }
+      }
+
+      // afloat at a checkpoint only if the shot that reached it did not finish the fleet
+      while ( survival < SURVIVAL_AT.length && SURVIVAL_AT[survival] <= shots && !done )
+        tally.afloatAt[survival++]++;
+    }
+
+    tally.games++;
+    tally.fleetShots += shots;
+  }
+
+  /**
+   * Places a player's fleet by a policy.
+   *
+   * @param policy the policy
+   * @param player the player, built as an Extreme AI so its own mooring is
+   *               the cold-water policy
+   */
+  private static void moor( Policy policy, Player player )
+  {
+    switch ( policy )
+    {
+      case COLD_WATER:
+        player.randomVesselPlacement();
+        break;
+      default:
+        Ship[] ships = Ship.getListInstance();
+        ShipHeading[] layout = FleetSampler.sampleFleet( ships, policy == Policy.UNIFORM,
+                                                         ThreadLocalRandom.current() );
+        for ( int i = 0; i < ships.length; i++ )
+          player.placeVessel( ships[i], layout[i] );
+        break;
+    }
+  }
+
+  /**
+   * Prints one table per hunter, then the placement costs.
+   *
+   * @param policies  the policies
+   * @param tallies   the results, by policy and hunter
+   * @param games     games per policy and hunter
+   * @param elapsedMs wall-clock duration of the benchmark
+   * @param threads   worker threads used
+   */
+  private static void report( Policy[] policies, Tally[][] tallies, int games,
+                              long elapsedMs, int threads )
+  {
+    System.out.printf( "Placement defensiveness -- %d games per policy and hunter "
+                       + "(%.1fs on %d threads)%n", games, elapsedMs / 1000.0, threads );
+
+    StringBuilder header = new StringBuilder();
+    for ( ShipType type : ShipType.getAscendingList() )
+      header.append( String.format( " %7s", type ) );
+    header.append( "   fleet   afloat after" );
+    for ( int k : SURVIVAL_AT )
+      header.append( String.format( " %4d", k ) );
+
+    for ( int h = 0; h < HUNTERS.length; h++ )
+    {
+      System.out.printf( "  hunted by %-8s  mean shots-to-sink%n", HUNTERS[h] );
+      System.out.printf( "    %-11s%s%n", "", header );
+      for ( int p = 0; p < policies.length; p++ )
+      {
+        Tally t = tallies[p][h];
+        StringBuilder row = new StringBuilder();
+        for ( long s : t.sinkShots )
+          row.append( String.format( " %7.1f", (double) s / t.games ) );
+        row.append( String.format( " %7.1f", (double) t.fleetShots / t.games ) );
+        row.append( "               " );
+        for ( int a : t.afloatAt )
+          row.append( String.format( " %3.0f%%", 100.0 * a / t.games ) );
+        System.out.printf( "    %-11s%s%n", policies[p], row );
+      }
+    }
+
+    System.out.println( "  placement cost per fleet" );
+    for ( int p = 0; p < policies.length; p++ )
+    {
+      LatencyHistogram all = new LatencyHistogram();
+      for ( Tally t : tallies[p] )
+        all.merge( t.placement );
+      System.out.printf( "    %-11s p50 %8.1f us   p99 %8.1f us   max %8.1f us%n",
+                         policies[p], all.quantile( 0.50 ) / 1e3,
+                         all.quantile( 0.99 ) / 1e3, all.max() / 1e3 );
+    }
+  }
+}
@@ -0,0 +1,375 @@
+package seasofyore.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Where a kind of commander tends to moor, learned from recorded games and
+ * compiled into one multiplier per cell. A hunt map built on the assumption
+ * that every legal mooring is equally likely is multiplied through by the
+ * table, cell by cell, so that open water the learned commanders favour is
+ * searched first. At play time that multiply is the whole cost; the learning
+ * happens offline, in {@link #compile}.
+ *
+ * <p>A cell's weight is how often the learned fleets covered it over how
+ * often a fleet of independently, uniformly moored hulls would -- the very
+ * assumption the hunt maps make -- smoothed toward 1 by a few pseudo-fleets
+ * and clamped to [{@value #FLOOR}, {@value #CEILING}], so that no cell is
+ * ever ruled out by a thin corpus.</p>
+ *
+ * <p>The compiled form is 218 bytes: the magic "YPRI", a version byte, the
+ * kind of player learned from, the number of fleets, one unsigned
+ * fixed-point short per cell (row by row), and a CRC-32 of everything after
+ * the version. The table the game plays with is the classpath resource
+ * {@value #RESOURCE}; without one, {@link #standard()} is {@link #UNIFORM}.</p>
+ *
+ * @author dylan
+ */
+public final class PlacementPriors
+{
+  /**
+   * The first four bytes of a compiled table: "YPRI".
+   */
+  static final int MAGIC = 0x59505249;
+
+  /**
+   * The compiled format's version.
+   */
+  static final byte VERSION = 1;
+
+  /**
+   * Where the game's own table is looked up on the classpath.
+   */
+  static final String RESOURCE = "/priors/placement.prior";
+
+  /**
+   * The least weight a cell may carry.
+   */
+  static final double FLOOR = 0.25;
+
+  /**
+   * The greatest weight a cell may carry.
+   */
+  static final double CEILING = 4.0;
+
+  /**
+   * Imaginary uniformly moored fleets mixed into every table, so that a
+   * handful of games cannot swing a cell far.
+   */
+  static final int PSEUDO_FLEETS = 20;
+
+  /**
+   * Fixed-point units per 1.0 of weight in the compiled form.
+   */
+  private static final int ONE = 4096;
+
+  /**
+   * Cells in one quadrant.
+   */
+  private static final int CELLS = PlayerQuadrant.GRID_SIZE * PlayerQuadrant.GRID_SIZE;
+
+  /**
+   * The table that changes nothing: every cell weighs 1.
+   */
+  public static final PlacementPriors UNIFORM = uniform();
+
+  /**
+   * The weights, by cell key {@code y * GRID_SIZE + x}, as the fixed-point
+   * shorts they were compiled to.
+   */
+  private final char[] weights;
+
+  /**
+   * The kind of player the table was learned from.
+   */
+  private final PlayerType learnedFrom;
+
+  /**
+   * How many fleets it was learned from; 0 for {@link #UNIFORM}.
+   */
+  private final long fleets;
+
+  /**
+   * Creates a table.
+   *
+   * @param weights     the fixed-point weights, by cell key
+   * @param learnedFrom the kind of player learned from
+   * @param fleets      the number of fleets learned from
+   */
+  private PlacementPriors( char[] weights, PlayerType learnedFrom, long fleets )
+  {
+    this.weights = weights;
+    this.learnedFrom = learnedFrom;
+    this.fleets = fleets;
+  }
+
+  /**
+   * The table the game plays with against human commanders: the compiled
+   * resource if one ships with the game and is sound, otherwise
+   * {@link #UNIFORM}. Loaded once, on first use.
+   *
+   * @return the table
+   */
+  public static PlacementPriors standard()
+  {
+    return Standard.TABLE;
+  }
+
+  /**
+   * Holds the game's own table, so that it is read on first use only.
+   */
+  private static final class Standard
+  {
+    /**
+     * The table.
+     */
+    static final PlacementPriors TABLE = load();
+
+    /**
+     * Reads the classpath resource.
+     *
+     * @return the table, or {@link #UNIFORM} if it is absent or damaged
+     */
+    private static PlacementPriors load()
+    {
+      try ( InputStream in = PlacementPriors.class.getResourceAsStream( RESOURCE ) )
+      {
+        if ( in == null )
+          return UNIFORM;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream( 256 );
+        byte[] chunk = new byte[256];
+        for ( int n; ( n = in.read( chunk ) ) > 0; )
+          bytes.write( chunk, 0, n );
+        return decode( bytes.toByteArray() );
+      }
+      catch ( IOException e )
+      {
+        return UNIFORM;
+      }
+    }
+  }
+
+  /**
+   * The weight of a cell.
+   *
+   * @param x the x-coordinate
+   * @param y the y-coordinate
+   * @return how much likelier than uniform a hull is to lie there
+   */
+  public double weight( int x, int y )
+  {
+    return weights[y * PlayerQuadrant.GRID_SIZE + x] / (double) ONE;
+  }
+
+  /**
+   * Multiplies the table into a hunt map.
+   *
+   * @param heat the map, indexed [x][y]
+   */
+  public void applyTo( double[][] heat )
+  {
+    if ( this == UNIFORM )
+      return;
+    for ( int x = 0; x < PlayerQuadrant.GRID_SIZE; x++ )
+      for ( int y = 0; y < PlayerQuadrant.GRID_SIZE; y++ )
+        heat[x][y] *= weights[y * PlayerQuadrant.GRID_SIZE + x] / (double) ONE;
+  }
+
+  /**
+   * @return the kind of player the table was learned from
+   */
+  public PlayerType getLearnedFrom()
+  {
+    return learnedFrom;
+  }
+
+  /**
+   * @return how many fleets the table was learned from; 0 for none
+   */
+  public long getFleets()
+  {
+    return fleets;
+  }
+
+  /**
+   * Builds the table that weighs every cell 1.
+   *
+   * @return the table
+   */
+  private static PlacementPriors uniform()
+  {
+    char[] weights = new char[CELLS];
+    Arrays.fill( weights, (char) ONE );
+    return new PlacementPriors( weights, PlayerType.HUMAN, 0 );
+  }
+
+  /**
+   * Learns a table from observed moorings.
+   *
+   * @param learnedFrom the kind of player observed
+   * @param fleets      how many of its fleets were observed
+   * @param occupied    how many of them had a hull on each cell, by key
+   * @return the table
+   */
+  static PlacementPriors learn( PlayerType learnedFrom, long fleets, long[] occupied )
+  {
+    double[] uniform = uniformOccupancy();
+    char[] weights = new char[CELLS];
+    for ( int key = 0; key < CELLS; key++ )
+    {
+      double expected = ( fleets + PSEUDO_FLEETS ) * uniform[key];
+      double weight = ( occupied[key] + PSEUDO_FLEETS * uniform[key] ) / expected;
+      weight = Math.max( FLOOR, Math.min( CEILING, weight ) );
+      weights[key] = (char) Math.round( weight * ONE );
+    }
+    return new PlacementPriors( weights, learnedFrom, fleets );
+  }
+
+  /**
+   * The chance that a fleet whose hulls are each moored uniformly at random,
+   * independently of one another, has a hull on each cell -- the occupancy
+   * the hunt maps assume.
+   *
+   * @return the chances, by cell key
+   */
+  static double[] uniformOccupancy()
+  {
+    int size = PlayerQuadrant.GRID_SIZE;
+    double[] open = new double[CELLS];
+    Arrays.fill( open, 1.0 );
+    for ( ShipType type : ShipType.getAscendingList() )
+    {
+      int length = type.getLength();
+      int[] covering = new int[CELLS];
+      int placements = 0;
+      for ( int a = 0; a < size; a++ )
+      {
+        for ( int b = 0; b + length <= size; b++ )
+        {
+          placements += 2;
+          for ( int i = 0; i < length; i++ )
+          {
+            covering[a * size + b + i]++;     // across row a
+            covering[( b + i ) * size + a]++; // down column a
+          }
+        }
+      }
+      for ( int key = 0; key < CELLS; key++ )
+        open[key] *= 1.0 - (double) covering[key] / placements;
+    }
+
+    double[] occupancy = new double[CELLS];
+    for ( int key = 0; key < CELLS; key++ )
+      occupancy[key] = 1.0 - open[key];
+    return occupancy;
+  }
+
+  /**
+   * Reads a compiled table.
+   *
+   * @param file the table
+   * @return the table
+   * @throws IOException if it cannot be read, or is not a sound table
+   */
+  public static PlacementPriors read( Path file ) throws IOException
+  {
+    return decode( Files.readAllBytes( file ) );
+  }
+
+  /**
+   * Writes the table in compiled form.
+   *
+   * @param file where to write it
+   * @throws IOException if it cannot be written
+   */
+  public void write( Path file ) throws IOException
+  {
+    Files.write( file, encode() );
+  }
+
+  /**
+   * The table in compiled form.
+   *
+   * @return the bytes
+   */
+  byte[] encode()
+  {
+    ByteBuffer buf = ByteBuffer.allocate( 4 + 1 + 1 + 8 + 2 * CELLS + 4 );
+    buf.putInt( MAGIC ).put( VERSION ).put( (byte) learnedFrom.ordinal() ).putLong( fleets );
+    for ( char weight : weights )
+      buf.putChar( weight );
+    buf.putInt( SaveFormat.crc( buf.array(), 5, buf.position() - 5 ) );
+    return buf.array();
+  }
+
+  /**
+   * Decodes a table in compiled form.
+   *
+   * @param bytes the bytes
+   * @return the table
+   * @throws IOException if they are not a sound table
+   */
+  static PlacementPriors decode( byte[] bytes ) throws IOException
+  {
+    if ( bytes.length != 4 + 1 + 1 + 8 + 2 * CELLS + 4 )
+      throw new IOException( "not a Seas of Yore placement table" );
+    ByteBuffer buf = ByteBuffer.wrap( bytes );
+    if ( buf.getInt() != MAGIC )
+      throw new IOException( "not a Seas of Yore placement table" );
+    if ( buf.get() != VERSION )
+      throw new IOException( "placement table version " + bytes[4] + " is not supported" );
+    if ( buf.getInt( bytes.length - 4 ) != SaveFormat.crc( bytes, 5, bytes.length - 9 ) )
+      throw new IOException( "checksum mismatch; the placement table is damaged" );
+
+    int kind = buf.get() & 0xFF;
+    if ( kind >= PlayerType.values().length )
+      throw new IOException( "unknown kind of player " + kind );
+    long fleets = buf.getLong();
+    char[] weights = new char[CELLS];
+    for ( int key = 0; key < CELLS; key++ )
+    {
+      weights[key] = buf.getChar();
+      if ( weights[key] < FLOOR * ONE || weights[key] > CEILING * ONE )
+        throw new IOException( "placement weight out of range" );
+    }
+    return new PlacementPriors( weights, PlayerType.values()[kind], fleets );
+  }
+
+  /**
+   * Learns a table from every replay under a directory and writes it: the
+   * offline half of the priors, run through {@link StrategyArena}. Copy the
+   * result to {@value #RESOURCE} under the sources to have the game play
+   * with it.
+   *
+   * @param dir         the corpus, searched recursively for replays
+   * @param out         where to write the table
+   * @param learnedFrom whose moorings to learn
+   * @throws IOException if the corpus cannot be listed or the table written
+   */
+  static void compile( Path dir, Path out, PlayerType learnedFrom ) throws IOException
+  {
+    ReplayAnalyzer.Tally tally = ReplayAnalyzer.tally( dir );
+    int k = learnedFrom.ordinal();
+    long fleets = tally.fleets[k];
+    PlacementPriors priors = learn( learnedFrom, fleets,
+        Arrays.copyOfRange( tally.occupied, k * CELLS, ( k + 1 ) * CELLS ) );
+    priors.write( out );
+
+    System.out.printf( "%d replays read, %d unreadable; %d %s fleets learned from%n",
+                       tally.replays, tally.unreadable, fleets, learnedFrom );
+    for ( int y = 0; y < PlayerQuadrant.GRID_SIZE; y++ )
+    {
+      StringBuilder row = new StringBuilder( "  " );
+      for ( int x = 0; x < PlayerQuadrant.GRID_SIZE; x++ )
+        row.append( String.format( Locale.ROOT, " %4.2f", priors.weight( x, y ) ) );
+      System.out.println( row );
+    }
+    System.out.printf( "  wrote %s%n", out );
+  }
+}
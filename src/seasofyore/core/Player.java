@@ -2,6 +2,7 @@ package seasofyore.core;
 
 import java.io.Serializable;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Represents a player in the Seas of Yore game, managing their fleet,
@@ -60,6 +61,12 @@ public abstract class Player implements Serializable
    */
   protected final PlayerQuadrant enemyQuad;
 
+  /**
+   * The autosave journal moorings are recorded in, or null. Attached by the
+   * board; never saved with the player.
+   */
+  transient MatchJournal journal;
+
   /**
    * Constructs a new Player with the specified civilization and quadrants.
    * 
@@ -176,6 +183,8 @@ public abstract class Player implements Serializable
     {
       fleet[ placedShips ] = vessel;
       locations[ placedShips++ ] = heading;
+      if ( journal != null )
+        journal.moored( civ, vessel.getShipType(), heading );
       return true;
     }
     return false;
@@ -190,6 +199,8 @@ public abstract class Player implements Serializable
     locations = new ShipHeading[FLEET_SIZE];  // re-initialize locations
     placedShips = 0;                          // set placedShips to 0
     friendlyQuad.eraseCells();                // reset friendly quadrant cells
+    if ( journal != null )
+      journal.cleared( civ );
   }
   
   /**
@@ -355,6 +366,7 @@ public abstract class Player implements Serializable
   
   /**
    * Randomizes the calling object's (Player) ship placement, placing all ships.
+   * Every legal fleet layout is equally likely; see {@link FleetSampler}.
    */
   public void randomVesselPlacement()
   {
@@ -362,10 +374,12 @@ public abstract class Player implements Serializable
     reset();
     friendlyQuad.eraseCells();
     
-    // while we haven't placed all our ships, attempt placing current ship with
-    //  a randomly generated ship heading. stop when all ships have been placed
-    while ( placedShips != 5 )
-      placeVessel( ships[placedShips], ShipHeading.getRandomInstance() );
+    // draw the whole fleet at once from the legal layouts, then moor it --
+    //  every heading is already known to fit, so no placement is refused
+    ShipHeading[] headings = FleetSampler.sampleFleet( ships, true,
+                                                       ThreadLocalRandom.current() );
+    for ( int i = 0; i < ships.length; i++ )
+      placeVessel( ships[i], headings[i] );
   }
   
  /**
@@ -45,6 +45,24 @@ public class PlayerFactory
   
   public static Player createAIPlayer( Civilization civ, PlayerQuadrant fQ, 
   /**********************************/ PlayerQuadrant eQ, AIDifficulty difficulty )
+  {
+    return createAIPlayer( civ, fQ, eQ, difficulty, AIParameters.DEFAULTS );
+  }
+
+  /**
+   * Creates an AI player of the given tier with non-default settings, as the
+   * arena's parameter tuner does.
+   *
+   * @param civ        the civilization the player will control
+   * @param fQ         the player's friendly quadrant
+   * @param eQ         the player's enemy quadrant
+   * @param difficulty the AI tier
+   * @param params     the settings for tiers that read them
+   * @return a suitably configured AIPlayer
+   */
+  public static Player createAIPlayer( Civilization civ, PlayerQuadrant fQ,
+                                       PlayerQuadrant eQ, AIDifficulty difficulty,
+                                       AIParameters params )
   {
     AIStrategy strategy;
     
@@ -54,20 +72,20 @@ public class PlayerFactory
         strategy = new EasyStrategy();
         break;
       case MEDIUM:
-        strategy = new MediumStrategy();
+        strategy = new MediumStrategy( params );
         break;
       case HARD:
         strategy = new HardStrategy();
         break;
       case EXTREME:
-        strategy = new ExtremeStrategy();
+        strategy = new ExtremeStrategy( params );
         break;
       default:
         strategy = new RandomGuessStrategy();
         break;
     }
 
-    return new AIPlayer( civ, fQ, eQ, strategy );
+    return new AIPlayer( civ, fQ, eQ, strategy, params );
   }
 
   public enum AIDifficulty
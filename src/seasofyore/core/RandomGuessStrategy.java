@@ -16,19 +16,35 @@ import java.util.Random;
  */
 public class RandomGuessStrategy implements AIStrategy
 {
+  /**
+   * Serialization version for saved games.
+   */
+  private static final long serialVersionUID = -7540097480033393799L;
+
   private final Random random = new Random();
   
+  /**
+   * Reseeds the random guesser.
+   *
+   * @param seed the seed
+   */
+  @Override
+  public void reseed(long seed)
+  {
+    random.setSeed(seed);
+  }
+  
   /**
    * Calculates a random ship placement.
    * 
    * @param ship     the ship to place
    * @param quadrant the quadrant to place the ship in
-   * @return a randomly generated ShipHeading
+   * @return a random legal ShipHeading, or null if the ship fits nowhere
    */
   @Override
   public ShipHeading calculateShipPlacement(Ship ship, PlayerQuadrant quadrant)
   {
-    return ShipHeading.getRandomInstance();
+    return FleetSampler.randomLegalHeading(ship, quadrant, random);
   }
   
   /**
@@ -0,0 +1,345 @@
+package seasofyore.core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Replays a {@link ScenarioCorpus} and compares the results, scenario by
+ * scenario, with a stored baseline from an earlier build. Because every
+ * scenario fixes both fleets, both seeds, and the first move, a scenario
+ * plays out identically until the code changes; the comparison is paired,
+ * and a few hundred scenarios detect changes that unpaired arena runs
+ * would need thousands of games to see.
+ *
+ * <p>Three things are checked, each with a two-sided test at the 5% level:
+ * </p>
+ * <ul>
+ *   <li><b>tierB's win rate</b> -- McNemar's test on the scenarios whose
+ *       winner changed. TierB is the side under scrutiny; tierA is the
+ *       sparring partner.</li>
+ *   <li><b>mean shots-to-victory</b> -- a paired t-test on the shots the
+ *       winner needed.</li>
+ *   <li><b>time per shot</b>, each side apart -- a paired t-test on the log
+ *       of each scenario's timing ratio. Timings are never identical twice,
+ *       so a slowdown is flagged only if it is also larger than
+ *       {@value #LATENCY_TOLERANCE} of the baseline.</li>
+ * </ul>
+ *
+ * <p>The results file is CSV after two header lines: a version line, and
+ * the rules the results were played under. A baseline is only ever
+ * compared with results played under the same rules.</p>
+ *
+ * @author dylan
+ */
+final class RegressionCheck
+{
+  /**
+   * The first line of every results file.
+   */
+  static final String HEADER = "seasofyore-results 1";
+
+  /**
+   * The column line that follows the rules line.
+   */
+  private static final String COLUMNS =
+      "id,a_won,winner_shots,winner_turns,a_ns_per_shot,b_ns_per_shot";
+
+  /**
+   * Two-sided 5% critical value of the standard normal.
+   */
+  private static final double Z_CRITICAL = 1.96;
+
+  /**
+   * The smallest relative slowdown in time per shot worth flagging.
+   */
+  private static final double LATENCY_TOLERANCE = 0.10;
+
+  /**
+   * One scenario's result.
+   */
+  static final class Result
+  {
+    final int id;
+    final boolean aWon;
+    final int winnerShots;
+    final int winnerTurns;
+    final double nsPerShotA;
+    final double nsPerShotB;
+
+    Result( int id, boolean aWon, int winnerShots, int winnerTurns,
+            double nsPerShotA, double nsPerShotB )
+    {
+      this.id = id;
+      this.aWon = aWon;
+      this.winnerShots = winnerShots;
+      this.winnerTurns = winnerTurns;
+      this.nsPerShotA = nsPerShotA;
+      this.nsPerShotB = nsPerShotB;
+    }
+  }
+
+  /**
+   * Not instantiable; driven from {@link StrategyArena#main}.
+   */
+  private RegressionCheck() {}
+
+  /**
+   * Replays a corpus. If the results file does not exist yet, the results
+   * become the baseline; otherwise they are compared with it, and written
+   * beside it with a {@code .candidate} suffix so they can be promoted.
+   *
+   * <p>Scenarios are replayed one at a time on this thread: the timings
+   * are part of what is compared, and sharing the machine with other games
+   * would blur them.</p>
+   *
+   * @param corpusPath   the corpus to replay
+   * @param resultsPath  the baseline results file
+   * @param tierA        side A's tier
+   * @param tierB        side B's tier, the one under scrutiny
+   * @param salvo        true for SALVO rules
+   * @return the number of regressions flagged
+   * @throws IOException if a file cannot be read or written
+   */
+  static int run( Path corpusPath, Path resultsPath, PlayerFactory.AIDifficulty tierA,
+                  PlayerFactory.AIDifficulty tierB, boolean salvo ) throws IOException
+  {
+    List<ScenarioCorpus.Scenario> scenarios = ScenarioCorpus.read( corpusPath );
+    String rules = "rules " + tierA + " " + tierB + " " + ( salvo ? "SALVO" : "CLASSIC" );
+
+    long startMs = System.currentTimeMillis();
+    List<Result> results = new ArrayList<>();
+    for ( ScenarioCorpus.Scenario s : scenarios )
+    {
+      StrategyArena.Outcome o = StrategyArena.playScenario( tierA, tierB, s, salvo,
+                                                            null, null );
+      results.add( new Result( s.id, o.aWon, o.winnerShots, o.winnerTurns,
+                               (double) o.nanosA / Math.max( 1, o.shotsA ),
+                               (double) o.nanosB / Math.max( 1, o.shotsB ) ) );
+    }
+    long elapsedMs = System.currentTimeMillis() - startMs;
+
+    System.out.printf( "Replayed %d scenarios of %s -- %s (%.1fs)%n",
+                       results.size(), corpusPath, rules.substring( 6 ),
+                       elapsedMs / 1000.0 );
+
+    if ( !Files.exists( resultsPath ) )
+    {
+      write( resultsPath, rules, results );
+      System.out.printf( "  no baseline yet: recorded %s%n", resultsPath );
+      return 0;
+    }
+
+    Map<Integer, Result> baseline = read( resultsPath, rules );
+    Path candidatePath = resultsPath.resolveSibling( resultsPath.getFileName() + ".candidate" );
+    write( candidatePath, rules, results );
+    int regressions = compare( baseline, results, tierA, tierB );
+    System.out.printf( "  %d regression(s) flagged; these results are in %s%n",
+                       regressions, candidatePath );
+    return regressions;
+  }
+
+  /**
+   * Compares paired results and prints one line per check.
+   *
+   * @param baseline  the baseline, by scenario id
+   * @param results   the new results
+   * @param tierA     side A's tier
+   * @param tierB     side B's tier
+   * @return the number of regressions flagged
+   */
+  private static int compare( Map<Integer, Result> baseline, List<Result> results,
+                              PlayerFactory.AIDifficulty tierA,
+                              PlayerFactory.AIDifficulty tierB )
+  {
+    List<Result[]> pairs = new ArrayList<>();
+    for ( Result r : results )
+    {
+      Result b = baseline.get( r.id );
+      if ( b != null )
+        pairs.add( new Result[] { b, r } );
+    }
+    if ( pairs.size() < results.size() || pairs.size() < baseline.size() )
+      System.out.printf( "  warning: only %d scenarios appear in both runs%n", pairs.size() );
+    if ( pairs.isEmpty() )
+      return 0;
+
+    int regressions = 0;
+    int n = pairs.size();
+
+    // win rate: only scenarios whose winner changed carry information
+    int lost = 0;
+    int gained = 0;
+    int baseWins = 0;
+    int newWins = 0;
+    for ( Result[] p : pairs )
+    {
+      if ( !p[0].aWon )
+        baseWins++;
+      if ( !p[1].aWon )
+        newWins++;
+      if ( !p[0].aWon && p[1].aWon )
+        lost++;
+      else if ( p[0].aWon && !p[1].aWon )
+        gained++;
+    }
+    double z = ( lost + gained == 0 ) ? 0.0 : ( gained - lost ) / Math.sqrt( lost + gained );
+    regressions += flag( z < -Z_CRITICAL, z > Z_CRITICAL,
+        String.format( "%s win rate   %5.1f%% -> %5.1f%%  (%d won, %d lost; z %+.2f)",
+                       tierB, 100.0 * baseWins / n, 100.0 * newWins / n, gained, lost, z ) );
+
+    // shots-to-victory: longer games mean the winners hunt worse
+    double[] shots = new double[n];
+    double baseShots = 0.0;
+    double newShots = 0.0;
+    for ( int i = 0; i < n; i++ )
+    {
+      shots[i] = pairs.get( i )[1].winnerShots - pairs.get( i )[0].winnerShots;
+      baseShots += pairs.get( i )[0].winnerShots;
+      newShots += pairs.get( i )[1].winnerShots;
+    }
+    double t = pairedT( shots );
+    regressions += flag( t > Z_CRITICAL, t < -Z_CRITICAL,
+        String.format( "shots-to-victory %6.2f -> %6.2f  (t %+.2f)",
+                       baseShots / n, newShots / n, t ) );
+
+    // time per shot, compared as log ratios so fast and slow scenarios
+    // weigh alike
+    for ( int side = 0; side < 2; side++ )
+    {
+      double[] logRatio = new double[n];
+      double meanLog = 0.0;
+      for ( int i = 0; i < n; i++ )
+      {
+        Result b = pairs.get( i )[0];
+        Result c = pairs.get( i )[1];
+        double before = ( side == 0 ) ? b.nsPerShotA : b.nsPerShotB;
+        double after = ( side == 0 ) ? c.nsPerShotA : c.nsPerShotB;
+        logRatio[i] = Math.log( Math.max( 1.0, after ) / Math.max( 1.0, before ) );
+        meanLog += logRatio[i] / n;
+      }
+      double change = Math.exp( meanLog ) - 1.0;
+      double tl = pairedT( logRatio );
+      regressions += flag( tl > Z_CRITICAL && change > LATENCY_TOLERANCE,
+                           tl < -Z_CRITICAL && change < -LATENCY_TOLERANCE,
+          String.format( "%-8s %s time/shot %+6.1f%%  (t %+.2f)",
+                         ( side == 0 ) ? tierA : tierB, side == 0 ? "(A)" : "(B)",
+                         100.0 * change, tl ) );
+    }
+    return regressions;
+  }
+
+  /**
+   * Prints one check's line with its verdict.
+   *
+   * @param worse  whether the check found a significant regression
+   * @param better whether it found a significant improvement
+   * @param line   the description
+   * @return 1 for a regression, otherwise 0
+   */
+  private static int flag( boolean worse, boolean better, String line )
+  {
+    String verdict = worse ? "REGRESSION" : better ? "improved" : "no significant change";
+    System.out.printf( "  %-52s %s%n", line, verdict );
+    return worse ? 1 : 0;
+  }
+
+  /**
+   * The paired t statistic of a set of differences: their mean over its
+   * standard error. Zero when there is no spread at all -- identical runs
+   * differ in nothing.
+   *
+   * @param d the per-scenario differences
+   * @return the t statistic
+   */
+  private static double pairedT( double[] d )
+  {
+    int n = d.length;
+    if ( n < 2 )
+      return 0.0;
+    double mean = 0.0;
+    for ( double v : d )
+      mean += v / n;
+    double ss = 0.0;
+    for ( double v : d )
+      ss += ( v - mean ) * ( v - mean );
+    double se = Math.sqrt( ss / ( n - 1 ) / n );
+    return ( se == 0.0 ) ? 0.0 : mean / se;
+  }
+
+  /**
+   * Writes a results file.
+   *
+   * @param path    the file to write
+   * @param rules   the rules line
+   * @param results the results
+   * @throws IOException if the file cannot be written
+   */
+  private static void write( Path path, String rules, List<Result> results ) throws IOException
+  {
+    try ( PrintWriter out = new PrintWriter(
+            Files.newBufferedWriter( path, StandardCharsets.UTF_8 ) ) )
+    {
+      out.println( HEADER );
+      out.println( rules );
+      out.println( COLUMNS );
+      for ( Result r : results )
+      {
+        out.printf( Locale.ROOT, "%d,%d,%d,%d,%.0f,%.0f%n", r.id, r.aWon ? 1 : 0,
+                    r.winnerShots, r.winnerTurns, r.nsPerShotA, r.nsPerShotB );
+      }
+    }
+  }
+
+  /**
+   * Reads a results file, insisting it was played under the given rules.
+   *
+   * @param path  the file to read
+   * @param rules the expected rules line
+   * @return the results, by scenario id
+   * @throws IOException if the file cannot be read, is malformed, or was
+   *                     played under other rules
+   */
+  private static Map<Integer, Result> read( Path path, String rules ) throws IOException
+  {
+    Map<Integer, Result> results = new LinkedHashMap<>();
+    try ( BufferedReader in = Files.newBufferedReader( path, StandardCharsets.UTF_8 ) )
+    {
+      if ( !HEADER.equals( in.readLine() ) )
+        throw new IOException( path + " is not an arena results file" );
+      String theirs = in.readLine();
+      if ( !rules.equals( theirs ) )
+        throw new IOException( path + " was played under \"" + theirs
+                             + "\", not \"" + rules + "\"" );
+      in.readLine(); // column names
+
+      String line;
+      while ( ( line = in.readLine() ) != null )
+      {
+        if ( line.trim().isEmpty() )
+          continue;
+        String[] f = line.split( "," );
+        try
+        {
+          results.put( Integer.parseInt( f[0] ),
+                       new Result( Integer.parseInt( f[0] ), f[1].equals( "1" ),
+                                   Integer.parseInt( f[2] ), Integer.parseInt( f[3] ),
+                                   Double.parseDouble( f[4] ), Double.parseDouble( f[5] ) ) );
+        }
+        catch ( RuntimeException e )
+        {
+          throw new IOException( path + ": bad line: " + line, e );
+        }
+      }
+    }
+    return results;
+  }
+}
@@ -0,0 +1,426 @@
+package seasofyore.core;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Aggregate statistics over a corpus of {@link MatchReplay} files: where
+ * each kind of commander moors its hulls, how many shots each needs for its
+ * first hit, and how many to sink each hull and the whole fleet.
+ *
+ * <p>The corpus is streamed. Each file is memory-mapped, checked against
+ * its checksum, and walked in place -- no replay object, keyframes, or
+ * shot array is built -- into a per-thread tally, and the tallies of a
+ * parallel stream are merged at the end. Thousands of replays take well
+ * under a second.</p>
+ *
+ * <p>Shot counts are the firing side's own shots. Replays of resumed
+ * matches, whose opening shots came in no recorded order, count towards
+ * placement only; so do fleets the recording side never saw.</p>
+ *
+ * <p>Writes {@code <prefix>-placement.csv} (per kind of player, the share
+ * of its fleets with a hull on each cell, one grid row per line),
+ * {@code <prefix>-first-hit.csv} (per kind of player, how many games first
+ * struck on each shot), and {@code <prefix>-sink.csv} (per kind of player
+ * and hull, mean shots to sink).</p>
+ *
+ * @author dylan
+ */
+final class ReplayAnalyzer
+{
+  /**
+   * Cells in one quadrant.
+   */
+  private static final int CELLS = PlayerQuadrant.GRID_SIZE * PlayerQuadrant.GRID_SIZE;
+
+  /**
+   * The standard fleet's size.
+   */
+  private static final int FLEET = ShipType.values().length;
+
+  /**
+   * Kinds of player tallied apart.
+   */
+  private static final int TYPES = PlayerType.values().length;
+
+  /**
+   * Not instantiable; run through {@link StrategyArena}.
+   */
+  private ReplayAnalyzer() {}
+
+  /**
+   * Analyzes every replay under a directory and writes the three CSV files.
+   *
+   * @param dir    the corpus, searched recursively for replays
+   * @param prefix the path prefix for the CSV files
+   * @throws IOException if the corpus cannot be listed or a CSV written
+   */
+  static void run( Path dir, String prefix ) throws IOException
+  {
+    long startNanos = System.nanoTime();
+    Tally total = tally( dir );
+    long elapsedMs = ( System.nanoTime() - startNanos ) / 1_000_000L;
+
+    System.out.printf( "%d replays analyzed, %d shots, %d unreadable, in %d ms%n",
+                       total.replays, total.shots, total.unreadable, elapsedMs );
+    report( total );
+
+    writePlacement( prefix + "-placement.csv", total );
+    writeFirstHit( prefix + "-first-hit.csv", total );
+    writeSink( prefix + "-sink.csv", total );
+    System.out.printf( "  wrote %s-placement.csv, %s-first-hit.csv and %s-sink.csv%n",
+                       prefix, prefix, prefix );
+  }
+
+  /**
+   * Walks every replay under a directory into one tally.
+   *
+   * @param dir the corpus, searched recursively for replays
+   * @return the totals
+   * @throws IOException if the corpus cannot be listed
+   */
+  static Tally tally( Path dir ) throws IOException
+  {
+    List<Path> files;
+    try ( Stream<Path> walk = Files.walk( dir ) )
+    {
+      files = walk.filter( p -> p.toString().endsWith( "." + MatchReplay.FILE_EXTENSION ) )
+                  .collect( Collectors.toList() );
+    }
+    return files.parallelStream().collect( Tally::new, Tally::add, Tally::merge );
+  }
+
+  /**
+   * Running totals over part of the corpus, with the scratch space to walk
+   * one replay at a time. One per thread of the parallel stream.
+   */
+  static final class Tally
+  {
+    /** Replays walked. */
+    long replays;
+    /** Files that could not be read, or failed their checks. */
+    long unreadable;
+    /** Shots walked, prologues included. */
+    long shots;
+
+    /** Fleets seen, by kind of player. */
+    final long[] fleets = new long[TYPES];
+    /** Fleets with a hull on each cell, by kind of player * CELLS + key. */
+    final long[] occupied = new long[TYPES * CELLS];
+
+    /** Games first striking on each own shot, by kind * (CELLS + 1) + shot. */
+    final long[] firstHit = new long[TYPES * ( CELLS + 1 )];
+
+    /** Hulls sunk, by kind of attacker * FLEET + hull type. */
+    final long[] sunk = new long[TYPES * FLEET];
+    /** Own shots taken to sink them, summed likewise. */
+    final long[] sinkShots = new long[TYPES * FLEET];
+    /** Whole fleets sunk, by kind of attacker. */
+    final long[] fleetsSunk = new long[TYPES];
+    /** Own shots taken to sink them. */
+    final long[] fleetShots = new long[TYPES];
+
+    // -- scratch for the replay being walked
+    /** Each side's hull on each cell, by side * CELLS + key; -1 for none. */
+    private final byte[] hullAt = new byte[2 * CELLS];
+    /** Each side's hull types, ascending order, by side * FLEET + hull. */
+    private final byte[] hullType = new byte[2 * FLEET];
+    /** Hull lengths, by side * FLEET + hull. */
+    private final byte[] hullLength = new byte[2 * FLEET];
+    /** Hits taken, by side * FLEET + hull. */
+    private final byte[] hits = new byte[2 * FLEET];
+    /** Known hulls per side. */
+    private final int[] hullCount = new int[2];
+    /** Kind of player per side. */
+    private final int[] type = new int[2];
+
+    /**
+     * Walks one replay file into the totals.
+     *
+     * @param file the replay
+     */
+    void add( Path file )
+    {
+      try ( FileChannel channel = FileChannel.open( file, StandardOpenOption.READ ) )
+      {
+        MappedByteBuffer map = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+        if ( !walk( map ) )
+          unreadable++;
+      }
+      catch ( IOException | RuntimeException e )
+      {
+        unreadable++;
+      }
+    }
+
+    /**
+     * Checks and walks one replay's bytes.
+     *
+     * @param buf the file contents
+     * @return false if they are not a valid replay; nothing is tallied then
+     */
+    private boolean walk( ByteBuffer buf )
+    {
+      int size = buf.limit();
+      if ( size < 9 || buf.getInt( 0 ) != MatchReplay.MAGIC
+           || buf.get( 4 ) != MatchReplay.VERSION )
+        return false;
+      ByteBuffer body = buf.duplicate();
+      body.position( 5 );
+      body.limit( size - 4 );
+      CRC32 crc = new CRC32();
+      crc.update( body );
+      if ( (int) crc.getValue() != buf.getInt( size - 4 ) )
+        return false;
+
+      buf.position( 7 );   // past the flags and the winner
+      Arrays.fill( hullAt, (byte) -1 );
+      Arrays.fill( hits, (byte) 0 );
+      for ( int side = 0; side < 2; side++ )
+      {
+        type[side] = buf.get() & 0xFF;
+        int nameLength = buf.getShort() & 0xFFFF;
+        buf.position( buf.position() + nameLength );   // the name is not needed
+        hullCount[side] = buf.get() & 0xFF;
+        for ( int h = 0; h < hullCount[side]; h++ )
+        {
+          int t = buf.get();
+          int[] cells = MatchReplay.cellsOf( t, buf.get() & 0xFF, buf.get() );
+          hullType[side * FLEET + h] = (byte) t;
+          hullLength[side * FLEET + h] = (byte) cells.length;
+          for ( int key : cells )
+            hullAt[side * CELLS + key] = (byte) h;
+        }
+      }
+      int prologue = buf.getShort() & 0xFFFF;
+      int count = buf.getShort() & 0xFFFF;
+      if ( buf.remaining() != count * 2 + 4 )
+        return false;
+
+      replays++;
+      shots += count;
+      for ( int side = 0; side < 2; side++ )
+      {
+        if ( hullCount[side] == 0 )
+          continue;
+        fleets[type[side]]++;
+        for ( int key = 0; key < CELLS; key++ )
+          if ( hullAt[side * CELLS + key] >= 0 )
+            occupied[type[side] * CELLS + key]++;
+      }
+      if ( prologue > 0 )
+        return true;
+
+      int[] fired = new int[2];
+      boolean[] struck = new boolean[2];
+      int[] lost = new int[2];
+      for ( int i = 0; i < count; i++ )
+      {
+        int shot = buf.getShort();
+        int shooter = ( shot >> 9 ) & 1;
+        int target = 1 - shooter;
+        int kind = type[shooter];
+        fired[shooter]++;
+        if ( ( shot & 0x100 ) == 0 )
+          continue;
+
+        if ( !struck[shooter] )
+        {
+          struck[shooter] = true;
+          firstHit[kind * ( CELLS + 1 ) + Math.min( fired[shooter], CELLS )]++;
+        }
+        int key = ( shot & 15 ) * PlayerQuadrant.GRID_SIZE + ( ( shot >> 4 ) & 15 );
+        int h = hullAt[target * CELLS + key];
+        if ( h < 0 )
+          continue;
+        if ( ++hits[target * FLEET + h] == hullLength[target * FLEET + h] )
+        {
+          sunk[kind * FLEET + hullType[target * FLEET + h]]++;
+          sinkShots[kind * FLEET + hullType[target * FLEET + h]] += fired[shooter];
+          if ( ++lost[target] == FLEET )
+          {
+            fleetsSunk[kind]++;
+            fleetShots[kind] += fired[shooter];
+          }
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Adds another thread's totals into these.
+     *
+     * @param other the other tally
+     */
+    void merge( Tally other )
+    {
+      replays += other.replays;
+      unreadable += other.unreadable;
+      shots += other.shots;
+      addInto( fleets, other.fleets );
+      addInto( occupied, other.occupied );
+      addInto( firstHit, other.firstHit );
+      addInto( sunk, other.sunk );
+      addInto( sinkShots, other.sinkShots );
+      addInto( fleetsSunk, other.fleetsSunk );
+      addInto( fleetShots, other.fleetShots );
+    }
+
+    /**
+     * Adds one array into another, element by element.
+     *
+     * @param into the array added to
+     * @param from the array added
+     */
+    private static void addInto( long[] into, long[] from )
+    {
+      for ( int i = 0; i < into.length; i++ )
+        into[i] += from[i];
+    }
+  }
+
+  /**
+   * Prints the human placement heatmap and each kind's mean first hit and
+   * shots to sink a fleet.
+   *
+   * @param t the totals
+   */
+  private static void report( Tally t )
+  {
+    int human = PlayerType.HUMAN.ordinal();
+    if ( t.fleets[human] > 0 )
+    {
+      System.out.printf( "  human moorings over %d fleets, %% with a hull on each cell:%n",
+                         t.fleets[human] );
+      for ( int y = 0; y < PlayerQuadrant.GRID_SIZE; y++ )
+      {
+        StringBuilder row = new StringBuilder( "   " );
+        for ( int x = 0; x < PlayerQuadrant.GRID_SIZE; x++ )
+          row.append( String.format( Locale.ROOT, " %3.0f",
+              100.0 * t.occupied[human * CELLS + y * PlayerQuadrant.GRID_SIZE + x]
+                    / t.fleets[human] ) );
+        System.out.println( row );
+      }
+    }
+
+    System.out.println( "  by kind of attacker: mean own shots to first hit; to sink a fleet" );
+    for ( PlayerType type : PlayerType.values() )
+    {
+      int k = type.ordinal();
+      long games = 0;
+      long sum = 0;
+      for ( int s = 1; s <= CELLS; s++ )
+      {
+        games += t.firstHit[k * ( CELLS + 1 ) + s];
+        sum += s * t.firstHit[k * ( CELLS + 1 ) + s];
+      }
+      if ( games == 0 )
+        continue;
+      System.out.printf( Locale.ROOT, "    %-10s first hit %5.1f   fleet sunk %s%n", type,
+                         (double) sum / games, ( t.fleetsSunk[k] == 0 ) ? "    -"
+                         : String.format( Locale.ROOT, "%5.1f",
+                                          (double) t.fleetShots[k] / t.fleetsSunk[k] ) );
+    }
+  }
+
+  /**
+   * Writes the placement heatmaps: per kind of player with fleets seen,
+   * one line per grid row.
+   *
+   * @param path the file to write
+   * @param t    the totals
+   * @throws IOException if the file cannot be written
+   */
+  private static void writePlacement( String path, Tally t ) throws IOException
+  {
+    try ( PrintWriter out = new PrintWriter(
+            Files.newBufferedWriter( Paths.get( path ), StandardCharsets.UTF_8 ) ) )
+    {
+      out.print( "type,fleets,y" );
+      for ( int x = 0; x < PlayerQuadrant.GRID_SIZE; x++ )
+        out.print( ",x" + x );
+      out.println();
+      for ( PlayerType type : PlayerType.values() )
+      {
+        int k = type.ordinal();
+        if ( t.fleets[k] == 0 )
+          continue;
+        for ( int y = 0; y < PlayerQuadrant.GRID_SIZE; y++ )
+        {
+          out.print( type + "," + t.fleets[k] + "," + y );
+          for ( int x = 0; x < PlayerQuadrant.GRID_SIZE; x++ )
+            out.printf( Locale.ROOT, ",%.4f",
+                (double) t.occupied[k * CELLS + y * PlayerQuadrant.GRID_SIZE + x] / t.fleets[k] );
+          out.println();
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes the first-hit distributions: per kind of attacker, how many
+   * games first struck on each of its own shots.
+   *
+   * @param path the file to write
+   * @param t    the totals
+   * @throws IOException if the file cannot be written
+   */
+  private static void writeFirstHit( String path, Tally t ) throws IOException
+  {
+    try ( PrintWriter out = new PrintWriter(
+            Files.newBufferedWriter( Paths.get( path ), StandardCharsets.UTF_8 ) ) )
+    {
+      out.println( "type,shot,games" );
+      for ( PlayerType type : PlayerType.values() )
+        for ( int s = 1; s <= CELLS; s++ )
+        {
+          long games = t.firstHit[type.ordinal() * ( CELLS + 1 ) + s];
+          if ( games > 0 )
+            out.println( type + "," + s + "," + games );
+        }
+    }
+  }
+
+  /**
+   * Writes shots to sink: per kind of attacker, each hull type and then the
+   * whole fleet, with how many were sunk and the mean own shots it took.
+   *
+   * @param path the file to write
+   * @param t    the totals
+   * @throws IOException if the file cannot be written
+   */
+  private static void writeSink( String path, Tally t ) throws IOException
+  {
+    try ( PrintWriter out = new PrintWriter(
+            Files.newBufferedWriter( Paths.get( path ), StandardCharsets.UTF_8 ) ) )
+    {
+      out.println( "type,hull,sunk,mean_shots" );
+      for ( PlayerType type : PlayerType.values() )
+      {
+        int k = type.ordinal();
+        for ( int h = 0; h < FLEET; h++ )
+          if ( t.sunk[k * FLEET + h] > 0 )
+            out.printf( Locale.ROOT, "%s,%s,%d,%.2f%n", type, ShipType.getAscendingList()[h],
+                        t.sunk[k * FLEET + h],
+                        (double) t.sinkShots[k * FLEET + h] / t.sunk[k * FLEET + h] );
+        if ( t.fleetsSunk[k] > 0 )
+          out.printf( Locale.ROOT, "%s,FLEET,%d,%.2f%n", type, t.fleetsSunk[k],
+                      (double) t.fleetShots[k] / t.fleetsSunk[k] );
+      }
+    }
+  }
+}
@@ -0,0 +1,160 @@
+package seasofyore.core;
+
+import java.util.Arrays;
+
+/**
+ * Records a match as it is played, for a {@link MatchReplay}. During the
+ * battle it only notes where each shot went -- two bytes apiece, cheap
+ * enough for every shot of every match. Whether each shot struck, and
+ * where the fleets lay, are read off the boards when the match ends,
+ * which works the same whether the defender's fleet is in this JVM or
+ * across the water.
+ *
+ * @author dylan
+ */
+public final class ReplayRecorder
+{
+  /**
+   * The Britons' player.
+   */
+  private final Player britons;
+
+  /**
+   * The Franks' player.
+   */
+  private final Player franks;
+
+  /**
+   * The kind of player on each side, Britons first.
+   */
+  private final PlayerType[] types;
+
+  /**
+   * Whether the match uses SALVO rules.
+   */
+  private final boolean salvoMode;
+
+  /**
+   * The shots so far, prologue first, packed as in a replay but without
+   * the hit flag, which is filled in at the end.
+   */
+  private short[] shots = new short[64];
+
+  /**
+   * How many shots have been noted.
+   */
+  private int count = 0;
+
+  /**
+   * How many of the shots were already on the boards when recording began.
+   */
+  private final int prologue;
+
+  /**
+   * Starts recording a match between two players. Cells already fired upon
+   * -- a match resumed from a save -- become the replay's prologue.
+   *
+   * @param britons     the Britons' player
+   * @param britonsType the Britons' kind of player
+   * @param franks      the Franks' player
+   * @param franksType  the Franks' kind of player
+   * @param salvoMode   true for SALVO rules
+   */
+  ReplayRecorder( Player britons, PlayerType britonsType,
+                  Player franks, PlayerType franksType, boolean salvoMode )
+  {
+    this.britons = britons;
+    this.franks = franks;
+    this.types = new PlayerType[] { britonsType, franksType };
+    this.salvoMode = salvoMode;
+
+    // the Franks fire upon the Britons' board, and the Britons upon the Franks'
+    for ( int y = 0; y < PlayerQuadrant.GRID_SIZE; y++ )
+      for ( int x = 0; x < PlayerQuadrant.GRID_SIZE; x++ )
+        if ( britons.getFriendlyQuad().cellIsFired( x, y ) )
+          shot( Civilization.FRANKS, x, y );
+    for ( int y = 0; y < PlayerQuadrant.GRID_SIZE; y++ )
+      for ( int x = 0; x < PlayerQuadrant.GRID_SIZE; x++ )
+        if ( franks.getFriendlyQuad().cellIsFired( x, y ) )
+          shot( Civilization.BRITONS, x, y );
+    this.prologue = count;
+  }
+
+  /**
+   * Starts recording a match and attaches the recorder to its board, so
+   * that every shot the board hears of is noted.
+   *
+   * @param board     the match
+   * @param salvoMode true for SALVO rules
+   * @return the recorder
+   */
+  public static ReplayRecorder begin( Board board, boolean salvoMode )
+  {
+    ReplayRecorder recorder = new ReplayRecorder(
+        board.getBritons(), board.getBritonsType(),
+        board.getFranks(), board.getFranksType(), salvoMode );
+    board.setReplayRecorder( recorder );
+    return recorder;
+  }
+
+  /**
+   * Notes a shot.
+   *
+   * @param shooter the civilization that fired
+   * @param x       the x-coordinate on the enemy's board
+   * @param y       the y-coordinate on the enemy's board
+   */
+  void shot( Civilization shooter, int x, int y )
+  {
+    if ( count == shots.length )
+      shots = Arrays.copyOf( shots, count * 2 );
+    shots[count++] = (short) ( MatchReplay.side( shooter ) << 9 | x << 4 | y );
+  }
+
+  /**
+   * Ends the recording, reading every shot's verdict and both fleets off
+   * the boards. Call it before the boards are reset.
+   *
+   * @param winner the civilization that won, or null if none did
+   * @return the replay
+   */
+  public MatchReplay finish( Civilization winner )
+  {
+    short[] resolved = Arrays.copyOf( shots, count );
+    for ( int i = 0; i < count; i++ )
+    {
+      Player target = ( ( ( resolved[i] >> 9 ) & 1 ) == 0 ) ? franks : britons;
+      if ( target.getFriendlyQuad().cellIsHit( ( resolved[i] >> 4 ) & 15, resolved[i] & 15 ) )
+        resolved[i] |= 0x100;
+    }
+
+    String[] names = { britons.getName(), franks.getName() };
+    byte[][] hulls = { hulls( britons ), hulls( franks ) };
+    return new MatchReplay( types, names, salvoMode, winner, hulls, prologue, resolved );
+  }
+
+  /**
+   * A player's hulls as a replay stores them; none for a fleet this side
+   * never saw, or one not yet fully moored.
+   *
+   * @param player the player
+   * @return three bytes per hull
+   */
+  private static byte[] hulls( Player player )
+  {
+    if ( player instanceof RemotePlayer || !player.hasPlacedAllShips() )
+      return new byte[0];
+
+    Ship[] fleet = player.getFleet();
+    byte[] stored = new byte[fleet.length * 3];
+    for ( int i = 0; i < fleet.length; i++ )
+    {
+      ShipHeading heading = player.getShipLocations()[i];
+      stored[i * 3] = (byte) SaveFormat.indexOf( ShipType.getAscendingList(),
+                                                 fleet[i].getShipType() );
+      stored[i * 3 + 1] = (byte) ( heading.getRear()[0] << 4 | heading.getRear()[1] );
+      stored[i * 3 + 2] = (byte) heading.getDirection().ordinal();
+    }
+    return stored;
+  }
+}
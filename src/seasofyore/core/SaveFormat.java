@@ -0,0 +1,686 @@
+package seasofyore.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * The binary layout of a saved match. Where Java serialization wrote the
+ * whole object graph -- every Ship's decks, both int grids, each strategy
+ * with its boxed collections and Random -- this stores only what cannot be
+ * rebuilt: who is playing, where their hulls lie, each quadrant packed two
+ * bits to a cell, whose turn it is, and what each AI has learned. Ship
+ * decks follow from the quadrants, and everything else from a fresh
+ * {@link Board} of the same kinds of players. A match between two AIs is
+ * about 250 bytes, and nothing in it depends on a class's serialized shape.
+ *
+ * <p>Ahead of the match itself sits a short header -- who is playing,
+ * the rules, the turn, hulls afloat, when it was saved, and a thumbnail of
+ * both boards -- which {@link #readSummary} reads without touching the rest,
+ * so a directory of saves can be listed at a glance.</p>
+ *
+ * <p>Layout, big-endian:</p>
+ * <pre>
+ * int    magic "YORE"
+ * byte   version
+ * ---    covered by the checksum
+ * short  header length, then the header:
+ *   long   saved at, in epoch milliseconds
+ *   byte   Britons' and Franks' PlayerType, by declaration order
+ *   byte   flags: 1 SALVO rules
+ *   short  battle turn
+ *   byte   Britons' and Franks' hulls afloat
+ *   UTF    Britons' and Franks' names, at most 32 characters, empty if none
+ *   byte[] Britons' and Franks' thumbnails, 2 bits per cell in key order:
+ *          0 unfired, 1 miss, 2 hit, 3 sunk -- never an unstruck hull
+ * byte   flags: 1 SALVO rules, 2 setup phase, 4 Franks to move
+ * byte   shots already fired this turn
+ * short  battle turn
+ * side   the Britons, then the Franks:
+ *   byte   PlayerType, by declaration order
+ *   bool   named, then the name as modified UTF-8 if so
+ *   byte   hulls placed, then per hull in fleet order: ShipType (ascending
+ *          order), rear x &lt;&lt; 4 | rear y, Direction (declaration order)
+ *   byte[] the friendly quadrant, 2 bits per cell in key order:
+ *          0 water, 1 ship, 2 hit, 3 miss
+ *   byte   remote flags: 1 fleet ready, 2 defeated
+ *   bool   whether targeting state follows; if so, the enemy hulls still
+ *          afloat as a count and one length byte each, then the sunk cells
+ *          as a 128-bit mask, low long first
+ * ---
+ * int    CRC-32 of everything after the version
+ * </pre>
+ *
+ * <p>Version 1 had neither header nor turn; such saves still load.</p>
+ *
+ * @author dylan
+ */
+final class SaveFormat
+{
+  /**
+   * The first four bytes of every binary save: "YORE".
+   */
+  static final int MAGIC = 0x594F5245;
+
+  /**
+   * The layout version this build writes.
+   */
+  static final int VERSION = 2;
+
+  /**
+   * The characters of each name the header keeps.
+   */
+  private static final int HEADER_NAME = 32;
+
+  /**
+   * Cells on one quadrant.
+   */
+  private static final int CELLS = PlayerQuadrant.GRID_SIZE * PlayerQuadrant.GRID_SIZE;
+
+  /**
+   * Bytes in one packed quadrant.
+   */
+  private static final int PACKED_QUAD = ( CELLS * 2 + 7 ) / 8;
+
+  /**
+   * The quadrant cell values, indexed by their 2-bit code.
+   */
+  private static final int[] CELL_VALUES = {
+    PlayerQuadrant.WATER_CELL, PlayerQuadrant.SHIP_CELL,
+    PlayerQuadrant.HIT_CELL, PlayerQuadrant.MISS_CELL
+  };
+
+  /**
+   * Not instantiable; an encoder and decoder of saved matches.
+   */
+  private SaveFormat() {}
+
+  /**
+   * Encodes a match.
+   *
+   * @param match the match
+   * @return the complete file contents
+   */
+  static byte[] encode( SavedMatch match )
+  {
+    Board board = match.getBoard();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream( 256 );
+    try ( DataOutputStream out = new DataOutputStream( bytes ) )
+    {
+      out.writeInt( MAGIC );
+      out.writeByte( VERSION );
+
+      byte[] header = encodeHeader( match );
+      out.writeShort( header.length );
+      out.write( header );
+
+      int flags = ( match.isSalvoMode() ? 1 : 0 ) | ( board.isSetupPhase() ? 2 : 0 )
+                | ( board.getCurrentPlayer() == board.getFranks() ? 4 : 0 );
+      out.writeByte( flags );
+      out.writeByte( board.getShotsFiredThisTurn() );
+      out.writeShort( board.getTurnNumber() );
+      writeSide( out, board.getBritonsType(), board.getBritons() );
+      writeSide( out, board.getFranksType(), board.getFranks() );
+    }
+    catch ( IOException e )
+    {
+      throw new IllegalStateException( "in-memory write failed", e ); // cannot happen
+    }
+
+    byte[] body = bytes.toByteArray();
+    byte[] file = new byte[body.length + 4];
+    System.arraycopy( body, 0, file, 0, body.length );
+    int crc = crc( body, 5, body.length - 5 );
+    for ( int i = 0; i < 4; i++ )
+      file[body.length + i] = (byte) ( crc >>> ( 24 - 8 * i ) );
+    return file;
+  }
+
+  /**
+   * Replaces a file's contents all at once: the bytes go to a temporary
+   * file beside it, are forced to disk, and the temporary file is renamed
+   * over the target. A crash at any point leaves either the old file or
+   * the new one, never a torn mixture. Where the filesystem cannot rename
+   * atomically the temporary file simply replaces the target; whatever
+   * fails, the temporary file is not left behind.
+   *
+   * @param file  the file to write
+   * @param bytes its new contents
+   * @throws IOException if the file cannot be written
+   */
+  static void writeAtomically( Path file, byte[] bytes ) throws IOException
+  {
+    Path temp = file.resolveSibling( file.getFileName() + ".tmp" );
+    try
+    {
+      try ( FileChannel out = FileChannel.open( temp, StandardOpenOption.CREATE,
+                                                StandardOpenOption.TRUNCATE_EXISTING,
+                                                StandardOpenOption.WRITE ) )
+      {
+        ByteBuffer buffer = ByteBuffer.wrap( bytes );
+        while ( buffer.hasRemaining() )
+          out.write( buffer );
+        out.force( true );
+      }
+      try
+      {
+        Files.move( temp, file, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE );
+      }
+      catch ( AtomicMoveNotSupportedException e )
+      {
+        // -- some filesystems cannot rename atomically; a plain replace
+        //    is the best they offer, and the bytes are already on disk
+        Files.move( temp, file, StandardCopyOption.REPLACE_EXISTING );
+      }
+    }
+    catch ( IOException | RuntimeException e )
+    {
+      Files.deleteIfExists( temp );
+      throw e;
+    }
+  }
+
+  /**
+   * Whether file contents begin with the binary save magic.
+   *
+   * @param file the file contents
+   * @return true for a binary save
+   */
+  static boolean isBinary( byte[] file )
+  {
+    return file.length >= 4 && ( ( file[0] & 0xFF ) << 24 | ( file[1] & 0xFF ) << 16
+                               | ( file[2] & 0xFF ) << 8 | ( file[3] & 0xFF ) ) == MAGIC;
+  }
+
+  /**
+   * Decodes a match, checking its version, checksum, and that every
+   * quadrant agrees with the hulls moored on it.
+   *
+   * @param file the complete file contents
+   * @return the restored match
+   * @throws IOException if the contents are not a valid binary save
+   */
+  static SavedMatch decode( byte[] file ) throws IOException
+  {
+    if ( !isBinary( file ) || file.length < 9 )
+      throw new IOException( "not a binary save" );
+    int version = file[4];
+    if ( version < 1 || version > VERSION )
+      throw new IOException( "save format version " + version + " is not supported" );
+
+    int bodyEnd = file.length - 4;
+    int stored = ( file[bodyEnd] & 0xFF ) << 24 | ( file[bodyEnd + 1] & 0xFF ) << 16
+               | ( file[bodyEnd + 2] & 0xFF ) << 8 | ( file[bodyEnd + 3] & 0xFF );
+    if ( stored != crc( file, 5, bodyEnd - 5 ) )
+      throw new IOException( "checksum mismatch; the save is damaged" );
+
+    try ( DataInputStream in = new DataInputStream(
+            new ByteArrayInputStream( file, 5, bodyEnd - 5 ) ) )
+    {
+      if ( version >= 2 )
+        in.skipBytes( in.readUnsignedShort() ); // the header, for browsers only
+      int flags = in.readUnsignedByte();
+      int shotsFired = in.readUnsignedByte();
+      int turn = ( version >= 2 ) ? in.readUnsignedShort() : 0;
+
+      PlayerType britonsType = readType( in );
+      String britonsName = readName( in );
+      Side britons = readSide( in );
+      PlayerType franksType = readType( in );
+      String franksName = readName( in );
+      Side franks = readSide( in );
+      if ( in.available() > 0 )
+        throw new IOException( "trailing bytes after the match" );
+
+      Board board = new Board( britonsType, franksType );
+      britons.restore( board.getBritons(), britonsName );
+      franks.restore( board.getFranks(), franksName );
+      board.restoreTurn( ( flags & 4 ) != 0 ? Civilization.FRANKS : Civilization.BRITONS,
+                         ( flags & 2 ) != 0, shotsFired, turn );
+      return new SavedMatch( board, ( flags & 1 ) != 0 );
+    }
+    catch ( IllegalArgumentException | IndexOutOfBoundsException e )
+    {
+      throw new IOException( "malformed save: " + e.getMessage(), e );
+    }
+  }
+
+  /**
+   * Reads only the header of a save, for listing it. The checksum is not
+   * verified -- that needs the whole file -- so a damaged save may list
+   * and still refuse to load.
+   *
+   * @param file the save
+   * @return its summary
+   * @throws IOException if the file cannot be read, or has no header
+   *                     (legacy and version-1 saves)
+   */
+  static SaveSummary readSummary( Path file ) throws IOException
+  {
+    try ( DataInputStream in = new DataInputStream( Files.newInputStream( file ) ) )
+    {
+      if ( in.readInt() != MAGIC )
+        throw new IOException( file + " has no save header" );
+      int version = in.readUnsignedByte();
+      if ( version < 2 || version > VERSION )
+        throw new IOException( "save format version " + version + " has no header" );
+
+      byte[] header = new byte[in.readUnsignedShort()];
+      in.readFully( header );
+      return decodeHeader( file, header );
+    }
+  }
+
+  /**
+   * Encodes the header of a match.
+   *
+   * @param match the match
+   * @return the header bytes
+   * @throws IOException never, for an in-memory stream
+   */
+  private static byte[] encodeHeader( SavedMatch match ) throws IOException
+  {
+    Board board = match.getBoard();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream( 96 );
+    try ( DataOutputStream out = new DataOutputStream( bytes ) )
+    {
+      out.writeLong( System.currentTimeMillis() );
+      out.writeByte( board.getBritonsType().ordinal() );
+      out.writeByte( board.getFranksType().ordinal() );
+      out.writeByte( match.isSalvoMode() ? 1 : 0 );
+      out.writeShort( board.getTurnNumber() );
+      out.writeByte( afloat( board.getBritons() ) );
+      out.writeByte( afloat( board.getFranks() ) );
+      out.writeUTF( headerName( board.getBritons() ) );
+      out.writeUTF( headerName( board.getFranks() ) );
+      out.write( thumbnail( board.getBritons() ) );
+      out.write( thumbnail( board.getFranks() ) );
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Decodes a header.
+   *
+   * @param file   the save it came from
+   * @param header the header bytes
+   * @return the summary
+   * @throws IOException if the header is malformed
+   */
+  private static SaveSummary decodeHeader( Path file, byte[] header ) throws IOException
+  {
+    try ( DataInputStream in = new DataInputStream( new ByteArrayInputStream( header ) ) )
+    {
+      long savedAt = in.readLong();
+      PlayerType britonsType = readType( in );
+      PlayerType franksType = readType( in );
+      boolean salvo = ( in.readUnsignedByte() & 1 ) != 0;
+      int turn = in.readUnsignedShort();
+      int britonsAfloat = in.readUnsignedByte();
+      int franksAfloat = in.readUnsignedByte();
+      String britonsName = in.readUTF();
+      String franksName = in.readUTF();
+      byte[] britonsThumb = new byte[PACKED_QUAD];
+      byte[] franksThumb = new byte[PACKED_QUAD];
+      in.readFully( britonsThumb );
+      in.readFully( franksThumb );
+      return new SaveSummary( file, savedAt, britonsType, franksType,
+                              britonsName.isEmpty() ? null : britonsName,
+                              franksName.isEmpty() ? null : franksName,
+                              salvo, turn, britonsAfloat, franksAfloat,
+                              britonsThumb, franksThumb );
+    }
+    catch ( IndexOutOfBoundsException e )
+    {
+      throw new IOException( "malformed save header", e );
+    }
+  }
+
+  /**
+   * Summarises a match already in memory, as its header would: the way
+   * saves without a header are listed, once loaded in full.
+   *
+   * @param file    the save it came from
+   * @param savedAt when it was saved, if known; its modification time if not
+   * @param match   the match
+   * @return the summary
+   */
+  static SaveSummary summarize( Path file, long savedAt, SavedMatch match )
+  {
+    Board board = match.getBoard();
+    return new SaveSummary( file, savedAt, board.getBritonsType(), board.getFranksType(),
+                            board.getBritons().getName(), board.getFranks().getName(),
+                            match.isSalvoMode(), board.getTurnNumber(),
+                            afloat( board.getBritons() ), afloat( board.getFranks() ),
+                            thumbnail( board.getBritons() ), thumbnail( board.getFranks() ) );
+  }
+
+  /**
+   * A player's hulls still afloat, counting only those placed.
+   *
+   * @param player the player
+   * @return the count
+   */
+  private static int afloat( Player player )
+  {
+    if ( player instanceof RemotePlayer )
+      return player.getRemainingShips();
+    int count = 0;
+    for ( int i = 0; i < player.getShipsPlaced(); i++ )
+      if ( !player.getFleet()[i].isSunk() )
+        count++;
+    return count;
+  }
+
+  /**
+   * A name as the header keeps it.
+   *
+   * @param player the player
+   * @return the name, cut to length, or empty if unnamed
+   */
+  private static String headerName( Player player )
+  {
+    String name = ( player.getName() == null ) ? "" : player.getName();
+    return ( name.length() > HEADER_NAME ) ? name.substring( 0, HEADER_NAME ) : name;
+  }
+
+  /**
+   * A player's quadrant as the enemy sees it, two bits to a cell: unfired,
+   * miss, hit, or part of a sunk hull.
+   *
+   * @param player the player
+   * @return the packed thumbnail
+   */
+  private static byte[] thumbnail( Player player )
+  {
+    byte[] packed = new byte[PACKED_QUAD];
+    PlayerQuadrant quad = player.getFriendlyQuad();
+    for ( int key = 0; key < CELLS; key++ )
+    {
+      int x = key % PlayerQuadrant.GRID_SIZE;
+      int y = key / PlayerQuadrant.GRID_SIZE;
+      int code = SaveSummary.UNFIRED;
+      if ( quad.cellIsMiss( x, y ) )
+        code = SaveSummary.MISS;
+      else if ( quad.cellIsHit( x, y ) )
+      {
+        Ship ship = ( player.hasPlacedAllShips() && !( player instanceof RemotePlayer ) )
+                  ? player.getShipAt( x, y ) : null;
+        code = ( ship != null && ship.isSunk() ) ? SaveSummary.SUNK : SaveSummary.HIT;
+      }
+      packed[key >> 2] |= code << ( ( key & 3 ) * 2 );
+    }
+    return packed;
+  }
+
+  /**
+   * Writes one side: its kind, name, fleet, quadrant, and any AI state.
+   *
+   * @param out    the stream
+   * @param type   the kind of player
+   * @param player the player
+   * @throws IOException never, for an in-memory stream
+   */
+  private static void writeSide( DataOutputStream out, PlayerType type, Player player )
+      throws IOException
+  {
+    out.writeByte( type.ordinal() );
+    out.writeBoolean( player.getName() != null );
+    if ( player.getName() != null )
+      out.writeUTF( player.getName() );
+
+    int placed = player.getShipsPlaced();
+    out.writeByte( placed );
+    for ( int i = 0; i < placed; i++ )
+    {
+      int[] rear = player.getShipLocations()[i].getRear();
+      out.writeByte( indexOf( ShipType.getAscendingList(), player.getFleet()[i].getShipType() ) );
+      out.writeByte( rear[0] << 4 | rear[1] );
+      out.writeByte( player.getShipLocations()[i].getDirection().ordinal() );
+    }
+
+    byte[] packed = new byte[PACKED_QUAD];
+    PlayerQuadrant quad = player.getFriendlyQuad();
+    for ( int key = 0; key < CELLS; key++ )
+    {
+      int code = indexOf( CELL_VALUES, quad.getCellType( key % PlayerQuadrant.GRID_SIZE,
+                                                         key / PlayerQuadrant.GRID_SIZE ) );
+      packed[key >> 2] |= code << ( ( key & 3 ) * 2 );
+    }
+    out.write( packed );
+
+    int remote = 0;
+    if ( player instanceof RemotePlayer )
+      remote = ( player.hasPlacedAllShips() ? 1 : 0 ) | ( player.hasLost() ? 2 : 0 );
+    out.writeByte( remote );
+
+    AbstractTargetingStrategy strategy = targeting( player );
+    out.writeBoolean( strategy != null );
+    if ( strategy != null )
+    {
+      out.writeByte( strategy.remainingLengths.size() );
+      for ( int length : strategy.remainingLengths )
+        out.writeByte( length );
+      long lo = 0;
+      long hi = 0;
+      for ( int key : strategy.sunkCells )
+      {
+        if ( key < 64 )
+          lo |= 1L << key;
+        else
+          hi |= 1L << ( key - 64 );
+      }
+      out.writeLong( lo );
+      out.writeLong( hi );
+    }
+  }
+
+  /**
+   * One side as read from a save, held until the board exists to take it.
+   */
+  private static final class Side
+  {
+    /** The hulls, in fleet order. */
+    Ship[] ships;
+    /** Where each hull lies. */
+    ShipHeading[] headings;
+    /** The friendly quadrant's cell values, in key order. */
+    final int[] cells = new int[CELLS];
+    /** The remote flags byte. */
+    int remote;
+    /** The enemy hull lengths still afloat, or null for no targeting state. */
+    int[] remaining;
+    /** The sunk-cell mask, low and high halves. */
+    long sunkLo, sunkHi;
+
+    /**
+     * Moors this side's fleet on a fresh player and restores its wounds,
+     * name, and what its AI has learned.
+     *
+     * @param player the fresh player from the restored board
+     * @param name   the commander's name, or null
+     * @throws IOException if the fleet does not fit or disagrees with the
+     *                     quadrant
+     */
+    void restore( Player player, String name ) throws IOException
+    {
+      player.setName( name );
+      for ( int i = 0; i < ships.length; i++ )
+        if ( !player.placeVessel( ships[i], headings[i] ) )
+          throw new IOException( "saved fleet overlaps or leaves the quadrant" );
+
+      // -- every hull cell must be ship or hit, and nothing else may be
+      PlayerQuadrant quad = player.getFriendlyQuad();
+      for ( int key = 0; key < CELLS; key++ )
+      {
+        int x = key % PlayerQuadrant.GRID_SIZE;
+        int y = key / PlayerQuadrant.GRID_SIZE;
+        boolean hull = quad.cellIsShip( x, y );
+        boolean afloat = cells[key] == PlayerQuadrant.SHIP_CELL
+                      || cells[key] == PlayerQuadrant.HIT_CELL;
+        if ( hull != afloat && !( player instanceof RemotePlayer ) )
+          throw new IOException( "quadrant disagrees with the fleet at " + x + "," + y );
+        quad.setCellType( x, y, cells[key] );
+      }
+      player.syncDecksToQuadrantState();
+
+      if ( player instanceof RemotePlayer )
+      {
+        if ( ( remote & 1 ) != 0 )
+          ( (RemotePlayer) player ).markFleetReady();
+        if ( ( remote & 2 ) != 0 )
+          ( (RemotePlayer) player ).markDefeated();
+      }
+
+      AbstractTargetingStrategy strategy = targeting( player );
+      if ( strategy != null && remaining != null )
+      {
+        strategy.remainingLengths.clear();
+        for ( int length : remaining )
+          strategy.remainingLengths.add( length );
+        strategy.sunkCells.clear();
+        for ( int key = 0; key < CELLS; key++ )
+          if ( ( key < 64 ? sunkLo >>> key : sunkHi >>> ( key - 64 ) ) % 2 != 0 )
+            strategy.sunkCells.add( key );
+      }
+    }
+  }
+
+  /**
+   * Reads one side, after its kind and name.
+   *
+   * @param in the stream
+   * @return the side
+   * @throws IOException if the stream ends early or holds an unknown code
+   */
+  private static Side readSide( DataInputStream in ) throws IOException
+  {
+    Side side = new Side();
+    int placed = in.readUnsignedByte();
+    if ( placed > Player.FLEET_SIZE )
+      throw new IOException( placed + " hulls in one fleet" );
+    side.ships = new Ship[placed];
+    side.headings = new ShipHeading[placed];
+    for ( int i = 0; i < placed; i++ )
+    {
+      side.ships[i] = new Ship( ShipType.getAscendingList()[in.readUnsignedByte()] );
+      int xy = in.readUnsignedByte();
+      side.headings[i] = new ShipHeading( xy >> 4, xy & 0xF,
+                                          Direction.values()[in.readUnsignedByte()] );
+    }
+
+    byte[] packed = new byte[PACKED_QUAD];
+    in.readFully( packed );
+    for ( int key = 0; key < CELLS; key++ )
+      side.cells[key] = CELL_VALUES[( packed[key >> 2] >> ( ( key & 3 ) * 2 ) ) & 3];
+
+    side.remote = in.readUnsignedByte();
+
+    if ( in.readBoolean() )
+    {
+      side.remaining = new int[in.readUnsignedByte()];
+      for ( int i = 0; i < side.remaining.length; i++ )
+        side.remaining[i] = in.readUnsignedByte();
+      side.sunkLo = in.readLong();
+      side.sunkHi = in.readLong();
+    }
+    return side;
+  }
+
+  /**
+   * Reads a player kind.
+   *
+   * @param in the stream
+   * @return the kind
+   * @throws IOException if the stream ends early
+   */
+  private static PlayerType readType( DataInputStream in ) throws IOException
+  {
+    return PlayerType.values()[in.readUnsignedByte()];
+  }
+
+  /**
+   * Reads an optional commander name.
+   *
+   * @param in the stream
+   * @return the name, or null
+   * @throws IOException if the stream ends early
+   */
+  private static String readName( DataInputStream in ) throws IOException
+  {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+
+  /**
+   * A player's learning strategy, if it has one.
+   *
+   * @param player the player
+   * @return the strategy, or null for humans, remote players, and
+   *         strategies that learn nothing
+   */
+  private static AbstractTargetingStrategy targeting( Player player )
+  {
+    if ( player instanceof AIPlayer
+         && ( (AIPlayer) player ).getStrategy() instanceof AbstractTargetingStrategy )
+      return (AbstractTargetingStrategy) ( (AIPlayer) player ).getStrategy();
+    return null;
+  }
+
+  /**
+   * The CRC-32 of part of an array.
+   *
+   * @param bytes  the array
+   * @param offset where to start
+   * @param length how many bytes
+   * @return the checksum
+   */
+  static int crc( byte[] bytes, int offset, int length )
+  {
+    CRC32 crc = new CRC32();
+    crc.update( bytes, offset, length );
+    return (int) crc.getValue();
+  }
+
+  /**
+   * The position of a value in an array.
+   *
+   * @param values the array
+   * @param value  the value
+   * @return its index
+   * @throws IllegalArgumentException if it is absent
+   */
+  static <T> int indexOf( T[] values, T value )
+  {
+    for ( int i = 0; i < values.length; i++ )
+      if ( values[i] == value )
+        return i;
+    throw new IllegalArgumentException( "unknown value " + value );
+  }
+
+  /**
+   * The position of a value in an array.
+   *
+   * @param values the array
+   * @param value  the value
+   * @return its index
+   * @throws IllegalArgumentException if it is absent
+   */
+  private static int indexOf( int[] values, int value )
+  {
+    for ( int i = 0; i < values.length; i++ )
+      if ( values[i] == value )
+        return i;
+    throw new IllegalArgumentException( "unknown cell value " + value );
+  }
+}
@@ -0,0 +1,143 @@
+package seasofyore.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * The saved-game compatibility test: opens logs written by the build that
+ * still saved matches as serialized object graphs, checks that every AI in
+ * them comes back able to play on, and that each carries over intact into
+ * the binary layout of {@link SaveFormat}. The logs sit beside this class
+ * under {@code legacy/}: an Easy against a Medium and a Hard against an
+ * Extreme, each some turns into battle, and a human still mooring against
+ * a random guesser. Runs headlessly:
+ * {@code java seasofyore.core.SaveSelfTest}; prints PASS lines and exits
+ * nonzero on the first failure.
+ *
+ * @author dylan
+ */
+public final class SaveSelfTest
+{
+  private SaveSelfTest() {}
+
+  /**
+   * Entry point.
+   *
+   * @param args unused
+   * @throws Exception on the first failed expectation
+   */
+  public static void main( String[] args ) throws Exception
+  {
+    testLegacyLog( "easy-medium.yore", false, EasyStrategy.class, MediumStrategy.class );
+    testLegacyLog( "hard-extreme.yore", true, HardStrategy.class, ExtremeStrategy.class );
+    testLegacyLog( "human-random.yore", false, null, RandomGuessStrategy.class );
+    System.out.println( "ALL TESTS PASSED" );
+  }
+
+  /**
+   * Opens one legacy log: the rules and strategies are as they were saved,
+   * each AI picks an untried cell to fire at, and the match re-saved in
+   * the binary layout reads back the same.
+   *
+   * @param name    the log, under {@code legacy/}
+   * @param salvo   the rules it was saved under
+   * @param britons the Britons' strategy; null for a human
+   * @param franks  the Franks' strategy; null for a human
+   */
+  private static void testLegacyLog( String name, boolean salvo,
+                                     Class<?> britons, Class<?> franks ) throws Exception
+  {
+    File file = fixture( name );
+    require( !SaveFormat.isBinary( Files.readAllBytes( file.toPath() ) ),
+             name + ": is a serialized log" );
+
+    SavedMatch match = SavedMatch.load( file );
+    Board board = match.getBoard();
+    require( match.isSalvoMode() == salvo, name + ": rules as saved" );
+    expectStrategy( name, board.getBritons(), britons );
+    expectStrategy( name, board.getFranks(), franks );
+
+    SavedMatch reread = SaveFormat.decode( SaveFormat.encode( match ) );
+    require( reread.isSalvoMode() == salvo, name + ": rules survive the binary layout" );
+    require( sameWaters( board.getBritons().getFriendlyQuad(),
+                         reread.getBoard().getBritons().getFriendlyQuad() )
+             && sameWaters( board.getFranks().getFriendlyQuad(),
+                            reread.getBoard().getFranks().getFriendlyQuad() ),
+             name + ": both fleets and every shot survive the binary layout" );
+  }
+
+  /**
+   * Asserts that a player is the AI expected, and that it can still pick
+   * a shot -- its strategy whole, down to what the log could not hold.
+   */
+  private static void expectStrategy( String name, Player player, Class<?> expected )
+  {
+    if ( expected == null )
+    {
+      require( !( player instanceof AIPlayer ), name + ": " + player.getCiv() + " is human" );
+      return;
+    }
+    require( player instanceof AIPlayer
+             && expected.isInstance( ( (AIPlayer) player ).getStrategy() ),
+             name + ": " + player.getCiv() + " plays " + expected.getSimpleName() );
+
+    require( ( (AIPlayer) player ).getParameters() == AIParameters.DEFAULTS,
+             name + ": " + expected.getSimpleName() + " paces its turns by the shipped settings" );
+
+    int[] shot = ( (AIPlayer) player ).calculateNextAttack();
+    require( shot != null && player.getEnemyQuad().cellIsTargetable( shot[0], shot[1] ),
+             name + ": " + expected.getSimpleName() + " picks an untried cell" );
+  }
+
+  /**
+   * Whether two quadrants hold the same ships and the same shots.
+   */
+  private static boolean sameWaters( PlayerQuadrant a, PlayerQuadrant b )
+  {
+    for ( int x = 0; x < PlayerQuadrant.GRID_SIZE; x++ )
+      for ( int y = 0; y < PlayerQuadrant.GRID_SIZE; y++ )
+        if ( a.getCellType( x, y ) != b.getCellType( x, y ) )
+          return false;
+    return true;
+  }
+
+  /**
+   * Copies a log out of the classpath, so it can be loaded as a file.
+   */
+  private static File fixture( String name ) throws IOException
+  {
+    try ( InputStream in = SaveSelfTest.class.getResourceAsStream( "legacy/" + name ) )
+    {
+      if ( in == null )
+        fail( name + ": not found beside the test" );
+      File file = File.createTempFile( "legacy-", "." + SavedMatch.FILE_EXTENSION );
+      file.deleteOnExit();
+      Files.copy( in, file.toPath(), StandardCopyOption.REPLACE_EXISTING );
+      return file;
+    }
+  }
+
+  /**
+   * Asserts a condition.
+   */
+  private static void require( boolean condition, String description )
+  {
+    if ( !condition )
+      fail( description );
+    pass( description );
+  }
+
+  private static void pass( String description )
+  {
+    System.out.println( "PASS: " + description );
+  }
+
+  private static void fail( String description )
+  {
+    System.out.println( "FAIL: " + description );
+    System.exit( 1 );
+  }
+}
@@ -0,0 +1,271 @@
+package seasofyore.core;
+
+import java.nio.file.Path;
+
+/**
+ * What a saved match is, at a glance: who was playing, under which rules,
+ * how far the battle had gone, and a thumbnail of both boards as either
+ * commander could see them. Read from a save's header alone, so listing a
+ * directory of saves never loads a match; see {@link SavedGameIndex}.
+ *
+ * <p>A file that could not be summarised at all is listed too, as an
+ * unreadable summary: its file, its modification time, and why it could
+ * not be read -- nothing else.</p>
+ *
+ * @author dylan
+ */
+public final class SaveSummary
+{
+  /** Thumbnail cell: not yet fired upon. */
+  public static final int UNFIRED = 0;
+  /** Thumbnail cell: a miss. */
+  public static final int MISS = 1;
+  /** Thumbnail cell: a hit on a hull still afloat. */
+  public static final int HIT = 2;
+  /** Thumbnail cell: part of a sunk hull. */
+  public static final int SUNK = 3;
+
+  /**
+   * The save this summarises.
+   */
+  private final Path file;
+
+  /**
+   * When the match was saved, in epoch milliseconds.
+   */
+  private final long savedAt;
+
+  /**
+   * The kind of player commanding the Britons.
+   */
+  private final PlayerType britonsType;
+
+  /**
+   * The kind of player commanding the Franks.
+   */
+  private final PlayerType franksType;
+
+  /**
+   * The Britons' commander's name, or null.
+   */
+  private final String britonsName;
+
+  /**
+   * The Franks' commander's name, or null.
+   */
+  private final String franksName;
+
+  /**
+   * Whether the match uses SALVO rules.
+   */
+  private final boolean salvoMode;
+
+  /**
+   * The battle turn under way; 0 during setup.
+   */
+  private final int turnNumber;
+
+  /**
+   * The Britons' hulls still afloat.
+   */
+  private final int britonsAfloat;
+
+  /**
+   * The Franks' hulls still afloat.
+   */
+  private final int franksAfloat;
+
+  /**
+   * The Britons' board, packed two bits to a cell in key order.
+   */
+  private final byte[] britonsThumbnail;
+
+  /**
+   * The Franks' board, packed two bits to a cell in key order.
+   */
+  private final byte[] franksThumbnail;
+
+  /**
+   * Why the save could not be read, or null if it could.
+   */
+  private final String problem;
+
+  /**
+   * Assembles a summary; built only by {@link SaveFormat}.
+   *
+   * @param file             the save
+   * @param savedAt          when it was saved
+   * @param britonsType      the Britons' kind of player
+   * @param franksType       the Franks' kind of player
+   * @param britonsName      the Britons' commander's name, or null
+   * @param franksName       the Franks' commander's name, or null
+   * @param salvoMode        true for SALVO rules
+   * @param turnNumber       the battle turn
+   * @param britonsAfloat    the Britons' hulls afloat
+   * @param franksAfloat     the Franks' hulls afloat
+   * @param britonsThumbnail the Britons' packed thumbnail
+   * @param franksThumbnail  the Franks' packed thumbnail
+   */
+  SaveSummary( Path file, long savedAt, PlayerType britonsType, PlayerType franksType,
+               String britonsName, String franksName, boolean salvoMode, int turnNumber,
+               int britonsAfloat, int franksAfloat,
+               byte[] britonsThumbnail, byte[] franksThumbnail )
+  {
+    this.file = file;
+    this.savedAt = savedAt;
+    this.britonsType = britonsType;
+    this.franksType = franksType;
+    this.britonsName = britonsName;
+    this.franksName = franksName;
+    this.salvoMode = salvoMode;
+    this.turnNumber = turnNumber;
+    this.britonsAfloat = britonsAfloat;
+    this.franksAfloat = franksAfloat;
+    this.britonsThumbnail = britonsThumbnail;
+    this.franksThumbnail = franksThumbnail;
+    this.problem = null;
+  }
+
+  /**
+   * Assembles the summary of a file that could not be read.
+   */
+  private SaveSummary( Path file, long modified, String problem )
+  {
+    this.file = file;
+    this.savedAt = modified;
+    this.britonsType = null;
+    this.franksType = null;
+    this.britonsName = null;
+    this.franksName = null;
+    this.salvoMode = false;
+    this.turnNumber = 0;
+    this.britonsAfloat = 0;
+    this.franksAfloat = 0;
+    this.britonsThumbnail = null;
+    this.franksThumbnail = null;
+    this.problem = problem;
+  }
+
+  /**
+   * Summarises a file that could not be read, so that it is still listed.
+   *
+   * @param file     the file
+   * @param modified its modification time, in epoch milliseconds
+   * @param problem  why it could not be read
+   * @return the summary, of which only the file, time and problem are known
+   */
+  static SaveSummary unreadable( Path file, long modified, String problem )
+  {
+    return new SaveSummary( file, modified, problem );
+  }
+
+  /**
+   * Whether the save could be read. Only the file, time and
+   * {@link #getProblem problem} of an unreadable one are known.
+   *
+   * @return true if everything else in this summary is
+   */
+  public boolean isReadable()
+  {
+    return this.problem == null;
+  }
+
+  /**
+   * Why the save could not be read.
+   *
+   * @return the reason, or null if it could
+   */
+  public String getProblem()
+  {
+    return this.problem;
+  }
+
+  /**
+   * The save this summarises.
+   *
+   * @return the file
+   */
+  public Path getFile()
+  {
+    return this.file;
+  }
+
+  /**
+   * When the match was saved; for an unreadable file, when it was last
+   * written.
+   *
+   * @return epoch milliseconds
+   */
+  public long getSavedAt()
+  {
+    return this.savedAt;
+  }
+
+  /**
+   * The kind of player commanding a civilization.
+   *
+   * @param civ the civilization
+   * @return its PlayerType
+   */
+  public PlayerType getPlayerType( Civilization civ )
+  {
+    return ( civ == Civilization.BRITONS ) ? britonsType : franksType;
+  }
+
+  /**
+   * The name of a civilization's commander.
+   *
+   * @param civ the civilization
+   * @return the raw name, or null when unnamed
+   */
+  public String getName( Civilization civ )
+  {
+    return ( civ == Civilization.BRITONS ) ? britonsName : franksName;
+  }
+
+  /**
+   * Whether the match uses SALVO rules.
+   *
+   * @return true for SALVO; false for Classic
+   */
+  public boolean isSalvoMode()
+  {
+    return this.salvoMode;
+  }
+
+  /**
+   * The battle turn under way.
+   *
+   * @return the turn, counting from 1; 0 during setup or when unknown
+   */
+  public int getTurnNumber()
+  {
+    return this.turnNumber;
+  }
+
+  /**
+   * A civilization's hulls still afloat.
+   *
+   * @param civ the civilization
+   * @return the count
+   */
+  public int getAfloat( Civilization civ )
+  {
+    return ( civ == Civilization.BRITONS ) ? britonsAfloat : franksAfloat;
+  }
+
+  /**
+   * One cell of a civilization's board thumbnail.
+   *
+   * @param civ the civilization whose board
+   * @param x   the x-coordinate
+   * @param y   the y-coordinate
+   * @return {@link #UNFIRED}, {@link #MISS}, {@link #HIT}, or {@link #SUNK}
+   */
+  public int getCell( Civilization civ, int x, int y )
+  {
+    byte[] packed = ( civ == Civilization.BRITONS ) ? britonsThumbnail : franksThumbnail;
+    int key = y * PlayerQuadrant.GRID_SIZE + x;
+    return ( packed[key >> 2] >> ( ( key & 3 ) * 2 ) ) & 3;
+  }
+}
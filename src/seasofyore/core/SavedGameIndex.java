@@ -0,0 +1,149 @@
+package seasofyore.core;
+
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.StreamCorruptedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Lists the saved matches in a directory. Each save is summarised from its
+ * header alone, the files are read in parallel, and every summary is
+ * remembered against the file's modification time and size, so listing
+ * the same directory again reads only what changed since. Hundreds of
+ * saves list in milliseconds.
+ *
+ * <p>Saves written before headers existed -- serialized logs and version-1
+ * binary saves -- are loaded in full once to summarise, then served from
+ * the cache like the rest. Files that cannot be read at all are listed as
+ * {@link SaveSummary#isReadable unreadable}, with the reason, so that a save
+ * never silently drops out of sight.</p>
+ *
+ * <p>Listing reads the disk, and for older saves loads whole matches: call
+ * it off the event thread.</p>
+ *
+ * @author dylan
+ */
+public final class SavedGameIndex
+{
+  /**
+   * A remembered summary and the file state it was read from.
+   */
+  private static final class Entry
+  {
+    /** The file's modification time when summarised. */
+    final long modified;
+    /** The file's size when summarised. */
+    final long size;
+    /** The summary. */
+    final SaveSummary summary;
+
+    Entry( long modified, long size, SaveSummary summary )
+    {
+      this.modified = modified;
+      this.size = size;
+      this.summary = summary;
+    }
+  }
+
+  /**
+   * Summaries read so far, by file. Concurrent because the files of one
+   * listing are summarised in parallel.
+   */
+  private final Map<Path, Entry> cache = new ConcurrentHashMap<>();
+
+  /**
+   * Lists the saves in a directory, newest first.
+   *
+   * @param dir the directory
+   * @return a summary of each save, readable or not; empty if the directory
+   *         cannot be read
+   */
+  public List<SaveSummary> list( Path dir )
+  {
+    List<Path> files = new ArrayList<>();
+    try ( DirectoryStream<Path> stream =
+            Files.newDirectoryStream( dir, "*." + SavedMatch.FILE_EXTENSION ) )
+    {
+      for ( Path file : stream )
+        files.add( file );
+    }
+    catch ( IOException e )
+    {
+      return new ArrayList<>();
+    }
+
+    return files.parallelStream()
+                .map( this::summarize )
+                .sorted( Comparator.comparingLong( SaveSummary::getSavedAt ).reversed() )
+                .collect( Collectors.toList() );
+  }
+
+  /**
+   * The summary of one save, from the cache if the file is unchanged.
+   *
+   * @param file the save
+   * @return its summary; an unreadable one, with the reason, if it cannot
+   *         be read
+   */
+  private SaveSummary summarize( Path file )
+  {
+    BasicFileAttributes attrs;
+    try
+    {
+      attrs = Files.readAttributes( file, BasicFileAttributes.class );
+    }
+    catch ( IOException e )
+    {
+      cache.remove( file );
+      return SaveSummary.unreadable( file, 0, problem( e ) );
+    }
+
+    long modified = attrs.lastModifiedTime().toMillis();
+    Entry cached = cache.get( file );
+    if ( cached != null && cached.modified == modified && cached.size == attrs.size() )
+      return cached.summary;
+
+    SaveSummary summary;
+    try
+    {
+      try
+      {
+        summary = SaveFormat.readSummary( file );
+      }
+      catch ( IOException headerless )
+      {
+        // -- an older save: load it whole, once
+        summary = SaveFormat.summarize( file, modified, SavedMatch.load( file.toFile() ) );
+      }
+    }
+    catch ( IOException | ClassNotFoundException | RuntimeException e )
+    {
+      summary = SaveSummary.unreadable( file, modified, problem( e ) );
+    }
+    cache.put( file, new Entry( modified, attrs.size(), summary ) );
+    return summary;
+  }
+
+  /**
+   * Says why a save could not be read, in terms a player can act on.
+   */
+  private static String problem( Exception e )
+  {
+    if ( e instanceof InvalidClassException || e instanceof ClassNotFoundException )
+      return "written by a build this one cannot read";
+    if ( e instanceof StreamCorruptedException )
+      return "not a saved match, or damaged";
+    if ( e.getMessage() == null )
+      return "unreadable (" + e.getClass().getSimpleName() + ")";
+    return e.getMessage();
+  }
+}
@@ -1,19 +1,25 @@
 package seasofyore.core;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
- * A complete match, bottled: the board (which transitively carries both
- * players, their quadrants, fleets, wounds, and any AI strategy state) plus
- * the rules it was being played under. Written and read with plain Java
- * serialization -- the whole object graph in one stream -- so saving is one
- * writeObject and loading is one readObject.
+ * A complete match, bottled: the board (both players, their quadrants,
+ * fleets, wounds, and any AI strategy state) plus the rules it was being
+ * played under. Written in the compact binary layout of {@link SaveFormat}:
+ * a checksummed record of a hundred-odd bytes that loads without
+ * reflection and does not care how the classes behind it have changed.
+ *
+ * <p>Earlier builds wrote the whole object graph with Java serialization;
+ * {@link #load} still reads those logs, which is why this class remains
+ * Serializable.</p>
  *
  * @author dylan
  */
@@ -29,6 +35,19 @@ public final class SavedMatch implements Serializable
    */
   public static final String FILE_EXTENSION = "yore";
 
+  /**
+   * The one thread background saves are written on. A single writer keeps
+   * two saves to the same file in the order they were asked for; it is a
+   * daemon so a save in flight never holds the game open, and a write cut
+   * short that way leaves the old file whole.
+   */
+  static final ExecutorService WRITER = Executors.newSingleThreadExecutor( r ->
+  {
+    Thread t = new Thread( r, "match-saver" );
+    t.setDaemon( true );
+    return t;
+  } );
+
   /**
    * The complete board state, including both players.
    */
@@ -72,7 +91,8 @@ public final class SavedMatch implements Serializable
   }
 
   /**
-   * Writes a match to disk.
+   * Writes a match to disk, atomically: a crash mid-write leaves the
+   * previous file, never a truncated one.
    *
    * @param file  the destination file
    * @param match the match to save
@@ -80,28 +100,62 @@ public final class SavedMatch implements Serializable
    */
   public static void save( File file, SavedMatch match ) throws IOException
   {
-    try ( ObjectOutputStream out =
-          new ObjectOutputStream( new FileOutputStream( file ) ) )
+    SaveFormat.writeAtomically( file.toPath(), SaveFormat.encode( match ) );
+  }
+
+  /**
+   * Writes a match to disk without waiting for the disk. The match is
+   * encoded at once, on the calling thread -- a fixed snapshot that later
+   * moves cannot disturb, and quick enough for the event thread -- and
+   * written atomically on a background thread.
+   *
+   * @param file  the destination file
+   * @param match the match to save
+   * @return completes with the file once it is safely on disk, or
+   *         exceptionally if it could not be written
+   */
+  public static CompletableFuture<File> saveInBackground( File file, SavedMatch match )
+  {
+    byte[] snapshot = SaveFormat.encode( match );
+    CompletableFuture<File> done = new CompletableFuture<>();
+    WRITER.execute( () ->
     {
-      out.writeObject( match );
-    }
+      try
+      {
+        SaveFormat.writeAtomically( file.toPath(), snapshot );
+        done.complete( file );
+      }
+      catch ( IOException | RuntimeException e )
+      {
+        done.completeExceptionally( e );
+      }
+    } );
+    return done;
   }
 
   /**
-   * Reads a match back from disk.
+   * Reads a match back from disk, in the binary layout or, for logs written
+   * by earlier builds, as a serialized object graph.
    *
    * @param file the saved file
    * @return the restored match
-   * @throws IOException            if the file cannot be read
-   * @throws ClassNotFoundException if the stream is not a saved match
+   * @throws IOException            if the file cannot be read, or is damaged
+   * @throws ClassNotFoundException if a legacy stream is not a saved match
    */
   public static SavedMatch load( File file )
       throws IOException, ClassNotFoundException
   {
+    byte[] bytes = Files.readAllBytes( file.toPath() );
+    if ( SaveFormat.isBinary( bytes ) )
+      return SaveFormat.decode( bytes );
+
     try ( ObjectInputStream in =
-          new ObjectInputStream( new FileInputStream( file ) ) )
+          new ObjectInputStream( new ByteArrayInputStream( bytes ) ) )
     {
-      return (SavedMatch) in.readObject();
+      Object match = in.readObject();
+      if ( !( match instanceof SavedMatch ) )
+        throw new ClassNotFoundException( "the stream does not hold a saved match" );
+      return (SavedMatch) match;
     }
   }
 }
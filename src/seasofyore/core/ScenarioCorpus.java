@@ -0,0 +1,228 @@
+package seasofyore.core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A fixed set of arena games: for each, both fleets' layouts, both
+ * strategies' random seeds, and who fires first. Replaying a corpus
+ * removes every source of chance from a game, so two builds playing the
+ * same corpus differ only where their code does, and results can be
+ * compared scenario by scenario instead of averaged over fresh luck.
+ *
+ * <p>The file format is plain text, one scenario per line after a version
+ * header, with {@code #} comments allowed:</p>
+ * <pre>
+ * seasofyore-corpus 1
+ * &lt;id&gt; &lt;A|B fires first&gt; &lt;seedA&gt; &lt;seedB&gt; &lt;layoutA&gt; &lt;layoutB&gt;
+ * </pre>
+ * <p>A layout is one {@code x,y,D} heading per ship, in the order of
+ * {@link Ship#getListInstance()}, joined by {@code ;}, where {@code D} is
+ * the first letter of the {@link Direction}.</p>
+ *
+ * @author dylan
+ */
+final class ScenarioCorpus
+{
+  /**
+   * The first line of every corpus file.
+   */
+  static final String HEADER = "seasofyore-corpus 1";
+
+  /**
+   * One fixed game.
+   */
+  static final class Scenario
+  {
+    /** Identifies the scenario across corpus and results files. */
+    final int id;
+    /** Whether side A fires the opening shot. */
+    final boolean aFirst;
+    /** Side A's strategy seed. */
+    final long seedA;
+    /** Side B's strategy seed. */
+    final long seedB;
+    /** Side A's fleet layout, one heading per ship. */
+    final ShipHeading[] layoutA;
+    /** Side B's fleet layout, one heading per ship. */
+    final ShipHeading[] layoutB;
+
+    Scenario( int id, boolean aFirst, long seedA, long seedB,
+              ShipHeading[] layoutA, ShipHeading[] layoutB )
+    {
+      this.id = id;
+      this.aFirst = aFirst;
+      this.seedA = seedA;
+      this.seedB = seedB;
+      this.layoutA = layoutA;
+      this.layoutB = layoutB;
+    }
+  }
+
+  /**
+   * Not instantiable; a reader, writer, and generator of corpora.
+   */
+  private ScenarioCorpus() {}
+
+  /**
+   * Generates a corpus. Layouts are fleet-uniform draws, the first move
+   * alternates, and everything follows from the one seed, so the same
+   * arguments always generate the same corpus.
+   *
+   * @param count how many scenarios
+   * @param seed  the master seed
+   * @return the scenarios
+   */
+  static List<Scenario> generate( int count, long seed )
+  {
+    Random random = new Random( seed );
+    List<Scenario> scenarios = new ArrayList<>();
+    for ( int id = 0; id < count; id++ )
+    {
+      ShipHeading[] layoutA = FleetSampler.sampleFleet( Ship.getListInstance(), true, random );
+      ShipHeading[] layoutB = FleetSampler.sampleFleet( Ship.getListInstance(), true, random );
+      scenarios.add( new Scenario( id, id % 2 == 0, random.nextLong(), random.nextLong(),
+                                   layoutA, layoutB ) );
+    }
+    return Collections.unmodifiableList( scenarios );
+  }
+
+  /**
+   * Writes a corpus file.
+   *
+   * @param path      the file to write
+   * @param scenarios the scenarios
+   * @throws IOException if the file cannot be written
+   */
+  static void write( Path path, List<Scenario> scenarios ) throws IOException
+  {
+    try ( PrintWriter out = new PrintWriter(
+            Files.newBufferedWriter( path, StandardCharsets.UTF_8 ) ) )
+    {
+      out.println( HEADER );
+      out.println( "# id first seedA seedB layoutA layoutB" );
+      for ( Scenario s : scenarios )
+      {
+        out.println( s.id + " " + ( s.aFirst ? "A" : "B" ) + " " + s.seedA + " "
+                   + s.seedB + " " + formatLayout( s.layoutA ) + " "
+                   + formatLayout( s.layoutB ) );
+      }
+    }
+  }
+
+  /**
+   * Reads a corpus file, checking every layout is a legal fleet.
+   *
+   * @param path the file to read
+   * @return the scenarios, in file order
+   * @throws IOException if the file cannot be read or is malformed
+   */
+  static List<Scenario> read( Path path ) throws IOException
+  {
+    List<Scenario> scenarios = new ArrayList<>();
+    try ( BufferedReader in = Files.newBufferedReader( path, StandardCharsets.UTF_8 ) )
+    {
+      String header = in.readLine();
+      if ( !HEADER.equals( header ) )
+        throw new IOException( path + " is not a scenario corpus (header: " + header + ")" );
+
+      String line;
+      int lineNo = 1;
+      while ( ( line = in.readLine() ) != null )
+      {
+        lineNo++;
+        line = line.trim();
+        if ( line.isEmpty() || line.startsWith( "#" ) )
+          continue;
+
+        String[] f = line.split( "\\s+" );
+        try
+        {
+          if ( f.length != 6 || !( f[1].equals( "A" ) || f[1].equals( "B" ) ) )
+            throw new IllegalArgumentException( "expected six fields" );
+          scenarios.add( new Scenario( Integer.parseInt( f[0] ), f[1].equals( "A" ),
+                                       Long.parseLong( f[2] ), Long.parseLong( f[3] ),
+                                       parseLayout( f[4] ), parseLayout( f[5] ) ) );
+        }
+        catch ( IllegalArgumentException e )
+        {
+          throw new IOException( path + ":" + lineNo + ": " + e.getMessage(), e );
+        }
+      }
+    }
+    return Collections.unmodifiableList( scenarios );
+  }
+
+  /**
+   * Renders a layout in the corpus notation.
+   *
+   * @param layout one heading per ship
+   * @return e.g. {@code 3,4,E;0,0,S;...}
+   */
+  private static String formatLayout( ShipHeading[] layout )
+  {
+    StringBuilder sb = new StringBuilder();
+    for ( ShipHeading h : layout )
+    {
+      if ( sb.length() > 0 )
+        sb.append( ';' );
+      int[] rear = h.getRear();
+      sb.append( rear[0] ).append( ',' ).append( rear[1] ).append( ',' )
+        .append( h.getDirection().name().charAt( 0 ) );
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Parses a layout and checks that it places the standard fleet legally.
+   *
+   * @param text the corpus notation
+   * @return one heading per ship
+   * @throws IllegalArgumentException if the layout is malformed or illegal
+   */
+  private static ShipHeading[] parseLayout( String text )
+  {
+    Ship[] ships = Ship.getListInstance();
+    String[] parts = text.split( ";" );
+    if ( parts.length != ships.length )
+      throw new IllegalArgumentException( "layout needs " + ships.length + " headings" );
+
+    PlayerQuadrant check = new PlayerQuadrant();
+    ShipHeading[] layout = new ShipHeading[parts.length];
+    for ( int i = 0; i < parts.length; i++ )
+    {
+      String[] xyd = parts[i].split( "," );
+      if ( xyd.length != 3 || xyd[2].length() != 1 )
+        throw new IllegalArgumentException( "bad heading: " + parts[i] );
+      layout[i] = new ShipHeading( Integer.parseInt( xyd[0] ), Integer.parseInt( xyd[1] ),
+                                   direction( xyd[2].charAt( 0 ) ) );
+      if ( !check.validHeading( ships[i], layout[i] ) )
+        throw new IllegalArgumentException( "illegal heading: " + parts[i] );
+      check.placeShip( ships[i], layout[i] );
+    }
+    return layout;
+  }
+
+  /**
+   * The direction named by its first letter.
+   *
+   * @param c N, E, S, or W
+   * @return the direction
+   * @throws IllegalArgumentException for any other letter
+   */
+  private static Direction direction( char c )
+  {
+    for ( Direction d : Direction.values() )
+      if ( d.name().charAt( 0 ) == c )
+        return d;
+    throw new IllegalArgumentException( "bad direction: " + c );
+  }
+}
@@ -0,0 +1,166 @@
+package seasofyore.core;
+
+/**
+ * Wald's sequential probability ratio test on a series of won and lost
+ * games, as the {@link StrategyArena} uses it to stop a series the moment
+ * its result is settled rather than after a fixed count.
+ *
+ * <p>The question asked is whether side B's per-game win rate is even
+ * (H0: p = 1/2) or better by at least a hypothesised gap (H1: p = 1/2 +
+ * gap). Each game adds its log-likelihood ratio to a running total; the
+ * test accepts H1 when the total climbs to log((1 - beta) / alpha), accepts
+ * H0 when it falls to log(beta / (1 - alpha)), and otherwise asks for
+ * another game. The first bound reached is the verdict, and it stands:
+ * games recorded after it -- as when the arena finishes a pair -- change
+ * the running total but never the decision. Alpha and beta bound the two
+ * error rates. A regression check whose answer is obvious decides in a
+ * few dozen games; only a close call runs long, and the arena's game count
+ * then caps it.</p>
+ *
+ * @author dylan
+ */
+final class SequentialTest
+{
+  /**
+   * The possible states of the test.
+   */
+  enum Verdict
+  {
+    /** Not yet decided; play on. */
+    UNDECIDED,
+    /** No gap: side B is not stronger by the hypothesised margin. */
+    ACCEPT_H0,
+    /** Side B is stronger by at least the hypothesised margin. */
+    ACCEPT_H1
+  }
+
+  /**
+   * The hypothesised win-rate gap over an even match.
+   */
+  private final double gap;
+
+  /**
+   * Log-likelihood ratio added by a win for side B.
+   */
+  private final double winStep;
+
+  /**
+   * Log-likelihood ratio added by a loss for side B.
+   */
+  private final double lossStep;
+
+  /**
+   * The decision bound at which H1 is accepted.
+   */
+  private final double upper;
+
+  /**
+   * The decision bound at which H0 is accepted.
+   */
+  private final double lower;
+
+  /**
+   * The running log-likelihood ratio.
+   */
+  private double llr = 0.0;
+
+  /**
+   * How many games have been recorded.
+   */
+  private int games = 0;
+
+  /**
+   * The verdict, once a bound has been reached; UNDECIDED until then.
+   */
+  private Verdict decided = Verdict.UNDECIDED;
+
+  /**
+   * How many games it took to reach the verdict; 0 while undecided.
+   */
+  private int decidedAfter = 0;
+
+  /**
+   * Sets up a test.
+   *
+   * @param gap   the win-rate gap to detect, in (0, 1/2)
+   * @param alpha the false-positive bound, in (0, 1)
+   * @param beta  the false-negative bound, in (0, 1)
+   * @throws IllegalArgumentException if a parameter is out of range
+   */
+  SequentialTest( double gap, double alpha, double beta )
+  {
+    if ( !( gap > 0.0 && gap < 0.5 ) )
+      throw new IllegalArgumentException( "gap must lie in (0, 0.5): " + gap );
+    if ( !( alpha > 0.0 && alpha < 1.0 && beta > 0.0 && beta < 1.0 ) )
+      throw new IllegalArgumentException( "error bounds must lie in (0, 1)" );
+
+    double p0 = 0.5;
+    double p1 = 0.5 + gap;
+    this.gap = gap;
+    this.winStep = Math.log( p1 / p0 );
+    this.lossStep = Math.log( ( 1 - p1 ) / ( 1 - p0 ) );
+    this.upper = Math.log( ( 1 - beta ) / alpha );
+    this.lower = Math.log( beta / ( 1 - alpha ) );
+  }
+
+  /**
+   * Records one game.
+   *
+   * @param bWon whether side B won it
+   */
+  void record( boolean bWon )
+  {
+    llr += bWon ? winStep : lossStep;
+    games++;
+    if ( decided != Verdict.UNDECIDED )
+      return;
+    if ( llr >= upper )
+      decided = Verdict.ACCEPT_H1;
+    else if ( llr <= lower )
+      decided = Verdict.ACCEPT_H0;
+    else
+      return;
+    decidedAfter = games;
+  }
+
+  /**
+   * The test's standing: the first bound reached, if any has been.
+   *
+   * @return the verdict so far
+   */
+  Verdict verdict()
+  {
+    return decided;
+  }
+
+  /**
+   * How many games the verdict took.
+   *
+   * @return the games recorded when a bound was first reached; 0 while
+   *         undecided
+   */
+  int getDecidedAfter()
+  {
+    return decidedAfter;
+  }
+
+  /**
+   * The hypothesised gap, for reporting.
+   *
+   * @return the gap
+   */
+  double getGap()
+  {
+    return gap;
+  }
+
+  /**
+   * The running log-likelihood ratio, for reporting.
+   *
+   * @return the ratio so far
+   */
+  double getLlr()
+  {
+    return llr;
+  }
+}
@@ -1,11 +1,19 @@
 package seasofyore.core;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
 /**
  * A headless head-to-head harness for AI strategies. It plays full games of
  * the core rules -- alternating shots between two AI players, with the same
  * hit/sink bookkeeping the UI's AITurnPhase performs -- and reports win
  * rates, average shots-to-victory, and the match odds the per-game edge
- * implies for best-of-3 and best-of-5 series.
+ * implies for best-of-3 and best-of-5 series. Each side's decisions are
+ * timed one by one, and the report closes with their latency percentiles
+ * and allocation per decision, hunt and target mode apart; see
+ * {@link DecisionProfile}.
  *
  * <p>The first move alternates between the two sides from game to game, so
  * neither strategy banks the (real) first-mover advantage.</p>
@@ -14,6 +22,55 @@ package seasofyore.core;
  * -- e.g. {@code java seasofyore.core.StrategyArena HARD EXTREME 400}.
  * Defaults: HARD vs EXTREME over 200 games.</p>
  *
+ * <p>{@code java seasofyore.core.StrategyArena TOURNAMENT [games] [prefix]}
+ * instead plays every pairing of tiers in parallel and rates them; see
+ * {@link ArenaTournament}. Defaults: 100 games per pairing, written to
+ * {@code tournament.json} and {@code tournament.csv}.</p>
+ *
+ * <p>Appending {@code SPRT [gap] [alpha] [beta]} to a head-to-head run makes
+ * the game count a ceiling: the series stops as soon as a
+ * {@link SequentialTest} decides whether tierB beats tierA by at least the
+ * gap. Defaults: a 5-point gap with 5% error bounds either way. The test
+ * decides on the game that first crosses a bound; the series then stops
+ * once the pair that game belongs to is finished, so both sides have moved
+ * first equally often.</p>
+ *
+ * <p>Adding {@code SALVO} anywhere after the game count plays SALVO rules
+ * instead of Classic -- e.g. {@code HARD EXTREME 400 SALVO SPRT} -- and
+ * adds shots-per-turn efficiency and whole-volley decision latency to the
+ * report.</p>
+ *
+ * <p>For regression checks between builds, {@code CORPUS count file [seed]}
+ * generates a fixed {@link ScenarioCorpus}, and
+ * {@code REPLAY corpus results [tierA tierB] [SALVO]} replays it: the first
+ * time to record a baseline results file, afterwards to compare against it
+ * scenario by scenario (see {@link RegressionCheck}). A replay that flags a
+ * regression exits with status 1.</p>
+ *
+ * <p>{@code TUNE tier opponent games [GRID | RANDOM n] [prefix]} searches a
+ * tier's {@link AIParameters} for the cheapest settings that keep its win
+ * rate; see {@link ParameterTuner}. Defaults: EXTREME against HARD, 200
+ * games per candidate, the full grid, written to {@code tuning.csv}.</p>
+ *
+ * <p>{@code RECORD dir} after the game count of a head-to-head run records
+ * every game tierB loses as a {@link MatchReplay} in that directory, to be
+ * stepped through in the replay viewer.</p>
+ *
+ * <p>{@code ANALYZE dir [prefix]} streams every replay under a directory
+ * into placement heatmaps, first-hit distributions, and shots-to-sink per
+ * kind of player; see {@link ReplayAnalyzer}. Default prefix:
+ * {@code replays}.</p>
+ *
+ * <p>{@code PRIORS dir out [kind]} learns where one kind of player moors
+ * from every replay under a directory and compiles it into a
+ * {@link PlacementPriors} table for the hunt maps. Default kind:
+ * {@code HUMAN}.</p>
+ *
+ * <p>{@code PLACEMENT [games]} holds each way of mooring a fleet fixed and
+ * lets every tier hunt it, reporting shots-to-sink per hull, survival
+ * curves, and what each placement costs to generate; see
+ * {@link PlacementBenchmark}. Default: 200 games per policy and hunter.</p>
+ *
  * @author dylan
  */
 public final class StrategyArena
@@ -27,15 +84,114 @@ public final class StrategyArena
    * Entry point: parses the two tiers and the game count, runs the series,
    * and prints the report.
    *
-   * @param args optional: tierA tierB games
+   * @param args optional: tierA tierB games [SALVO] [SPRT gap alpha beta]
+   *             [RECORD dir];
+   *             or TOURNAMENT games prefix; or CORPUS count file seed; or
+   *             REPLAY corpus results tierA tierB SALVO; or TUNE tier
+   *             opponent games GRID|RANDOM n prefix; or PLACEMENT games;
+   *             or ANALYZE dir prefix; or PRIORS dir out kind
+   * @throws IOException if a tournament's, analysis's or table's output
+   *                     files cannot be written
    */
-  public static void main( String[] args )
+  public static void main( String[] args ) throws IOException
   {
+    if ( args.length > 0 && args[0].equalsIgnoreCase( "TOURNAMENT" ) )
+    {
+      int games = ( args.length > 1 ) ? Integer.parseInt( args[1] ) : 100;
+      String prefix = ( args.length > 2 ) ? args[2] : "tournament";
+      ArenaTournament.run( games, prefix );
+      return;
+    }
+
+    if ( args.length > 0 && args[0].equalsIgnoreCase( "PLACEMENT" ) )
+    {
+      PlacementBenchmark.run( ( args.length > 1 ) ? Integer.parseInt( args[1] ) : 200 );
+      return;
+    }
+
+    if ( args.length > 1 && args[0].equalsIgnoreCase( "ANALYZE" ) )
+    {
+      ReplayAnalyzer.run( Paths.get( args[1] ), ( args.length > 2 ) ? args[2] : "replays" );
+      return;
+    }
+
+    if ( args.length > 2 && args[0].equalsIgnoreCase( "PRIORS" ) )
+    {
+      PlayerType kind = ( args.length > 3 ) ? PlayerType.valueOf( args[3].toUpperCase() )
+                                            : PlayerType.HUMAN;
+      PlacementPriors.compile( Paths.get( args[1] ), Paths.get( args[2] ), kind );
+      return;
+    }
+
+    if ( args.length > 2 && args[0].equalsIgnoreCase( "CORPUS" ) )
+    {
+      int count = Integer.parseInt( args[1] );
+      long seed = ( args.length > 3 ) ? Long.parseLong( args[3] ) : System.nanoTime();
+      ScenarioCorpus.write( Paths.get( args[2] ), ScenarioCorpus.generate( count, seed ) );
+      System.out.printf( "wrote %d scenarios to %s (seed %d)%n", count, args[2], seed );
+      return;
+    }
+
+    if ( args.length > 2 && args[0].equalsIgnoreCase( "REPLAY" ) )
+    {
+      PlayerFactory.AIDifficulty a = parseTier( args, 3, PlayerFactory.AIDifficulty.HARD );
+      PlayerFactory.AIDifficulty b = parseTier( args, 4, PlayerFactory.AIDifficulty.EXTREME );
+      boolean salvo = ( args.length > 5 && args[5].equalsIgnoreCase( "SALVO" ) );
+      int regressions = RegressionCheck.run( Paths.get( args[1] ), Paths.get( args[2] ),
+                                             a, b, salvo );
+      if ( regressions > 0 )
+        System.exit( 1 );
+      return;
+    }
+
+    if ( args.length > 0 && args[0].equalsIgnoreCase( "TUNE" ) )
+    {
+      PlayerFactory.AIDifficulty tier = parseTier( args, 1, PlayerFactory.AIDifficulty.EXTREME );
+      PlayerFactory.AIDifficulty opponent = parseTier( args, 2, PlayerFactory.AIDifficulty.HARD );
+      int games = ( args.length > 3 ) ? Integer.parseInt( args[3] ) : 200;
+      int next = 4;
+      int random = 0;
+      if ( args.length > next && args[next].equalsIgnoreCase( "RANDOM" ) )
+      {
+        random = Integer.parseInt( args[next + 1] );
+        next += 2;
+      }
+      else if ( args.length > next && args[next].equalsIgnoreCase( "GRID" ) )
+        next++;
+      String prefix = ( args.length > next ) ? args[next] : "tuning";
+      ParameterTuner.run( tier, opponent, games, random, prefix );
+      return;
+    }
+
     PlayerFactory.AIDifficulty tierA = parseTier( args, 0, PlayerFactory.AIDifficulty.HARD );
     PlayerFactory.AIDifficulty tierB = parseTier( args, 1, PlayerFactory.AIDifficulty.EXTREME );
     int games = ( args.length > 2 ) ? Integer.parseInt( args[2] ) : 200;
 
-    run( tierA, tierB, games );
+    boolean salvo = false;
+    SequentialTest sprt = null;
+    Path recordDir = null;
+    for ( int i = 3; i < args.length; i++ )
+    {
+      if ( args[i].equalsIgnoreCase( "SALVO" ) )
+        salvo = true;
+      else if ( args[i].equalsIgnoreCase( "RECORD" ) && i + 1 < args.length )
+        recordDir = Paths.get( args[++i] );
+      else if ( args[i].equalsIgnoreCase( "SPRT" ) )
+      {
+        // up to three numbers may follow: gap, alpha, beta
+        double[] params = { 0.05, 0.05, 0.05 };
+        for ( int k = 0; k < params.length && i + 1 < args.length
+                         && isNumber( args[i + 1] ); k++ )
+          params[k] = Double.parseDouble( args[++i] );
+        sprt = new SequentialTest( params[0], params[1], params[2] );
+      }
+      else
+        throw new IllegalArgumentException( "unknown option: " + args[i] );
+    }
+
+    if ( recordDir != null )
+      Files.createDirectories( recordDir );
+    run( tierA, tierB, games, salvo, sprt, recordDir );
   }
 
   /**
@@ -55,74 +211,419 @@ public final class StrategyArena
   }
 
   /**
-   * Plays the full series and prints the report.
+   * Whether a command-line argument reads as a number.
    *
-   * @param tierA the first strategy tier
-   * @param tierB the second strategy tier
-   * @param games how many games to play
+   * @param arg the argument
+   * @return true if it parses as a double
+   */
+  private static boolean isNumber( String arg )
+  {
+    try
+    {
+      Double.parseDouble( arg );
+      return true;
+    }
+    catch ( NumberFormatException e )
+    {
+      return false;
+    }
+  }
+
+  /**
+   * Plays the series and prints the report.
+   *
+   * @param tierA    the first strategy tier
+   * @param tierB    the second strategy tier
+   * @param maxGames how many games to play, at most
+   * @param salvo    true for SALVO rules; false for Classic
+   * @param sprt     a sequential test to stop on, or null to play them all
+   * @param record   where to write replays of the games tierB loses, or null
+   * @throws IOException if a replay cannot be written
    */
   private static void run( PlayerFactory.AIDifficulty tierA,
-                           PlayerFactory.AIDifficulty tierB, int games )
+                           PlayerFactory.AIDifficulty tierB, int maxGames,
+                           boolean salvo, SequentialTest sprt, Path record )
+      throws IOException
   {
     int winsA = 0;
     int winsB = 0;
     long winnerShots = 0;
+    long winnerTurns = 0;
+    long[] shots = new long[2];   // per side: A, B
+    long[] turns = new long[2];
+
+    DecisionProfile profileA = new DecisionProfile();
+    DecisionProfile profileB = new DecisionProfile();
 
     long startMs = System.currentTimeMillis();
 
-    for ( int g = 0; g < games; g++ )
+    int games = 0;
+    while ( games < maxGames )
     {
-      // fresh boards, players, and (stateful) strategies every game
-      PlayerQuadrant quadA = new PlayerQuadrant();
-      PlayerQuadrant quadB = new PlayerQuadrant();
-      Player playerA = PlayerFactory.createAIPlayer( Civilization.BRITONS,
-                                                     quadA, quadB, tierA );
-      Player playerB = PlayerFactory.createAIPlayer( Civilization.FRANKS,
-                                                     quadB, quadA, tierB );
-      playerA.randomVesselPlacement();
-      playerB.randomVesselPlacement();
+      // stop between pairs of games only, so the first move stays balanced;
+      // a verdict reached mid-pair is latched and stands
+      if ( sprt != null && games % 2 == 0
+        && sprt.verdict() != SequentialTest.Verdict.UNDECIDED )
+        break;
 
+      int g = games++;
       // alternate who fires first so neither tier banks the tempo edge
-      Player attacker = ( g % 2 == 0 ) ? playerA : playerB;
-      Player defender = ( attacker == playerA ) ? playerB : playerA;
+      Outcome outcome = playGame( tierA, tierB, g % 2 == 0, salvo,
+                                  profileA, profileB, record != null );
+
+      if ( outcome.aWon && record != null )
+        outcome.replay.write( record.resolve( "arena-" + ( g + 1 ) + "."
+                                              + MatchReplay.FILE_EXTENSION ) );
+      if ( outcome.aWon )
+        winsA++;
+      else
+        winsB++;
+      winnerShots += outcome.winnerShots;
+      winnerTurns += outcome.winnerTurns;
+      shots[0] += outcome.shotsA;
+      shots[1] += outcome.shotsB;
+      turns[0] += outcome.turnsA;
+      turns[1] += outcome.turnsB;
+      if ( sprt != null )
+        sprt.record( !outcome.aWon );
+    }
+
+    long elapsedMs = System.currentTimeMillis() - startMs;
+    report( tierA, tierB, games, winsA, winsB, winnerShots, elapsedMs );
+    if ( salvo )
+    {
+      System.out.printf( "  SALVO: mean turns-to-victory %.1f; shots per turn "
+                         + "%s %.2f, %s %.2f%n",
+                         (double) winnerTurns / games,
+                         tierA, (double) shots[0] / turns[0],
+                         tierB, (double) shots[1] / turns[1] );
+    }
+    System.out.println( "  decision latency (calculateNextAttack):" );
+    profileA.print( tierA.toString() );
+    profileB.print( tierB.toString() );
+    if ( sprt != null )
+      reportSequential( tierA, tierB, sprt, games, maxGames );
+  }
+
+  /**
+   * Prints how the sequential test came out, and after how many games.
+   *
+   * @param tierA    the first tier
+   * @param tierB    the second tier
+   * @param sprt     the test
+   * @param games    games actually played
+   * @param maxGames the ceiling the series was given
+   */
+  private static void reportSequential( PlayerFactory.AIDifficulty tierA,
+                                        PlayerFactory.AIDifficulty tierB,
+                                        SequentialTest sprt, int games, int maxGames )
+  {
+    String gap = String.format( "%.1f points", 100.0 * sprt.getGap() );
+    String when = "decided after " + sprt.getDecidedAfter() + " of " + maxGames + " games";
+    if ( games > sprt.getDecidedAfter() )
+      when += " (" + games + " played, to finish the pair)";
+    switch ( sprt.verdict() )
+    {
+      case ACCEPT_H1:
+        System.out.printf( "  SPRT: %s is stronger than %s by %s or more -- %s%n",
+                           tierB, tierA, gap, when );
+        break;
+      case ACCEPT_H0:
+        System.out.printf( "  SPRT: %s is not stronger than %s by %s -- %s%n",
+                           tierB, tierA, gap, when );
+        break;
+      default:
+        System.out.printf( "  SPRT: undecided after all %d games (LLR %.2f)%n",
+                           games, sprt.getLlr() );
+        break;
+    }
+  }
+
+  /**
+   * The result of one arena game, seen from side A.
+   */
+  static final class Outcome
+  {
+    /** Whether side A sank the other fleet first. */
+    boolean aWon;
+    /** Whether side A fired the opening shot. */
+    boolean aFirst;
+    /** Shots the winner needed. */
+    int winnerShots;
+    /** Turns the winner needed; equal to its shots in Classic play. */
+    int winnerTurns;
+    /** Shots fired by side A. */
+    int shotsA;
+    /** Shots fired by side B. */
+    int shotsB;
+    /** Turns taken by side A. */
+    int turnsA;
+    /** Turns taken by side B. */
+    int turnsB;
+    /** Time side A spent on its turns (choosing and resolving), in nanoseconds. */
+    long nanosA;
+    /** Time side B spent on its turns, in nanoseconds. */
+    long nanosB;
+    /** The game shot by shot, side A as the Britons, if it was recorded. */
+    MatchReplay replay;
+  }
+
+  /**
+   * Plays one complete game between two freshly built AI players. Every
+   * game owns its boards, players, and (stateful) strategies, so games may
+   * safely run on several threads at once.
+   *
+   * @param tierA    side A's tier
+   * @param tierB    side B's tier
+   * @param aFirst   whether side A fires the opening shot
+   * @param salvo    true for SALVO volleys; false for one shot a turn
+   * @param profileA where to record side A's decisions, or null
+   * @param profileB where to record side B's decisions, or null
+   * @return the outcome, from side A's point of view
+   */
+  static Outcome playGame( PlayerFactory.AIDifficulty tierA,
+                           PlayerFactory.AIDifficulty tierB, boolean aFirst,
+                           boolean salvo,
+                           DecisionProfile profileA, DecisionProfile profileB )
+  {
+    return playGame( tierA, tierB, aFirst, salvo, profileA, profileB, false );
+  }
+
+  /**
+   * Plays one complete game, optionally recording it.
+   *
+   * @param tierA    side A's tier
+   * @param tierB    side B's tier
+   * @param aFirst   whether side A fires the opening shot
+   * @param salvo    true for SALVO volleys; false for one shot a turn
+   * @param profileA where to record side A's decisions, or null
+   * @param profileB where to record side B's decisions, or null
+   * @param record   whether to keep the game's replay in the outcome
+   * @return the outcome, from side A's point of view
+   */
+  static Outcome playGame( PlayerFactory.AIDifficulty tierA,
+                           PlayerFactory.AIDifficulty tierB, boolean aFirst,
+                           boolean salvo,
+                           DecisionProfile profileA, DecisionProfile profileB,
+                           boolean record )
+  {
+    PlayerQuadrant quadA = new PlayerQuadrant();
+    PlayerQuadrant quadB = new PlayerQuadrant();
+    Player playerA = PlayerFactory.createAIPlayer( Civilization.BRITONS,
+                                                   quadA, quadB, tierA );
+    Player playerB = PlayerFactory.createAIPlayer( Civilization.FRANKS,
+                                                   quadB, quadA, tierB );
+    playerA.randomVesselPlacement();
+    playerB.randomVesselPlacement();
+
+    ReplayRecorder replay = record
+        ? new ReplayRecorder( playerA, PlayerType.fromDifficulty( tierA ),
+                              playerB, PlayerType.fromDifficulty( tierB ), salvo )
+        : null;
+    return playOut( playerA, playerB, aFirst, salvo, profileA, profileB, replay );
+  }
+
+  /**
+   * Replays one fixed scenario: both fleets moored exactly as the corpus
+   * says and both strategies reseeded, so the game is fully determined by
+   * the scenario and the code under test.
+   *
+   * @param tierA    side A's tier
+   * @param tierB    side B's tier
+   * @param scenario the layouts, seeds, and first mover
+   * @param salvo    true for SALVO volleys; false for one shot a turn
+   * @param profileA where to record side A's decisions, or null
+   * @param profileB where to record side B's decisions, or null
+   * @return the outcome, from side A's point of view
+   */
+  static Outcome playScenario( PlayerFactory.AIDifficulty tierA,
+                               PlayerFactory.AIDifficulty tierB,
+                               ScenarioCorpus.Scenario scenario, boolean salvo,
+                               DecisionProfile profileA, DecisionProfile profileB )
+  {
+    return playScenario( tierA, AIParameters.DEFAULTS, tierB, AIParameters.DEFAULTS,
+                         scenario, salvo, profileA, profileB );
+  }
+
+  /**
+   * Replays one fixed scenario with each side's tier built from the given
+   * settings rather than the shipped ones.
+   *
+   * @param tierA    side A's tier
+   * @param paramsA  side A's settings
+   * @param tierB    side B's tier
+   * @param paramsB  side B's settings
+   * @param scenario the layouts, seeds, and first mover
+   * @param salvo    true for SALVO volleys; false for one shot a turn
+   * @param profileA where to record side A's decisions, or null
+   * @param profileB where to record side B's decisions, or null
+   * @return the outcome, from side A's point of view
+   */
+  static Outcome playScenario( PlayerFactory.AIDifficulty tierA, AIParameters paramsA,
+                               PlayerFactory.AIDifficulty tierB, AIParameters paramsB,
+                               ScenarioCorpus.Scenario scenario, boolean salvo,
+                               DecisionProfile profileA, DecisionProfile profileB )
+  {
+    PlayerQuadrant quadA = new PlayerQuadrant();
+    PlayerQuadrant quadB = new PlayerQuadrant();
+    AIPlayer playerA = (AIPlayer) PlayerFactory.createAIPlayer( Civilization.BRITONS,
+                                                                quadA, quadB, tierA,
+                                                                paramsA );
+    AIPlayer playerB = (AIPlayer) PlayerFactory.createAIPlayer( Civilization.FRANKS,
+                                                                quadB, quadA, tierB,
+                                                                paramsB );
+    playerA.getStrategy().reseed( scenario.seedA );
+    playerB.getStrategy().reseed( scenario.seedB );
+    moorFleet( playerA, scenario.layoutA );
+    moorFleet( playerB, scenario.layoutB );
+
+    return playOut( playerA, playerB, scenario.aFirst, salvo, profileA, profileB, null );
+  }
 
-      int turns = 0;
-      while ( true )
+  /**
+   * Places a player's standard fleet at fixed headings -- or, given no
+   * layout, lets the player's (already seeded) strategy moor it.
+   *
+   * @param player the player
+   * @param layout one heading per ship, in fleet order, or null
+   */
+  private static void moorFleet( Player player, ShipHeading[] layout )
+  {
+    if ( layout == null )
+    {
+      player.randomVesselPlacement();
+      return;
+    }
+
+    Ship[] ships = Ship.getListInstance();
+    for ( int i = 0; i < ships.length; i++ )
+      if ( !player.placeVessel( ships[i], layout[i] ) )
+        throw new IllegalArgumentException( "layout does not fit: ship " + i );
+  }
+
+  /**
+   * Plays a game between two placed players to the end.
+   *
+   * <p>In SALVO a turn is a volley of one shot per ship the attacker still
+   * has afloat, counted as the turn begins -- as AITurnPhase counts it.
+   * Like the AI in the UI, each shot of the volley is chosen, resolved, and
+   * fed back to the strategy before the next is chosen, and the game ends
+   * mid-volley the moment the last defending hull sinks.</p>
+   *
+   * @param playerA  side A
+   * @param playerB  side B
+   * @param aFirst   whether side A fires the opening shot
+   * @param salvo    true for SALVO volleys; false for one shot a turn
+   * @param profileA where to record side A's decisions, or null
+   * @param profileB where to record side B's decisions, or null
+   * @param replay   the recorder noting every shot, or null
+   * @return the outcome, from side A's point of view
+   */
+  private static Outcome playOut( Player playerA, Player playerB, boolean aFirst,
+                                  boolean salvo,
+                                  DecisionProfile profileA, DecisionProfile profileB,
+                                  ReplayRecorder replay )
+  {
+    Outcome outcome = new Outcome();
+    outcome.aFirst = aFirst;
+
+    Player attacker = aFirst ? playerA : playerB;
+    Player defender = ( attacker == playerA ) ? playerB : playerA;
+
+    int turns = 0;
+    boolean won = false;
+    while ( !won )
+    {
+      if ( ++turns > 2 * PlayerQuadrant.GRID_SIZE * PlayerQuadrant.GRID_SIZE )
+        throw new IllegalStateException( "game failed to terminate" );
+
+      boolean sideA = ( attacker == playerA );
+      DecisionProfile profile = sideA ? profileA : profileB;
+      int volley = salvo ? attacker.getRemainingShips() : 1;
+
+      long t0 = System.nanoTime();
+      int fired = 0;
+      while ( fired < volley && !won )
       {
-        if ( ++turns > 2 * PlayerQuadrant.GRID_SIZE * PlayerQuadrant.GRID_SIZE )
-          throw new IllegalStateException( "game failed to terminate" );
+        won = fireShot( attacker, defender, profile, replay );
+        fired++;
+      }
+      long spent = System.nanoTime() - t0;
+      if ( profile != null )
+        profile.endVolley( salvo );
 
-        if ( takeTurn( attacker, defender ) )
-          break; // defender's fleet is gone; attacker wins
+      if ( sideA )
+      {
+        outcome.shotsA += fired;
+        outcome.turnsA++;
+        outcome.nanosA += spent;
+      }
+      else
+      {
+        outcome.shotsB += fired;
+        outcome.turnsB++;
+        outcome.nanosB += spent;
+      }
 
+      if ( !won )
+      {
         Player swap = attacker;
         attacker = defender;
         defender = swap;
       }
-
-      if ( attacker == playerA )
-        winsA++;
-      else
-        winsB++;
-      winnerShots += ( turns + 1 ) / 2; // attacker fired on the odd turns
     }
 
-    long elapsedMs = System.currentTimeMillis() - startMs;
-    report( tierA, tierB, games, winsA, winsB, winnerShots, elapsedMs );
+    // the loop ends with the winner still holding the initiative
+    outcome.aWon = ( attacker == playerA );
+    outcome.winnerShots = outcome.aWon ? outcome.shotsA : outcome.shotsB;
+    outcome.winnerTurns = outcome.aWon ? outcome.turnsA : outcome.turnsB;
+    if ( replay != null )
+      outcome.replay = replay.finish( attacker.getCiv() );
+    return outcome;
   }
 
   /**
    * Plays one shot, mirroring the bookkeeping AITurnPhase performs in the
    * UI: true-hit detection via getShipAt (independent of fired state),
    * board update, deck sync, strategy feedback, and sink notification.
+   * The decision itself -- calculateNextAttack alone -- is timed into the
+   * profile, if one is given.
    *
    * @param attacker the player firing
    * @param defender the player being fired upon
+   * @param profile  where to record the decision, or null
    * @return true if this shot eliminated the defender's fleet
    */
-  private static boolean takeTurn( Player attacker, Player defender )
+  static boolean fireShot( Player attacker, Player defender,
+                           DecisionProfile profile )
   {
-    int[] shot = attacker.calculateNextAttack();
+    return fireShot( attacker, defender, profile, null );
+  }
+
+  /**
+   * Plays one shot, as above, noting it for a replay.
+   *
+   * @param attacker the player firing
+   * @param defender the player being fired upon
+   * @param profile  where to record the decision, or null
+   * @param replay   the recorder to note the shot with, or null
+   * @return true if this shot eliminated the defender's fleet
+   */
+  static boolean fireShot( Player attacker, Player defender,
+                           DecisionProfile profile, ReplayRecorder replay )
+  {
+    int[] shot;
+    if ( profile == null )
+      shot = attacker.calculateNextAttack();
+    else
+    {
+      boolean targeting = hasWoundedShip( defender );
+      long bytes0 = DecisionProfile.allocatedBytes();
+      long t0 = System.nanoTime();
+      shot = attacker.calculateNextAttack();
+      long nanos = System.nanoTime() - t0;
+      profile.record( targeting, nanos, DecisionProfile.allocatedBytes() - bytes0 );
+    }
     if ( shot == null )
       return false; // no targetable cell; cannot happen before a loss
 
@@ -132,6 +633,8 @@ public final class StrategyArena
     boolean hit = ( defender.getShipAt( x, y ) != null );
     defender.getFriendlyQuad().fireAtCell( x, y );
     defender.syncDecksToQuadrantState();
+    if ( replay != null )
+      replay.shot( attacker.getCiv(), x, y );
 
     attacker.processAttackResult( x, y, hit );
 
@@ -142,6 +645,21 @@ public final class StrategyArena
     return defender.hasLost();
   }
 
+  /**
+   * Whether any of a player's ships is hit but still afloat -- exactly when
+   * an attacker that plays by the rules is in target mode.
+   *
+   * @param defender the player being fired upon
+   * @return true if a wounded ship remains
+   */
+  private static boolean hasWoundedShip( Player defender )
+  {
+    for ( Ship ship : defender.getFleet() )
+      if ( ship.isDamaged() && !ship.isSunk() )
+        return true;
+    return false;
+  }
+
   /**
    * Prints the series result and the implied best-of-3 / best-of-5 odds.
    *
@@ -0,0 +1,59 @@
+package seasofyore.match;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.swing.SwingUtilities;
+
+/**
+ * Runs a pipe's inbound events on the EDT in batches. Each event from
+ * the network thread joins a lock-free queue, and only the first event
+ * to find the queue idle posts a dispatch. That one dispatch then runs
+ * every event queued by the time it runs, in arrival order. A burst of
+ * GRESULT, GCHAT and GENDTURN lines costs one EDT event, with no repaint
+ * between its lines, instead of one event per line.
+ *
+ * @author dylan
+ */
+final class EdtBatcher implements Executor
+{
+  private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+
+  /** Whether a dispatch has been posted and has not yet begun draining. */
+  private final AtomicBoolean posted = new AtomicBoolean( false );
+
+  /**
+   * Queues an event for the EDT, posting a dispatch if none is pending.
+   * Safe from any thread.
+   *
+   * @param event the event
+   */
+  @Override
+  public void execute( Runnable event )
+  {
+    pending.add( event );
+    if ( posted.compareAndSet( false, true ) )
+      SwingUtilities.invokeLater( this::dispatch );
+  }
+
+  /**
+   * On the EDT: runs everything queued. Events queued while it runs are
+   * taken too, or left to the dispatch they posted.
+   */
+  private void dispatch()
+  {
+    posted.set( false );
+    try
+    {
+      for ( Runnable event; ( event = pending.poll() ) != null; )
+        event.run();
+    }
+    finally
+    {
+      // a listener that threw must not strand the events behind it
+      if ( !pending.isEmpty() && posted.compareAndSet( false, true ) )
+        SwingUtilities.invokeLater( this::dispatch );
+    }
+  }
+}
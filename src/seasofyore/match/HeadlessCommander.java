@@ -0,0 +1,262 @@
+package seasofyore.match;
+
+import seasofyore.core.Board;
+import seasofyore.core.Civilization;
+import seasofyore.core.FleetSampler;
+import seasofyore.core.Player;
+import seasofyore.core.PlayerQuadrant;
+import seasofyore.core.PlayerType;
+import seasofyore.core.Ship;
+import seasofyore.core.ShipHeading;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/**
+ * One end of a networked match with nobody at it: a {@link MatchSession}
+ * on a {@link VirtualClock}, whose stage moors a fleet, fires at untried
+ * water in a random order the moment its turn comes, and ends the turn
+ * once every shot is answered. Fleet and targets come from a seed, so a
+ * pair of commanders on a simulated pipe play the same match every time.
+ * <p>
+ * It plays the protocol as the battle phases do: each shot is aimed as
+ * it is chosen, a SALVO volley is announced whole, and shots are resolved
+ * one after another in firing order.
+ *
+ * @author dylan
+ */
+final class HeadlessCommander implements MatchSession.Stage
+{
+  private final VirtualClock clock;
+  private final boolean salvo;
+  private final Random random;
+  private final Board board;
+  private final MatchSession session;
+
+  /** Hears how long each shot waited for its verdict, in nanoseconds. */
+  private final LongConsumer verdictWaits;
+
+  private boolean over = false;
+  private boolean won = false;
+  private String closedReason;
+  private int shotsFired = 0;
+
+  /** Every cell of the enemy's waters, in the order this end tries them. */
+  private final int[] firingOrder = new int[PlayerQuadrant.GRID_SIZE * PlayerQuadrant.GRID_SIZE];
+
+  /** Where in the firing order the next shot comes from. */
+  private int nextTarget = 0;
+
+  /**
+   * Takes one end of a connected simulated pipe.
+   *
+   * @param transport    the pipe
+   * @param host         whether this end hosts (and fires first)
+   * @param protocol     the protocol version both ends speak
+   * @param salvo        whether the match is played by SALVO rules
+   * @param clock        the clock the pipe runs on
+   * @param seed         seeds the fleet and the targets
+   * @param verdictWaits hears each shot's wait for its verdict
+   */
+  HeadlessCommander( MatchTransport transport, boolean host, int protocol, boolean salvo,
+                     VirtualClock clock, long seed, LongConsumer verdictWaits )
+  {
+    this.clock = clock;
+    this.salvo = salvo;
+    this.random = new Random( seed );
+    this.verdictWaits = verdictWaits;
+    this.board = host ? new Board( PlayerType.HUMAN, PlayerType.REMOTE )
+                      : new Board( PlayerType.REMOTE, PlayerType.HUMAN );
+    this.session = new MatchSession( transport, host, protocol, this, clock::nanoTime );
+    session.begin( board );
+  }
+
+  /**
+   * Moors the fleet, declares it ready, and starts the heartbeat where
+   * the protocol has one.
+   */
+  void start()
+  {
+    Player local = session.getLocalPlayer();
+    Ship[] ships = Ship.getListInstance();
+    ShipHeading[] headings = FleetSampler.sampleFleet( ships, true, random );
+    for ( int i = 0; i < ships.length; i++ )
+      local.placeVessel( ships[i], headings[i] );
+
+    for ( int i = 0; i < firingOrder.length; i++ )
+    {
+      int j = random.nextInt( i + 1 );
+      firingOrder[i] = firingOrder[j];
+      firingOrder[j] = i;
+    }
+
+    session.declareReady();
+    if ( session.getProtocol() >= 5 )
+      clock.schedule( MatchSession.HEARTBEAT_MS, TimeUnit.MILLISECONDS, this::beat );
+  }
+
+  /**
+   * @return whether the match is over for this end, however it ended
+   */
+  boolean isOver()
+  {
+    return over;
+  }
+
+  /**
+   * @return whether this end won
+   */
+  boolean hasWon()
+  {
+    return won;
+  }
+
+  /**
+   * @return why the pipe ended before the match did; null if it did not
+   */
+  String getClosedReason()
+  {
+    return closedReason;
+  }
+
+  /**
+   * @return how many shots this end has had answered
+   */
+  int getShotsFired()
+  {
+    return shotsFired;
+  }
+
+  /**
+   * @return the enemy's waters, as far as this end knows them
+   */
+  PlayerQuadrant getEnemyWaters()
+  {
+    return session.getRemotePlayer().getFriendlyQuad();
+  }
+
+  /**
+   * @return this end's own waters
+   */
+  PlayerQuadrant getOwnWaters()
+  {
+    return session.getLocalPlayer().getFriendlyQuad();
+  }
+
+  private void beat()
+  {
+    if ( !over && session.beat() )
+      clock.schedule( MatchSession.HEARTBEAT_MS, TimeUnit.MILLISECONDS, this::beat );
+  }
+
+  /**
+   * Fires this turn's shots, if it is this end's turn.
+   */
+  private void takeTurn()
+  {
+    if ( over || board.getCurrentPlayer() != session.getLocalPlayer() )
+      return;
+
+    PlayerQuadrant enemy = getEnemyWaters();
+    int owed = salvo ? session.getLocalPlayer().getRemainingShips() : 1;
+    int[][] volley = new int[owed][];
+    int chosen = 0;
+    while ( chosen < owed && nextTarget < firingOrder.length )
+    {
+      int cell = firingOrder[nextTarget++];
+      int x = cell / PlayerQuadrant.GRID_SIZE;
+      int y = cell % PlayerQuadrant.GRID_SIZE;
+      if ( enemy.cellIsTargetable( x, y ) )
+        volley[chosen++] = new int[] { x, y };
+    }
+    if ( chosen < owed )
+      volley = Arrays.copyOf( volley, chosen );
+    if ( volley.length == 0 )
+    {
+      endTurn();
+      return;
+    }
+
+    long aimedAt = clock.nanoTime();
+    for ( int[] shot : volley )
+      session.aimShot( shot[0], shot[1] );
+    session.announceVolley( volley );
+    resolve( volley, 0, aimedAt );
+  }
+
+  /**
+   * Resolves the volley from shot {@code next} on, each once the one
+   * before it has its verdict.
+   */
+  private void resolve( int[][] volley, int next, long aimedAt )
+  {
+    if ( over )
+      return;
+    if ( next == volley.length )
+    {
+      endTurn();
+      return;
+    }
+
+    int x = volley[next][0];
+    int y = volley[next][1];
+    session.resolveOutgoingShot( x, y, ( hit, sunkType, defeated ) ->
+    {
+      board.recordShotFired( x, y );
+      shotsFired++;
+      verdictWaits.accept( clock.nanoTime() - aimedAt );
+      if ( defeated )
+      {
+        over = true;
+        won = true;
+      }
+      else
+        resolve( volley, next + 1, aimedAt );
+    });
+  }
+
+  private void endTurn()
+  {
+    session.endTurn();
+    board.switchTurns();
+  }
+
+  // ------------------------------------------------------------------
+  // MatchSession.Stage
+  // ------------------------------------------------------------------
+
+  @Override
+  public void battleBegins()
+  {
+    board.forceCurrentPlayer( Civilization.BRITONS );
+    clock.execute( this::takeTurn );
+  }
+
+  @Override
+  public void remoteTurnEnded()
+  {
+    board.switchTurns();
+    clock.execute( this::takeTurn );
+  }
+
+  @Override
+  public void defeated()
+  {
+    over = true;
+  }
+
+  @Override
+  public void enemyForfeited()
+  {
+    over = true;
+    won = true;
+  }
+
+  @Override
+  public void closed( String reason )
+  {
+    over = true;
+    closedReason = reason;
+  }
+}
@@ -0,0 +1,270 @@
+package seasofyore.match;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Makes a simulated pipe behave like a real link: what this end sends is
+ * held back on a {@link VirtualClock} for the link's bandwidth, latency and
+ * jitter before the wrapped pipe carries it, and the link may drop
+ * altogether at a set time. Wrap both ends of a
+ * {@link LoopbackMatchTransport} to impair both directions.
+ * <p>
+ * Like TCP, the link never reorders: a line that drew less jitter than
+ * the one before it waits for that one. Each line occupies the link for
+ * its own length at the given bandwidth, so a burst queues behind itself.
+ * Jitter is drawn from a seeded generator, so the same seed and the same
+ * traffic give the same timings on every run.
+ * <p>
+ * A disconnect loses whatever was still crossing, closes the wrapped pipe
+ * so the far end hears of it, and tells this end's listener too.
+ *
+ * @author dylan
+ */
+public final class ImpairedMatchTransport implements MatchTransport
+{
+  /**
+   * What a link is like. Immutable.
+   */
+  public static final class Conditions
+  {
+    /** A link with nothing wrong with it. */
+    public static final Conditions PERFECT = new Conditions( 0, 0, 0, -1 );
+
+    /** A home network: near, quick and steady. */
+    public static final Conditions LAN = new Conditions( 1, 0, 10_000_000, -1 );
+
+    /** Across the country on broadband. */
+    public static final Conditions BROADBAND = new Conditions( 40, 8, 1_000_000, -1 );
+
+    /** A phone on a busy cell. */
+    public static final Conditions MOBILE = new Conditions( 120, 60, 32_000, -1 );
+
+    final long latencyMs;
+    final long jitterMs;
+    final long bytesPerSecond;
+    final long disconnectMs;
+
+    /**
+     * @param latencyMs      the one-way delay, in milliseconds
+     * @param jitterMs       the most the delay varies either way
+     * @param bytesPerSecond the link's bandwidth; 0 for unlimited
+     * @param disconnectMs   when the link drops, in milliseconds after the
+     *                       transport is made; negative for never
+     */
+    public Conditions( long latencyMs, long jitterMs, long bytesPerSecond, long disconnectMs )
+    {
+      if ( latencyMs < 0 || jitterMs < 0 || bytesPerSecond < 0 )
+        throw new IllegalArgumentException( "link conditions cannot be negative" );
+      this.latencyMs = latencyMs;
+      this.jitterMs = jitterMs;
+      this.bytesPerSecond = bytesPerSecond;
+      this.disconnectMs = disconnectMs;
+    }
+
+    /**
+     * @param afterMs when the link drops, in milliseconds after the
+     *                transport is made
+     * @return these conditions, with the link dropping then
+     */
+    public Conditions disconnectingAfter( long afterMs )
+    {
+      return new Conditions( latencyMs, jitterMs, bytesPerSecond, afterMs );
+    }
+
+    @Override
+    public String toString()
+    {
+      return latencyMs + "+/-" + jitterMs + " ms, "
+           + ( bytesPerSecond == 0 ? "unlimited" : bytesPerSecond + " B/s" )
+           + ( disconnectMs < 0 ? "" : ", drops at " + disconnectMs + " ms" );
+    }
+  }
+
+  private final MatchTransport inner;
+  private final VirtualClock clock;
+  private final Conditions conditions;
+  private final Random jitter;
+
+  /** When the link finishes sending what it has been given. */
+  private long linkFreeAt;
+
+  /** When the last thing sent arrives; nothing may arrive before it. */
+  private long lastArrival;
+
+  private Listener listener;
+  private boolean closed = false;
+
+  /** Whether the link has dropped. */
+  private boolean cut = false;
+
+  /**
+   * Wraps a simulated pipe. Its listener is this wrapper's from now on.
+   *
+   * @param inner      the pipe to send through
+   * @param clock      the clock the pipe runs on
+   * @param conditions what the link is like
+   * @param seed       seeds the jitter
+   */
+  public ImpairedMatchTransport( MatchTransport inner, VirtualClock clock,
+                                 Conditions conditions, long seed )
+  {
+    this.inner = inner;
+    this.clock = clock;
+    this.conditions = conditions;
+    this.jitter = new Random( seed );
+    this.linkFreeAt = clock.nanoTime();
+    this.lastArrival = clock.nanoTime();
+
+    inner.setListener( new Listener()
+    {
+      @Override
+      public void onLine( String line )
+      {
+        if ( !cut && listener != null )
+          listener.onLine( line );
+      }
+
+      @Override
+      public void onMessage( long message )
+      {
+        if ( !cut && listener != null )
+          listener.onMessage( message );
+      }
+
+      @Override
+      public void onClosed( String reason )
+      {
+        if ( cut )
+          return;
+        cut = true; // the pipe is over; a later drop has nothing to tell
+        if ( listener != null )
+          listener.onClosed( reason );
+      }
+    });
+
+    if ( conditions.disconnectMs >= 0 )
+      clock.schedule( conditions.disconnectMs, TimeUnit.MILLISECONDS, this::disconnect );
+  }
+
+  @Override
+  public void setListener( Listener listener )
+  {
+    this.listener = listener;
+  }
+
+  @Override
+  public void sendLine( final String line ) throws IOException
+  {
+    carry( utf8Length( line ) + 1, () -> inner.sendLine( line ) );
+  }
+
+  @Override
+  public boolean carriesFrames()
+  {
+    return inner.carriesFrames();
+  }
+
+  @Override
+  public void sendMessage( final long message ) throws IOException
+  {
+    int length = inner.carriesFrames()
+               ? WireCodec.frameLength( WireCodec.opcode( message ) )
+               : utf8Length( WireCodec.format( message ) ) + 1;
+    carry( length, () -> inner.sendMessage( message ) );
+  }
+
+  /**
+   * Closes the wrapped pipe once everything already sent has arrived.
+   */
+  @Override
+  public void close()
+  {
+    if ( closed )
+      return;
+    closed = true;
+    clock.schedule( lastArrival - clock.nanoTime(), TimeUnit.NANOSECONDS, () ->
+    {
+      if ( !cut )
+        inner.close();
+    });
+  }
+
+  /**
+   * Something of this many bytes goes onto the link now: works out when
+   * it arrives, and has the wrapped pipe carry it then.
+   */
+  private void carry( int bytes, Send send ) throws IOException
+  {
+    if ( closed || cut )
+      throw new IOException( "transport is closed" );
+
+    long now = clock.nanoTime();
+    long transmit = conditions.bytesPerSecond == 0
+                  ? 0 : bytes * 1_000_000_000L / conditions.bytesPerSecond;
+    linkFreeAt = Math.max( linkFreeAt, now ) + transmit;
+
+    long delay = TimeUnit.MILLISECONDS.toNanos( conditions.latencyMs );
+    if ( conditions.jitterMs > 0 )
+    {
+      long spread = TimeUnit.MILLISECONDS.toNanos( conditions.jitterMs );
+      delay += (long) ( ( jitter.nextDouble() * 2 - 1 ) * spread );
+    }
+    lastArrival = Math.max( lastArrival, linkFreeAt + Math.max( 0, delay ) );
+
+    clock.schedule( lastArrival - now, TimeUnit.NANOSECONDS, () ->
+    {
+      if ( cut )
+        return; // lost with the link
+      try
+      {
+        send.send();
+      }
+      catch ( IOException ex )
+      {
+        // the far end has already gone; it arrives nowhere
+      }
+    });
+  }
+
+  /**
+   * The link drops: closes the wrapped pipe and tells this end.
+   */
+  private void disconnect()
+  {
+    if ( cut || closed )
+      return;
+    cut = true;
+    inner.close();
+    if ( listener != null )
+      listener.onClosed( "the connection was lost" );
+  }
+
+  /**
+   * How many bytes a line takes as UTF-8, without encoding it.
+   */
+  private static int utf8Length( String line )
+  {
+    int bytes = 0;
+    for ( int i = 0; i < line.length(); i++ )
+    {
+      char c = line.charAt( i );
+      if ( c < 0x80 )
+        bytes += 1;
+      else if ( c < 0x800 || Character.isSurrogate( c ) )
+        bytes += 2; // a surrogate pair is four
+      else
+        bytes += 3;
+    }
+    return bytes;
+  }
+
+  /**
+   * One deferred send through the wrapped pipe.
+   */
+  private interface Send
+  {
+    void send() throws IOException;
+  }
+}
@@ -14,10 +14,12 @@ public final class LANClientMatchHandler extends LANMatchHandler
    * @param transport  the connected transport from MatchConnector.joinLan
    * @param localName  the local commander's name
    * @param remoteName the remote commander's name
+   * @param protocol   the protocol version both sides speak
    */
   public LANClientMatchHandler( MatchTransport transport,
-                                String localName, String remoteName )
+                                String localName, String remoteName,
+                                int protocol )
   {
-    super( transport, false, localName, remoteName );
+    super( transport, false, localName, remoteName, protocol );
   }
 }
@@ -0,0 +1,233 @@
+package seasofyore.match;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * How the line to the enemy is holding up, from its heartbeat round trips:
+ * a smoothed round-trip time, weighted 1/8 to each new sample as TCP
+ * weighs its own, and the jitter between successive samples, weighted
+ * 1/16 as RTP's is. Every sample is also appended to a per-match CSV under
+ * {@link #defaultDirectory()}, so LAN and relay matches can be compared
+ * afterwards.
+ * <p>
+ * Touched on its session's thread only; the file itself is created and
+ * written on a background thread, so a slow disk or a home directory on
+ * the network never stalls a heartbeat. A metrics file that cannot be
+ * written costs the file, never the match.
+ *
+ * @author dylan
+ */
+final class LinkMetrics
+{
+  /** When the match's metrics began, for the file's time column. */
+  private final long startNanos = System.nanoTime();
+
+  /** The smoothed round trip; negative until the first sample. */
+  private double smoothedMs = -1;
+
+  /** The smoothed difference between successive round trips. */
+  private double jitterMs = 0;
+
+  private double lastMs;
+  private double minMs = Double.MAX_VALUE;
+  private double maxMs = 0;
+  private int samples = 0;
+
+  /**
+   * The thread every metrics file is written on: one for all matches, so
+   * each file's lines keep their order. A daemon, since a record cut short
+   * at exit costs nothing.
+   */
+  private static final ExecutorService WRITER = Executors.newSingleThreadExecutor( r ->
+  {
+    Thread t = new Thread( r, "link-metrics" );
+    t.setDaemon( true );
+    return t;
+  } );
+
+  /** Whether lines are sent to the writer: from open until close. */
+  private boolean recording = false;
+
+  /** Set by the writer once the file has failed; nothing more is sent. */
+  private volatile boolean failed = false;
+
+  /** The open metrics file; null until opened, and once closed. Writer only. */
+  private BufferedWriter file;
+
+  /**
+   * The directory per-match metrics are kept in:
+   * {@code .seasofyore/metrics} under the user's home.
+   *
+   * @return the directory
+   */
+  static Path defaultDirectory()
+  {
+    return Paths.get( System.getProperty( "user.home" ), ".seasofyore", "metrics" );
+  }
+
+  /**
+   * Starts this match's metrics file. The file is created in the
+   * background; if it cannot be, the match simply goes unrecorded.
+   *
+   * @param dir    the directory to write it in
+   * @param header what the match was, for the file's first line
+   */
+  void open( Path dir, String header )
+  {
+    Path path = dir.resolve( "match-" + System.currentTimeMillis() + ".csv" );
+    recording = true;
+    WRITER.execute( () ->
+    {
+      try
+      {
+        Files.createDirectories( dir );
+        file = Files.newBufferedWriter( path, StandardCharsets.UTF_8 );
+      }
+      catch ( IOException ex )
+      {
+        failed = true;
+      }
+    } );
+    write( "# " + header );
+    write( "elapsed_ms,rtt_ms,smoothed_ms,jitter_ms" );
+  }
+
+  /**
+   * Takes one heartbeat's round trip.
+   *
+   * @param rttMs the round trip, in milliseconds
+   */
+  void sample( double rttMs )
+  {
+    if ( samples++ == 0 )
+    {
+      smoothedMs = rttMs;
+    }
+    else
+    {
+      smoothedMs += ( rttMs - smoothedMs ) / 8;
+      jitterMs += ( Math.abs( rttMs - lastMs ) - jitterMs ) / 16;
+    }
+    lastMs = rttMs;
+    minMs = Math.min( minMs, rttMs );
+    maxMs = Math.max( maxMs, rttMs );
+
+    write( String.format( Locale.ROOT, "%d,%.3f,%.3f,%.3f",
+                          elapsedMs(), rttMs, smoothedMs, jitterMs ) );
+  }
+
+  /**
+   * Notes an event in the file, as a comment line.
+   *
+   * @param event what happened
+   */
+  void note( String event )
+  {
+    write( "# " + elapsedMs() + " " + event );
+  }
+
+  /**
+   * @return the smoothed round trip in milliseconds; negative before the
+   *         first sample
+   */
+  double getSmoothedMs()
+  {
+    return smoothedMs;
+  }
+
+  /**
+   * @return the smoothed jitter in milliseconds
+   */
+  double getJitterMs()
+  {
+    return jitterMs;
+  }
+
+  /**
+   * The status line's account of the link.
+   *
+   * @param silentMs how long the enemy has been silent, if long enough to
+   *                 mention; 0 otherwise
+   * @return the text, or null before there is anything to say
+   */
+  String status( long silentMs )
+  {
+    if ( silentMs > 0 )
+      return "no word for " + silentMs / 1000 + " s";
+    if ( samples == 0 )
+      return null;
+    return String.format( Locale.ROOT, "RTT %.0f ms, jitter %.0f ms", smoothedMs, jitterMs );
+  }
+
+  /**
+   * Writes the summary and closes the file. Idempotent.
+   */
+  void close()
+  {
+    if ( !recording )
+      return;
+    if ( samples > 0 )
+      note( String.format( Locale.ROOT,
+          "%d samples; rtt min %.3f smoothed %.3f max %.3f; jitter %.3f",
+          samples, minMs, smoothedMs, maxMs, jitterMs ) );
+    recording = false;
+    WRITER.execute( this::discard );
+  }
+
+  private long elapsedMs()
+  {
+    return ( System.nanoTime() - startNanos ) / 1_000_000L;
+  }
+
+  /**
+   * Hands a line to the writer to append, giving the file up if it fails.
+   */
+  private void write( String line )
+  {
+    if ( !recording || failed )
+      return;
+    WRITER.execute( () ->
+    {
+      if ( file == null )
+        return;
+      try
+      {
+        file.write( line );
+        file.newLine();
+        file.flush();
+      }
+      catch ( IOException ex )
+      {
+        failed = true;
+        discard();
+      }
+    } );
+  }
+
+  /**
+   * Closes the file, if it is open, and stops writing to it. Writer only.
+   */
+  private void discard()
+  {
+    BufferedWriter open = file;
+    file = null;
+    if ( open == null )
+      return;
+    try
+    {
+      open.close();
+    }
+    catch ( IOException ex )
+    {
+      // best effort
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package seasofyore.match;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Holds a pipe's inbound events until someone listens. A transport starts
+ * reading as soon as it is connected, which may be before the handshake
+ * has named a listener; whatever reaches the EDT first waits here, in
+ * order, and is passed on when {@link #setListener} names someone to hear
+ * it. After that, events go straight through.
+ * <p>
+ * The transport hands each event to this gate on the EDT, through the
+ * gate's own {@link MatchTransport.Listener} methods.
+ *
+ * @author dylan
+ */
+final class ListenerGate implements MatchTransport.Listener
+{
+  private volatile MatchTransport.Listener listener;
+
+  /** Events that reached the EDT before any listener; touched on the EDT only. */
+  private final Queue<Consumer<MatchTransport.Listener>> held = new ArrayDeque<>();
+
+  /**
+   * Names the listener. Safe from any thread: the events already held are
+   * passed on through {@code edt}, behind everything already on its way.
+   *
+   * @param listener the listener
+   * @param edt      the transport's way onto the EDT
+   */
+  void setListener( MatchTransport.Listener listener, Executor edt )
+  {
+    this.listener = listener;
+    edt.execute( this::release );
+  }
+
+  @Override
+  public void onLine( String line )
+  {
+    arrive( current -> current.onLine( line ) );
+  }
+
+  @Override
+  public void onMessage( long message )
+  {
+    arrive( current -> current.onMessage( message ) );
+  }
+
+  @Override
+  public void onClosed( String reason )
+  {
+    arrive( current -> current.onClosed( reason ) );
+  }
+
+  /**
+   * On the EDT: queues an event behind any still held, and passes on all
+   * of them if someone is listening.
+   */
+  private void arrive( Consumer<MatchTransport.Listener> event )
+  {
+    held.add( event );
+    release();
+  }
+
+  /**
+   * On the EDT: passes every held event to the listener, if there is one.
+   */
+  private void release()
+  {
+    MatchTransport.Listener current = listener;
+    if ( current == null )
+      return;
+    for ( Consumer<MatchTransport.Listener> event; ( event = held.poll() ) != null; )
+      event.accept( current );
+  }
+}
@@ -0,0 +1,140 @@
+package seasofyore.match;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * Both ends of a pipe in one process, without a socket: what one end
+ * sends joins the other end's inbox, and the inbox is handed to its
+ * listener by a task on a {@link VirtualClock}. Nothing crosses until the
+ * clock is driven, and then it crosses in order and at once; for a link
+ * that takes time, wrap either end in an {@link ImpairedMatchTransport}.
+ * <p>
+ * Messages cross as the packed longs they are, never encoded, so the
+ * pipe {@link #carriesFrames carries frames} for free. Listener callbacks
+ * run on the thread driving the clock, not on the EDT.
+ * <p>
+ * {@link #close} lets what was already sent arrive, then tells the other
+ * end the pipe has closed, as a socket's peer would hear it.
+ *
+ * @author dylan
+ */
+public final class LoopbackMatchTransport implements MatchTransport
+{
+  private final VirtualClock clock;
+
+  /** Lines, and messages boxed as Longs, not yet handed to the listener. */
+  private final Queue<Object> inbox = new ArrayDeque<>();
+
+  private LoopbackMatchTransport peer;
+  private Listener listener;
+  private boolean closed = false;
+
+  /** Whether the peer closed, once the inbox has drained up to it. */
+  private boolean peerClosed = false;
+
+  /**
+   * Makes one end of a new pipe; the other is {@link #getPeer}.
+   *
+   * @param clock the clock that carries the pipe's traffic
+   */
+  public LoopbackMatchTransport( VirtualClock clock )
+  {
+    this.clock = clock;
+    this.peer = new LoopbackMatchTransport( clock, this );
+  }
+
+  private LoopbackMatchTransport( VirtualClock clock, LoopbackMatchTransport peer )
+  {
+    this.clock = clock;
+    this.peer = peer;
+  }
+
+  /**
+   * @return the pipe's other end
+   */
+  public LoopbackMatchTransport getPeer()
+  {
+    return peer;
+  }
+
+  @Override
+  public void setListener( Listener listener )
+  {
+    this.listener = listener;
+  }
+
+  @Override
+  public void sendLine( String line ) throws IOException
+  {
+    post( line );
+  }
+
+  /**
+   * Always: messages cross as they are.
+   */
+  @Override
+  public boolean carriesFrames()
+  {
+    return true;
+  }
+
+  @Override
+  public void sendMessage( long message ) throws IOException
+  {
+    post( message );
+  }
+
+  @Override
+  public void close()
+  {
+    if ( closed )
+      return;
+    closed = true;
+    clock.execute( peer::hangUp );
+  }
+
+  /**
+   * Puts something in the peer's inbox, and has the clock deliver it if
+   * nothing else is already waiting to be.
+   */
+  private void post( Object item ) throws IOException
+  {
+    if ( closed || peerClosed )
+      throw new IOException( "transport is closed" );
+    boolean idle = peer.inbox.isEmpty();
+    peer.inbox.add( item );
+    if ( idle )
+      clock.execute( peer::drain );
+  }
+
+  /**
+   * Hands everything in the inbox to the listener, in order.
+   */
+  private void drain()
+  {
+    for ( Object item; ( item = inbox.poll() ) != null; )
+    {
+      if ( closed || listener == null )
+        continue; // nobody to hear it
+      if ( item instanceof Long )
+        listener.onMessage( (Long) item );
+      else
+        listener.onLine( (String) item );
+    }
+  }
+
+  /**
+   * The other end closed, behind whatever it sent before.
+   */
+  private void hangUp()
+  {
+    drain();
+    if ( peerClosed || closed )
+      return;
+    peerClosed = true;
+    if ( listener != null )
+      listener.onClosed( "the connection was closed" );
+  }
+}
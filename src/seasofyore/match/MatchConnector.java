@@ -3,12 +3,15 @@ package seasofyore.match;
 import javalabrelay.RelayClient;
 import javalabrelay.RelayTransports;
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.UnknownHostException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
-import javax.swing.SwingUtilities;
 
 /**
  * Establishes networked matches before any game exists: it produces a
@@ -19,12 +22,22 @@ import javax.swing.SwingUtilities;
  *
  * <h2>The pre-game handshake</h2>
  * <pre>
- *   host  → GHELLO 1 &lt;name&gt;
+ *   host  → GHELLO &lt;version&gt; &lt;name&gt;
+ *   host  → GWIRE BINARY|TEXT
  *   host  → GRULES CLASSIC|SALVO
- *   joiner→ GHELLO 1 &lt;name&gt;
+ *   joiner→ GHELLO &lt;version&gt; &lt;name&gt;
+ *   joiner→ GWIRE BINARY|TEXT
  * </pre>
  * The host decides the rules; the joiner learns them here, which is why
  * the handshake precedes (and parameterizes) the game's construction.
+ * Each side names the newest protocol version it speaks, and the match
+ * uses the older of the two, so an older build still plays a newer one.
+ * Version 2 adds whole SALVO volleys in one message (GVOLLEY); version 3
+ * numbers shots so that several may be in the air at once (GFIRE).
+ * Version 4 adds GWIRE: each side says whether its pipe can carry binary
+ * frames, and the fixed-shape messages travel as {@link WireCodec} frames
+ * if both can. Older builds ignore the line and speak text throughout.
+ * Version 5 adds the GPING/GPONG heartbeat.
  *
  * @author dylan
  */
@@ -40,12 +53,17 @@ public final class MatchConnector
    */
   private static final int PAIRING_TIMEOUT_MS = 5 * 60_000;
 
+  /**
+   * The newest protocol version this build speaks.
+   */
+  public static final int PROTOCOL_VERSION = 5;
+
   /**
    * Everything the multiplayer screen needs to build the game.
    */
   public static final class Connection
   {
-    /** The connected, handshaken pipe. */
+    /** The connected, handshaken pipe, sending through an outbox. */
     public final MatchTransport transport;
     /** Whether this screen hosts (Britons, first shot). */
     public final boolean host;
@@ -53,14 +71,18 @@ public final class MatchConnector
     public final String remoteName;
     /** Whether the match uses SALVO rules (decided by the host). */
     public final boolean salvo;
+    /** The protocol version both sides speak. */
+    public final int protocol;
 
     Connection( MatchTransport transport, boolean host,
-                String remoteName, boolean salvo )
+                HandshakeResult handshake )
     {
-      this.transport = transport;
+      // from here on the game sends, and the game must never wait on the wire
+      this.transport = new QueuedMatchTransport( transport, handshake.binary );
       this.host = host;
-      this.remoteName = remoteName;
-      this.salvo = salvo;
+      this.remoteName = handshake.remoteName;
+      this.salvo = handshake.salvo;
+      this.protocol = handshake.protocol;
     }
   }
 
@@ -69,12 +91,38 @@ public final class MatchConnector
    */
   private MatchConnector() {}
 
+  /**
+   * Opens a LAN harbour: a listening socket whose accepted connections
+   * are carried by the shared selector thread (see
+   * {@link NioMatchTransport}) rather than a reader thread apiece.
+   *
+   * @param port the port to listen on; 0 for any free port
+   * @return the listening socket
+   * @throws IOException if the port cannot be bound
+   */
+  public static ServerSocket openHarbour( int port ) throws IOException
+  {
+    ServerSocketChannel harbour = ServerSocketChannel.open();
+    try
+    {
+      harbour.socket().setReuseAddress( true );
+      harbour.bind( new InetSocketAddress( port ) );
+    }
+    catch ( IOException ex )
+    {
+      harbour.close();
+      throw ex;
+    }
+    return harbour.socket();
+  }
+
   /**
    * Hosts a LAN match: listens until an opponent dials in, then
    * handshakes as host.
    *
    * @param serverSocket the listening socket (owned by the caller so its
-   *                     Cancel button can close it to abort the wait)
+   *                     Cancel button can close it to abort the wait);
+   *                     one from {@link #openHarbour} spares a thread
    * @param name         the local commander's name
    * @param salvo        the rules this host has chosen
    * @return the established connection
@@ -84,9 +132,10 @@ public final class MatchConnector
                                     boolean salvo ) throws IOException
   {
     Socket socket = serverSocket.accept();
-    MatchTransport transport = new TcpMatchTransport( socket );
-    String remoteName = handshake( transport, true, name, salvo ).remoteName;
-    return new Connection( transport, true, remoteName, salvo );
+    MatchTransport transport = ( socket.getChannel() != null )
+                             ? new NioMatchTransport( socket.getChannel() )
+                             : new TcpMatchTransport( socket );
+    return new Connection( transport, true, handshake( transport, true, name, salvo ) );
   }
 
   /**
@@ -111,10 +160,12 @@ public final class MatchConnector
       port = Integer.parseInt( hostAddress.substring( colon + 1 ) );
     }
 
-    Socket socket = new Socket( host, port );
-    MatchTransport transport = new TcpMatchTransport( socket );
-    HandshakeResult result = handshake( transport, false, name, false );
-    return new Connection( transport, false, result.remoteName, result.salvo );
+    InetSocketAddress address = new InetSocketAddress( host, port );
+    if ( address.isUnresolved() )
+      throw new UnknownHostException( host );
+    SocketChannel channel = SocketChannel.open( address );
+    MatchTransport transport = new NioMatchTransport( channel );
+    return new Connection( transport, false, handshake( transport, false, name, false ) );
   }
 
   /**
@@ -132,8 +183,7 @@ public final class MatchConnector
       throws IOException
   {
     RelayMatchTransport transport = openRelayRoom( roomCode, true, cancel );
-    String remoteName = handshake( transport, true, name, salvo ).remoteName;
-    return new Connection( transport, true, remoteName, salvo );
+    return new Connection( transport, true, handshake( transport, true, name, salvo ) );
   }
 
   /**
@@ -162,8 +212,7 @@ public final class MatchConnector
       throws IOException
   {
     RelayMatchTransport transport = openRelayRoom( roomCode, false, null );
-    HandshakeResult result = handshake( transport, false, name, false );
-    return new Connection( transport, false, result.remoteName, result.salvo );
+    return new Connection( transport, false, handshake( transport, false, name, false ) );
   }
 
   /**
@@ -174,9 +223,10 @@ public final class MatchConnector
                                                     CancelHook cancel )
       throws IOException
   {
+    // relay events reach the EDT in batches, as a socket's lines do
+    EdtBatcher inbox = new EdtBatcher();
     RelayClient relay = new RelayClient(
-        RelayTransports.create( RelayTransports.relayUri(),
-                                SwingUtilities::invokeLater ),
+        RelayTransports.create( RelayTransports.relayUri(), inbox::execute ),
         "seas-of-yore" );
     relay.connect();
 
@@ -206,11 +256,15 @@ public final class MatchConnector
   {
     final String remoteName;
     final boolean salvo;
+    final int protocol;
+    final boolean binary;
 
-    HandshakeResult( String remoteName, boolean salvo )
+    HandshakeResult( String hello, boolean salvo, boolean binary )
     {
-      this.remoteName = remoteName;
+      this.remoteName = nameFromHello( hello );
       this.salvo = salvo;
+      this.protocol = Math.min( PROTOCOL_VERSION, versionFromHello( hello ) );
+      this.binary = binary;
     }
   }
 
@@ -238,21 +292,39 @@ public final class MatchConnector
       }
     });
 
+    String wire = "GWIRE " + ( transport.carriesFrames() ? "BINARY" : "TEXT" );
     if ( host )
     {
-      transport.sendLine( "GHELLO 1 " + name );
+      transport.sendLine( "GHELLO " + PROTOCOL_VERSION + " " + name );
+      transport.sendLine( wire );
       transport.sendLine( "GRULES " + ( salvo ? "SALVO" : "CLASSIC" ) );
 
       String hello = await( lines, "GHELLO" );
-      return new HandshakeResult( nameFromHello( hello ), salvo );
+      return new HandshakeResult( hello, salvo, agreesOnFrames( transport, lines, hello ) );
     }
 
     String hello = await( lines, "GHELLO" );
+    boolean binary = agreesOnFrames( transport, lines, hello );
     String rules = await( lines, "GRULES" );
-    transport.sendLine( "GHELLO 1 " + name );
+    transport.sendLine( "GHELLO " + PROTOCOL_VERSION + " " + name );
+    transport.sendLine( wire );
 
     boolean hostSalvo = rules.endsWith( "SALVO" );
-    return new HandshakeResult( nameFromHello( hello ), hostSalvo );
+    return new HandshakeResult( hello, hostSalvo, binary );
+  }
+
+  /**
+   * Whether both pipes carry binary frames: this one, and the peer's, as
+   * its GWIRE says. A peer too old to send GWIRE speaks text.
+   */
+  private static boolean agreesOnFrames( MatchTransport transport,
+                                         BlockingQueue<String> lines,
+                                         String hello ) throws IOException
+  {
+    if ( versionFromHello( hello ) < 4 )
+      return false;
+    String wire = await( lines, "GWIRE" );
+    return transport.carriesFrames() && wire.endsWith( "BINARY" );
   }
 
   /**
@@ -295,4 +367,21 @@ public final class MatchConnector
     return ( parts.length >= 3 && !parts[2].trim().isEmpty() )
          ? parts[2].trim() : "Unknown";
   }
+
+  /**
+   * Extracts the protocol version from a GHELLO line; 1 if it is missing
+   * or garbled, as the first builds always sent 1.
+   */
+  private static int versionFromHello( String hello )
+  {
+    String[] parts = hello.split( " ", 3 );
+    try
+    {
+      return ( parts.length >= 2 ) ? Math.max( 1, Integer.parseInt( parts[1] ) ) : 1;
+    }
+    catch ( NumberFormatException ex )
+    {
+      return 1;
+    }
+  }
 }
@@ -105,6 +105,33 @@ public interface MatchHandler
    */
   void resolveOutgoingShot( int x, int y, ShotOutcome outcome );
 
+  /**
+   * Tells the handler a shot has been committed to, before its stone falls
+   * and well before {@link #resolveOutgoingShot} is called for it. A
+   * handler whose verdicts must cross the water may send the shot at once,
+   * so that its round trip overlaps the animation; shots are always
+   * resolved in the order they were aimed. Others ignore it.
+   *
+   * @param x the target x-coordinate
+   * @param y the target y-coordinate
+   */
+  default void aimShot( int x, int y )
+  {
+  }
+
+  /**
+   * Announces a whole SALVO volley, in firing order, before its shots are
+   * resolved one by one through {@link #resolveOutgoingShot}. A handler
+   * whose verdicts must cross the water may send the volley at once and
+   * answer each of those calls from the verdicts it gets back. Others
+   * ignore it.
+   *
+   * @param shots the volley's cells, as [x, y] pairs
+   */
+  default void announceVolley( int[][] shots )
+  {
+  }
+
   /**
    * Offers the handler the turn handoff before the controller performs
    * it. Offline handlers decline; networked handlers use it to exchange
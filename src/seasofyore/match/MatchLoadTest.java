@@ -0,0 +1,235 @@
+package seasofyore.match;
+
+import seasofyore.core.PlayerQuadrant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.LongConsumer;
+
+/**
+ * Plays many networked matches at once with nobody at either end: each
+ * pair of {@link HeadlessCommander}s shares a simulated pipe, impaired
+ * alike in both directions, and each core runs its share of the pipes on
+ * one {@link VirtualClock}. Reports how many matches a second the protocol
+ * sustains on this machine, and what each shot waits for its verdict on
+ * the simulated link -- the latency a player would feel, measured without
+ * a display, a socket, or a moment of real waiting.
+ * <p>
+ * Every match is checked as it ends: one side must have won, the other
+ * lost, and the two ends must agree about every cell fired at. Run as
+ * {@code java seasofyore.match.MatchLoadTest [matches] [PERFECT|LAN|
+ * BROADBAND|MOBILE] [protocol] [SALVO|CLASSIC]}; exits nonzero if any
+ * match went wrong.
+ *
+ * @author dylan
+ */
+public final class MatchLoadTest
+{
+  /**
+   * The most clock tasks one run may take, against a match that never
+   * ends.
+   */
+  private static final int TASK_LIMIT = 500_000_000;
+
+  private MatchLoadTest() {}
+
+  /**
+   * What one run saw.
+   */
+  static final class Report
+  {
+    int matches;
+    /** Matches with one winner, one loser, and both boards agreeing. */
+    int sound;
+    /** Matches whose pipe closed before they were decided. */
+    int closed;
+    long shots;
+    /** When the last match ended, in simulated time. */
+    long virtualNanos;
+    long wallNanos;
+    /** Every shot's wait for its verdict, in nanoseconds, sorted. */
+    long[] waits;
+
+    /**
+     * @param q the quantile, from 0 to 1
+     * @return that quantile of the verdict waits, in milliseconds
+     */
+    double waitMs( double q )
+    {
+      if ( waits.length == 0 )
+        return 0;
+      return waits[(int) Math.min( waits.length - 1, q * waits.length )] / 1e6;
+    }
+  }
+
+  /**
+   * Runs the matches, all at once: split evenly across every core, each
+   * share on its own clock.
+   *
+   * @param matches    how many
+   * @param conditions what each pipe is like, both ways
+   * @param protocol   the protocol version both ends speak
+   * @param salvo      whether they play by SALVO rules
+   * @param seed       seeds every fleet, target and jitter
+   * @return what was seen
+   * @throws InterruptedException if interrupted while the matches run
+   */
+  static Report run( int matches, ImpairedMatchTransport.Conditions conditions,
+                     int protocol, boolean salvo, long seed ) throws InterruptedException
+  {
+    int threads = Math.max( 1, Math.min( matches, Runtime.getRuntime().availableProcessors() ) );
+    ExecutorService pool = Executors.newFixedThreadPool( threads );
+    long start = System.nanoTime();
+    try
+    {
+      List<Future<Report>> shares = new ArrayList<>();
+      for ( int t = 0; t < threads; t++ )
+      {
+        final int first = matches * t / threads;
+        final int count = matches * ( t + 1 ) / threads - first;
+        shares.add( pool.submit( () ->
+            runShare( first, count, conditions, protocol, salvo, seed ) ) );
+      }
+
+      Report report = new Report();
+      report.waits = new long[0];
+      for ( Future<Report> share : shares )
+      {
+        Report part = share.get();
+        report.matches += part.matches;
+        report.sound += part.sound;
+        report.closed += part.closed;
+        report.shots += part.shots;
+        report.virtualNanos = Math.max( report.virtualNanos, part.virtualNanos );
+        int at = report.waits.length;
+        report.waits = Arrays.copyOf( report.waits, at + part.waits.length );
+        System.arraycopy( part.waits, 0, report.waits, at, part.waits.length );
+      }
+      report.wallNanos = System.nanoTime() - start;
+      Arrays.sort( report.waits );
+      return report;
+    }
+    catch ( ExecutionException ex )
+    {
+      throw new IllegalStateException( "a simulated match failed", ex.getCause() );
+    }
+    finally
+    {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Runs one thread's share of the matches, all at once on one clock.
+   *
+   * @param first the first match's number, for its seeds
+   * @param count how many matches
+   * @return what was seen, waits unsorted
+   */
+  private static Report runShare( int first, int count,
+                                  ImpairedMatchTransport.Conditions conditions,
+                                  int protocol, boolean salvo, long seed )
+  {
+    final VirtualClock clock = new VirtualClock();
+    final long[][] waits = { new long[1024] };
+    final int[] waitCount = { 0 };
+    LongConsumer sink = wait ->
+    {
+      if ( waitCount[0] == waits[0].length )
+        waits[0] = Arrays.copyOf( waits[0], waits[0].length * 2 );
+      waits[0][waitCount[0]++] = wait;
+    };
+
+    HeadlessCommander[][] pairs = new HeadlessCommander[count][];
+    for ( int m = 0; m < count; m++ )
+    {
+      long s = seed + 4L * ( first + m );
+      LoopbackMatchTransport pipe = new LoopbackMatchTransport( clock );
+      HeadlessCommander host = new HeadlessCommander(
+          new ImpairedMatchTransport( pipe, clock, conditions, s ),
+          true, protocol, salvo, clock, s + 1, sink );
+      HeadlessCommander joiner = new HeadlessCommander(
+          new ImpairedMatchTransport( pipe.getPeer(), clock, conditions, s + 2 ),
+          false, protocol, salvo, clock, s + 3, sink );
+      pairs[m] = new HeadlessCommander[] { host, joiner };
+      host.start();
+      joiner.start();
+    }
+    clock.runUntilIdle( TASK_LIMIT );
+
+    Report report = new Report();
+    report.matches = count;
+    report.virtualNanos = clock.nanoTime();
+    for ( HeadlessCommander[] pair : pairs )
+    {
+      if ( pair[0].getClosedReason() != null || pair[1].getClosedReason() != null )
+        report.closed++;
+      else if ( pair[0].isOver() && pair[1].isOver()
+                && pair[0].hasWon() != pair[1].hasWon()
+                && agree( pair[0].getEnemyWaters(), pair[1].getOwnWaters() )
+                && agree( pair[1].getEnemyWaters(), pair[0].getOwnWaters() ) )
+        report.sound++;
+      report.shots += pair[0].getShotsFired() + pair[1].getShotsFired();
+    }
+    report.waits = Arrays.copyOf( waits[0], waitCount[0] );
+    return report;
+  }
+
+  /**
+   * Whether what one end learned of the enemy's waters matches the
+   * enemy's own: each cell fired at, and whether it hit.
+   */
+  private static boolean agree( PlayerQuadrant learned, PlayerQuadrant actual )
+  {
+    for ( int x = 0; x < PlayerQuadrant.GRID_SIZE; x++ )
+      for ( int y = 0; y < PlayerQuadrant.GRID_SIZE; y++ )
+        if ( learned.cellIsFired( x, y ) != actual.cellIsFired( x, y )
+             || learned.cellIsHit( x, y ) != actual.cellIsHit( x, y ) )
+          return false;
+    return true;
+  }
+
+  /**
+   * Entry point: runs the matches and prints the report.
+   *
+   * @param args optional: matches, link, protocol, SALVO|CLASSIC
+   * @throws InterruptedException if interrupted while the matches run
+   */
+  public static void main( String[] args ) throws InterruptedException
+  {
+    int matches = ( args.length > 0 ) ? Integer.parseInt( args[0] ) : 2_000;
+    String link = ( args.length > 1 ) ? args[1].toUpperCase( Locale.ROOT ) : "BROADBAND";
+    int protocol = ( args.length > 2 ) ? Integer.parseInt( args[2] )
+                                       : MatchConnector.PROTOCOL_VERSION;
+    boolean salvo = args.length < 4 || args[3].equalsIgnoreCase( "SALVO" );
+
+    ImpairedMatchTransport.Conditions conditions;
+    switch ( link )
+    {
+      case "PERFECT": conditions = ImpairedMatchTransport.Conditions.PERFECT; break;
+      case "LAN":     conditions = ImpairedMatchTransport.Conditions.LAN;     break;
+      case "MOBILE":  conditions = ImpairedMatchTransport.Conditions.MOBILE;  break;
+      default:        conditions = ImpairedMatchTransport.Conditions.BROADBAND; break;
+    }
+
+    Report r = run( matches, conditions, protocol, salvo, 0x5EA5L );
+    double wallS = r.wallNanos / 1e9;
+    System.out.printf( "Protocol load -- %d %s matches at version %d over %s (%s)%n",
+                       r.matches, salvo ? "SALVO" : "Classic", protocol, link, conditions );
+    System.out.printf( "  %.2fs wall on %d threads: %.0f matches/s, %.0f shots/s%n",
+                       wallS, Runtime.getRuntime().availableProcessors(),
+                       r.matches / wallS, r.shots / wallS );
+    System.out.printf( "  %d shots answered; the longest match took %.1f simulated minutes%n",
+                       r.shots, r.virtualNanos / 60e9 );
+    System.out.printf( "  verdict wait   p50 %7.1f ms   p99 %7.1f ms   max %7.1f ms%n",
+                       r.waitMs( 0.50 ), r.waitMs( 0.99 ), r.waitMs( 1.0 ) );
+    System.out.printf( "  %d sound, %d closed early, %d wrong%n",
+                       r.sound, r.closed, r.matches - r.sound - r.closed );
+    System.exit( r.sound + r.closed == r.matches ? 0 : 1 );
+  }
+}
@@ -0,0 +1,1022 @@
+package seasofyore.match;
+
+import seasofyore.core.Board;
+import seasofyore.core.Civilization;
+import seasofyore.core.Player;
+import seasofyore.core.PlayerQuadrant;
+import seasofyore.core.RemotePlayer;
+import seasofyore.core.Ship;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.function.LongSupplier;
+
+/**
+ * One end of a networked match's wire protocol, without a screen: who is
+ * ready, which shots are in the air and what became of them, whose turn
+ * it is to end, who struck their colours, and whether the enemy is still
+ * there. It is driven by a {@link MatchTransport} on one side and a core
+ * {@link Board} on the other, and tells its {@link Stage} what happened.
+ * The Swing {@link NetworkedMatchHandler} is one stage; a load test's
+ * headless commander, playing thousands of matches on a
+ * {@link VirtualClock}, is another.
+ *
+ * <h2>The wire game protocol</h2>
+ * Each side is authoritative over its own fleet: ship positions never
+ * cross the water, only declarations and verdicts do. After the
+ * connector's handshake (GHELLO/GRULES, performed before the game is
+ * built), the lines are:
+ * <pre>
+ *   GREADY                                      my fleet is placed
+ *   GSHOT &lt;x&gt; &lt;y&gt;                               I fire at your waters
+ *   GRESULT &lt;x&gt; &lt;y&gt; HIT|MISS [SUNK &lt;type&gt;] [DEFEATED]   my verdict on your shot
+ *   GENDTURN                                    my turn is over; yours begins
+ *   GCHAT &lt;text&gt;                                a word across the water
+ *   GFORFEIT                                    I strike my colours
+ * </pre>
+ * The host commands the Britons and fires first; both boards mirror the
+ * turn state by exchanging GENDTURN.
+ * <p>
+ * From protocol version 2 a whole SALVO volley crosses as one line, and
+ * its verdicts return as one, in firing order, ending early at a killing
+ * blow:
+ * <pre>
+ *   GVOLLEY &lt;x&gt; &lt;y&gt; &lt;x&gt; &lt;y&gt; ...                    I fire all of these
+ *   GVRESULT &lt;x&gt; &lt;y&gt; HIT|MISS [SUNK &lt;type&gt;] [DEFEATED],...   my verdicts
+ * </pre>
+ * With an older peer each shot of a volley is a GSHOT/GRESULT round trip.
+ * <p>
+ * From version 3 shots are numbered instead, and go out as they are aimed
+ * -- before their stones fall, before the rest of a volley is chosen -- up
+ * to {@value #WINDOW} in the air at once:
+ * <pre>
+ *   GFIRE &lt;seq&gt; &lt;x&gt; &lt;y&gt;                         I fire at your waters
+ *   GVERDICT &lt;seq&gt; &lt;x&gt; &lt;y&gt; HIT|MISS [SUNK &lt;type&gt;] [DEFEATED]   my verdict on it
+ * </pre>
+ * The defender lets the stones fall together but answers in firing order,
+ * and the firing side completes its shots in that order too, whatever the
+ * order the verdicts and the firing side's requests reach it in. A
+ * killing blow ends the stream: shots behind it are never answered.
+ * <p>
+ * GREADY through GVERDICT are the fixed-shape messages: the session
+ * dispatches on them packed by {@link WireCodec}, which reads them from
+ * text without allocating, and from version 4 they cross as binary frames
+ * where both pipes carry them (see {@link MatchConnector}).
+ * <p>
+ * From version 5 each side sends a heartbeat every {@value #HEARTBEAT_MS}
+ * ms, which the other echoes at once:
+ * <pre>
+ *   GPING &lt;micros&gt;                              are you there?
+ *   GPONG &lt;micros&gt;                              here (the GPING's own stamp)
+ * </pre>
+ * The stamp is the pinging side's own clock, so the clocks never need to
+ * agree. The echoes give the round trip and its jitter (see
+ * {@link LinkMetrics}); an enemy heard from not at all for
+ * {@value #DEAD_MS} ms is taken for gone, well before TCP itself would
+ * give up. Whoever drives the session calls {@link #beat} on the beat.
+ * <p>
+ * Not thread-safe: the transport's callbacks and every call in must come
+ * from one thread -- the EDT in a real match.
+ *
+ * @author dylan
+ */
+public final class MatchSession implements MatchTransport.Listener
+{
+  /**
+   * What the session plays out on. Every call comes on the session's own
+   * thread. The cosmetic ones default to doing nothing; a stone lands at
+   * once unless the stage animates it.
+   */
+  public interface Stage
+  {
+    /**
+     * An enemy shot is falling on this fleet. The stage runs
+     * {@code land} when the stone hits the water -- at once, by default.
+     *
+     * @param x    the target x-coordinate
+     * @param y    the target y-coordinate
+     * @param land resolves the shot against the fleet
+     */
+    default void landIncoming( int x, int y, Runnable land )
+    {
+      land.run();
+    }
+
+    /**
+     * An enemy shot has been resolved against this fleet and answered.
+     *
+     * @param x      the target x-coordinate
+     * @param y      the target y-coordinate
+     * @param struck the ship it hit, sunk or not; null for a miss
+     */
+    default void incomingResolved( int x, int y, Ship struck )
+    {
+    }
+
+    /**
+     * The enemy's verdict on a local shot has been marked on its waters.
+     *
+     * @param verdict the packed RESULT or VERDICT
+     */
+    default void verdictApplied( long verdict )
+    {
+    }
+
+    /**
+     * The enemy's fleet stands placed, and this one does not yet.
+     */
+    default void remoteReady()
+    {
+    }
+
+    /**
+     * A word from across the water.
+     *
+     * @param text what the enemy said
+     */
+    default void chat( String text )
+    {
+    }
+
+    /**
+     * The heartbeat's account of the link has changed.
+     *
+     * @param status the text, or null if there is nothing to say yet
+     */
+    default void linkStatus( String status )
+    {
+    }
+
+    /**
+     * Both fleets stand placed: battle begins, the Britons' first.
+     */
+    void battleBegins();
+
+    /**
+     * The enemy ended their turn: this board advances to match.
+     */
+    void remoteTurnEnded();
+
+    /**
+     * The last shot answered sank this fleet: the enemy has won.
+     */
+    void defeated();
+
+    /**
+     * The enemy struck their colours: this side has won.
+     */
+    void enemyForfeited();
+
+    /**
+     * The pipe ended before the match did. No further calls.
+     *
+     * @param reason a human-readable cause
+     */
+    void closed( String reason );
+  }
+
+  /**
+   * How often a heartbeat is sent, from protocol version 5.
+   */
+  public static final int HEARTBEAT_MS = 2_000;
+
+  /**
+   * How long the enemy may be silent before the status says so.
+   */
+  static final int QUIET_MS = 5_000;
+
+  /**
+   * How long the enemy may be silent before the pipe is given up.
+   */
+  static final int DEAD_MS = 15_000;
+
+  /**
+   * The most numbered shots that may await their verdicts at once.
+   */
+  static final int WINDOW = 8;
+
+  private final MatchTransport transport;
+
+  /** Whether this end hosts (commands the Britons and fires first). */
+  private final boolean host;
+
+  /** The protocol version both sides speak, settled in the handshake. */
+  private final int protocol;
+
+  private final Stage stage;
+
+  /** The session's clock, in nanoseconds: System.nanoTime, or simulated. */
+  private final LongSupplier clock;
+
+  /** The board this end's fleet is on; null until {@link #begin}. */
+  private Board board;
+
+  /**
+   * The local shots in the air, in firing order: each waits for both its
+   * verdict and the firing side's request for it. Before version 3 this
+   * holds one GSHOT or one GVOLLEY at most.
+   */
+  private final Deque<ShotInFlight> inFlight = new ArrayDeque<>();
+
+  /**
+   * The number the next GFIRE carries.
+   */
+  private int nextSeq = 0;
+
+  /**
+   * The enemy's numbered shots at this fleet, in firing order, until each
+   * has landed and been answered.
+   */
+  private final Deque<ShotInFlight> incoming = new ArrayDeque<>();
+
+  /**
+   * Fleet-ready declarations from each side of the water.
+   */
+  private boolean localReady = false;
+  private boolean remoteReady = false;
+
+  /**
+   * True while applying a remote GENDTURN, so the resulting local turn
+   * switch does not echo GENDTURN straight back.
+   */
+  private boolean remoteAdvancing = false;
+
+  /**
+   * Set once the match has a winner, so a subsequent connection close is
+   * an anticlimax rather than an error.
+   */
+  private boolean concluded = false;
+
+  /**
+   * When the enemy was last heard from, by the session's clock.
+   */
+  private long lastHeardNanos;
+
+  /**
+   * Set once the heartbeat has stopped for good.
+   */
+  private boolean heartbeatStopped = false;
+
+  /**
+   * The link's round trips and jitter, as the heartbeat measures them.
+   */
+  private final LinkMetrics metrics = new LinkMetrics();
+
+  /**
+   * Takes over an established connection: the transport's listener is
+   * this session from now on.
+   *
+   * @param transport the connected pipe to the opposing end
+   * @param host      whether this end hosts the match
+   * @param protocol  the protocol version both sides speak
+   * @param stage     what the session plays out on
+   * @param clock     the time in nanoseconds; {@code System::nanoTime}
+   *                  for a real match
+   */
+  public MatchSession( MatchTransport transport, boolean host, int protocol,
+                       Stage stage, LongSupplier clock )
+  {
+    this.transport = transport;
+    this.host = host;
+    this.protocol = protocol;
+    this.stage = stage;
+    this.clock = clock;
+    this.lastHeardNanos = clock.getAsLong();
+    transport.setListener( this );
+  }
+
+  /**
+   * Binds to the board and starts placement on this end's own player --
+   * both ends place simultaneously, regardless of nominal turn order.
+   *
+   * @param board the board the match is played on
+   */
+  public void begin( Board board )
+  {
+    this.board = board;
+    board.forceCurrentPlayer( localCiv() );
+    lastHeardNanos = clock.getAsLong();
+  }
+
+  /**
+   * Starts this match's metrics file; the heartbeat then logs every round
+   * trip to it.
+   *
+   * @param dir    the directory to write it in
+   * @param header what the match was, for the file's first line
+   */
+  void recordMetrics( Path dir, String header )
+  {
+    metrics.open( dir, header );
+  }
+
+  /**
+   * @return the protocol version both sides speak
+   */
+  public int getProtocol()
+  {
+    return protocol;
+  }
+
+  /**
+   * @return the civilization this end commands: Britons for the host
+   */
+  public Civilization localCiv()
+  {
+    return host ? Civilization.BRITONS : Civilization.FRANKS;
+  }
+
+  /**
+   * @return the civilization across the water
+   */
+  public Civilization remoteCiv()
+  {
+    return host ? Civilization.FRANKS : Civilization.BRITONS;
+  }
+
+  /**
+   * @return the player this end commands
+   */
+  public Player getLocalPlayer()
+  {
+    return ( localCiv() == Civilization.BRITONS ) ? board.getBritons()
+                                                  : board.getFranks();
+  }
+
+  /**
+   * @return the enemy's stand-in on this end's board
+   */
+  public RemotePlayer getRemotePlayer()
+  {
+    Player remote = ( remoteCiv() == Civilization.BRITONS )
+                  ? board.getBritons() : board.getFranks();
+    return (RemotePlayer) remote;
+  }
+
+  /**
+   * @return whether this end has declared its fleet placed
+   */
+  public boolean isLocalReady()
+  {
+    return localReady;
+  }
+
+  /**
+   * @return whether the match is decided, forfeited, or over for any
+   *         other reason
+   */
+  public boolean isConcluded()
+  {
+    return concluded;
+  }
+
+  // ------------------------------------------------------------------
+  // Calls in, from this end's player
+  // ------------------------------------------------------------------
+
+  /**
+   * Declares this end's fleet placed, with GREADY. If the enemy's already
+   * is, the battle begins.
+   *
+   * @return true if the battle began; false if the enemy is still placing
+   */
+  public boolean declareReady()
+  {
+    localReady = true;
+    sendQuietly( WireCodec.signal( WireCodec.READY ) );
+
+    if ( !remoteReady )
+      return false;
+    stage.battleBegins();
+    return true;
+  }
+
+  /**
+   * This end's turn is over: tells the enemy with GENDTURN -- unless this
+   * is the board advancing for the enemy's own GENDTURN.
+   */
+  public void endTurn()
+  {
+    if ( !remoteAdvancing )
+      sendQuietly( WireCodec.signal( WireCodec.ENDTURN ) );
+  }
+
+  /**
+   * Sends a numbered shot the moment it is aimed, when the peer speaks
+   * version 3 and the window has room; its verdict is then usually in by
+   * the time it is resolved. Otherwise the shot waits for
+   * {@link #resolveOutgoingShot}.
+   *
+   * @param x the target x-coordinate
+   * @param y the target y-coordinate
+   */
+  public void aimShot( int x, int y )
+  {
+    if ( protocol >= 3 && inFlight.size() < WINDOW && !concluded )
+      fire( x, y );
+  }
+
+  /**
+   * Sends a whole volley as one GVOLLEY when the peer speaks version 2, so
+   * its verdicts come back in one round trip; the shot-by-shot requests
+   * are then answered from them. From version 3 the volley's shots went
+   * out as they were aimed; with an older peer, or a single shot, nothing
+   * is sent until each shot is resolved.
+   *
+   * @param shots the volley's cells, as [x, y] pairs, in firing order
+   */
+  public void announceVolley( int[][] shots )
+  {
+    if ( protocol != 2 || shots.length < 2 || !inFlight.isEmpty() )
+      return;
+
+    StringBuilder line = new StringBuilder( "GVOLLEY" );
+    for ( int[] shot : shots )
+    {
+      inFlight.add( new ShotInFlight( -1, shot[0], shot[1] ) );
+      line.append( ' ' ).append( shot[0] ).append( ' ' ).append( shot[1] );
+    }
+    sendQuietly( line.toString() );
+  }
+
+  /**
+   * Completes a local shot with its verdict: at once if the verdict is
+   * already in, otherwise when it arrives. A shot not already in the air
+   * is sent now. Shots complete in firing order, and each verdict is
+   * marked on the enemy's waters before its outcome hears of it.
+   * <p>
+   * Before version 3 an unnumbered GSHOT is the only shot in the air, so a
+   * second one would take the first one's verdict and desynchronize the
+   * boards; it is a programming error in the caller (which must hold
+   * firing until the verdict lands).
+   *
+   * @param x       the target x-coordinate
+   * @param y       the target y-coordinate
+   * @param outcome where to deliver the verdict
+   */
+  public void resolveOutgoingShot( int x, int y, MatchHandler.ShotOutcome outcome )
+  {
+    for ( ShotInFlight shot : inFlight )
+    {
+      if ( shot.outcome != null )
+        continue;
+      if ( shot.x != x || shot.y != y )
+        throw new IllegalStateException( "Shot " + x + "," + y + " resolved "
+            + "out of turn; " + shot.x + "," + shot.y + " was aimed first." );
+      shot.outcome = outcome; // already in the air
+      settleShots();
+      return;
+    }
+
+    if ( protocol < 3 && !inFlight.isEmpty() )
+      throw new IllegalStateException(
+          "A shot is already awaiting its GRESULT; the firing phase "
+          + "must lock the panel until the verdict arrives." );
+
+    ShotInFlight shot = fire( x, y );
+    shot.outcome = outcome;
+  }
+
+  /**
+   * Sends a chat line.
+   *
+   * @param text what this end's player said
+   */
+  public void sendChat( String text )
+  {
+    sendQuietly( "GCHAT " + text );
+  }
+
+  /**
+   * Strikes the colours: tells the enemy, and closes the pipe behind it.
+   */
+  public void forfeit()
+  {
+    concluded = true;
+    sendQuietly( WireCodec.signal( WireCodec.FORFEIT ) );
+    transport.close();
+  }
+
+  /**
+   * Releases the connection and the metrics file.
+   */
+  public void shutdown()
+  {
+    concluded = true;
+    stopHeartbeat();
+    transport.close();
+  }
+
+  // ------------------------------------------------------------------
+  // The heartbeat (version 5 on)
+  // ------------------------------------------------------------------
+
+  /**
+   * One heartbeat: gives the enemy up if it has been silent too long,
+   * otherwise pings it and refreshes the link status. Whoever drives the
+   * session calls this every {@value #HEARTBEAT_MS} ms, from version 5.
+   *
+   * @return false once the heartbeat has stopped for good
+   */
+  public boolean beat()
+  {
+    if ( heartbeatStopped )
+      return false;
+
+    long now = clock.getAsLong();
+    long silentMs = ( now - lastHeardNanos ) / 1_000_000L;
+    if ( silentMs >= DEAD_MS )
+    {
+      metrics.note( "no word for " + silentMs + " ms; the line is dead" );
+      stopHeartbeat();
+      if ( concluded )
+        return false; // the match is decided; the enemy may well have left
+      transport.close();
+      onClosed( "no word from the enemy in " + silentMs / 1000 + " seconds" );
+      return false;
+    }
+
+    sendQuietly( "GPING " + now / 1000L );
+    stage.linkStatus( metrics.status( silentMs >= QUIET_MS ? silentMs : 0 ) );
+    return true;
+  }
+
+  /**
+   * The enemy echoed a heartbeat: one round trip measured.
+   */
+  private void handlePong( String stamp )
+  {
+    long sentMicros = parseStamp( stamp );
+    if ( sentMicros < 0 || heartbeatStopped )
+      return;
+    metrics.sample( ( clock.getAsLong() / 1000L - sentMicros ) / 1000.0 );
+    stage.linkStatus( metrics.status( 0 ) );
+  }
+
+  /**
+   * Stops the heartbeat and closes the metrics file. Idempotent.
+   */
+  private void stopHeartbeat()
+  {
+    if ( heartbeatStopped )
+      return;
+    heartbeatStopped = true;
+    metrics.close();
+  }
+
+  /**
+   * A heartbeat's stamp, or -1 if it is not one.
+   */
+  private static long parseStamp( String stamp )
+  {
+    try
+    {
+      return Long.parseLong( stamp.trim() );
+    }
+    catch ( NumberFormatException ex )
+    {
+      return -1;
+    }
+  }
+
+  // ------------------------------------------------------------------
+  // MatchTransport.Listener
+  // ------------------------------------------------------------------
+
+  @Override
+  public void onLine( String line )
+  {
+    lastHeardNanos = clock.getAsLong();
+    long message = WireCodec.parse( line );
+    if ( message != WireCodec.NONE )
+    {
+      onMessage( message );
+      return;
+    }
+
+    switch ( firstWord( line ) )
+    {
+      case "GVOLLEY":  handleIncomingVolley( line );                    break;
+      case "GVRESULT": handleVolleyResult( line );                      break;
+      case "GCHAT":    stage.chat( restAfterFirstWord( line ) );         break;
+      case "GPING":    sendQuietly( "GPONG " + restAfterFirstWord( line ) ); break;
+      case "GPONG":    handlePong( restAfterFirstWord( line ) );         break;
+      default:
+        break; // unknown chatter tolerated for forward compatibility
+    }
+  }
+
+  /**
+   * A fixed-shape message, decoded from a binary frame or a text line.
+   */
+  @Override
+  public void onMessage( long message )
+  {
+    lastHeardNanos = clock.getAsLong();
+    switch ( WireCodec.opcode( message ) )
+    {
+      case WireCodec.SHOT:    handleIncomingShot( message ); break;
+      case WireCodec.RESULT:  handleShotResult( message );   break;
+      case WireCodec.FIRE:    handleIncomingFire( message ); break;
+      case WireCodec.VERDICT: handleVerdict( message );      break;
+      case WireCodec.ENDTURN: handleRemoteTurnEnd();         break;
+      case WireCodec.READY:   handleRemoteReady();           break;
+      case WireCodec.FORFEIT: handleForfeit();               break;
+      default:
+        break;
+    }
+  }
+
+  @Override
+  public void onClosed( String reason )
+  {
+    if ( concluded )
+      return;
+    concluded = true;
+    stopHeartbeat();
+    stage.closed( reason );
+  }
+
+  // ------------------------------------------------------------------
+  // Incoming protocol handling
+  // ------------------------------------------------------------------
+
+  /**
+   * The enemy fires at this end's waters. The verdict is computed here --
+   * only this side knows its own fleet -- marked and answered once the
+   * stone lands.
+   */
+  private void handleIncomingShot( long message )
+  {
+    final int x = WireCodec.x( message );
+    final int y = WireCodec.y( message );
+
+    stage.landIncoming( x, y, () ->
+    {
+      sendQuietly( resolveIncomingShot( x, y ) );
+      if ( getLocalPlayer().hasLost() )
+        concedeDefeat();
+    });
+  }
+
+  /**
+   * The enemy fires a whole volley. Its shots land one after another, as
+   * single shots do, and the verdicts go back together once the last has
+   * landed -- or the first to sink the fleet, which ends the volley. A
+   * volley with a cell off the grid cannot be answered, and ends the match.
+   */
+  private void handleIncomingVolley( String line )
+  {
+    long[] shots = WireCodec.parseVolley( line );
+    if ( shots == null )
+    {
+      protocolError( "GVOLLEY" );
+      return;
+    }
+    int[] xs = new int[shots.length];
+    int[] ys = new int[shots.length];
+    for ( int i = 0; i < shots.length; i++ )
+    {
+      xs[i] = WireCodec.x( shots[i] );
+      ys[i] = WireCodec.y( shots[i] );
+    }
+    landVolley( xs, ys, 0, new StringBuilder() );
+  }
+
+  /**
+   * Lands the rest of an incoming volley from shot {@code next} on,
+   * gathering verdicts; answers them all once the volley is spent.
+   */
+  private void landVolley( int[] xs, int[] ys, int next, StringBuilder verdicts )
+  {
+    if ( next == xs.length || getLocalPlayer().hasLost() )
+    {
+      sendQuietly( "GVRESULT " + verdicts );
+      if ( getLocalPlayer().hasLost() )
+        concedeDefeat();
+      return;
+    }
+
+    stage.landIncoming( xs[next], ys[next], () ->
+    {
+      if ( next > 0 )
+        verdicts.append( ',' );
+      verdicts.append( WireCodec.formatEntry( resolveIncomingShot( xs[next], ys[next] ) ) );
+      landVolley( xs, ys, next + 1, verdicts );
+    });
+  }
+
+  /**
+   * The enemy fires a numbered shot. Its stone falls at once, alongside any
+   * still falling, but it is answered only after every shot fired before
+   * it, so the verdicts -- and which hull they sink -- follow firing order.
+   */
+  private void handleIncomingFire( long message )
+  {
+    if ( concluded )
+      return; // fired after the killing blow
+
+    ShotInFlight shot = new ShotInFlight( WireCodec.seq( message ),
+        WireCodec.x( message ), WireCodec.y( message ) );
+    incoming.add( shot );
+    stage.landIncoming( shot.x, shot.y, () ->
+    {
+      shot.landed = true;
+      answerIncoming();
+    });
+  }
+
+  /**
+   * Answers, in firing order, every numbered enemy shot that has landed.
+   * The shot that sinks the fleet is the last answered.
+   */
+  private void answerIncoming()
+  {
+    while ( !incoming.isEmpty() && incoming.peek().landed )
+    {
+      ShotInFlight shot = incoming.poll();
+      if ( concluded )
+        continue; // decided already; let the stones fall unanswered
+      sendQuietly( WireCodec.numbered( shot.seq,
+                                       resolveIncomingShot( shot.x, shot.y ) ) );
+      if ( getLocalPlayer().hasLost() )
+        concedeDefeat();
+    }
+  }
+
+  /**
+   * Applies an enemy shot to the local fleet and reports it.
+   *
+   * @return the verdict, as a RESULT message
+   */
+  private long resolveIncomingShot( int x, int y )
+  {
+    Player local = getLocalPlayer();
+    boolean hit = ( local.getShipAt( x, y ) != null );
+    local.getFriendlyQuad().fireAtCell( x, y );
+    local.syncDecksToQuadrantState();
+    board.recordShotFired( x, y );
+
+    Ship struck = hit ? local.getShipAt( x, y ) : null;
+    boolean sunk = ( struck != null && struck.isSunk() );
+    stage.incomingResolved( x, y, struck );
+
+    return WireCodec.result( x, y, hit, sunk ? struck.getShipType() : null, local.hasLost() );
+  }
+
+  /**
+   * The local fleet is gone: the enemy has won.
+   */
+  private void concedeDefeat()
+  {
+    concluded = true;
+    stage.defeated();
+  }
+
+  /**
+   * The enemy's verdict on the local player's unnumbered shot: mark the
+   * enemy's waters and complete the shot's outcome.
+   */
+  private void handleShotResult( long verdict )
+  {
+    ShotInFlight shot = inFlight.peek();
+    if ( shot == null || shot.verdict != WireCodec.NONE )
+    {
+      applyVerdict( verdict ); // unasked for; still the truth of the cell
+      return;
+    }
+    shot.verdict = verdict;
+    settleShots();
+  }
+
+  /**
+   * The enemy's verdicts on a local volley, in firing order: each waits
+   * for the firing side to reach its shot. A malformed entry would pin
+   * every later verdict on the wrong shot, and ends the match.
+   */
+  private void handleVolleyResult( String line )
+  {
+    Iterator<ShotInFlight> shots = inFlight.iterator();
+    for ( int at = line.indexOf( ' ' ); at >= 0 && shots.hasNext();
+          at = line.indexOf( ',', at + 1 ) )
+    {
+      long verdict = WireCodec.parseEntry( line, at );
+      if ( verdict == WireCodec.NONE )
+      {
+        protocolError( "GVRESULT" );
+        return;
+      }
+      shots.next().verdict = verdict;
+    }
+    settleShots();
+  }
+
+  /**
+   * Hangs up on a peer that broke the protocol: the match can no longer be
+   * kept in step, so it ends as a lost connection does.
+   *
+   * @param keyword the message that could not be read
+   */
+  private void protocolError( String keyword )
+  {
+    transport.close();
+    onClosed( "the enemy sent a malformed " + keyword );
+  }
+
+  /**
+   * The enemy's verdict on a numbered local shot. One for a shot no longer
+   * in the air -- behind a killing blow -- is ignored.
+   */
+  private void handleVerdict( long verdict )
+  {
+    int seq = WireCodec.seq( verdict );
+    for ( ShotInFlight shot : inFlight )
+    {
+      if ( shot.seq == seq )
+      {
+        shot.verdict = verdict;
+        settleShots();
+        return;
+      }
+    }
+  }
+
+  /**
+   * Completes, in firing order, every local shot that has both its verdict
+   * and the firing side's request. A killing blow grounds the rest.
+   */
+  private void settleShots()
+  {
+    while ( !inFlight.isEmpty() && inFlight.peek().verdict != WireCodec.NONE
+            && inFlight.peek().outcome != null )
+    {
+      ShotInFlight shot = inFlight.poll();
+      long verdict = shot.verdict;
+      applyVerdict( verdict );
+      if ( WireCodec.defeated( verdict ) )
+        inFlight.clear();
+      shot.outcome.onResolved( WireCodec.hit( verdict ), WireCodec.sunkType( verdict ),
+                               WireCodec.defeated( verdict ) );
+    }
+  }
+
+  /**
+   * Marks what a verdict taught us on the enemy's waters (their ships stay
+   * hidden anyway; hits and misses are all we will ever know).
+   */
+  private void applyVerdict( long verdict )
+  {
+    getRemotePlayer().getFriendlyQuad().setCellType( WireCodec.x( verdict ),
+        WireCodec.y( verdict ),
+        WireCodec.hit( verdict ) ? PlayerQuadrant.HIT_CELL : PlayerQuadrant.MISS_CELL );
+
+    if ( WireCodec.defeated( verdict ) )
+    {
+      getRemotePlayer().markDefeated();
+      concluded = true;
+    }
+    stage.verdictApplied( verdict );
+  }
+
+  /**
+   * The enemy's turn ended: advance the local board to match, without
+   * echoing GENDTURN back.
+   */
+  private void handleRemoteTurnEnd()
+  {
+    remoteAdvancing = true;
+    try
+    {
+      stage.remoteTurnEnded();
+    }
+    finally
+    {
+      remoteAdvancing = false;
+    }
+  }
+
+  /**
+   * The enemy's fleet is placed. If ours is too, the battle begins.
+   */
+  private void handleRemoteReady()
+  {
+    remoteReady = true;
+    getRemotePlayer().markFleetReady();
+
+    if ( localReady )
+      stage.battleBegins();
+    else
+      stage.remoteReady();
+  }
+
+  /**
+   * The enemy struck their colours: the local player wins.
+   */
+  private void handleForfeit()
+  {
+    concluded = true;
+    stage.enemyForfeited();
+  }
+
+  /**
+   * One shot in the air: a local one awaiting its verdict, or a numbered
+   * enemy one awaiting its landing.
+   */
+  private static final class ShotInFlight
+  {
+    /** Its GFIRE number; -1 for a GSHOT or a GVOLLEY shot. */
+    final int seq;
+    final int x;
+    final int y;
+    /** The enemy's verdict, once it has arrived. */
+    long verdict = WireCodec.NONE;
+    /** The firing side's callback, once it has reached this shot. */
+    MatchHandler.ShotOutcome outcome;
+    /** Whether its stone has landed, for an enemy shot. */
+    boolean landed;
+
+    ShotInFlight( int seq, int x, int y )
+    {
+      this.seq = seq;
+      this.x = x;
+      this.y = y;
+    }
+  }
+
+  /**
+   * Puts a local shot in the air: numbered as a GFIRE from version 3, a
+   * bare GSHOT before.
+   *
+   * @return the shot, awaiting its verdict
+   */
+  private ShotInFlight fire( int x, int y )
+  {
+    ShotInFlight shot;
+    if ( protocol >= 3 )
+    {
+      shot = new ShotInFlight( nextSeq, x, y );
+      nextSeq = ( nextSeq + 1 ) & WireCodec.MAX_SEQ;
+      sendQuietly( WireCodec.fire( shot.seq, x, y ) );
+    }
+    else
+    {
+      shot = new ShotInFlight( -1, x, y );
+      sendQuietly( WireCodec.shot( x, y ) );
+    }
+    inFlight.add( shot );
+    return shot;
+  }
+
+  /**
+   * Sends a fixed-shape message, as a frame or a line as the pipe agreed,
+   * treating transport failure as {@link #sendQuietly(String)} does.
+   */
+  private void sendQuietly( long message )
+  {
+    try
+    {
+      transport.sendMessage( message );
+    }
+    catch ( IOException ex )
+    {
+      // the transport notices and reports the dead pipe
+    }
+  }
+
+  /**
+   * Sends a line, treating transport failure as a closed connection
+   * (the transport surfaces it through onClosed). The connector's pipes
+   * queue the line and return at once, so this never waits on the wire.
+   */
+  private void sendQuietly( String line )
+  {
+    try
+    {
+      transport.sendLine( line );
+    }
+    catch ( IOException ex )
+    {
+      // the transport notices and reports the dead pipe
+    }
+  }
+
+  /**
+   * The first space-delimited word of a line (or all of it).
+   */
+  private static String firstWord( String line )
+  {
+    int space = line.indexOf( ' ' );
+    return ( space < 0 ) ? line : line.substring( 0, space );
+  }
+
+  /**
+   * Everything after the first word, or the empty string.
+   */
+  private static String restAfterFirstWord( String line )
+  {
+    int space = line.indexOf( ' ' );
+    return ( space < 0 ) ? "" : line.substring( space + 1 );
+  }
+}
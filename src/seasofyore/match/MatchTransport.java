@@ -1,6 +1,7 @@
 package seasofyore.match;
 
 import java.io.IOException;
+import java.util.List;
 
 /**
  * One full-duplex line pipe to the opposing screen. The networked match
@@ -12,7 +13,9 @@ import java.io.IOException;
  * Transports are handed to handlers already connected; establishing the
  * connection (listening, dialing, or pairing through the relay) is the
  * {@link MatchConnector}'s job, performed before the game is built.
- * Listener callbacks are delivered on the Swing event thread.
+ * Listener callbacks are delivered on the Swing event thread -- save on
+ * the simulated {@link LoopbackMatchTransport}, whose callbacks run on
+ * whatever thread drives its {@link VirtualClock}.
  *
  * @author dylan
  */
@@ -30,6 +33,18 @@ public interface MatchTransport
      */
     void onLine( String line );
 
+    /**
+     * One fixed-shape message arrived, as a binary frame or already
+     * decoded (see {@link WireCodec}). By default it is handed on as the
+     * text line it stands for.
+     *
+     * @param message the packed message
+     */
+    default void onMessage( long message )
+    {
+      onLine( WireCodec.format( message ) );
+    }
+
     /**
      * The pipe ended -- deliberately or otherwise. No further callbacks.
      *
@@ -53,6 +68,43 @@ public interface MatchTransport
    */
   void sendLine( String line ) throws IOException;
 
+  /**
+   * Sends several protocol lines, in order, as one write where the pipe
+   * allows it. By default they are simply sent one at a time.
+   *
+   * @param lines the lines to send
+   * @throws IOException if the pipe has failed
+   */
+  default void sendLines( List<String> lines ) throws IOException
+  {
+    for ( String line : lines )
+      sendLine( line );
+  }
+
+  /**
+   * Whether fixed-shape messages cross this pipe as binary frames. The
+   * connector asks the raw pipe whether it can carry them, and the
+   * connection it hands the game answers whether both ends agreed to.
+   *
+   * @return true if {@link #sendMessage} sends frames
+   */
+  default boolean carriesFrames()
+  {
+    return false;
+  }
+
+  /**
+   * Sends one fixed-shape message: as a binary frame where the pipe
+   * carries them, otherwise as its text line.
+   *
+   * @param message the packed message (see {@link WireCodec})
+   * @throws IOException if the pipe has failed
+   */
+  default void sendMessage( long message ) throws IOException
+  {
+    sendLine( WireCodec.format( message ) );
+  }
+
   /**
    * Closes the pipe. Idempotent.
    */
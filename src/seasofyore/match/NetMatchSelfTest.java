@@ -1,20 +1,32 @@
 package seasofyore.match;
 
+import seasofyore.core.ShipType;
 import javalabrelay.ReferenceRelayServer;
 import javalabrelay.RelayClient;
 import javalabrelay.RelayTransports;
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * The networked-match plumbing test: establishes real matches over both
  * transports -- a direct TCP socket pair, and rooms through an in-process
  * reference relay -- and verifies the pre-game handshake (names and rules
- * crossing correctly) plus game-line exchange in both directions. Runs
+ * crossing correctly) plus game-line exchange in both directions; and
+ * drives a simulated pipe on a virtual clock through latency, bandwidth
+ * and a dropped link, with whole headless matches played across it. Runs
  * headlessly: {@code java seasofyore.match.NetMatchSelfTest} with the
  * relay library on the classpath; prints PASS lines and exits nonzero on
  * the first failure.
@@ -33,7 +45,19 @@ public final class NetMatchSelfTest
    */
   private static final class RecordingListener implements MatchTransport.Listener
   {
-    final BlockingQueue<String> events = new ArrayBlockingQueue<>( 64 );
+    final BlockingQueue<String> events;
+    /** How many events arrived as decoded messages rather than lines. */
+    final AtomicInteger messages = new AtomicInteger();
+
+    RecordingListener()
+    {
+      this( 0 );
+    }
+
+    RecordingListener( int expected )
+    {
+      events = new ArrayBlockingQueue<>( 64 + expected );
+    }
 
     @Override
     public void onLine( String line )
@@ -41,6 +65,13 @@ public final class NetMatchSelfTest
       events.add( "LINE " + line );
     }
 
+    @Override
+    public void onMessage( long message )
+    {
+      messages.incrementAndGet();
+      onLine( WireCodec.format( message ) );
+    }
+
     @Override
     public void onClosed( String reason )
     {
@@ -59,6 +90,14 @@ public final class NetMatchSelfTest
   public static void main( String[] args ) throws Exception
   {
     testLanMatch();
+    testBinaryWire();
+    testEarlyLines();
+    testHandshakeLoop();
+    testLanCrowd();
+    testOutbox();
+    testSimulatedLink();
+    testSimulatedMatches();
+    testMalformedVolleys();
     testRelayMatch();
     System.out.println( "ALL TESTS PASSED" );
     System.exit( 0 ); // EDT and daemon threads linger otherwise
@@ -95,6 +134,8 @@ public final class NetMatchSelfTest
     require( "Charlemagne".equals( host.remoteName ), "LAN: host learned the joiner's name" );
     require( "Arthur".equals( joiner.remoteName ), "LAN: joiner learned the host's name" );
     require( joiner.salvo, "LAN: joiner learned the host's SALVO rules" );
+    require( !host.transport.carriesFrames() && !joiner.transport.carriesFrames(),
+             "LAN: a text-only end kept both ends on text" );
 
     exchangeLines( host.transport, joiner.transport, "LAN" );
 
@@ -103,6 +144,468 @@ public final class NetMatchSelfTest
     harbor.close();
   }
 
+  /**
+   * A LAN match between two channel-backed ends: the handshake settles on
+   * binary frames, which then cross among the lines, in order.
+   */
+  private static void testBinaryWire() throws Exception
+  {
+    final ServerSocket harbour = MatchConnector.openHarbour( 0 );
+
+    final AtomicReference<MatchConnector.Connection> hostConn = new AtomicReference<>();
+    Thread hostThread = new Thread( () ->
+    {
+      try
+      {
+        hostConn.set( MatchConnector.hostLan( harbour, "Arthur", false ) );
+      }
+      catch ( IOException ex )
+      {
+        // hostConn stays null; the assertion below reports it
+      }
+    });
+    hostThread.start();
+
+    MatchConnector.Connection joiner = MatchConnector.joinLan(
+        "127.0.0.1:" + harbour.getLocalPort(), "Charlemagne" );
+    hostThread.join( WAIT_MS );
+
+    MatchConnector.Connection host = hostConn.get();
+    require( host != null, "Binary: host side connected" );
+    require( host.transport.carriesFrames() && joiner.transport.carriesFrames(),
+             "Binary: both ends agreed on frames" );
+
+    RecordingListener hostEvents = new RecordingListener();
+    RecordingListener joinerEvents = new RecordingListener();
+    host.transport.setListener( hostEvents );
+    joiner.transport.setListener( joinerEvents );
+
+    host.transport.sendMessage( WireCodec.fire( 41, 0, 9 ) );
+    host.transport.sendLine( "GCHAT steady, lads" );
+    host.transport.sendMessage( WireCodec.signal( WireCodec.ENDTURN ) );
+    expect( joinerEvents.events, "LINE GFIRE 41 0 9", "Binary: a frame crossed" );
+    expect( joinerEvents.events, "LINE GCHAT steady, lads", "Binary: a line kept its place among frames" );
+    expect( joinerEvents.events, "LINE GENDTURN", "Binary: the frame after it followed" );
+
+    joiner.transport.sendMessage( WireCodec.numbered( 41,
+        WireCodec.result( 0, 9, true, ShipType.GALLEON, true ) ) );
+    expect( hostEvents.events, "LINE GVERDICT 41 0 9 HIT SUNK GALLEON DEFEATED",
+            "Binary: a verdict crossed back" );
+    require( joinerEvents.messages.get() == 2 && hostEvents.messages.get() == 1,
+             "Binary: the messages arrived as frames" );
+
+    host.transport.close();
+    joiner.transport.close();
+    harbour.close();
+  }
+
+  /**
+   * Lines, a frame and a hang-up that arrive before anyone listens are
+   * held, in order, for the listener named afterwards -- at a bare NIO
+   * end, and at an outbox wrapped around one.
+   */
+  private static void testEarlyLines() throws Exception
+  {
+    ServerSocket harbour = MatchConnector.openHarbour( 0 );
+
+    MatchTransport bare = new NioMatchTransport( SocketChannel.open(
+        new InetSocketAddress( "127.0.0.1", harbour.getLocalPort() ) ) );
+    MatchTransport sender = new NioMatchTransport( harbour.accept().getChannel() );
+    sender.sendLine( "GHELLO 5 Arthur" );
+    sender.sendMessage( WireCodec.signal( WireCodec.ENDTURN ) );
+    sender.close();
+    Thread.sleep( 300 ); // long enough for all of it to reach the EDT
+
+    RecordingListener bareEvents = new RecordingListener();
+    bare.setListener( bareEvents );
+    expect( bareEvents.events, "LINE GHELLO 5 Arthur", "Early: a line sent before listening was held" );
+    expect( bareEvents.events, "LINE GENDTURN", "Early: a frame behind it kept its place" );
+    expect( bareEvents.events, "CLOSED", "Early: the hang-up was held behind them" );
+
+    MatchTransport queued = new QueuedMatchTransport( new NioMatchTransport( SocketChannel.open(
+        new InetSocketAddress( "127.0.0.1", harbour.getLocalPort() ) ) ) );
+    sender = new NioMatchTransport( harbour.accept().getChannel() );
+    sender.sendLine( "GREADY" );
+    sender.close();
+    Thread.sleep( 300 );
+
+    RecordingListener queuedEvents = new RecordingListener();
+    queued.setListener( queuedEvents );
+    expect( queuedEvents.events, "LINE GREADY", "Early: an outbox held a line for its listener" );
+    expect( queuedEvents.events, "CLOSED", "Early: an outbox held the hang-up behind it" );
+
+    bare.close();
+    queued.close();
+    harbour.close();
+  }
+
+  /**
+   * Handshake after handshake on one harbour, so that the peer's first
+   * lines often land before the handshake listens: every one completes
+   * well inside the handshake timeout.
+   */
+  private static void testHandshakeLoop() throws Exception
+  {
+    final int rounds = 100;
+    final ServerSocket harbour = MatchConnector.openHarbour( 0 );
+
+    int completed = 0;
+    long slowestMs = 0;
+    for ( int i = 0; i < rounds; i++ )
+    {
+      long start = System.nanoTime();
+      final AtomicReference<MatchConnector.Connection> hostConn = new AtomicReference<>();
+      Thread hostThread = new Thread( () ->
+      {
+        try
+        {
+          hostConn.set( MatchConnector.hostLan( harbour, "Arthur", true ) );
+        }
+        catch ( IOException ex )
+        {
+          // hostConn stays null; the count below reports it
+        }
+      });
+      hostThread.start();
+
+      MatchConnector.Connection joiner;
+      try
+      {
+        joiner = MatchConnector.joinLan( "127.0.0.1:" + harbour.getLocalPort(), "Charlemagne" );
+      }
+      catch ( IOException ex )
+      {
+        fail( "Handshake loop: round " + i + " failed to join -- " + ex.getMessage() );
+        return;
+      }
+      hostThread.join( WAIT_MS );
+      MatchConnector.Connection host = hostConn.get();
+      if ( host != null && "Arthur".equals( joiner.remoteName ) && joiner.salvo
+           && "Charlemagne".equals( host.remoteName ) )
+        completed++;
+      slowestMs = Math.max( slowestMs, ( System.nanoTime() - start ) / 1_000_000 );
+
+      if ( host != null )
+        host.transport.close();
+      joiner.transport.close();
+    }
+    harbour.close();
+
+    require( completed == rounds, "Handshake loop: " + completed + " of " + rounds
+             + " handshakes completed" );
+    require( slowestMs < WAIT_MS, "Handshake loop: the slowest took " + slowestMs
+             + " ms, no handshake waited on a lost line" );
+  }
+
+  /**
+   * Many LAN connections at once through one harbour: every pair carries
+   * a burst of lines both ways, in order, while a single selector thread
+   * serves them all.
+   */
+  private static void testLanCrowd() throws Exception
+  {
+    final int pairs = 40;
+    final int burst = 200;
+    ServerSocket harbour = MatchConnector.openHarbour( 0 );
+
+    MatchTransport[] hosts = new MatchTransport[pairs];
+    MatchTransport[] joiners = new MatchTransport[pairs];
+    RecordingListener[] hostEvents = new RecordingListener[pairs];
+    RecordingListener[] joinerEvents = new RecordingListener[pairs];
+    for ( int i = 0; i < pairs; i++ )
+    {
+      joiners[i] = new NioMatchTransport( SocketChannel.open(
+          new InetSocketAddress( "127.0.0.1", harbour.getLocalPort() ) ) );
+      hosts[i] = new NioMatchTransport( harbour.accept().getChannel() );
+      hostEvents[i] = new RecordingListener( burst );
+      joinerEvents[i] = new RecordingListener( burst );
+      hosts[i].setListener( hostEvents[i] );
+      joiners[i].setListener( joinerEvents[i] );
+    }
+
+    for ( int n = 0; n < burst; n++ )
+      for ( int i = 0; i < pairs; i++ )
+      {
+        hosts[i].sendLine( "GSHOT " + i + " " + n );
+        joiners[i].sendLine( "GCHAT ça va, " + i + " " + n );
+      }
+
+    boolean inOrder = true;
+    for ( int i = 0; i < pairs && inOrder; i++ )
+      for ( int n = 0; n < burst && inOrder; n++ )
+        inOrder = ( "LINE GSHOT " + i + " " + n ).equals(
+                      joinerEvents[i].events.poll( WAIT_MS, TimeUnit.MILLISECONDS ) )
+               && ( "LINE GCHAT ça va, " + i + " " + n ).equals(
+                      hostEvents[i].events.poll( WAIT_MS, TimeUnit.MILLISECONDS ) );
+    require( inOrder, "LAN crowd: " + pairs + " connections carried every line in order" );
+
+    int selectors = 0;
+    for ( Thread thread : Thread.getAllStackTraces().keySet() )
+      if ( thread.getName().equals( "lan-match-selector" ) )
+        selectors++;
+    require( selectors == 1, "LAN crowd: one selector thread served them all" );
+
+    hosts[0].sendLine( "GRESIGN" );
+    hosts[0].close();
+    expect( joinerEvents[0].events, "LINE GRESIGN", "LAN crowd: a parting line drains before close" );
+    expect( joinerEvents[0].events, "CLOSED", "LAN crowd: the peer learned of the close" );
+
+    for ( int i = 0; i < pairs; i++ )
+    {
+      hosts[i].close();
+      joiners[i].close();
+    }
+    harbour.close();
+  }
+
+  /**
+   * A pipe that takes its time over every write, as a congested link
+   * does, and counts the writes. Once stalled, it takes forever.
+   */
+  private static final class SlowTransport implements MatchTransport
+  {
+    final BlockingQueue<String> sent = new LinkedBlockingQueue<>();
+    final AtomicInteger writes = new AtomicInteger();
+    final CountDownLatch stall = new CountDownLatch( 1 );
+    volatile boolean stalled = false;
+    volatile boolean closed = false;
+
+    @Override
+    public void setListener( Listener listener ) {}
+
+    @Override
+    public void sendLine( String line ) throws IOException
+    {
+      sendLines( Collections.singletonList( line ) );
+    }
+
+    @Override
+    public void sendLines( List<String> lines ) throws IOException
+    {
+      try
+      {
+        if ( stalled )
+          stall.await();
+        Thread.sleep( 50 );
+      }
+      catch ( InterruptedException ex )
+      {
+        throw new IOException( "interrupted" );
+      }
+      writes.incrementAndGet();
+      sent.addAll( lines );
+    }
+
+    @Override
+    public void close()
+    {
+      closed = true;
+      stall.countDown();
+    }
+  }
+
+  /**
+   * The outbox: sends return at once over a slow pipe, lines that pile up
+   * leave together and in order, a close waits behind them, and a peer
+   * that stops taking lines altogether is reported closed.
+   */
+  private static void testOutbox() throws Exception
+  {
+    SlowTransport slow = new SlowTransport();
+    QueuedMatchTransport queued = new QueuedMatchTransport( slow );
+    RecordingListener events = new RecordingListener();
+    queued.setListener( events );
+
+    long start = System.nanoTime();
+    for ( int n = 0; n < 100; n++ )
+      queued.sendLine( "GCHAT " + n );
+    long elapsedMs = ( System.nanoTime() - start ) / 1_000_000L;
+    require( elapsedMs < 50, "Outbox: 100 sends over a slow pipe took " + elapsedMs + " ms" );
+
+    queued.close();
+    boolean inOrder = true;
+    for ( int n = 0; n < 100 && inOrder; n++ )
+      inOrder = ( "GCHAT " + n ).equals( slow.sent.poll( WAIT_MS, TimeUnit.MILLISECONDS ) );
+    require( inOrder, "Outbox: every line left, in order" );
+    require( slow.writes.get() < 10, "Outbox: " + slow.writes.get() + " writes carried 100 lines" );
+    Thread.sleep( 100 );
+    require( slow.closed, "Outbox: the close followed the last line" );
+
+    SlowTransport stuck = new SlowTransport();
+    stuck.stalled = true;
+    QueuedMatchTransport backed = new QueuedMatchTransport( stuck );
+    RecordingListener stuckEvents = new RecordingListener();
+    backed.setListener( stuckEvents );
+    boolean refused = false;
+    for ( int n = 0; n < 3 * QueuedMatchTransport.OUTBOX_LINES && !refused; n++ )
+    {
+      try
+      {
+        backed.sendLine( "GCHAT " + n );
+      }
+      catch ( IOException ex )
+      {
+        refused = true;
+      }
+    }
+    require( refused, "Outbox: a full outbox refused the next line" );
+    expect( stuckEvents.events, "CLOSED", "Outbox: backpressure was reported as a close" );
+  }
+
+  /**
+   * The simulated pipe on a virtual clock: lines cross in order, no
+   * sooner than latency and bandwidth allow, with the same timings for
+   * the same seed; and a dropped link is heard at both ends.
+   */
+  private static void testSimulatedLink() throws Exception
+  {
+    ImpairedMatchTransport.Conditions slow =
+        new ImpairedMatchTransport.Conditions( 50, 20, 1_000, -1 );
+    List<Long> first = simulateBurst( slow, 7 );
+    List<Long> again = simulateBurst( slow, 7 );
+    require( first.size() == 20, "Simulated: every line of a burst arrived" );
+    require( first.equals( again ), "Simulated: the same seed gave the same timings" );
+    require( first.get( 0 ) >= TimeUnit.MILLISECONDS.toNanos( 30 ),
+             "Simulated: nothing beat the latency" );
+    // twenty 10-byte lines take 200 ms to send at 1000 bytes a second
+    require( first.get( 19 ) >= TimeUnit.MILLISECONDS.toNanos( 200 + 30 ),
+             "Simulated: the burst queued behind the bandwidth" );
+    boolean ordered = true;
+    for ( int n = 1; n < first.size(); n++ )
+      ordered &= first.get( n ) >= first.get( n - 1 );
+    require( ordered, "Simulated: jitter never reordered the lines" );
+
+    VirtualClock clock = new VirtualClock();
+    LoopbackMatchTransport pipe = new LoopbackMatchTransport( clock );
+    ImpairedMatchTransport host = new ImpairedMatchTransport(
+        pipe, clock, ImpairedMatchTransport.Conditions.BROADBAND.disconnectingAfter( 1_000 ), 1 );
+    ImpairedMatchTransport joiner = new ImpairedMatchTransport(
+        pipe.getPeer(), clock, ImpairedMatchTransport.Conditions.BROADBAND, 2 );
+    RecordingListener hostEvents = new RecordingListener();
+    RecordingListener joinerEvents = new RecordingListener();
+    host.setListener( hostEvents );
+    joiner.setListener( joinerEvents );
+
+    host.sendMessage( WireCodec.fire( 7, 2, 9 ) );
+    joiner.sendLine( "GCHAT ahoy" );
+    clock.advance( 500, TimeUnit.MILLISECONDS );
+    expect( joinerEvents.events, "LINE GFIRE 7 2 9", "Simulated: a message crossed" );
+    require( joinerEvents.messages.get() == 1, "Simulated: ... as a message" );
+    expect( hostEvents.events, "LINE GCHAT ahoy", "Simulated: a line crossed back" );
+
+    clock.advance( 1, TimeUnit.SECONDS );
+    expect( hostEvents.events, "CLOSED", "Simulated: the dropping end heard the drop" );
+    expect( joinerEvents.events, "CLOSED", "Simulated: the far end heard it too" );
+    boolean refused = false;
+    try
+    {
+      joiner.sendLine( "GCHAT anyone?" );
+    }
+    catch ( IOException ex )
+    {
+      refused = true;
+    }
+    require( refused, "Simulated: a dropped link refused the next line" );
+  }
+
+  /**
+   * Whole matches between headless commanders on simulated pipes: every
+   * one is decided with both ends agreeing, at the current protocol and
+   * the oldest, the same seed plays the same matches, and a link that
+   * drops mid-match is heard as a close.
+   */
+  private static void testSimulatedMatches() throws Exception
+  {
+    ImpairedMatchTransport.Conditions broadband = ImpairedMatchTransport.Conditions.BROADBAND;
+    MatchLoadTest.Report current = MatchLoadTest.run(
+        200, broadband, MatchConnector.PROTOCOL_VERSION, true, 11 );
+    require( current.sound == 200, "Simulated: 200 SALVO matches decided, boards agreeing" );
+    MatchLoadTest.Report again = MatchLoadTest.run(
+        200, broadband, MatchConnector.PROTOCOL_VERSION, true, 11 );
+    require( again.shots == current.shots && Arrays.equals( again.waits, current.waits ),
+             "Simulated: the same seed played the same matches" );
+
+    MatchLoadTest.Report oldest = MatchLoadTest.run( 50, broadband, 1, false, 11 );
+    require( oldest.sound == 50, "Simulated: version 1 Classic matches still decided" );
+
+    MatchLoadTest.Report dropped = MatchLoadTest.run(
+        20, broadband.disconnectingAfter( 3_000 ), MatchConnector.PROTOCOL_VERSION, true, 11 );
+    require( dropped.closed == 20, "Simulated: a link dropped mid-match closed it" );
+  }
+
+  /**
+   * A version-2 peer that garbles a volley -- a cell off the grid, a
+   * coordinate missing or not a number -- or a verdict on one is hung up
+   * on, the match ending as a dropped link does, rather than throwing on
+   * the event thread or pinning verdicts on the wrong shots.
+   */
+  private static void testMalformedVolleys() throws Exception
+  {
+    String[] volleys = { "GVOLLEY 3 12", "GVOLLEY 3", "GVOLLEY 3 x", "GVOLLEY", "GVOLLEY 3 4  5" };
+    for ( String volley : volleys )
+    {
+      VirtualClock clock = new VirtualClock();
+      LoopbackMatchTransport pipe = new LoopbackMatchTransport( clock );
+      RecordingListener enemy = new RecordingListener();
+      pipe.getPeer().setListener( enemy );
+      HeadlessCommander joiner = new HeadlessCommander(
+          pipe, false, 2, true, clock, 5, wait -> {} );
+      joiner.start();
+      pipe.getPeer().sendLine( volley );
+      clock.runUntilIdle( 1_000 );
+      require( joiner.isOver() && !joiner.hasWon()
+               && "the enemy sent a malformed GVOLLEY".equals( joiner.getClosedReason() ),
+               "Malformed: [" + volley + "] ended the match" );
+      require( enemy.events.contains( "CLOSED" ), "Malformed: ... and hung up on the sender" );
+    }
+
+    VirtualClock clock = new VirtualClock();
+    LoopbackMatchTransport pipe = new LoopbackMatchTransport( clock );
+    RecordingListener enemy = new RecordingListener();
+    pipe.getPeer().setListener( enemy );
+    HeadlessCommander host = new HeadlessCommander( pipe, true, 2, true, clock, 5, wait -> {} );
+    host.start();
+    pipe.getPeer().sendLine( "GREADY" );
+    clock.runUntilIdle( 1_000 );
+    boolean fired = false;
+    for ( String event : enemy.events )
+      fired |= event.startsWith( "LINE GVOLLEY " );
+    require( fired, "Malformed: the host fired a volley" );
+    pipe.getPeer().sendLine( "GVRESULT 0 0 MISS,0 1 BOGUS,0 2 MISS" );
+    clock.runUntilIdle( 1_000 );
+    require( host.isOver() && host.getShotsFired() == 0
+             && "the enemy sent a malformed GVRESULT".equals( host.getClosedReason() ),
+             "Malformed: a garbled verdict ended the match, no shot settled" );
+  }
+
+  /**
+   * Sends twenty lines one way over an impaired simulated pipe, and
+   * returns the virtual time each arrived at.
+   */
+  private static List<Long> simulateBurst( ImpairedMatchTransport.Conditions conditions,
+                                           long seed ) throws IOException
+  {
+    final VirtualClock clock = new VirtualClock();
+    LoopbackMatchTransport pipe = new LoopbackMatchTransport( clock );
+    ImpairedMatchTransport sender = new ImpairedMatchTransport( pipe, clock, conditions, seed );
+    final List<Long> arrivals = new ArrayList<>();
+    pipe.getPeer().setListener( new MatchTransport.Listener()
+    {
+      @Override
+      public void onLine( String line )
+      {
+        arrivals.add( clock.nanoTime() );
+      }
+
+      @Override
+      public void onClosed( String reason ) {}
+    });
+    for ( int n = 0; n < 20; n++ )
+      sender.sendLine( "GCHAT " + ( 100 + n ) ); // ten bytes with the newline
+    clock.runUntilIdle( 1_000 );
+    return arrivals;
+  }
+
   /**
    * A relay match through an in-process reference relay: pairing by room
    * code, handshake, then lines both ways.
@@ -173,6 +676,10 @@ public final class NetMatchSelfTest
     joinerSide.sendLine( "GCHAT well struck, friend" );
     expect( hostEvents.events, "LINE GCHAT well struck, friend",
             label + ": chat crossed with spaces intact" );
+
+    hostSide.sendMessage( WireCodec.fire( 7, 2, 9 ) );
+    expect( joinerEvents.events, "LINE GFIRE 7 2 9",
+            label + ": a message crossed as the pipe agreed" );
   }
 
   /**
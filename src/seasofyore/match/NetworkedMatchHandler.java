@@ -8,34 +8,22 @@ import seasofyore.core.Civilization;
 import seasofyore.core.Player;
 import seasofyore.core.RemotePlayer;
 import seasofyore.core.Ship;
-import seasofyore.core.ShipType;
-import seasofyore.ui.QuadrantPanel;
 import seasofyore.ui.TerminalPanel;
-import java.io.IOException;
 import javax.swing.JOptionPane;
 
 /**
- * The engine of every networked match, written once against
+ * Every networked match on screen, written once against
  * {@link MatchTransport} so a direct LAN socket and a relay-carried
  * WebSocket behave identically. The four leaf classes (LAN/Online x
  * server/client) exist to name the taxonomy; everything they share is
  * here.
- *
- * <h2>The wire game protocol</h2>
- * Each side is authoritative over its own fleet: ship positions never
- * cross the water, only declarations and verdicts do. After the
- * connector's handshake (GHELLO/GRULES, performed before the game is
- * built), the lines are:
- * <pre>
- *   GREADY                                      my fleet is placed
- *   GSHOT &lt;x&gt; &lt;y&gt;                               I fire at your waters
- *   GRESULT &lt;x&gt; &lt;y&gt; HIT|MISS [SUNK &lt;type&gt;] [DEFEATED]   my verdict on your shot
- *   GENDTURN                                    my turn is over; yours begins
- *   GCHAT &lt;text&gt;                                a word across the water
- *   GFORFEIT                                    I strike my colours
- * </pre>
- * The host commands the Britons and fires first; both boards mirror the
- * turn state by exchanging GENDTURN.
+ * <p>
+ * The wire protocol itself -- readiness, shots and their verdicts, turn
+ * ends, forfeits, chat and the heartbeat -- is a {@link MatchSession},
+ * which knows nothing of Swing. This handler is its stage: it puts what
+ * the session reports on the board, the terminal and the end screen,
+ * lets stones fall before the session answers them, and beats the
+ * session's heartbeat on a Swing timer.
  *
  * <h2>What all networked flavours share</h2>
  * No curtain (the opponent cannot see this screen), no pausing (the
@@ -46,7 +34,6 @@ import javax.swing.JOptionPane;
  * @author dylan
  */
 public abstract class NetworkedMatchHandler extends AbstractMatchHandler
-    implements MatchTransport.Listener
 {
   /**
    * The pipe to the opposing screen.
@@ -69,44 +56,39 @@ public abstract class NetworkedMatchHandler extends AbstractMatchHandler
   protected final String remoteName;
 
   /**
-   * The shot awaiting the remote side's GRESULT, if any.
-   */
-  private ShotOutcome pendingOutcome;
-
-  /**
-   * Fleet-ready declarations from each side of the water.
+   * The protocol version both sides speak, settled in the handshake.
    */
-  private boolean localReady = false;
-  private boolean remoteReady = false;
+  protected final int protocol;
 
   /**
-   * True while applying a remote GENDTURN, so the resulting local turn
-   * switch does not echo GENDTURN straight back.
+   * The wire protocol's state, which this handler stages.
    */
-  private boolean remoteAdvancing = false;
+  private final MatchSession session;
 
   /**
-   * Set once the match has a winner, so a subsequent connection close is
-   * an anticlimax rather than an error dialog.
+   * Beats the session's heartbeat; null below version 5.
    */
-  private boolean concluded = false;
+  private javax.swing.Timer heartbeat;
 
   /**
-   * Builds the engine around an established connection.
+   * Builds the handler around an established connection.
    *
    * @param transport  the connected pipe to the opposing screen
    * @param host       whether this screen hosts the match
    * @param localName  the local commander's name
    * @param remoteName the remote commander's name (from the handshake)
+   * @param protocol   the protocol version both sides speak
    */
   protected NetworkedMatchHandler( MatchTransport transport, boolean host,
-                                   String localName, String remoteName )
+                                   String localName, String remoteName,
+                                   int protocol )
   {
     this.transport = transport;
     this.host = host;
     this.localName = localName;
     this.remoteName = remoteName;
-    transport.setListener( this );
+    this.protocol = protocol;
+    this.session = new MatchSession( transport, host, protocol, new Screen(), System::nanoTime );
   }
 
   /**
@@ -119,8 +101,39 @@ public abstract class NetworkedMatchHandler extends AbstractMatchHandler
   {
     super.beginMatch( controller );
 
+    session.begin( board() );
     remotePlayer().setName( remoteName );
-    board().forceCurrentPlayer( localCiv() );
+
+    if ( protocol >= 5 )
+      startHeartbeat();
+  }
+
+  /**
+   * Starts the heartbeat and this match's metrics file.
+   */
+  private void startHeartbeat()
+  {
+    // -- written in the background; if it fails, only the record is lost
+    session.recordMetrics( LinkMetrics.defaultDirectory(), getClass().getSimpleName()
+        + " against " + remoteName + ", protocol " + protocol + ", "
+        + ( transport.carriesFrames() ? "binary" : "text" ) + " wire" );
+    heartbeat = new javax.swing.Timer( MatchSession.HEARTBEAT_MS, e ->
+    {
+      if ( !session.beat() )
+        stopHeartbeat();
+    });
+    heartbeat.start();
+  }
+
+  /**
+   * Stops the heartbeat's timer. Idempotent.
+   */
+  private void stopHeartbeat()
+  {
+    if ( heartbeat == null )
+      return;
+    heartbeat.stop();
+    heartbeat = null;
   }
 
   /**
@@ -130,7 +143,7 @@ public abstract class NetworkedMatchHandler extends AbstractMatchHandler
    */
   protected final Civilization localCiv()
   {
-    return host ? Civilization.BRITONS : Civilization.FRANKS;
+    return session.localCiv();
   }
 
   /**
@@ -140,7 +153,7 @@ public abstract class NetworkedMatchHandler extends AbstractMatchHandler
    */
   protected final Civilization remoteCiv()
   {
-    return host ? Civilization.FRANKS : Civilization.BRITONS;
+    return session.remoteCiv();
   }
 
   /**
@@ -149,8 +162,7 @@ public abstract class NetworkedMatchHandler extends AbstractMatchHandler
   @Override
   public final Player getLocalPlayer()
   {
-    return ( localCiv() == Civilization.BRITONS ) ? board().getBritons()
-                                                  : board().getFranks();
+    return session.getLocalPlayer();
   }
 
   /**
@@ -158,9 +170,7 @@ public abstract class NetworkedMatchHandler extends AbstractMatchHandler
    */
   protected final RemotePlayer remotePlayer()
   {
-    Player remote = ( remoteCiv() == Civilization.BRITONS )
-                  ? board().getBritons() : board().getFranks();
-    return (RemotePlayer) remote;
+    return session.getRemotePlayer();
   }
 
   /**
@@ -201,49 +211,53 @@ public abstract class NetworkedMatchHandler extends AbstractMatchHandler
 
   /**
    * The two networked turn-handoff special cases. During setup, the flag
-   * click means "my fleet is placed": declare GREADY and either begin the
+   * click means "my fleet is placed": declare it and either begin the
    * battle (if the enemy already declared) or wait -- taking over the
-   * transition entirely. In battle, relay the handoff with GENDTURN
-   * (unless this switch IS the application of the enemy's GENDTURN) and
-   * let the controller advance both boards in step.
+   * transition entirely. In battle, relay the handoff (unless this switch
+   * IS the application of the enemy's) and let the controller advance
+   * both boards in step.
    */
   @Override
   public boolean interceptTurnEnd()
   {
-    if ( !localReady )
+    if ( !session.isLocalReady() )
     {
-      localReady = true;
-      sendQuietly( "GREADY" );
-
-      if ( remoteReady )
-        startBattle();
-      else
+      if ( !session.declareReady() )
         controller.setPhase( new WaitingForEnemyPhase() );
       return true;
     }
 
-    if ( !remoteAdvancing )
-      sendQuietly( "GENDTURN" );
+    session.endTurn();
     return false;
   }
 
   /**
-   * Sends the local shot across the water; the verdict arrives later as
-   * GRESULT and completes the outcome callback. Exactly one shot may be
-   * in the air: a second one would overwrite the pending verdict slot
-   * and desynchronize the boards, so it is a programming error in the
-   * calling phase (which must lock firing until the verdict lands).
+   * Completes the local shot with its verdict, once it has crossed the
+   * water; see {@link MatchSession#resolveOutgoingShot}.
    */
   @Override
   public void resolveOutgoingShot( int x, int y, ShotOutcome outcome )
   {
-    if ( pendingOutcome != null )
-      throw new IllegalStateException(
-          "A shot is already awaiting its GRESULT; the firing phase "
-          + "must lock the panel until the verdict arrives." );
+    session.resolveOutgoingShot( x, y, outcome );
+  }
 
-    pendingOutcome = outcome;
-    sendQuietly( "GSHOT " + x + " " + y );
+  /**
+   * Sends the shot the moment it is aimed, where the protocol allows, so
+   * its round trip overlaps the falling stone.
+   */
+  @Override
+  public void aimShot( int x, int y )
+  {
+    session.aimShot( x, y );
+  }
+
+  /**
+   * Sends a whole volley at once, where the protocol prefers it.
+   */
+  @Override
+  public void announceVolley( int[][] shots )
+  {
+    session.announceVolley( shots );
   }
 
   /**
@@ -253,7 +267,7 @@ public abstract class NetworkedMatchHandler extends AbstractMatchHandler
    */
   public void sendChat( String message )
   {
-    sendQuietly( "GCHAT " + message );
+    session.sendChat( message );
     controller.getTerminal().logMessage(
         TerminalPanel.CYAN + TerminalPanel.BOLD + "[" + localName + "]"
         + TerminalPanel.RESET + " " + TerminalPanel.CYAN + message
@@ -267,9 +281,7 @@ public abstract class NetworkedMatchHandler extends AbstractMatchHandler
   @Override
   public void forfeit()
   {
-    concluded = true;
-    sendQuietly( "GFORFEIT" );
-    transport.close();
+    session.forfeit();
     controller.abandonToTitle();
   }
 
@@ -279,255 +291,114 @@ public abstract class NetworkedMatchHandler extends AbstractMatchHandler
   @Override
   public void shutdown()
   {
-    concluded = true;
-    transport.close();
+    stopHeartbeat();
+    session.shutdown();
   }
 
-  // ------------------------------------------------------------------
-  // MatchTransport.Listener (on the EDT)
-  // ------------------------------------------------------------------
-
-  @Override
-  public void onLine( String line )
-  {
-    String keyword = firstWord( line );
-    String rest = restAfterFirstWord( line );
-
-    switch ( keyword )
-    {
-      case "GSHOT":    handleIncomingShot( rest );  break;
-      case "GRESULT":  handleShotResult( rest );    break;
-      case "GENDTURN": handleRemoteTurnEnd();       break;
-      case "GREADY":   handleRemoteReady();         break;
-      case "GCHAT":    handleChat( rest );          break;
-      case "GFORFEIT": handleForfeit();             break;
-      default:
-        break; // unknown chatter tolerated for forward compatibility
-    }
-  }
-
-  @Override
-  public void onClosed( String reason )
-  {
-    if ( concluded )
-      return;
-    concluded = true;
-
-    JOptionPane.showMessageDialog( controller,
-        "The line to the enemy went dead: " + reason,
-        "Connection lost", JOptionPane.WARNING_MESSAGE );
-    controller.abandonToTitle();
-  }
-
-  // ------------------------------------------------------------------
-  // Incoming protocol handling
-  // ------------------------------------------------------------------
-
   /**
-   * The enemy fires at this screen's waters. The verdict is computed
-   * here -- only this side knows its own fleet -- marked, answered, and
-   * shown (with the falling stone, when the show is on).
+   * The session's stage: the board, the terminal, the falling stones and
+   * the end screen. Runs on the EDT, where the transport calls in.
    */
-  private void handleIncomingShot( String rest )
+  private final class Screen implements MatchSession.Stage
   {
-    String[] parts = rest.split( " " );
-    final int x = Integer.parseInt( parts[0] );
-    final int y = Integer.parseInt( parts[1] );
-
-    Runnable resolve = () -> resolveIncomingShot( x, y );
-
-    GamePhase phase = controller.getCurrentPhase();
-    if ( controller.useStoneAnimations() && phase instanceof RemoteTurnPhase )
-      ( (RemoteTurnPhase) phase ).animateIncoming( x, y, resolve );
-    else
-      resolve.run();
-  }
+    /**
+     * Lets the stone fall first, when the show is on.
+     */
+    @Override
+    public void landIncoming( int x, int y, Runnable land )
+    {
+      GamePhase phase = controller.getCurrentPhase();
+      if ( controller.useStoneAnimations() && phase instanceof RemoteTurnPhase )
+        ( (RemoteTurnPhase) phase ).animateIncoming( x, y, land );
+      else
+        land.run();
+    }
 
-  /**
-   * Applies an enemy shot to the local fleet and answers with the
-   * verdict.
-   */
-  private void resolveIncomingShot( int x, int y )
-  {
-    Player local = getLocalPlayer();
-    // during the enemy's turn the local fleet is the "next" player's
-    QuadrantPanel localPanel = controller.getNextQuadrantPanel();
-
-    boolean hit = ( local.getShipAt( x, y ) != null );
-    localPanel.fireAtCell( x, y );
-    controller.getBoard().recordShotFired();
-
-    Ship struck = hit ? local.getShipAt( x, y ) : null;
-    boolean sunk = ( struck != null && struck.isSunk() );
-    boolean defeated = local.hasLost();
-
-    StringBuilder verdict = new StringBuilder( "GRESULT " ).append( x )
-        .append( ' ' ).append( y ).append( hit ? " HIT" : " MISS" );
-    if ( sunk )
-      verdict.append( " SUNK " ).append( struck.getShipType() );
-    if ( defeated )
-      verdict.append( " DEFEATED" );
-    sendQuietly( verdict.toString() );
-
-    String name = remotePlayer().getTitledName();
-    if ( !hit )
-      controller.logToTerminal( TerminalPanel.BLUE + name
-          + "'s stone splashes harmlessly at " + x + "," + y + "."
-          + TerminalPanel.RESET );
-    else if ( sunk )
-      controller.logToTerminal( TerminalPanel.RED + TerminalPanel.BOLD + name
-          + " hath SUNK thy " + struck.getShipType() + "!"
-          + TerminalPanel.RESET );
-    else
-      controller.logToTerminal( TerminalPanel.RED + name
-          + " strikes thy " + struck.getShipType() + " at " + x + "," + y
-          + "!" + TerminalPanel.RESET );
+    @Override
+    public void incomingResolved( int x, int y, Ship struck )
+    {
+      String name = remotePlayer().getTitledName();
+      if ( struck == null )
+        controller.logToTerminal( TerminalPanel.BLUE + name
+            + "'s stone splashes harmlessly at " + x + "," + y + "."
+            + TerminalPanel.RESET );
+      else if ( struck.isSunk() )
+        controller.logToTerminal( TerminalPanel.RED + TerminalPanel.BOLD + name
+            + " hath SUNK thy " + struck.getShipType() + "!"
+            + TerminalPanel.RESET );
+      else
+        controller.logToTerminal( TerminalPanel.RED + name
+            + " strikes thy " + struck.getShipType() + " at " + x + "," + y
+            + "!" + TerminalPanel.RESET );
+    }
 
-    if ( defeated )
+    @Override
+    public void verdictApplied( long verdict )
     {
-      concluded = true;
-      controller.showWinScreen( remoteCiv() );
+      controller.getBoardPanel().repaint();
     }
-  }
 
-  /**
-   * The enemy's verdict on the local player's shot: mark the enemy
-   * quadrant and complete the firing phase's outcome callback.
-   */
-  private void handleShotResult( String rest )
-  {
-    String[] parts = rest.split( " " );
-    int x = Integer.parseInt( parts[0] );
-    int y = Integer.parseInt( parts[1] );
-    boolean hit = "HIT".equals( parts[2] );
-
-    ShipType sunkType = null;
-    boolean defeated = false;
-    for ( int i = 3; i < parts.length; i++ )
+    @Override
+    public void remoteReady()
     {
-      if ( "SUNK".equals( parts[i] ) && i + 1 < parts.length )
-        sunkType = ShipType.valueOf( parts[++i] );
-      if ( "DEFEATED".equals( parts[i] ) )
-        defeated = true;
+      controller.getTerminal().logMessage( TerminalPanel.GOLD
+          + remotePlayer().getTitledName()
+          + "'s fleet stands ready across the water." + TerminalPanel.RESET );
     }
 
-    // mark what we learned on the remote quadrant (their panel hides
-    // ships anyway; hits and misses are all we will ever know)
-    remotePlayer().getFriendlyQuad().setCellType( x, y,
-        hit ? seasofyore.core.PlayerQuadrant.HIT_CELL
-            : seasofyore.core.PlayerQuadrant.MISS_CELL );
-    controller.getBoardPanel().repaint();
+    @Override
+    public void chat( String text )
+    {
+      controller.getTerminal().logMessage(
+          TerminalPanel.CYAN + TerminalPanel.BOLD + "[" + remoteName + "]"
+          + TerminalPanel.RESET + " " + TerminalPanel.CYAN + text
+          + TerminalPanel.RESET );
+    }
 
-    if ( defeated )
+    @Override
+    public void linkStatus( String status )
     {
-      remotePlayer().markDefeated();
-      concluded = true;
+      controller.getTerminal().setLinkStatus( status );
     }
 
-    if ( pendingOutcome != null )
+    /**
+     * Battle begins on the host's civilization, at both ends at once.
+     */
+    @Override
+    public void battleBegins()
     {
-      ShotOutcome outcome = pendingOutcome;
-      pendingOutcome = null;
-      outcome.onResolved( hit, sunkType, defeated );
+      controller.beginBattleAs( Civilization.BRITONS );
     }
-  }
 
-  /**
-   * The enemy's turn ended: advance the local board to match, without
-   * echoing GENDTURN back.
-   */
-  private void handleRemoteTurnEnd()
-  {
-    remoteAdvancing = true;
-    try
+    @Override
+    public void remoteTurnEnded()
     {
       controller.switchTurns();
     }
-    finally
+
+    @Override
+    public void defeated()
     {
-      remoteAdvancing = false;
+      controller.showWinScreen( remoteCiv() );
     }
-  }
-
-  /**
-   * The enemy's fleet is placed. If ours is too, the battle begins.
-   */
-  private void handleRemoteReady()
-  {
-    remoteReady = true;
-    remotePlayer().markFleetReady();
-
-    if ( localReady )
-      startBattle();
-    else
-      controller.getTerminal().logMessage( TerminalPanel.GOLD
-          + remotePlayer().getTitledName()
-          + "'s fleet stands ready across the water." + TerminalPanel.RESET );
-  }
-
-  /**
-   * Chat from across the water.
-   */
-  private void handleChat( String text )
-  {
-    controller.getTerminal().logMessage(
-        TerminalPanel.CYAN + TerminalPanel.BOLD + "[" + remoteName + "]"
-        + TerminalPanel.RESET + " " + TerminalPanel.CYAN + text
-        + TerminalPanel.RESET );
-  }
-
-  /**
-   * The enemy struck their colours: the local player wins.
-   */
-  private void handleForfeit()
-  {
-    concluded = true;
-    controller.getTerminal().logMessage( TerminalPanel.GOLD + TerminalPanel.BOLD
-        + remotePlayer().getTitledName() + " hath struck their colours!"
-        + TerminalPanel.RESET );
-    controller.showWinScreen( localCiv() );
-  }
-
-  /**
-   * Both fleets stand placed: battle begins on the host's civilization,
-   * simultaneously at both ends.
-   */
-  private void startBattle()
-  {
-    controller.beginBattleAs( Civilization.BRITONS );
-  }
 
-  /**
-   * Sends a line, treating transport failure as a closed connection
-   * (the reader side will surface it properly).
-   */
-  protected final void sendQuietly( String line )
-  {
-    try
+    @Override
+    public void enemyForfeited()
     {
-      transport.sendLine( line );
+      controller.getTerminal().logMessage( TerminalPanel.GOLD + TerminalPanel.BOLD
+          + remotePlayer().getTitledName() + " hath struck their colours!"
+          + TerminalPanel.RESET );
+      controller.showWinScreen( localCiv() );
     }
-    catch ( IOException ex )
+
+    @Override
+    public void closed( String reason )
     {
-      // the read side notices and reports the dead pipe
+      stopHeartbeat();
+      JOptionPane.showMessageDialog( controller,
+          "The line to the enemy went dead: " + reason,
+          "Connection lost", JOptionPane.WARNING_MESSAGE );
+      controller.abandonToTitle();
     }
   }
-
-  /**
-   * The first space-delimited word of a line (or all of it).
-   */
-  private static String firstWord( String line )
-  {
-    int space = line.indexOf( ' ' );
-    return ( space < 0 ) ? line : line.substring( 0, space );
-  }
-
-  /**
-   * Everything after the first word, or the empty string.
-   */
-  private static String restAfterFirstWord( String line )
-  {
-    int space = line.indexOf( ' ' );
-    return ( space < 0 ) ? "" : line.substring( space + 1 );
-  }
 }
@@ -0,0 +1,452 @@
+package seasofyore.match;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The LAN transport without a thread per socket: newline-delimited UTF-8
+ * lines over a non-blocking {@link SocketChannel}, one of any number
+ * multiplexed on a single shared selector thread. Lines on the wire are
+ * exactly those of {@link TcpMatchTransport}, so either end may use
+ * either.
+ * <p>
+ * {@link #sendLine} never blocks: it appends the encoded line to this
+ * connection's outbound buffer and leaves the writing to the selector
+ * thread, so the EDT is never held up by a slow or stalled peer. Inbound
+ * bytes land in a direct buffer that is scanned for newlines in place;
+ * only complete lines are copied out, decoded, and handed to the
+ * listener on the EDT, a burst at a time (see {@link EdtBatcher}).
+ * <p>
+ * The pipe also carries {@link WireCodec} binary frames, interleaved with
+ * the lines: a frame's first byte has its high bit set, as no line's
+ * does. Frames are encoded straight into the outbound buffer and decoded
+ * where they lie in the inbound one, so neither way costs a copy.
+ * <p>
+ * Reading starts as soon as the channel is registered, which may be
+ * before anyone listens: whatever arrives first is held, in order, until
+ * {@link #setListener} names someone to hear it, so the peer's GHELLO is
+ * never lost to a handshake that has not yet begun listening.
+ * <p>
+ * {@link #close} stops new sends at once but lets lines already sent
+ * drain to the peer before the socket closes, so a parting GRESIGN still
+ * arrives.
+ *
+ * @author dylan
+ */
+public final class NioMatchTransport implements MatchTransport
+{
+  /**
+   * The inbound buffer's starting size.
+   */
+  private static final int READ_BUFFER_BYTES = 4096;
+
+  /**
+   * The longest line accepted from the peer; a longer one ends the match.
+   */
+  private static final int MAX_LINE_BYTES = 64 * 1024;
+
+  /**
+   * The most unsent bytes held for a peer that has stopped reading.
+   */
+  private static final int MAX_PENDING_BYTES = 1024 * 1024;
+
+  private final SocketChannel channel;
+
+  /** Read into by the selector thread; bytes before position are unframed. */
+  private ByteBuffer inbound = ByteBuffer.allocateDirect( READ_BUFFER_BYTES );
+
+  /** Filled by senders, drained by the selector thread; guarded by itself. */
+  private ByteBuffer outbound = ByteBuffer.allocateDirect( READ_BUFFER_BYTES );
+  private final Object outboundLock = new Object();
+
+  /** Set on the selector thread once the channel is registered. */
+  private SelectionKey key;
+
+  /** Carries this connection's lines and close to the EDT, in batches. */
+  private final EdtBatcher inbox = new EdtBatcher();
+
+  private volatile boolean closed = false;
+
+  /** Holds what arrives until a listener is named, then passes it on. */
+  private final ListenerGate gate = new ListenerGate();
+
+  /**
+   * Wraps a connected socket channel and hands it to the selector thread.
+   *
+   * @param channel the connected channel
+   * @throws IOException if the channel cannot be made non-blocking
+   */
+  public NioMatchTransport( SocketChannel channel ) throws IOException
+  {
+    this.channel = channel;
+    channel.socket().setTcpNoDelay( true ); // turn lines should not wait for Nagle
+    channel.configureBlocking( false );
+    Loop.INSTANCE.submit( this::register );
+  }
+
+  @Override
+  public void setListener( Listener listener )
+  {
+    gate.setListener( listener, inbox );
+  }
+
+  @Override
+  public void sendLine( String line ) throws IOException
+  {
+    enqueue( ( line + "\n" ).getBytes( StandardCharsets.UTF_8 ) );
+  }
+
+  @Override
+  public void sendLines( List<String> lines ) throws IOException
+  {
+    StringBuilder joined = new StringBuilder();
+    for ( String line : lines )
+      joined.append( line ).append( '\n' );
+    enqueue( joined.toString().getBytes( StandardCharsets.UTF_8 ) );
+  }
+
+  /**
+   * Always: frames interleave with lines on the stream.
+   */
+  @Override
+  public boolean carriesFrames()
+  {
+    return true;
+  }
+
+  @Override
+  public void sendMessage( long message ) throws IOException
+  {
+    if ( closed )
+      throw new IOException( "transport is closed" );
+
+    int length = WireCodec.frameLength( WireCodec.opcode( message ) );
+    synchronized ( outboundLock )
+    {
+      if ( outbound.remaining() < length )
+      {
+        int needed = outbound.position() + length;
+        if ( needed > MAX_PENDING_BYTES )
+          throw new IOException( "the connection has stalled" );
+        outbound = grow( outbound, needed );
+      }
+      WireCodec.encode( message, outbound );
+    }
+    Loop.INSTANCE.submit( this::wantWrite );
+  }
+
+  /**
+   * Appends encoded lines to the outbound buffer and asks the selector
+   * thread to write them.
+   */
+  private void enqueue( byte[] bytes ) throws IOException
+  {
+    if ( closed )
+      throw new IOException( "transport is closed" );
+
+    synchronized ( outboundLock )
+    {
+      if ( outbound.remaining() < bytes.length )
+      {
+        int needed = outbound.position() + bytes.length;
+        if ( needed > MAX_PENDING_BYTES )
+          throw new IOException( "the connection has stalled" );
+        outbound = grow( outbound, needed );
+      }
+      outbound.put( bytes );
+    }
+    Loop.INSTANCE.submit( this::wantWrite );
+  }
+
+  @Override
+  public void close()
+  {
+    if ( closed )
+      return;
+    closed = true;
+    Loop.INSTANCE.submit( this::wantWrite ); // drains, then closes
+  }
+
+  // ------------------------------------------------------------------
+  // the selector thread
+  // ------------------------------------------------------------------
+
+  /**
+   * Registers the channel for reading, and for writing if lines were
+   * sent before registration.
+   */
+  private void register()
+  {
+    try
+    {
+      key = channel.register( Loop.INSTANCE.selector, SelectionKey.OP_READ, this );
+      wantWrite();
+    }
+    catch ( IOException ex )
+    {
+      fail( "the connection was lost: " + ex.getMessage() );
+    }
+  }
+
+  /**
+   * Asks to be told when the socket can take more, or finishes closing if
+   * nothing is left to send.
+   */
+  private void wantWrite()
+  {
+    if ( key == null || !key.isValid() )
+      return; // not yet registered, or already gone
+    boolean pending;
+    synchronized ( outboundLock )
+    {
+      pending = outbound.position() > 0;
+    }
+    if ( pending )
+      key.interestOps( key.interestOps() | SelectionKey.OP_WRITE );
+    else if ( closed )
+      shut();
+  }
+
+  /**
+   * The socket can take more: writes as much of the outbound buffer as it
+   * will, and stops asking once the buffer is empty.
+   */
+  private void onWritable()
+  {
+    try
+    {
+      boolean drained;
+      synchronized ( outboundLock )
+      {
+        outbound.flip();
+        channel.write( outbound );
+        outbound.compact();
+        drained = outbound.position() == 0;
+      }
+      if ( drained )
+      {
+        key.interestOps( key.interestOps() & ~SelectionKey.OP_WRITE );
+        if ( closed )
+          shut();
+      }
+    }
+    catch ( IOException ex )
+    {
+      fail( "the connection was lost: " + ex.getMessage() );
+    }
+  }
+
+  /**
+   * Bytes have arrived: reads them, and delivers each complete line and
+   * frame.
+   */
+  private void onReadable()
+  {
+    int read;
+    try
+    {
+      read = channel.read( inbound );
+    }
+    catch ( IOException ex )
+    {
+      fail( "the connection was lost: " + ex.getMessage() );
+      return;
+    }
+    if ( read < 0 )
+    {
+      fail( "the connection was closed" );
+      return;
+    }
+
+    // frame complete lines and frames in place, then keep the partial tail
+    inbound.flip();
+    int start = 0;
+    while ( start < inbound.limit() )
+    {
+      int first = inbound.get( start );
+      if ( first < 0 )
+      {
+        int length = WireCodec.frameLength( first & 0xFF );
+        if ( length < 0 )
+        {
+          fail( "the enemy sent a frame this build cannot read" );
+          return;
+        }
+        if ( start + length > inbound.limit() )
+          break;
+        long message = WireCodec.decode( inbound, start );
+        if ( message != WireCodec.NONE )
+          deliver( message );
+        start += length;
+        continue;
+      }
+
+      int i = start;
+      while ( i < inbound.limit() && inbound.get( i ) != '\n' )
+        i++;
+      if ( i == inbound.limit() )
+        break; // the rest of the line is still on its way
+      int end = ( i > start && inbound.get( i - 1 ) == '\r' ) ? i - 1 : i;
+      byte[] bytes = new byte[end - start];
+      inbound.position( start );
+      inbound.get( bytes );
+      deliver( new String( bytes, StandardCharsets.UTF_8 ) );
+      start = i + 1;
+    }
+    inbound.position( start );
+    inbound.compact();
+
+    if ( !inbound.hasRemaining() )
+    {
+      if ( inbound.capacity() >= MAX_LINE_BYTES )
+        fail( "the enemy sent a line too long to read" );
+      else
+        inbound = grow( inbound, inbound.capacity() * 2 );
+    }
+  }
+
+  /**
+   * Hands one line to the listener on the EDT, with whatever else
+   * arrives before the EDT gets to it.
+   */
+  private void deliver( final String line )
+  {
+    inbox.execute( () -> gate.onLine( line ) );
+  }
+
+  /**
+   * Hands one decoded frame to the listener on the EDT, likewise.
+   */
+  private void deliver( final long message )
+  {
+    inbox.execute( () -> gate.onMessage( message ) );
+  }
+
+  /**
+   * The pipe failed or the peer hung up: closes it and, unless this side
+   * closed it first, tells the listener why.
+   */
+  private void fail( String reason )
+  {
+    boolean announce = !closed;
+    closed = true;
+    shut();
+    if ( announce )
+      inbox.execute( () -> gate.onClosed( reason ) );
+  }
+
+  /**
+   * Deregisters and closes the channel.
+   */
+  private void shut()
+  {
+    if ( key != null )
+      key.cancel();
+    try
+    {
+      channel.close();
+    }
+    catch ( IOException ex )
+    {
+      // best effort
+    }
+  }
+
+  /**
+   * A larger copy of a buffer in write mode, its contents kept.
+   */
+  private static ByteBuffer grow( ByteBuffer buffer, int atLeast )
+  {
+    int capacity = buffer.capacity();
+    while ( capacity < atLeast )
+      capacity *= 2;
+    ByteBuffer bigger = ByteBuffer.allocateDirect( capacity );
+    buffer.flip();
+    bigger.put( buffer );
+    return bigger;
+  }
+
+  /**
+   * The one selector thread every NIO match connection shares. Started on
+   * first use; a daemon, so it never holds the JVM open. All registration
+   * and interest changes run on it, submitted as tasks.
+   */
+  private static final class Loop implements Runnable
+  {
+    static final Loop INSTANCE = new Loop();
+
+    final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    private Loop()
+    {
+      try
+      {
+        selector = Selector.open();
+      }
+      catch ( IOException ex )
+      {
+        throw new IllegalStateException( "no selector available", ex );
+      }
+      Thread thread = new Thread( this, "lan-match-selector" );
+      thread.setDaemon( true );
+      thread.start();
+    }
+
+    /**
+     * Runs a task on the selector thread, soon.
+     */
+    void submit( Runnable task )
+    {
+      tasks.add( task );
+      selector.wakeup();
+    }
+
+    @Override
+    public void run()
+    {
+      while ( true )
+      {
+        try
+        {
+          selector.select();
+        }
+        catch ( IOException ex )
+        {
+          continue; // spurious; the selector itself stays usable
+        }
+
+        for ( Runnable task; ( task = tasks.poll() ) != null; )
+          task.run();
+
+        Iterator<SelectionKey> ready = selector.selectedKeys().iterator();
+        while ( ready.hasNext() )
+        {
+          SelectionKey key = ready.next();
+          ready.remove();
+          NioMatchTransport transport = (NioMatchTransport) key.attachment();
+          try
+          {
+            if ( key.isReadable() )
+              transport.onReadable();
+            if ( key.isValid() && key.isWritable() )
+              transport.onWritable();
+          }
+          catch ( CancelledKeyException ex )
+          {
+            // closed by a task or the other handler; nothing left to do
+          }
+        }
+      }
+    }
+  }
+}
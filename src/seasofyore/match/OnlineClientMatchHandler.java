@@ -14,10 +14,12 @@ public final class OnlineClientMatchHandler extends OnlineMatchHandler
    * @param transport  the paired transport from MatchConnector.joinOnline
    * @param localName  the local commander's name
    * @param remoteName the remote commander's name
+   * @param protocol   the protocol version both sides speak
    */
   public OnlineClientMatchHandler( MatchTransport transport,
-                                   String localName, String remoteName )
+                                   String localName, String remoteName,
+                                   int protocol )
   {
-    super( transport, false, localName, remoteName );
+    super( transport, false, localName, remoteName, protocol );
   }
 }
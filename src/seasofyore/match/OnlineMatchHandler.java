@@ -18,10 +18,12 @@ public abstract class OnlineMatchHandler extends NetworkedMatchHandler
    * @param host       whether this screen hosts the match
    * @param localName  the local commander's name
    * @param remoteName the remote commander's name
+   * @param protocol   the protocol version both sides speak
    */
   protected OnlineMatchHandler( MatchTransport transport, boolean host,
-                                String localName, String remoteName )
+                                String localName, String remoteName,
+                                int protocol )
   {
-    super( transport, host, localName, remoteName );
+    super( transport, host, localName, remoteName, protocol );
   }
 }
@@ -14,10 +14,12 @@ public final class OnlineServerMatchHandler extends OnlineMatchHandler
    * @param transport  the paired transport from MatchConnector.hostOnline
    * @param localName  the local commander's name
    * @param remoteName the remote commander's name
+   * @param protocol   the protocol version both sides speak
    */
   public OnlineServerMatchHandler( MatchTransport transport,
-                                   String localName, String remoteName )
+                                   String localName, String remoteName,
+                                   int protocol )
   {
-    super( transport, true, localName, remoteName );
+    super( transport, true, localName, remoteName, protocol );
   }
 }
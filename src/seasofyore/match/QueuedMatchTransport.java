@@ -0,0 +1,284 @@
+package seasofyore.match;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.swing.SwingUtilities;
+
+/**
+ * Gives any {@link MatchTransport} an outbox, so that sending never waits
+ * on the network. {@link #sendLine} only queues the line; a writer drains
+ * the queue in the background, handing every line that piled up meanwhile
+ * to the wrapped pipe as one {@link MatchTransport#sendLines batch}. A
+ * relay session or a socket whose link is congested then slows the lines,
+ * not the game.
+ * <p>
+ * The outbox is bounded. A peer so far behind that it fills up is treated
+ * as gone: the pipe is closed and the listener hears
+ * {@link Listener#onClosed} -- as it does when the wrapped pipe fails
+ * under the writer. Either way it hears it once, on the EDT, whichever
+ * end noticed first. Whatever the wrapped pipe hands up before
+ * {@link #setListener} names a listener is held for it, in order.
+ * <p>
+ * Writers come from a shared pool of daemon threads that exist only while
+ * some outbox has lines in it; each outbox is drained by one writer at a
+ * time, so lines leave in the order they were sent. {@link #close} queues
+ * behind the lines already sent, so a parting GFORFEIT still goes out.
+ * <p>
+ * Messages sent through {@link #sendMessage} go out as binary frames if
+ * both ends agreed on them in the handshake, otherwise as text; either
+ * way they keep their place among the lines.
+ *
+ * @author dylan
+ */
+public final class QueuedMatchTransport implements MatchTransport
+{
+  /**
+   * How many unsent lines may wait before the peer is given up on.
+   */
+  static final int OUTBOX_LINES = 1024;
+
+  /**
+   * The writers every outbox shares.
+   */
+  private static final ExecutorService WRITERS = Executors.newCachedThreadPool( task ->
+  {
+    Thread thread = new Thread( task, "match-outbox-writer" );
+    thread.setDaemon( true );
+    return thread;
+  });
+
+  /**
+   * Queued after the last line to send, to close the wrapped pipe in turn.
+   * Compared by identity.
+   */
+  private static final String CLOSE = new String( "close" );
+
+  private final MatchTransport inner;
+
+  /** Whether messages go to the wrapped pipe as frames. */
+  private final boolean frames;
+
+  /** Lines, and messages boxed as Longs, in the order they were sent. */
+  private final BlockingQueue<Object> outbox = new ArrayBlockingQueue<>( OUTBOX_LINES );
+
+  /** Whether a writer is draining (or about to drain) the outbox. */
+  private final AtomicBoolean draining = new AtomicBoolean( false );
+
+  private volatile boolean closed = false;
+
+  /** Whether the listener has heard onClosed; touched on the EDT only. */
+  private boolean announced = false;
+
+  /** Holds what arrives until a listener is named, then passes it on. */
+  private final ListenerGate gate = new ListenerGate();
+
+  /**
+   * Wraps a connected pipe that sends text only. Its listener is this
+   * wrapper's from now on.
+   *
+   * @param inner the pipe to send through
+   */
+  public QueuedMatchTransport( MatchTransport inner )
+  {
+    this( inner, false );
+  }
+
+  /**
+   * Wraps a connected pipe. Its listener is this wrapper's from now on.
+   *
+   * @param inner  the pipe to send through
+   * @param frames whether to send messages as binary frames; the pipe
+   *               must carry them, and the peer must have agreed
+   */
+  public QueuedMatchTransport( MatchTransport inner, boolean frames )
+  {
+    this.inner = inner;
+    this.frames = frames && inner.carriesFrames();
+    inner.setListener( new Listener()
+    {
+      @Override
+      public void onLine( String line )
+      {
+        if ( !announced )
+          gate.onLine( line );
+      }
+
+      @Override
+      public void onMessage( long message )
+      {
+        if ( !announced )
+          gate.onMessage( message );
+      }
+
+      @Override
+      public void onClosed( String reason )
+      {
+        announceClosed( reason );
+      }
+    });
+  }
+
+  @Override
+  public void setListener( Listener listener )
+  {
+    gate.setListener( listener, SwingUtilities::invokeLater );
+  }
+
+  /**
+   * Queues a line and returns at once.
+   *
+   * @param line the line to send
+   * @throws IOException if the pipe is closed, or this send found the
+   *                     outbox full and gave the peer up
+   */
+  @Override
+  public void sendLine( String line ) throws IOException
+  {
+    post( line );
+  }
+
+  @Override
+  public boolean carriesFrames()
+  {
+    return frames;
+  }
+
+  /**
+   * Queues a message and returns at once.
+   *
+   * @param message the packed message
+   * @throws IOException as {@link #sendLine} does
+   */
+  @Override
+  public void sendMessage( long message ) throws IOException
+  {
+    post( frames ? Long.valueOf( message ) : WireCodec.format( message ) );
+  }
+
+  /**
+   * Queues a line or a boxed message for the writer.
+   */
+  private void post( Object item ) throws IOException
+  {
+    if ( closed )
+      throw new IOException( "transport is closed" );
+    if ( !outbox.offer( item ) )
+    {
+      fail( "the enemy stopped taking our lines" );
+      throw new IOException( "the outbox is full" );
+    }
+    scheduleDrain();
+  }
+
+  @Override
+  public void close()
+  {
+    if ( closed )
+      return;
+    closed = true;
+    if ( outbox.offer( CLOSE ) )
+      scheduleDrain();
+    else
+      inner.close(); // nothing queued will ever be taken now
+  }
+
+  /**
+   * Sets a writer to drain the outbox, unless one already is.
+   */
+  private void scheduleDrain()
+  {
+    if ( draining.compareAndSet( false, true ) )
+      WRITERS.execute( this::drain );
+  }
+
+  /**
+   * The writer: sends everything queued, batch by batch, until the outbox
+   * is empty or the pipe is done. Each run of lines in a batch goes as one
+   * write; each message between them, as its frame.
+   */
+  private void drain()
+  {
+    List<Object> batch = new ArrayList<>();
+    List<String> lines = new ArrayList<>();
+    while ( true )
+    {
+      outbox.drainTo( batch );
+      if ( batch.isEmpty() )
+      {
+        draining.set( false );
+        // a line may have arrived after the drain but before the flag cleared
+        if ( outbox.isEmpty() || !draining.compareAndSet( false, true ) )
+          return;
+        continue;
+      }
+
+      boolean close = false;
+      try
+      {
+        for ( Object item : batch )
+        {
+          if ( item instanceof String && item != CLOSE )
+          {
+            lines.add( (String) item );
+            continue;
+          }
+          if ( !lines.isEmpty() )
+            inner.sendLines( lines );
+          lines.clear();
+          if ( item == CLOSE )
+          {
+            close = true;
+            break;
+          }
+          inner.sendMessage( (Long) item );
+        }
+        if ( !lines.isEmpty() )
+          inner.sendLines( lines );
+      }
+      catch ( IOException ex )
+      {
+        fail( "the connection was lost: " + ex.getMessage() );
+        return;
+      }
+      if ( close )
+      {
+        inner.close();
+        return;
+      }
+      batch.clear();
+      lines.clear();
+    }
+  }
+
+  /**
+   * Gives the pipe up from this end: stops sending, closes it, and tells
+   * the listener why.
+   */
+  private void fail( String reason )
+  {
+    boolean announce = !closed;
+    closed = true;
+    outbox.clear();
+    inner.close();
+    if ( announce )
+      SwingUtilities.invokeLater( () -> announceClosed( reason ) );
+  }
+
+  /**
+   * Tells the listener the pipe has ended, the first time only.
+   */
+  private void announceClosed( String reason )
+  {
+    if ( announced )
+      return;
+    announced = true;
+    closed = true;
+    gate.onClosed( reason );
+  }
+}
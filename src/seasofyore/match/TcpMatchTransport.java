@@ -7,13 +7,21 @@ import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.net.Socket;
 import java.nio.charset.StandardCharsets;
-import javax.swing.SwingUtilities;
+import java.util.List;
 
 /**
  * The LAN transport: newline-delimited UTF-8 lines over a plain TCP
  * socket. One side listened, the other dialed (see MatchConnector); by
  * the time this object exists the socket is connected and all that
  * remains is moving lines and surfacing the pipe's death on the EDT.
+ * <p>
+ * Each instance holds a reader thread and writes on the caller's thread;
+ * it now carries only sockets that have no channel. Harbours opened by
+ * {@link MatchConnector#openHarbour} and every dialed connection use
+ * {@link NioMatchTransport} instead.
+ * <p>
+ * Lines that arrive before {@link #setListener} are held until it names
+ * someone to hear them.
  *
  * @author dylan
  */
@@ -23,9 +31,13 @@ public final class TcpMatchTransport implements MatchTransport
   private final BufferedReader in;
   private final PrintWriter out;
 
-  private Listener listener;
+  private final EdtBatcher inbox = new EdtBatcher();
+
   private volatile boolean closed = false;
 
+  /** Holds what arrives until a listener is named, then passes it on. */
+  private final ListenerGate gate = new ListenerGate();
+
   /**
    * Wraps a connected socket and starts the reader thread.
    *
@@ -40,7 +52,7 @@ public final class TcpMatchTransport implements MatchTransport
     this.in = new BufferedReader( new InputStreamReader(
         socket.getInputStream(), StandardCharsets.UTF_8 ) );
     this.out = new PrintWriter( new OutputStreamWriter(
-        socket.getOutputStream(), StandardCharsets.UTF_8 ), true );
+        socket.getOutputStream(), StandardCharsets.UTF_8 ), false );
 
     Thread reader = new Thread( this::readLoop, "lan-match-reader" );
     reader.setDaemon( true );
@@ -50,12 +62,12 @@ public final class TcpMatchTransport implements MatchTransport
   @Override
   public void setListener( Listener listener )
   {
-    this.listener = listener;
+    gate.setListener( listener, inbox );
   }
 
   /**
    * The reader thread: hands each line to the listener on the EDT until
-   * the socket dies.
+   * the socket dies, a burst of lines in one dispatch.
    */
   private void readLoop()
   {
@@ -66,11 +78,7 @@ public final class TcpMatchTransport implements MatchTransport
       while ( ( line = in.readLine() ) != null )
       {
         final String delivered = line;
-        SwingUtilities.invokeLater( () ->
-        {
-          if ( listener != null )
-            listener.onLine( delivered );
-        });
+        inbox.execute( () -> gate.onLine( delivered ) );
       }
     }
     catch ( IOException ex )
@@ -85,11 +93,7 @@ public final class TcpMatchTransport implements MatchTransport
     if ( announce )
     {
       final String finalReason = reason;
-      SwingUtilities.invokeLater( () ->
-      {
-        if ( listener != null )
-          listener.onClosed( finalReason );
-      });
+      inbox.execute( () -> gate.onClosed( finalReason ) );
     }
   }
 
@@ -99,6 +103,19 @@ public final class TcpMatchTransport implements MatchTransport
     if ( closed )
       throw new IOException( "transport is closed" );
     out.println( line );
+    out.flush();
+    if ( out.checkError() )
+      throw new IOException( "the connection has failed" );
+  }
+
+  @Override
+  public void sendLines( List<String> lines ) throws IOException
+  {
+    if ( closed )
+      throw new IOException( "transport is closed" );
+    for ( String line : lines )
+      out.println( line );
+    out.flush(); // one flush, so the batch leaves in as few segments as fit
     if ( out.checkError() )
       throw new IOException( "the connection has failed" );
   }
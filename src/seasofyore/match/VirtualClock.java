@@ -0,0 +1,138 @@
+package seasofyore.match;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulated time for simulated pipes. Nothing happens on its own: tasks
+ * wait in time order until whoever drives the clock runs them, and the
+ * clock jumps straight to each task's time rather than sleeping. A run
+ * therefore depends only on what was scheduled, never on the machine or
+ * the scheduler, and an hour of match traffic passes in milliseconds.
+ * <p>
+ * Tasks due at the same instant run in the order they were scheduled.
+ * Not thread-safe: one thread schedules and drives, and in simulation
+ * that thread stands in for the EDT.
+ *
+ * @author dylan
+ */
+public final class VirtualClock implements Executor
+{
+  /**
+   * One scheduled task, ordered by due time, then by scheduling order.
+   */
+  private static final class Task implements Comparable<Task>
+  {
+    final long due;
+    final long order;
+    final Runnable action;
+
+    Task( long due, long order, Runnable action )
+    {
+      this.due = due;
+      this.order = order;
+      this.action = action;
+    }
+
+    @Override
+    public int compareTo( Task other )
+    {
+      if ( due != other.due )
+        return Long.compare( due, other.due );
+      return Long.compare( order, other.order );
+    }
+  }
+
+  private final PriorityQueue<Task> tasks = new PriorityQueue<>();
+
+  /** The simulated time, in nanoseconds since the clock was made. */
+  private long now = 0;
+
+  /** How many tasks have been scheduled, to break ties between them. */
+  private long scheduled = 0;
+
+  /**
+   * @return the simulated time, in nanoseconds since the clock was made
+   */
+  public long nanoTime()
+  {
+    return now;
+  }
+
+  /**
+   * Schedules a task for a later simulated time.
+   *
+   * @param delay  how long from now; negative counts as none
+   * @param unit   the delay's unit
+   * @param action the task
+   */
+  public void schedule( long delay, TimeUnit unit, Runnable action )
+  {
+    tasks.add( new Task( now + Math.max( 0, unit.toNanos( delay ) ), scheduled++, action ) );
+  }
+
+  /**
+   * Schedules a task for now, behind any others already due now.
+   *
+   * @param action the task
+   */
+  @Override
+  public void execute( Runnable action )
+  {
+    schedule( 0, TimeUnit.NANOSECONDS, action );
+  }
+
+  /**
+   * @return how many tasks are waiting
+   */
+  public int pending()
+  {
+    return tasks.size();
+  }
+
+  /**
+   * Moves to the earliest task's time and runs it.
+   *
+   * @return false if there was no task
+   */
+  public boolean runNext()
+  {
+    Task next = tasks.poll();
+    if ( next == null )
+      return false;
+    now = Math.max( now, next.due );
+    next.action.run();
+    return true;
+  }
+
+  /**
+   * Runs every task due within the given time, including any they
+   * schedule within it, and leaves the clock at its end.
+   *
+   * @param delay how far to move
+   * @param unit  the delay's unit
+   */
+  public void advance( long delay, TimeUnit unit )
+  {
+    long until = now + Math.max( 0, unit.toNanos( delay ) );
+    while ( !tasks.isEmpty() && tasks.peek().due <= until )
+      runNext();
+    now = until;
+  }
+
+  /**
+   * Runs tasks until none are left. A task that always schedules another,
+   * such as a heartbeat, keeps this going until the limit.
+   *
+   * @param limit the most tasks to run
+   * @return how many ran
+   */
+  public int runUntilIdle( int limit )
+  {
+    int ran = 0;
+    while ( ran < limit && runNext() )
+      ran++;
+    return ran;
+  }
+}
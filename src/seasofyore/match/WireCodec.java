@@ -0,0 +1,479 @@
+package seasofyore.match;
+
+import seasofyore.core.PlayerQuadrant;
+import seasofyore.core.ShipType;
+import java.nio.ByteBuffer;
+
+/**
+ * The fixed-shape game messages -- GREADY, GENDTURN, GFORFEIT, GSHOT,
+ * GRESULT, GFIRE and GVERDICT -- in three interchangeable forms: a packed
+ * {@code long}, which the session dispatches on; a text line, as old peers
+ * and anyone reading a log expect; and a binary frame, for pipes that
+ * agreed on it in the handshake.
+ * <p>
+ * A binary frame is a one-byte opcode, with its high bit set so it can
+ * never be mistaken for the 'G' that begins every text line, followed by
+ * a payload whose length the opcode fixes:
+ * <pre>
+ *   0x81 READY    0x82 ENDTURN    0x83 FORFEIT       (no payload)
+ *   0x84 SHOT     &lt;cell&gt;
+ *   0x85 RESULT   &lt;cell&gt; &lt;verdict&gt;
+ *   0x86 FIRE     &lt;seq:16&gt; &lt;cell&gt;
+ *   0x87 VERDICT  &lt;seq:16&gt; &lt;cell&gt; &lt;verdict&gt;
+ * </pre>
+ * A cell is its key, {@code y * 10 + x}. A verdict byte holds HIT in bit
+ * 0, DEFEATED in bit 1, and the sunk ship's ordinal plus one in its high
+ * nibble (0 for none). The longest GVERDICT line, 42 bytes, becomes 5.
+ * <p>
+ * Neither decoder allocates: {@link #decode} reads a frame where it lies
+ * in the buffer, and {@link #parse} walks the line's characters in place.
+ * Lines of any other shape (GCHAT, GVOLLEY, the handshake) are text only.
+ *
+ * @author dylan
+ */
+public final class WireCodec
+{
+  /** Not a message: a line of another shape, or a malformed one. */
+  public static final long NONE = -1L;
+
+  public static final int READY   = 0x81;
+  public static final int ENDTURN = 0x82;
+  public static final int FORFEIT = 0x83;
+  public static final int SHOT    = 0x84;
+  public static final int RESULT  = 0x85;
+  public static final int FIRE    = 0x86;
+  public static final int VERDICT = 0x87;
+
+  /** The verdict byte's flags. */
+  private static final int HIT = 0x01;
+  private static final int DEFEATED = 0x02;
+
+  /** The most a shot number may be; they wrap past it. */
+  static final int MAX_SEQ = 0xFFFF;
+
+  /** The ship types by ordinal, without a copy per lookup. */
+  private static final ShipType[] SHIPS = ShipType.values();
+
+  /** The text keywords, by opcode less 0x81. */
+  private static final String[] KEYWORDS =
+      { "GREADY", "GENDTURN", "GFORFEIT", "GSHOT", "GRESULT", "GFIRE", "GVERDICT" };
+
+  /** The frame lengths, opcode included, by opcode less 0x81. */
+  private static final int[] FRAME_BYTES = { 1, 1, 1, 2, 3, 4, 5 };
+
+  private WireCodec() {}
+
+  // ------------------------------------------------------------------
+  // building and reading packed messages
+  // ------------------------------------------------------------------
+
+  /**
+   * Packs a message: the opcode in bits 0-7, the cell in 8-15, the
+   * verdict byte in 16-23 and the shot number in 24-39.
+   */
+  private static long pack( int opcode, int seq, int cell, int verdict )
+  {
+    return opcode | ( cell & 0xFFL ) << 8 | ( verdict & 0xFFL ) << 16
+         | ( seq & (long) MAX_SEQ ) << 24;
+  }
+
+  /**
+   * @param opcode READY, ENDTURN or FORFEIT
+   * @return the message
+   */
+  public static long signal( int opcode )
+  {
+    return pack( opcode, 0, 0, 0 );
+  }
+
+  /**
+   * @return an unnumbered shot at a cell
+   */
+  public static long shot( int x, int y )
+  {
+    return pack( SHOT, 0, cellKey( x, y ), 0 );
+  }
+
+  /**
+   * @return a numbered shot at a cell
+   */
+  public static long fire( int seq, int x, int y )
+  {
+    return pack( FIRE, seq, cellKey( x, y ), 0 );
+  }
+
+  /**
+   * A verdict on an unnumbered shot.
+   *
+   * @param x        the struck cell's x-coordinate
+   * @param y        the struck cell's y-coordinate
+   * @param hit      whether a ship was struck
+   * @param sunkType the ship sunk, or null
+   * @param defeated whether the defender's fleet is gone
+   * @return the message
+   */
+  public static long result( int x, int y, boolean hit, ShipType sunkType,
+                             boolean defeated )
+  {
+    int verdict = ( hit ? HIT : 0 ) | ( defeated ? DEFEATED : 0 )
+                | ( sunkType == null ? 0 : sunkType.ordinal() + 1 ) << 4;
+    return pack( RESULT, 0, cellKey( x, y ), verdict );
+  }
+
+  /**
+   * The same verdict, on a numbered shot.
+   *
+   * @param seq    the shot's number
+   * @param result a RESULT message
+   * @return the VERDICT message
+   */
+  public static long numbered( int seq, long result )
+  {
+    return pack( VERDICT, seq, cell( result ), verdictByte( result ) );
+  }
+
+  /** @return the message's opcode */
+  public static int opcode( long message )
+  {
+    return (int) message & 0xFF;
+  }
+
+  /** @return the message's shot number, for FIRE and VERDICT */
+  public static int seq( long message )
+  {
+    return (int) ( message >>> 24 ) & MAX_SEQ;
+  }
+
+  /** @return the x-coordinate of the message's cell */
+  public static int x( long message )
+  {
+    return cell( message ) % PlayerQuadrant.GRID_SIZE;
+  }
+
+  /** @return the y-coordinate of the message's cell */
+  public static int y( long message )
+  {
+    return cell( message ) / PlayerQuadrant.GRID_SIZE;
+  }
+
+  /** @return whether the verdict is a hit */
+  public static boolean hit( long message )
+  {
+    return ( verdictByte( message ) & HIT ) != 0;
+  }
+
+  /** @return the ship the verdict sank, or null */
+  public static ShipType sunkType( long message )
+  {
+    int ship = verdictByte( message ) >>> 4;
+    return ( ship == 0 ) ? null : SHIPS[ship - 1];
+  }
+
+  /** @return whether the verdict ends the match */
+  public static boolean defeated( long message )
+  {
+    return ( verdictByte( message ) & DEFEATED ) != 0;
+  }
+
+  private static int cell( long message )
+  {
+    return (int) ( message >>> 8 ) & 0xFF;
+  }
+
+  private static int verdictByte( long message )
+  {
+    return (int) ( message >>> 16 ) & 0xFF;
+  }
+
+  private static int cellKey( int x, int y )
+  {
+    return y * PlayerQuadrant.GRID_SIZE + x;
+  }
+
+  // ------------------------------------------------------------------
+  // binary frames
+  // ------------------------------------------------------------------
+
+  /**
+   * The length of the frame an opcode byte begins.
+   *
+   * @param opcode the first byte, unsigned
+   * @return the frame's length in bytes, opcode included; -1 if the byte
+   *         begins no frame this build knows
+   */
+  public static int frameLength( int opcode )
+  {
+    int index = opcode - READY;
+    return ( index < 0 || index >= FRAME_BYTES.length ) ? -1 : FRAME_BYTES[index];
+  }
+
+  /**
+   * Writes a message's frame at the buffer's position, advancing it.
+   *
+   * @param message the message
+   * @param out     the buffer, with {@link #frameLength} bytes remaining
+   */
+  public static void encode( long message, ByteBuffer out )
+  {
+    int opcode = opcode( message );
+    out.put( (byte) opcode );
+    if ( opcode == FIRE || opcode == VERDICT )
+      out.putShort( (short) seq( message ) );
+    if ( opcode >= SHOT )
+      out.put( (byte) cell( message ) );
+    if ( opcode == RESULT || opcode == VERDICT )
+      out.put( (byte) verdictByte( message ) );
+  }
+
+  /**
+   * Reads the frame that begins at an index, without moving the buffer.
+   *
+   * @param in the buffer, holding the whole frame from {@code at}
+   * @param at where the frame's opcode lies
+   * @return the message, or {@link #NONE} if the frame is malformed
+   */
+  public static long decode( ByteBuffer in, int at )
+  {
+    int opcode = in.get( at ) & 0xFF;
+    if ( opcode < SHOT )
+      return ( opcode >= READY ) ? signal( opcode ) : NONE;
+
+    int i = at + 1;
+    int seq = 0;
+    if ( opcode == FIRE || opcode == VERDICT )
+    {
+      seq = in.getShort( i ) & MAX_SEQ;
+      i += 2;
+    }
+    int cell = in.get( i++ ) & 0xFF;
+    int verdict = ( opcode == RESULT || opcode == VERDICT ) ? in.get( i ) & 0xFF : 0;
+    if ( cell >= PlayerQuadrant.GRID_SIZE * PlayerQuadrant.GRID_SIZE
+         || ( verdict >>> 4 ) > SHIPS.length || opcode > VERDICT )
+      return NONE;
+    return pack( opcode, seq, cell, verdict );
+  }
+
+  // ------------------------------------------------------------------
+  // text lines
+  // ------------------------------------------------------------------
+
+  /**
+   * Writes a message as the text line old peers speak.
+   *
+   * @param message the message
+   * @return the line
+   */
+  public static String format( long message )
+  {
+    int opcode = opcode( message );
+    StringBuilder line = new StringBuilder( KEYWORDS[opcode - READY] );
+    if ( opcode == FIRE || opcode == VERDICT )
+      line.append( ' ' ).append( seq( message ) );
+    if ( opcode >= SHOT )
+      line.append( ' ' ).append( x( message ) ).append( ' ' ).append( y( message ) );
+    if ( opcode == RESULT || opcode == VERDICT )
+      line.append( ' ' ).append( formatVerdict( message ) );
+    return line.toString();
+  }
+
+  /**
+   * Writes a verdict's body as text, as each entry of GVRESULT carries it:
+   * "HIT|MISS [SUNK &lt;type&gt;] [DEFEATED]", after the cell.
+   */
+  private static String formatVerdict( long message )
+  {
+    StringBuilder text = new StringBuilder( hit( message ) ? "HIT" : "MISS" );
+    if ( sunkType( message ) != null )
+      text.append( " SUNK " ).append( sunkType( message ) );
+    if ( defeated( message ) )
+      text.append( " DEFEATED" );
+    return text.toString();
+  }
+
+  /**
+   * Writes an unnumbered verdict as one entry of GVRESULT:
+   * "&lt;x&gt; &lt;y&gt; HIT|MISS [SUNK &lt;type&gt;] [DEFEATED]".
+   *
+   * @param result a RESULT message
+   * @return the entry
+   */
+  static String formatEntry( long result )
+  {
+    return x( result ) + " " + y( result ) + " " + formatVerdict( result );
+  }
+
+  /**
+   * Reads a text line, if it is one of the fixed-shape messages.
+   *
+   * @param line the line
+   * @return the message, or {@link #NONE} for any other line
+   */
+  public static long parse( String line )
+  {
+    int space = line.indexOf( ' ' );
+    int end = ( space < 0 ) ? line.length() : space;
+    for ( int i = 0; i < KEYWORDS.length; i++ )
+    {
+      String keyword = KEYWORDS[i];
+      if ( keyword.length() == end && line.startsWith( keyword ) )
+        return parseBody( line, end, READY + i );
+    }
+    return NONE;
+  }
+
+  /**
+   * Reads one entry of GVRESULT as a RESULT message.
+   *
+   * @param line      the GVRESULT line
+   * @param separator the space or comma before the entry
+   * @return the message, or {@link #NONE} if it is malformed
+   */
+  static long parseEntry( String line, int separator )
+  {
+    return parseBody( line, separator, RESULT );
+  }
+
+  /**
+   * Reads the cells of a GVOLLEY line, bounded as GSHOT's are.
+   *
+   * @param line the GVOLLEY line
+   * @return each cell as an unnumbered SHOT message, in firing order, or
+   *         null if the volley is empty, or a coordinate is missing, not a
+   *         number, or off the grid
+   */
+  static long[] parseVolley( String line )
+  {
+    int fields = 0;
+    for ( int i = 0; i < line.length(); i++ )
+      if ( line.charAt( i ) == ' ' )
+        fields++;
+    if ( fields == 0 || fields % 2 != 0 )
+      return null;
+
+    long[] shots = new long[fields / 2];
+    int i = line.indexOf( ' ' ); // always on the space before the next field
+    int next;
+    int x;
+    int y;
+    for ( int s = 0; s < shots.length; s++ )
+    {
+      if ( ( next = field( line, i ) ) < 0
+           || ( x = number( line, i + 1, next, PlayerQuadrant.GRID_SIZE - 1 ) ) < 0 )
+        return null;
+      i = next;
+      if ( ( next = field( line, i ) ) < 0
+           || ( y = number( line, i + 1, next, PlayerQuadrant.GRID_SIZE - 1 ) ) < 0 )
+        return null;
+      i = next;
+      shots[s] = pack( SHOT, 0, cellKey( x, y ), 0 );
+    }
+    return ( i == line.length() ) ? shots : null;
+  }
+
+  /**
+   * Reads a message's fields, which follow the keyword at {@code end}.
+   * Fields are separated by single spaces; a verdict runs to the end of
+   * the line or the next comma.
+   */
+  private static long parseBody( String line, int end, int opcode )
+  {
+    if ( opcode < SHOT )
+      return signal( opcode );
+
+    int i = end; // always on the space before the next field
+    int next;
+    int seq = 0;
+    if ( opcode == FIRE || opcode == VERDICT )
+    {
+      if ( ( next = field( line, i ) ) < 0
+           || ( seq = number( line, i + 1, next, MAX_SEQ ) ) < 0 )
+        return NONE;
+      i = next;
+    }
+    int x;
+    int y;
+    if ( ( next = field( line, i ) ) < 0
+         || ( x = number( line, i + 1, next, PlayerQuadrant.GRID_SIZE - 1 ) ) < 0 )
+      return NONE;
+    i = next;
+    if ( ( next = field( line, i ) ) < 0
+         || ( y = number( line, i + 1, next, PlayerQuadrant.GRID_SIZE - 1 ) ) < 0 )
+      return NONE;
+    i = next;
+    if ( opcode == SHOT || opcode == FIRE )
+      return pack( opcode, seq, cellKey( x, y ), 0 );
+
+    int verdict;
+    if ( ( next = field( line, i ) ) < 0 )
+      return NONE;
+    if ( is( line, i, next, "HIT" ) )
+      verdict = HIT;
+    else if ( is( line, i, next, "MISS" ) )
+      verdict = 0;
+    else
+      return NONE;
+    i = next;
+
+    if ( ( next = field( line, i ) ) >= 0 && is( line, i, next, "SUNK" ) )
+    {
+      i = next;
+      if ( ( next = field( line, i ) ) < 0 )
+        return NONE;
+      int ship = -1;
+      for ( ShipType type : SHIPS )
+        if ( is( line, i, next, type.name() ) )
+          ship = type.ordinal();
+      if ( ship < 0 )
+        return NONE;
+      verdict |= ( ship + 1 ) << 4;
+      i = next;
+    }
+    if ( ( next = field( line, i ) ) >= 0 && is( line, i, next, "DEFEATED" ) )
+      verdict |= DEFEATED;
+    return pack( opcode, seq, cellKey( x, y ), verdict );
+  }
+
+  /**
+   * Finds the end of the field after the space (or, starting a GVRESULT
+   * entry, the comma) at {@code space}.
+   *
+   * @return the index just past the field, or -1 if no field follows
+   */
+  private static int field( String line, int space )
+  {
+    if ( space >= line.length()
+         || ( line.charAt( space ) != ' ' && line.charAt( space ) != ',' ) )
+      return -1;
+    int i = space + 1;
+    while ( i < line.length() && line.charAt( i ) != ' ' && line.charAt( i ) != ',' )
+      i++;
+    return i;
+  }
+
+  /**
+   * Whether the field after the space at {@code space} is the given word.
+   */
+  private static boolean is( String line, int space, int end, String word )
+  {
+    return end - space - 1 == word.length() && line.startsWith( word, space + 1 );
+  }
+
+  /**
+   * Reads a decimal field.
+   *
+   * @return its value, or -1 if it is empty, not a number, or over {@code max}
+   */
+  private static int number( String line, int from, int to, int max )
+  {
+    if ( from == to )
+      return -1;
+    int value = 0;
+    for ( int i = from; i < to; i++ )
+    {
+      char c = line.charAt( i );
+      if ( c < '0' || c > '9' || ( value = value * 10 + ( c - '0' ) ) > max )
+        return -1;
+    }
+    return value;
+  }
+}
@@ -238,7 +238,7 @@ public final class MultiplayerPanel extends JPanel
     final ServerSocket harbor;
     try
     {
-      harbor = new ServerSocket( LANMatchHandler.LAN_PORT );
+      harbor = MatchConnector.openHarbour( LANMatchHandler.LAN_PORT );
     }
     catch ( IOException ex )
     {
@@ -258,7 +258,8 @@ public final class MultiplayerPanel extends JPanel
         MatchConnector.Connection conn =
             MatchConnector.hostLan( harbor, name, salvo );
         onEdt( () -> deliver( conn,
-            new LANServerMatchHandler( conn.transport, name, conn.remoteName ),
+            new LANServerMatchHandler( conn.transport, name, conn.remoteName,
+                                       conn.protocol ),
             name ) );
       }
       catch ( IOException ex )
@@ -298,7 +299,8 @@ public final class MultiplayerPanel extends JPanel
       {
         MatchConnector.Connection conn = MatchConnector.joinLan( address, name );
         onEdt( () -> deliver( conn,
-            new LANClientMatchHandler( conn.transport, name, conn.remoteName ),
+            new LANClientMatchHandler( conn.transport, name, conn.remoteName,
+                                       conn.protocol ),
             name ) );
       }
       catch ( IOException ex )
@@ -332,7 +334,8 @@ public final class MultiplayerPanel extends JPanel
             room, name, salvo,
             canceller -> onEdt( () -> setBusy( true, canceller ) ) );
         onEdt( () -> deliver( conn,
-            new OnlineServerMatchHandler( conn.transport, name, conn.remoteName ),
+            new OnlineServerMatchHandler( conn.transport, name, conn.remoteName,
+                                          conn.protocol ),
             name ) );
       }
       catch ( IOException ex )
@@ -368,7 +371,8 @@ public final class MultiplayerPanel extends JPanel
       {
         MatchConnector.Connection conn = MatchConnector.joinOnline( room, name );
         onEdt( () -> deliver( conn,
-            new OnlineClientMatchHandler( conn.transport, name, conn.remoteName ),
+            new OnlineClientMatchHandler( conn.transport, name, conn.remoteName,
+                                          conn.protocol ),
             name ) );
       }
       catch ( IOException ex )
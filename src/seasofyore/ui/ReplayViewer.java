@@ -0,0 +1,505 @@
+package seasofyore.ui;
+
+import seasofyore.core.AIParameters;
+import seasofyore.core.Civilization;
+import seasofyore.core.MatchReplay;
+import seasofyore.core.PlayerQuadrant;
+import seasofyore.core.PlayerType;
+import seasofyore.core.SaveSummary;
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Window;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JComboBox;
+import javax.swing.JComponent;
+import javax.swing.JDialog;
+import javax.swing.JFileChooser;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JSlider;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.WindowConstants;
+import javax.swing.filechooser.FileNameExtensionFilter;
+
+/**
+ * Plays a {@link MatchReplay} back: both boards side by side, a slider to
+ * scrub to any shot, buttons to step turn by turn, and playback from the
+ * game's own pace -- one shot per AI action delay -- up to a hundred times
+ * faster. No stones fall and no curtain draws; each frame is rebuilt from
+ * the replay's keyframes and painted, so any speed and any jump is
+ * instant.
+ *
+ * <p>Opened from the title screen's ship's logs, or from the command line
+ * to inspect an arena game: {@code java seasofyore.ui.ReplayViewer file}.</p>
+ *
+ * @author dylan
+ */
+public final class ReplayViewer extends JPanel
+{
+  /**
+   * The game's own pace: milliseconds per shot at 1x.
+   */
+  private static final int SHOT_MS = AIParameters.DEFAULTS.getAiActionDelayMs();
+
+  /**
+   * The playback speeds offered.
+   */
+  private static final int[] SPEEDS = { 1, 2, 5, 10, 25, 50, 100 };
+
+  /**
+   * How often the playback clock ticks, in milliseconds.
+   */
+  private static final int TICK_MS = 15;
+
+  /**
+   * Board colours, by {@link SaveSummary} cell code; an unstruck hull
+   * wears {@link #HULL}.
+   */
+  private static final Color[] CELL_COLOURS = {
+    new Color( 24, 58, 94 ),    // unfired: deep water
+    new Color( 170, 190, 205 ), // miss: spray
+    new Color( 214, 64, 40 ),   // hit: fire
+    new Color( 60, 16, 16 )     // sunk: wreck
+  };
+  private static final Color HULL = new Color( 120, 84, 48 );
+  private static final Color GOLD = new Color( 232, 201, 124 );
+  private static final Color INK = new Color( 18, 10, 28 );
+  private static final Color PARCHMENT = new Color( 229, 213, 175 );
+
+  /**
+   * The replay shown.
+   */
+  private final MatchReplay replay;
+
+  /**
+   * How many shots have been fired in the frame shown.
+   */
+  private int shown;
+
+  /**
+   * The frame shown.
+   */
+  private MatchReplay.Frame frame;
+
+  /**
+   * The playback speed, as a multiple of the game's pace.
+   */
+  private int speed = SPEEDS[SPEEDS.length - 1];
+
+  /**
+   * Where playback last started or changed speed: the shot, and the clock.
+   */
+  private int playFrom;
+  private long playStartNanos;
+
+  /**
+   * The playback clock; running only while playing.
+   */
+  private final Timer ticker;
+
+  /**
+   * The scrubber, one notch per shot.
+   */
+  private final JSlider slider;
+
+  /**
+   * Whether the slider is being moved by playback rather than by hand.
+   */
+  private boolean moving = false;
+
+  /**
+   * The play / pause button.
+   */
+  private final JButton playButton = new JButton( "Play" );
+
+  /**
+   * The turn, shot, and verdict of the frame shown.
+   */
+  private final JLabel status = new JLabel( " " );
+
+  /**
+   * Builds a viewer on a replay, showing the moment recording began.
+   *
+   * @param replay the replay
+   */
+  public ReplayViewer( MatchReplay replay )
+  {
+    super( new BorderLayout( 0, 8 ) );
+    this.replay = replay;
+    setBackground( INK );
+    setBorder( BorderFactory.createEmptyBorder( 10, 10, 10, 10 ) );
+
+    JLabel header = new JLabel( describe(), JLabel.CENTER );
+    header.setForeground( GOLD );
+    header.setFont( new Font( "Serif", Font.BOLD, 16 ) );
+
+    slider = new JSlider( replay.getPrologue(), replay.getShotCount(), replay.getPrologue() );
+    slider.setOpaque( false );
+    slider.addChangeListener( e ->
+    {
+      if ( moving )
+        return;
+      seek( slider.getValue() );
+      restartClock();
+    } );
+
+    ticker = new Timer( TICK_MS, e -> tick() );
+
+    JButton first = new JButton( "|<" );
+    JButton back = new JButton( "<< Turn" );
+    JButton ahead = new JButton( "Turn >>" );
+    JButton last = new JButton( ">|" );
+    first.addActionListener( e -> jump( replay.getPrologue() ) );
+    back.addActionListener( e -> jump( turnStart( replay.getTurnOf( shown ) - 1 ) ) );
+    ahead.addActionListener( e -> jump( turnStart( replay.getTurnOf( shown ) + 1 ) ) );
+    last.addActionListener( e -> jump( replay.getShotCount() ) );
+    playButton.addActionListener( e ->
+    {
+      if ( ticker.isRunning() )
+        pause();
+      else
+        play();
+    } );
+
+    JComboBox<String> speeds = new JComboBox<>();
+    for ( int s : SPEEDS )
+      speeds.addItem( s + "x" );
+    speeds.setSelectedIndex( SPEEDS.length - 1 );
+    speeds.addActionListener( e ->
+    {
+      speed = SPEEDS[speeds.getSelectedIndex()];
+      restartClock();
+    } );
+
+    JPanel buttons = new JPanel( new FlowLayout( FlowLayout.CENTER, 6, 0 ) );
+    buttons.setOpaque( false );
+    for ( JComponent c : new JComponent[] { first, back, playButton, ahead, last, speeds } )
+      buttons.add( c );
+
+    status.setForeground( PARCHMENT );
+    status.setHorizontalAlignment( JLabel.CENTER );
+
+    JPanel controls = new JPanel( new BorderLayout( 0, 4 ) );
+    controls.setOpaque( false );
+    controls.add( status, BorderLayout.NORTH );
+    controls.add( slider, BorderLayout.CENTER );
+    controls.add( buttons, BorderLayout.SOUTH );
+
+    add( header, BorderLayout.NORTH );
+    add( new Boards(), BorderLayout.CENTER );
+    add( controls, BorderLayout.SOUTH );
+
+    seek( replay.getPrologue() );
+  }
+
+  /**
+   * Shows a replay in its own window beside the game.
+   *
+   * @param parent the component to anchor the window to
+   * @param replay the replay
+   */
+  public static void open( Component parent, MatchReplay replay )
+  {
+    ReplayViewer viewer = new ReplayViewer( replay );
+    Window owner = ( parent instanceof Window ) ? (Window) parent
+                                                : SwingUtilities.getWindowAncestor( parent );
+    JDialog window = new JDialog( owner, "The ship's log" );
+    window.setDefaultCloseOperation( WindowConstants.DISPOSE_ON_CLOSE );
+    window.addWindowListener( new WindowAdapter()
+    {
+      @Override
+      public void windowClosed( WindowEvent e )
+      {
+        viewer.pause();
+      }
+    } );
+    window.setContentPane( viewer );
+    window.pack();
+    window.setLocationRelativeTo( parent );
+    window.setVisible( true );
+  }
+
+  /**
+   * Prompts for a recorded match among the ship's logs and shows it,
+   * reporting failures in a dialog.
+   *
+   * @param parent the component to anchor dialogs to
+   */
+  public static void openViaDialog( Component parent )
+  {
+    JFileChooser chooser = new JFileChooser( MatchReplay.defaultDirectory().toFile() );
+    chooser.setDialogTitle( "Read the ship's logs" );
+    chooser.setFileFilter( new FileNameExtensionFilter(
+        "Seas of Yore replays (*." + MatchReplay.FILE_EXTENSION + ")",
+        MatchReplay.FILE_EXTENSION ) );
+
+    if ( chooser.showOpenDialog( parent ) != JFileChooser.APPROVE_OPTION )
+      return;
+
+    try
+    {
+      open( parent, MatchReplay.read( chooser.getSelectedFile().toPath() ) );
+    }
+    catch ( IOException ex )
+    {
+      JOptionPane.showMessageDialog( parent,
+          "That log could not be read: " + ex.getMessage(),
+          "Replay failed", JOptionPane.ERROR_MESSAGE );
+    }
+  }
+
+  /**
+   * Shows one replay file in a window of its own -- for arena games.
+   *
+   * @param args the replay file
+   */
+  public static void main( String[] args )
+  {
+    if ( args.length < 1 || !Files.isReadable( Paths.get( args[0] ) ) )
+    {
+      System.err.println( "usage: java seasofyore.ui.ReplayViewer file.replay" );
+      System.exit( 2 );
+    }
+
+    SwingUtilities.invokeLater( () ->
+    {
+      try
+      {
+        JFrame window = new JFrame( "The ship's log: " + args[0] );
+        window.setDefaultCloseOperation( WindowConstants.EXIT_ON_CLOSE );
+        window.setContentPane( new ReplayViewer( MatchReplay.read( Paths.get( args[0] ) ) ) );
+        window.pack();
+        window.setLocationRelativeTo( null );
+        window.setVisible( true );
+      }
+      catch ( IOException e )
+      {
+        System.err.println( "cannot read " + args[0] + ": " + e.getMessage() );
+        System.exit( 1 );
+      }
+    } );
+  }
+
+  /**
+   * Starts playback from the frame shown, from the start if at the end.
+   */
+  public void play()
+  {
+    if ( shown == replay.getShotCount() )
+      seek( replay.getPrologue() );
+    restartClock();
+    ticker.start();
+    playButton.setText( "Pause" );
+  }
+
+  /**
+   * Stops playback on the frame shown.
+   */
+  public void pause()
+  {
+    ticker.stop();
+    playButton.setText( "Play" );
+  }
+
+  /**
+   * Shows a frame; a jump by hand keeps playback running from there.
+   *
+   * @param fired the shots fired in the frame to show
+   */
+  private void jump( int fired )
+  {
+    seek( fired );
+    restartClock();
+  }
+
+  /**
+   * Advances playback to where the clock says it should be. At high speed
+   * several shots pass between ticks; only the last frame is built.
+   */
+  private void tick()
+  {
+    long elapsedMs = ( System.nanoTime() - playStartNanos ) / 1_000_000L;
+    int target = playFrom + (int) ( elapsedMs * speed / SHOT_MS );
+    if ( target >= replay.getShotCount() )
+    {
+      seek( replay.getShotCount() );
+      pause();
+    }
+    else if ( target != shown )
+      seek( target );
+  }
+
+  /**
+   * Re-anchors the playback clock on the frame shown.
+   */
+  private void restartClock()
+  {
+    playFrom = shown;
+    playStartNanos = System.nanoTime();
+  }
+
+  /**
+   * Shows the frame after a number of shots.
+   *
+   * @param fired the shots fired, clamped to the replay
+   */
+  private void seek( int fired )
+  {
+    shown = Math.max( replay.getPrologue(), Math.min( replay.getShotCount(), fired ) );
+    frame = replay.frameAt( shown );
+
+    moving = true;
+    slider.setValue( shown );
+    moving = false;
+
+    status.setText( describeFrame() );
+    repaint();
+  }
+
+  /**
+   * The first shot of a turn, clamped to the turns recorded.
+   *
+   * @param turn the turn, counting from 1
+   * @return the shots fired before it; the last frame past the final turn
+   */
+  private int turnStart( int turn )
+  {
+    if ( turn > replay.getTurnCount() )
+      return replay.getShotCount();
+    return ( turn < 1 ) ? replay.getPrologue() : replay.getTurnStart( turn );
+  }
+
+  /**
+   * The matchup, the rules, and the outcome.
+   *
+   * @return the header text
+   */
+  private String describe()
+  {
+    String text = commander( Civilization.BRITONS ) + " vs " + commander( Civilization.FRANKS )
+                + " -- " + ( replay.isSalvoMode() ? "SALVO" : "Classic" );
+    Civilization winner = replay.getWinner();
+    if ( winner != null )
+      text += " -- won by " + commander( winner );
+    return text;
+  }
+
+  /**
+   * The turn and shot shown, and the verdict on the last shot.
+   *
+   * @return the status text
+   */
+  private String describeFrame()
+  {
+    int turn = ( shown > replay.getPrologue() ) ? replay.getTurnOf( shown - 1 ) : 0;
+    String text = "Turn " + turn + " of " + replay.getTurnCount() + ", shot " + ( shown - replay.getPrologue() )
+                + " of " + ( replay.getShotCount() - replay.getPrologue() );
+    if ( shown > replay.getPrologue() )
+    {
+      int[] at = replay.getTarget( shown - 1 );
+      text += " -- " + commander( replay.getShooter( shown - 1 ) ) + " fires at "
+            + at[0] + "," + at[1] + ": " + ( replay.isHit( shown - 1 ) ? "HIT" : "miss" );
+    }
+    return text;
+  }
+
+  /**
+   * How a commander is named: an AI by its tavern nickname, a human by the
+   * name they signed.
+   *
+   * @param civ the civilization
+   * @return the display name
+   */
+  private String commander( Civilization civ )
+  {
+    PlayerType type = replay.getPlayerType( civ );
+    if ( type.isAI() )
+      return type.getNickname();
+    String name = replay.getName( civ );
+    return ( name == null ) ? type.getLabel() : name;
+  }
+
+  /**
+   * Both boards of the frame shown, the Britons' on the left, with the
+   * cell last fired upon ringed in gold.
+   */
+  private final class Boards extends JComponent
+  {
+    /**
+     * Space between the two boards and above them, in cells.
+     */
+    private static final int GAP = 1;
+
+    Boards()
+    {
+      setPreferredSize( new Dimension( 720, 360 ) );
+    }
+
+    @Override
+    protected void paintComponent( Graphics g )
+    {
+      Graphics2D g2 = (Graphics2D) g;
+      g2.setRenderingHint( RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON );
+
+      int n = PlayerQuadrant.GRID_SIZE;
+      int cell = Math.min( getWidth() / ( 2 * n + GAP ), getHeight() / ( n + GAP ) );
+      int left = ( getWidth() - ( 2 * n + GAP ) * cell ) / 2;
+      int top = ( getHeight() - ( n + GAP ) * cell ) / 2 + GAP * cell;
+
+      int[] last = ( shown > replay.getPrologue() ) ? replay.getTarget( shown - 1 ) : null;
+      Civilization lastTarget = ( last == null ) ? null
+          : ( replay.getShooter( shown - 1 ) == Civilization.BRITONS )
+              ? Civilization.FRANKS : Civilization.BRITONS;
+
+      Civilization[] civs = { Civilization.BRITONS, Civilization.FRANKS };
+      for ( int b = 0; b < civs.length; b++ )
+      {
+        Civilization civ = civs[b];
+        int x0 = left + b * ( n + GAP ) * cell;
+
+        g2.setColor( GOLD );
+        g2.setFont( new Font( "Serif", Font.BOLD, Math.max( 10, cell / 2 ) ) );
+        String caption = commander( civ ) + ( replay.isFleetKnown( civ )
+                       ? " -- " + frame.getSunk( civ ) + " sunk" : "" );
+        g2.drawString( caption, x0, top - cell / 3 );
+
+        for ( int y = 0; y < n; y++ )
+        {
+          for ( int x = 0; x < n; x++ )
+          {
+            int code = frame.getCell( civ, x, y );
+            boolean hull = ( code == SaveSummary.UNFIRED
+                             && replay.getHullAt( civ, x, y ) != null );
+            g2.setColor( hull ? HULL : CELL_COLOURS[code] );
+            g2.fillRect( x0 + x * cell, top + y * cell, cell, cell );
+            g2.setColor( INK );
+            g2.drawRect( x0 + x * cell, top + y * cell, cell, cell );
+          }
+        }
+
+        if ( civ == lastTarget )
+        {
+          g2.setColor( GOLD );
+          g2.drawRect( x0 + last[0] * cell + 1, top + last[1] * cell + 1, cell - 2, cell - 2 );
+          g2.drawRect( x0 + last[0] * cell + 2, top + last[1] * cell + 2, cell - 4, cell - 4 );
+        }
+      }
+    }
+  }
+}
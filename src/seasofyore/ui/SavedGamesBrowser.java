@@ -0,0 +1,272 @@
+package seasofyore.ui;
+
+import seasofyore.core.Civilization;
+import seasofyore.core.PlayerQuadrant;
+import seasofyore.core.PlayerType;
+import seasofyore.core.SaveSummary;
+import seasofyore.core.SavedGameIndex;
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.swing.BorderFactory;
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.Icon;
+import javax.swing.JButton;
+import javax.swing.JFileChooser;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.ListSelectionModel;
+import javax.swing.SwingUtilities;
+
+/**
+ * The saved-games browser behind "Load Game": every save in a directory,
+ * newest first, each with its matchup, rules, turn, hulls afloat, when it
+ * was saved, and a thumbnail of both boards. The listing comes from the
+ * saves' headers through a {@link SavedGameIndex}, which is kept for the
+ * life of the game so reopening the browser rereads only what changed. The
+ * listing is read on a background thread; a file that cannot be read is
+ * still listed, greyed out with the reason, and opening it reports the
+ * failure as loading always has.
+ *
+ * @author dylan
+ */
+final class SavedGamesBrowser
+{
+  /**
+   * Summaries remembered across every opening of the browser.
+   */
+  private static final SavedGameIndex INDEX = new SavedGameIndex();
+
+  /**
+   * The thread listings are read on, off the event thread: one, so that
+   * listings finish in the order they were asked for.
+   */
+  private static final ExecutorService LISTER = Executors.newSingleThreadExecutor( r ->
+  {
+    Thread t = new Thread( r, "save-lister" );
+    t.setDaemon( true );
+    return t;
+  } );
+
+  /**
+   * Pixels per thumbnail cell.
+   */
+  private static final int CELL = 4;
+
+  /**
+   * Thumbnail colours, by {@link SaveSummary} cell code.
+   */
+  private static final Color[] CELL_COLOURS = {
+    new Color( 24, 58, 94 ),    // unfired: deep water
+    new Color( 170, 190, 205 ), // miss: spray
+    new Color( 214, 64, 40 ),   // hit: fire
+    new Color( 60, 16, 16 )     // sunk: wreck
+  };
+
+  /**
+   * The thumbnail of a save that could not be read.
+   */
+  private static final Color UNREADABLE = new Color( 96, 96, 96 );
+
+  /**
+   * Not instantiable; shown through {@link #choose}.
+   */
+  private SavedGamesBrowser() {}
+
+  /**
+   * Shows the saves in a directory and lets the player pick one, or move to
+   * another directory.
+   *
+   * @param parent the component to anchor the dialog to
+   * @param dir    the directory to list first
+   * @return the chosen save, or null if the player cancelled
+   */
+  static File choose( Component parent, File dir )
+  {
+    JList<SaveSummary> list = new JList<>();
+    list.setSelectionMode( ListSelectionModel.SINGLE_SELECTION );
+    list.setCellRenderer( new SummaryRenderer() );
+    list.setVisibleRowCount( 6 );
+
+    JLabel where = new JLabel();
+    File[] shown = { dir };
+    Runnable refresh = () ->
+    {
+      File listing = shown[0];
+      list.setListData( new SaveSummary[0] );
+      where.setText( "Reading the logs in " + listing.getPath() + "..." );
+      CompletableFuture.supplyAsync( () -> INDEX.list( listing.toPath() ), LISTER )
+          .thenAccept( saves -> SwingUtilities.invokeLater( () ->
+      {
+        if ( shown[0] != listing )
+          return; // the player has moved on to another harbour
+        list.setListData( saves.toArray( new SaveSummary[0] ) );
+        int unreadable = 0;
+        for ( SaveSummary save : saves )
+          if ( !save.isReadable() )
+            unreadable++;
+        for ( int i = 0; i < saves.size(); i++ )
+          if ( saves.get( i ).isReadable() )
+          {
+            list.setSelectedIndex( i );
+            break;
+          }
+        where.setText( ( saves.size() - unreadable ) + " voyage(s) in " + listing.getPath()
+                     + ( unreadable > 0 ? ", " + unreadable + " unreadable" : "" ) );
+      } ) );
+    };
+    refresh.run();
+
+    JButton elsewhere = new JButton( "Another harbour..." );
+    elsewhere.addActionListener( e ->
+    {
+      JFileChooser chooser = new JFileChooser( shown[0] );
+      chooser.setDialogTitle( "Where are the logs kept?" );
+      chooser.setFileSelectionMode( JFileChooser.DIRECTORIES_ONLY );
+      if ( chooser.showOpenDialog( list ) == JFileChooser.APPROVE_OPTION )
+      {
+        shown[0] = chooser.getSelectedFile();
+        refresh.run();
+      }
+    } );
+
+    JPanel top = new JPanel( new BorderLayout( 8, 0 ) );
+    top.add( where, BorderLayout.CENTER );
+    top.add( elsewhere, BorderLayout.EAST );
+
+    JScrollPane scroll = new JScrollPane( list );
+    scroll.setPreferredSize( new Dimension( 560, 360 ) );
+
+    JPanel panel = new JPanel( new BorderLayout( 0, 8 ) );
+    panel.add( top, BorderLayout.NORTH );
+    panel.add( scroll, BorderLayout.CENTER );
+
+    Object[] options = { "Open", "Cancel" };
+    int choice = JOptionPane.showOptionDialog( parent, panel, "Recover a voyage",
+        JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE, null, options, options[0] );
+
+    SaveSummary picked = list.getSelectedValue();
+    if ( choice != 0 || picked == null )
+      return null;
+    return picked.getFile().toFile();
+  }
+
+  /**
+   * How a commander is named in the listing: an AI by its tavern nickname,
+   * a human by the name they signed.
+   *
+   * @param save the summary
+   * @param civ  the civilization
+   * @return the display name
+   */
+  private static String commander( SaveSummary save, Civilization civ )
+  {
+    PlayerType type = save.getPlayerType( civ );
+    if ( type.isAI() )
+      return type.getNickname();
+    String name = save.getName( civ );
+    return ( name == null ) ? type.getLabel() : name;
+  }
+
+  /**
+   * Renders one save as its thumbnail and two lines of description.
+   */
+  private static final class SummaryRenderer extends DefaultListCellRenderer
+  {
+    /**
+     * Formats the save time.
+     */
+    private final SimpleDateFormat when = new SimpleDateFormat( "d MMM yyyy, HH:mm" );
+
+    @Override
+    public Component getListCellRendererComponent( JList<?> list, Object value, int index,
+                                                   boolean selected, boolean focused )
+    {
+      super.getListCellRendererComponent( list, value, index, selected, focused );
+      SaveSummary save = (SaveSummary) value;
+      setIcon( new Thumbnail( save ) );
+      setIconTextGap( 12 );
+      setBorder( BorderFactory.createEmptyBorder( 6, 6, 6, 6 ) );
+
+      if ( !save.isReadable() )
+      {
+        setEnabled( false );
+        setText( "<html><b>" + save.getFile().getFileName() + "</b><br>"
+               + "Cannot be read: " + save.getProblem() + "<br>"
+               + when.format( new Date( save.getSavedAt() ) ) + "</html>" );
+        return this;
+      }
+
+      String turn = ( save.getTurnNumber() > 0 ) ? "turn " + save.getTurnNumber()
+                                                 : "fleets mooring";
+      setText( "<html><b>" + commander( save, Civilization.BRITONS ) + "</b> vs <b>"
+             + commander( save, Civilization.FRANKS ) + "</b><br>"
+             + ( save.isSalvoMode() ? "SALVO" : "Classic" ) + " &middot; " + turn
+             + " &middot; afloat " + save.getAfloat( Civilization.BRITONS ) + "&ndash;"
+             + save.getAfloat( Civilization.FRANKS ) + "<br>"
+             + when.format( new Date( save.getSavedAt() ) ) + " &middot; "
+             + save.getFile().getFileName() + "</html>" );
+      return this;
+    }
+  }
+
+  /**
+   * Both boards of a save side by side, one small square per cell.
+   */
+  private static final class Thumbnail implements Icon
+  {
+    /**
+     * The save drawn.
+     */
+    private final SaveSummary save;
+
+    Thumbnail( SaveSummary save )
+    {
+      this.save = save;
+    }
+
+    @Override
+    public void paintIcon( Component c, Graphics g, int x, int y )
+    {
+      int board = PlayerQuadrant.GRID_SIZE * CELL;
+      Civilization[] civs = { Civilization.BRITONS, Civilization.FRANKS };
+      for ( int b = 0; b < civs.length; b++ )
+      {
+        int left = x + b * ( board + CELL );
+        for ( int cy = 0; cy < PlayerQuadrant.GRID_SIZE; cy++ )
+        {
+          for ( int cx = 0; cx < PlayerQuadrant.GRID_SIZE; cx++ )
+          {
+            g.setColor( save.isReadable() ? CELL_COLOURS[save.getCell( civs[b], cx, cy )]
+                                          : UNREADABLE );
+            g.fillRect( left + cx * CELL, y + cy * CELL, CELL, CELL );
+          }
+        }
+      }
+    }
+
+    @Override
+    public int getIconWidth()
+    {
+      return 2 * PlayerQuadrant.GRID_SIZE * CELL + CELL;
+    }
+
+    @Override
+    public int getIconHeight()
+    {
+      return PlayerQuadrant.GRID_SIZE * CELL;
+    }
+  }
+}
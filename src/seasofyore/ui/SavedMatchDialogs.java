@@ -11,6 +11,7 @@ import java.io.IOException;
 import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
 import javax.swing.filechooser.FileNameExtensionFilter;
+import javax.swing.filechooser.FileSystemView;
 
 /**
  * The file-dialog plumbing for saving and recovering matches, shared by the
@@ -33,16 +34,22 @@ public final class SavedMatchDialogs
       "Seas of Yore saves (*." + SavedMatch.FILE_EXTENSION + ")";
 
   /**
-   * Prompts for a destination and writes the match. Appends the .yore
-   * extension when the user omits it, and reports failures in a dialog.
+   * The directory last saved to or loaded from, where the browser opens;
+   * null until then, when the platform's default directory is used.
+   */
+  private static File lastDirectory;
+
+  /**
+   * Prompts for a destination to save a match to, appending the .yore
+   * extension when the user omits it. Writing is left to the caller, which
+   * does it off the event thread.
    *
-   * @param parent the component to anchor dialogs to
-   * @param match  the match to bottle
-   * @return the file written, or null if the user cancelled or saving failed
+   * @param parent the component to anchor the dialog to
+   * @return the chosen file, or null if the user cancelled
    */
-  public static File saveViaDialog( Component parent, SavedMatch match )
+  public static File chooseSaveFile( Component parent )
   {
-    JFileChooser chooser = new JFileChooser();
+    JFileChooser chooser = new JFileChooser( lastDirectory );
     chooser.setDialogTitle( "Save thy voyage" );
     chooser.setFileFilter( new FileNameExtensionFilter(
         FILTER_DESC, SavedMatch.FILE_EXTENSION ) );
@@ -54,41 +61,30 @@ public final class SavedMatchDialogs
     if ( !file.getName().toLowerCase().endsWith( "." + SavedMatch.FILE_EXTENSION ) )
       file = new File( file.getParentFile(),
                        file.getName() + "." + SavedMatch.FILE_EXTENSION );
-
-    try
-    {
-      SavedMatch.save( file, match );
-      return file;
-    }
-    catch ( IOException ex )
-    {
-      JOptionPane.showMessageDialog( parent,
-          "The log could not be written: " + ex.getMessage(),
-          "Save failed", JOptionPane.ERROR_MESSAGE );
-      return null;
-    }
+    lastDirectory = file.getParentFile();
+    return file;
   }
 
   /**
-   * Prompts for a saved file and reads the match back, reporting failures
-   * in a dialog.
+   * Shows the saved-games browser and reads the chosen match back,
+   * reporting failures in a dialog.
    *
    * @param parent the component to anchor dialogs to
    * @return the restored match, or null if the user cancelled or it failed
    */
   public static SavedMatch loadViaDialog( Component parent )
   {
-    JFileChooser chooser = new JFileChooser();
-    chooser.setDialogTitle( "Recover a voyage" );
-    chooser.setFileFilter( new FileNameExtensionFilter(
-        FILTER_DESC, SavedMatch.FILE_EXTENSION ) );
-
-    if ( chooser.showOpenDialog( parent ) != JFileChooser.APPROVE_OPTION )
+    File dir = ( lastDirectory != null )
+             ? lastDirectory
+             : FileSystemView.getFileSystemView().getDefaultDirectory();
+    File file = SavedGamesBrowser.choose( parent, dir );
+    if ( file == null )
       return null;
+    lastDirectory = file.getParentFile();
 
     try
     {
-      return SavedMatch.load( chooser.getSelectedFile() );
+      return SavedMatch.load( file );
     }
     catch ( IOException | ClassNotFoundException ex )
     {
@@ -36,8 +36,9 @@ import seasofyore.GameController;
  * <p>
  * Above the log scrolls a status line naming the commander whose turn it is
  * -- humans by honorific, AI tiers by their tavern nickname and difficulty --
- * and, in networked matches, a chat field surfaces beneath it so words can be
- * exchanged across the water.
+ * and, in networked matches, how the line to the enemy is holding up, while a
+ * chat field surfaces beneath the log so words can be exchanged across the
+ * water.
  *
  * @author dylan
  */
@@ -117,6 +118,9 @@ public class TerminalPanel extends JPanel
 
   private boolean chatAvailable = false;
 
+  /** The networked link's state for the status line; null offline. */
+  private String linkStatus;
+
   private ImageIcon currentIcon;
 
   public TerminalPanel( ActionListener endTurnListener, GameController game )
@@ -388,7 +392,22 @@ public class TerminalPanel extends JPanel
                      ? type.getNickname() + "  [" + type.getLabel() + "]"
                      : controller.getCurrentPlayer().getTitledName();
 
-    statusLabel.setText( civ + "  <>  " + commander );
+    statusLabel.setText( civ + "  <>  " + commander
+                       + ( linkStatus == null ? "" : "    ~  " + linkStatus ) );
+  }
+
+  /**
+   * Shows how the line to a networked enemy is holding up -- its round
+   * trip, or how long it has been silent -- on the status line.
+   *
+   * @param status the text, or null to show nothing
+   */
+  public void setLinkStatus( String status )
+  {
+    if ( status == null ? linkStatus == null : status.equals( linkStatus ) )
+      return;
+    linkStatus = status;
+    refreshStatusLine();
   }
 
   @Override